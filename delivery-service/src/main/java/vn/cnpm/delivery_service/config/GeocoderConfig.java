@@ -0,0 +1,30 @@
+package vn.cnpm.delivery_service.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import vn.cnpm.delivery_service.geocoding.CachingGeocoder;
+import vn.cnpm.delivery_service.geocoding.GazetteerGeocoder;
+import vn.cnpm.delivery_service.geocoding.Geocoder;
+import vn.cnpm.delivery_service.geocoding.SimulatedGeocoder;
+
+import java.nio.file.Path;
+
+@Configuration
+public class GeocoderConfig {
+
+    /**
+     * Geocoder dùng chung: gazetteer cục bộ (nếu cấu hình) hoặc giả lập, bọc cache LRU
+     */
+    @Bean
+    public Geocoder geocoder(@Value("${delivery.geocoder.gazetteer-file:}") String gazetteerFile,
+                             @Value("${delivery.geocoder.cache-size:10000}") int cacheSize,
+                             MeterRegistry meterRegistry) {
+        Geocoder geocoder = new SimulatedGeocoder();
+        if (!gazetteerFile.isBlank()) {
+            geocoder = new GazetteerGeocoder(Path.of(gazetteerFile), geocoder);
+        }
+        return new CachingGeocoder(geocoder, cacheSize, meterRegistry);
+    }
+}
@@ -15,20 +15,28 @@ public class RabbitMQConfig {
     public static final String RESTAURANT_EXCHANGE = "restaurant.exchange";
     public static final String DELIVERY_EXCHANGE = "delivery.exchange";
     public static final String ORDER_EXCHANGE = "order.exchange";
+    public static final String PAYMENT_EXCHANGE = "payment.exchange";
 
     // Queue names
     public static final String ORDER_READY_QUEUE = "order.ready.queue";
+    // Queue riêng của delivery-service (order.paid.queue đã do product-service tiêu thụ)
+    public static final String DELIVERY_ORDER_PAID_QUEUE = "delivery.order.paid.queue";
+    public static final String DELIVERY_ORDER_CANCELLED_QUEUE = "delivery.order.cancelled.queue";
     public static final String ORDER_PICKED_UP_QUEUE = "order.pickedup.queue";
     public static final String ORDER_DELIVERING_QUEUE = "order.delivering.queue";
     public static final String ORDER_COMPLETED_QUEUE = "order.completed.queue";
     public static final String DRONE_LOCATION_UPDATE_QUEUE = "drone.location.update.queue";
+    public static final String DRONE_LOCATION_FRAME_QUEUE = "drone.location.frame.queue";
 
     // Routing keys
     public static final String ORDER_READY_ROUTING_KEY = "order.ready";
+    public static final String ORDER_PAID_ROUTING_KEY = "order.paid";
+    public static final String ORDER_CANCELLED_ROUTING_KEY = "order.cancelled";
     public static final String ORDER_PICKED_UP_ROUTING_KEY = "order.pickedup";
     public static final String ORDER_DELIVERING_ROUTING_KEY = "order.delivering";
     public static final String ORDER_COMPLETED_ROUTING_KEY = "order.completed";
     public static final String DRONE_LOCATION_UPDATE_ROUTING_KEY = "drone.location.update";
+    public static final String DRONE_LOCATION_FRAME_ROUTING_KEY = "drone.location.frame";
 
     @Bean
     public MessageConverter jsonMessageConverter() {
@@ -60,12 +68,30 @@ public class RabbitMQConfig {
         return new TopicExchange(ORDER_EXCHANGE);
     }
 
+    // Payment Exchange
+    @Bean
+    public TopicExchange paymentExchange() {
+        return new TopicExchange(PAYMENT_EXCHANGE);
+    }
+
     // Order Ready Queue (nhận từ Restaurant Service)
     @Bean
     public Queue orderReadyQueue() {
         return new Queue(ORDER_READY_QUEUE, true);
     }
 
+    // Order Paid Queue (bay trước tới nhà hàng khi đơn vừa thanh toán)
+    @Bean
+    public Queue deliveryOrderPaidQueue() {
+        return new Queue(DELIVERY_ORDER_PAID_QUEUE, true);
+    }
+
+    // Order Cancelled Queue (giải phóng drone đã bay trước)
+    @Bean
+    public Queue deliveryOrderCancelledQueue() {
+        return new Queue(DELIVERY_ORDER_CANCELLED_QUEUE, true);
+    }
+
     // Order Picked Up Queue (gửi đến Order Service)
     @Bean
     public Queue orderPickedUpQueue() {
@@ -90,6 +116,12 @@ public class RabbitMQConfig {
         return new Queue(DRONE_LOCATION_UPDATE_QUEUE, true);
     }
 
+    // Drone Location Frame Queue (cập nhật GPS gộp theo tick)
+    @Bean
+    public Queue droneLocationFrameQueue() {
+        return new Queue(DRONE_LOCATION_FRAME_QUEUE, true);
+    }
+
     // Binding: Order Ready Queue -> Restaurant Exchange
     @Bean
     public Binding orderReadyBinding() {
@@ -99,6 +131,24 @@ public class RabbitMQConfig {
                 .with(ORDER_READY_ROUTING_KEY);
     }
 
+    // Binding: Delivery Order Paid Queue -> Payment Exchange
+    @Bean
+    public Binding deliveryOrderPaidBinding() {
+        return BindingBuilder
+                .bind(deliveryOrderPaidQueue())
+                .to(paymentExchange())
+                .with(ORDER_PAID_ROUTING_KEY);
+    }
+
+    // Binding: Delivery Order Cancelled Queue -> Order Exchange
+    @Bean
+    public Binding deliveryOrderCancelledBinding() {
+        return BindingBuilder
+                .bind(deliveryOrderCancelledQueue())
+                .to(orderExchange())
+                .with(ORDER_CANCELLED_ROUTING_KEY);
+    }
+
     // Binding: Order Picked Up Queue -> Delivery Exchange
     @Bean
     public Binding orderPickedUpBinding() {
@@ -134,4 +184,13 @@ public class RabbitMQConfig {
                 .to(deliveryExchange())
                 .with(DRONE_LOCATION_UPDATE_ROUTING_KEY);
     }
+
+    // Binding: Drone Location Frame Queue -> Delivery Exchange
+    @Bean
+    public Binding droneLocationFrameBinding() {
+        return BindingBuilder
+                .bind(droneLocationFrameQueue())
+                .to(deliveryExchange())
+                .with(DRONE_LOCATION_FRAME_ROUTING_KEY);
+    }
 }
@@ -0,0 +1,27 @@
+package vn.cnpm.delivery_service.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import vn.cnpm.delivery_service.util.SimulationClock;
+
+import java.time.Clock;
+
+@Configuration
+@Slf4j
+public class SimulationConfig {
+
+    /**
+     * Đồng hồ dùng chung cho tick GPS, DroneService và timer vòng đời giao hàng
+     * time-compression > 1 cho phép chạy nhanh cả giờ cao điểm khi load test
+     */
+    @Bean
+    public SimulationClock simulationClock(@Value("${delivery.simulation.time-compression:1}") double compression) {
+        SimulationClock clock = new SimulationClock(Clock.systemUTC(), compression);
+        if (clock.isAccelerated()) {
+            log.warn("Simulation clock running {}x faster than real time", compression);
+        }
+        return clock;
+    }
+}
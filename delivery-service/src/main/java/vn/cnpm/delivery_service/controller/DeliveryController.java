@@ -6,7 +6,10 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import vn.cnpm.delivery_service.model.Delivery;
 import vn.cnpm.delivery_service.repository.DeliveryRepository;
+import vn.cnpm.delivery_service.service.ActiveDeliveryRegistry;
 import vn.cnpm.delivery_service.service.DroneService;
+import vn.cnpm.delivery_service.track.GpsTrack;
+import vn.cnpm.delivery_service.track.GpsTrackStore;
 
 import java.util.List;
 
@@ -18,6 +21,8 @@ public class DeliveryController {
 
     private final DeliveryRepository deliveryRepository;
     private final DroneService droneService;
+    private final ActiveDeliveryRegistry activeDeliveryRegistry;
+    private final GpsTrackStore trackStore;
 
     /**
      * Lấy tất cả deliveries
@@ -77,7 +82,9 @@ public class DeliveryController {
     @GetMapping("/{deliveryId}/gps-tracking")
     public ResponseEntity<?> getGpsTracking(@PathVariable Long deliveryId) {
         try {
-            Delivery delivery = deliveryRepository.findById(deliveryId)
+            // Delivery đang hoạt động lấy từ registry (vị trí mới nhất, DB chỉ được flush theo chu kỳ)
+            Delivery delivery = activeDeliveryRegistry.find(deliveryId)
+                    .or(() -> deliveryRepository.findById(deliveryId))
                     .orElseThrow(() -> new RuntimeException("Delivery not found"));
 
             java.util.Map<String, Object> tracking = new java.util.HashMap<>();
@@ -101,6 +108,33 @@ public class DeliveryController {
         }
     }
 
+    /**
+     * Toàn bộ hành trình GPS đã ghi (dạng cột: timestamps/lat/lng/speed cùng chỉ số)
+     * GET /api/deliveries/{deliveryId}/gps-tracking/history
+     */
+    @GetMapping("/{deliveryId}/gps-tracking/history")
+    public ResponseEntity<?> getGpsTrackingHistory(@PathVariable Long deliveryId) {
+        if (!trackStore.isEnabled()) {
+            return ResponseEntity.notFound().build();
+        }
+        GpsTrack track = trackStore.history(deliveryId);
+        if (track.pointCount() == 0
+                && activeDeliveryRegistry.find(deliveryId).isEmpty()
+                && !deliveryRepository.existsById(deliveryId)) {
+            return ResponseEntity.notFound().build();
+        }
+
+        java.util.Map<String, Object> history = new java.util.HashMap<>();
+        history.put("deliveryId", deliveryId);
+        history.put("pointCount", track.pointCount());
+        history.put("compressedBytes", track.compressedBytes());
+        history.put("timestamps", track.timestamps());
+        history.put("lat", track.lat());
+        history.put("lng", track.lng());
+        history.put("speed", track.speed());
+        return ResponseEntity.ok(history);
+    }
+
     @PostMapping("/{deliveryId}/complete")
     public ResponseEntity<Delivery> completeDelivery(@PathVariable Long deliveryId) {
         try {
@@ -2,12 +2,21 @@ package vn.cnpm.delivery_service.controller;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import vn.cnpm.delivery_service.model.Drone;
 import vn.cnpm.delivery_service.model.DroneStatus;
+import vn.cnpm.delivery_service.service.DemandHeatmap;
+import vn.cnpm.delivery_service.service.DroneRebalancer;
+import vn.cnpm.delivery_service.service.DroneRelocator;
 import vn.cnpm.delivery_service.service.DroneService;
+import vn.cnpm.delivery_service.telemetry.TelemetryCodec;
+import vn.cnpm.delivery_service.telemetry.TelemetryIngestService;
+import vn.cnpm.delivery_service.telemetry.TelemetrySample;
 
 import java.util.HashMap;
 import java.util.List;
@@ -24,6 +33,14 @@ import java.util.Map;
 public class DroneController {
 
     private final DroneService droneService;
+    private final TelemetryCodec telemetryCodec;
+    private final TelemetryIngestService telemetryIngestService;
+    private final DemandHeatmap demandHeatmap;
+    private final DroneRebalancer droneRebalancer;
+    private final DroneRelocator droneRelocator;
+
+    @Value("${delivery.telemetry.max-batch:10000}")
+    private int maxTelemetryBatch;
 
     /**
      * Lấy tất cả drone
@@ -194,5 +211,51 @@ public class DroneController {
 
         return ResponseEntity.ok(stats);
     }
-}
 
+    /**
+     * Bản đồ nhiệt nhu cầu (ô geohash, số đơn trong cửa sổ trượt) và trạng thái cân bằng drone
+     * GET /api/drones/heatmap
+     */
+    @GetMapping("/heatmap")
+    public ResponseEntity<Map<String, Object>> getDemandHeatmap() {
+        Map<String, Object> heatmap = new HashMap<>();
+        heatmap.put("precision", demandHeatmap.precision());
+        heatmap.put("windowMinutes", demandHeatmap.windowMinutes());
+        heatmap.put("cells", demandHeatmap.snapshot());
+        heatmap.put("rebalanceEnabled", droneRebalancer.isEnabled());
+        heatmap.put("rebalanceMoves", (long) droneRebalancer.totalMoves());
+        heatmap.put("relocatingDrones", droneRelocator.size());
+        heatmap.put("meanPickupDistanceKm", Math.round(droneRebalancer.meanPickupDistanceKm() * 1000.0) / 1000.0);
+        return ResponseEntity.ok(heatmap);
+    }
+
+    /**
+     * Nhận telemetry hàng loạt (NDJSON hoặc nhị phân, xem {@link TelemetryCodec})
+     * POST /api/drones/telemetry
+     * 202 khi đã vào hàng đợi, 429 + Retry-After khi hàng đợi đầy (cả batch bị từ chối, gửi lại sau)
+     */
+    @PostMapping(value = "/telemetry",
+                 consumes = {TelemetryCodec.NDJSON, MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public ResponseEntity<?> ingestTelemetry(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            @RequestBody byte[] body) {
+        List<TelemetrySample> samples;
+        try {
+            samples = MediaType.parseMediaType(contentType).isCompatibleWith(MediaType.APPLICATION_OCTET_STREAM)
+                    ? TelemetryCodec.parseBinary(body, maxTelemetryBatch)
+                    : telemetryCodec.parseNdjson(body, maxTelemetryBatch);
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected telemetry batch: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+
+        log.debug("POST /api/drones/telemetry - {} samples", samples.size());
+        if (!telemetryIngestService.offer(samples)) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(Map.of("error", "Telemetry buffer full",
+                            "buffered", telemetryIngestService.bufferedSamples()));
+        }
+        return ResponseEntity.accepted().body(Map.of("accepted", samples.size()));
+    }
+}
@@ -0,0 +1,64 @@
+package vn.cnpm.delivery_service.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Gói toàn bộ cập nhật GPS của một tick vào một message (có thể chia thành nhiều chunk)
+ * Lưu dạng cột (mỗi thuộc tính một mảng) để JSON không lặp lại tên field cho từng drone
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DroneLocationFrame implements Serializable {
+    private long tickAt; // epoch millis - thời điểm lấy mẫu vị trí của cả tick
+    private int chunk; // 0-based
+    private int chunkCount;
+    private long[] orderIds;
+    private String[] droneIds;
+    private String[] statuses;
+    private double[] currentLat;
+    private double[] currentLng;
+    private double[] distanceRemaining; // km
+    private double[] currentSpeed; // km/h
+    private double[] heading; // độ, 0 = bắc
+    private long[] estimatedArrivalSeconds;
+
+    public static DroneLocationFrame of(List<DroneLocationUpdateEvent> updates, long tickAt,
+                                        int chunk, int chunkCount) {
+        int n = updates.size();
+        DroneLocationFrame frame = DroneLocationFrame.builder()
+                .tickAt(tickAt)
+                .chunk(chunk)
+                .chunkCount(chunkCount)
+                .orderIds(new long[n])
+                .droneIds(new String[n])
+                .statuses(new String[n])
+                .currentLat(new double[n])
+                .currentLng(new double[n])
+                .distanceRemaining(new double[n])
+                .currentSpeed(new double[n])
+                .heading(new double[n])
+                .estimatedArrivalSeconds(new long[n])
+                .build();
+        for (int i = 0; i < n; i++) {
+            DroneLocationUpdateEvent update = updates.get(i);
+            frame.orderIds[i] = update.getOrderId();
+            frame.droneIds[i] = update.getDroneId();
+            frame.statuses[i] = update.getStatus();
+            frame.currentLat[i] = update.getCurrentLat();
+            frame.currentLng[i] = update.getCurrentLng();
+            frame.distanceRemaining[i] = update.getDistanceRemaining();
+            frame.currentSpeed[i] = update.getCurrentSpeed();
+            frame.heading[i] = update.getHeading() != null ? update.getHeading() : 0;
+            frame.estimatedArrivalSeconds[i] = update.getEstimatedArrivalSeconds();
+        }
+        return frame;
+    }
+}
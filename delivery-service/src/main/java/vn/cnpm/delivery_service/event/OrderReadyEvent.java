@@ -18,4 +18,6 @@ public class OrderReadyEvent implements Serializable {
     private String deliveryAddress;
     private String deliveryPhone;
     private String deliveryFullName;
+    // Độ ưu tiên gán drone khi phải chờ (tùy chọn)
+    private Integer priority;
 }
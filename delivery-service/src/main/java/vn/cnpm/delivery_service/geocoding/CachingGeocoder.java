@@ -0,0 +1,65 @@
+package vn.cnpm.delivery_service.geocoding;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import vn.cnpm.delivery_service.util.GeoPoint;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache LRU có giới hạn kích thước trước một geocoder, khóa bằng địa chỉ đã chuẩn hóa
+ * Ghi metric delivery.geocoder.cache{result=hit|miss}
+ */
+public class CachingGeocoder implements Geocoder {
+
+    private final Geocoder delegate;
+    private final Map<String, GeoPoint> cache;
+    private final Counter hits;
+    private final Counter misses;
+
+    public CachingGeocoder(Geocoder delegate, int maxEntries, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        // LinkedHashMap theo thứ tự truy cập => loại phần tử ít dùng gần đây nhất khi đầy
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, GeoPoint> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.hits = meterRegistry.counter("delivery.geocoder.cache", "result", "hit");
+        this.misses = meterRegistry.counter("delivery.geocoder.cache", "result", "miss");
+        meterRegistry.gauge("delivery.geocoder.cache.size", this, CachingGeocoder::size);
+    }
+
+    @Override
+    public GeoPoint geocode(String address) {
+        String key = Geocoder.normalize(address);
+        GeoPoint cached;
+        synchronized (cache) {
+            cached = cache.get(key);
+        }
+        if (cached != null) {
+            hits.increment();
+            return copy(cached);
+        }
+
+        misses.increment();
+        GeoPoint point = delegate.geocode(address);
+        synchronized (cache) {
+            cache.put(key, copy(point));
+        }
+        return point;
+    }
+
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    // GeoPoint có setter => trả bản sao để caller không sửa được giá trị trong cache
+    private static GeoPoint copy(GeoPoint point) {
+        return new GeoPoint(point.getLat(), point.getLng());
+    }
+}
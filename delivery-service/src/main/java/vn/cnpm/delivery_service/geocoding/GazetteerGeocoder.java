@@ -0,0 +1,56 @@
+package vn.cnpm.delivery_service.geocoding;
+
+import lombok.extern.slf4j.Slf4j;
+import vn.cnpm.delivery_service.util.GeoPoint;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Geocoder đọc từ file gazetteer cục bộ
+ * Mỗi dòng: địa chỉ;lat;lng (dòng trống hoặc bắt đầu bằng # bị bỏ qua)
+ * Địa chỉ không có trong file được chuyển cho geocoder dự phòng
+ */
+@Slf4j
+public class GazetteerGeocoder implements Geocoder {
+
+    private final Map<String, GeoPoint> entries = new HashMap<>();
+    private final Geocoder fallback;
+
+    public GazetteerGeocoder(Path file, Geocoder fallback) {
+        this.fallback = fallback;
+        try {
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            for (String line : lines) {
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                // Tách từ phải sang vì địa chỉ có thể chứa dấu ';'
+                int lngSep = line.lastIndexOf(';');
+                int latSep = lngSep > 0 ? line.lastIndexOf(';', lngSep - 1) : -1;
+                if (latSep <= 0) {
+                    log.warn("Skipping malformed gazetteer line: {}", line);
+                    continue;
+                }
+                double lat = Double.parseDouble(line.substring(latSep + 1, lngSep).trim());
+                double lng = Double.parseDouble(line.substring(lngSep + 1).trim());
+                entries.put(Geocoder.normalize(line.substring(0, latSep)), new GeoPoint(lat, lng));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read gazetteer file " + file, e);
+        }
+        log.info("Loaded {} gazetteer entries from {}", entries.size(), file);
+    }
+
+    @Override
+    public GeoPoint geocode(String address) {
+        GeoPoint point = entries.get(Geocoder.normalize(address));
+        return point != null ? point : fallback.geocode(address);
+    }
+}
@@ -0,0 +1,27 @@
+package vn.cnpm.delivery_service.geocoding;
+
+import vn.cnpm.delivery_service.util.GeoPoint;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * Chuyển địa chỉ thành tọa độ GPS
+ */
+public interface Geocoder {
+
+    GeoPoint geocode(String address);
+
+    /**
+     * Chuẩn hóa địa chỉ làm khóa tra cứu: Unicode NFC, chữ thường, gộp khoảng trắng
+     */
+    static String normalize(String address) {
+        if (address == null) {
+            return "";
+        }
+        String normalized = Normalizer.normalize(address, Normalizer.Form.NFC)
+                .toLowerCase(Locale.ROOT)
+                .trim();
+        return normalized.replaceAll("\\s+", " ");
+    }
+}
@@ -1,21 +1,38 @@
 package vn.cnpm.delivery_service.messaging;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import vn.cnpm.delivery_service.config.RabbitMQConfig;
+import vn.cnpm.delivery_service.event.DroneLocationFrame;
 import vn.cnpm.delivery_service.event.DroneLocationUpdateEvent;
 import vn.cnpm.delivery_service.event.OrderCompletedEvent;
 import vn.cnpm.delivery_service.event.OrderDeliveringEvent;
 import vn.cnpm.delivery_service.event.OrderPickedUpEvent;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class DeliveryEventPublisher {
 
     private final RabbitTemplate rabbitTemplate;
+    private final MeterRegistry meterRegistry;
+
+    // Số cập nhật tối đa trong một frame; tick lớn hơn được chia thành nhiều chunk
+    @Value("${delivery.gps.frame-max-updates:500}")
+    private int frameMaxUpdates;
+
+    // Kích thước body tối đa (byte) của một chunk; chunk lớn hơn được chia nhỏ tiếp, 0 = không giới hạn
+    @Value("${delivery.gps.frame-max-bytes:131072}")
+    private int frameMaxBytes;
 
     /**
      * Thông báo drone đã lấy hàng từ nhà hàng
@@ -84,21 +101,111 @@ public class DeliveryEventPublisher {
     /**
      * Cập nhật vị trí GPS real-time của drone
      * Gửi mỗi 5 giây trong quá trình giao hàng
+     *
+     * @return số byte đã gửi (0 nếu lỗi)
      */
-    public void publishDroneLocationUpdate(DroneLocationUpdateEvent event) {
+    public long publishDroneLocationUpdate(DroneLocationUpdateEvent event) {
         try {
-            rabbitTemplate.convertAndSend(
-                    RabbitMQConfig.DELIVERY_EXCHANGE,
-                    RabbitMQConfig.DRONE_LOCATION_UPDATE_ROUTING_KEY,
-                    event
-            );
+            int bytes = send(RabbitMQConfig.DRONE_LOCATION_UPDATE_ROUTING_KEY, event);
+            recordLocationPublish("single", 1, bytes);
 
             log.debug("Drone location update published for order: {} - Lat: {}, Lng: {}, Distance: {} km",
                     event.getOrderId(), event.getCurrentLat(), event.getCurrentLng(), 
                     event.getDistanceRemaining());
+            return bytes;
         } catch (Exception e) {
             log.error("Failed to publish drone location update for orderId: {}",
                     event.getOrderId(), e);
+            return 0;
         }
     }
+
+    /**
+     * Gửi toàn bộ cập nhật GPS của một tick dưới dạng frame, chia chunk theo frameMaxUpdates và frameMaxBytes
+     *
+     * @return tổng số byte đã gửi
+     */
+    public long publishDroneLocationFrame(List<DroneLocationUpdateEvent> updates) {
+        if (updates.isEmpty()) {
+            return 0;
+        }
+        // Cả tick lấy mẫu cùng một thời điểm
+        Long sampledAt = updates.get(0).getTimestamp();
+        long tickAt = sampledAt != null ? sampledAt : System.currentTimeMillis();
+        List<Message> chunks = encodeFrame(updates, tickAt);
+        int messages = 0;
+        long bytes = 0;
+        for (int chunk = 0; chunk < chunks.size(); chunk++) {
+            Message message = chunks.get(chunk);
+            try {
+                rabbitTemplate.send(RabbitMQConfig.DELIVERY_EXCHANGE, RabbitMQConfig.DRONE_LOCATION_FRAME_ROUTING_KEY,
+                        message);
+                bytes += message.getBody().length;
+                messages++;
+            } catch (Exception e) {
+                log.error("Failed to publish drone location frame chunk {}/{} ({} bytes)",
+                        chunk + 1, chunks.size(), message.getBody().length, e);
+            }
+        }
+        recordLocationPublish("frame", messages, bytes);
+        log.debug("Drone location frame published: {} updates in {} messages, {} bytes",
+                updates.size(), messages, bytes);
+        return bytes;
+    }
+
+    /**
+     * Mã hóa frame của một tick: chia theo frameMaxUpdates, chunk nào vượt frameMaxBytes thì chia tiếp theo tỉ lệ
+     * kích thước rồi mã hóa lại cả tick (chunkCount đổi). Một cập nhật đơn lẻ vượt giới hạn vẫn được gửi
+     */
+    private List<Message> encodeFrame(List<DroneLocationUpdateEvent> updates, long tickAt) {
+        List<List<DroneLocationUpdateEvent>> parts = split(updates, Math.max(1, frameMaxUpdates));
+        while (true) {
+            List<Message> encoded = new ArrayList<>(parts.size());
+            List<List<DroneLocationUpdateEvent>> refined = new ArrayList<>(parts.size());
+            boolean oversized = false;
+            for (int chunk = 0; chunk < parts.size(); chunk++) {
+                List<DroneLocationUpdateEvent> part = parts.get(chunk);
+                Message message = toMessage(DroneLocationFrame.of(part, tickAt, chunk, parts.size()));
+                int size = message.getBody().length;
+                if (frameMaxBytes > 0 && size > frameMaxBytes && part.size() > 1) {
+                    oversized = true;
+                    long pieces = (size + frameMaxBytes - 1L) / frameMaxBytes;
+                    refined.addAll(split(part, (int) ((part.size() + pieces - 1) / pieces)));
+                } else {
+                    refined.add(part);
+                }
+                encoded.add(message);
+            }
+            if (!oversized) {
+                return encoded;
+            }
+            parts = refined;
+        }
+    }
+
+    private static <T> List<List<T>> split(List<T> items, int size) {
+        List<List<T>> parts = new ArrayList<>((items.size() + size - 1) / size);
+        for (int from = 0; from < items.size(); from += size) {
+            parts.add(items.subList(from, Math.min(items.size(), from + size)));
+        }
+        return parts;
+    }
+
+    /**
+     * Chuyển payload thành message rồi gửi, trả về kích thước body (byte)
+     */
+    private int send(String routingKey, Object payload) {
+        Message message = toMessage(payload);
+        rabbitTemplate.send(RabbitMQConfig.DELIVERY_EXCHANGE, routingKey, message);
+        return message.getBody().length;
+    }
+
+    private Message toMessage(Object payload) {
+        return rabbitTemplate.getMessageConverter().toMessage(payload, new MessageProperties());
+    }
+
+    private void recordLocationPublish(String mode, int messages, long bytes) {
+        meterRegistry.counter("delivery.gps.publish.messages", "mode", mode).increment(messages);
+        meterRegistry.counter("delivery.gps.publish.bytes", "mode", mode).increment(bytes);
+    }
 }
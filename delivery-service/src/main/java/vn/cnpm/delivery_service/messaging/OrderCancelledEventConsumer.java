@@ -0,0 +1,32 @@
+package vn.cnpm.delivery_service.messaging;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+import vn.cnpm.delivery_service.config.RabbitMQConfig;
+import vn.cnpm.delivery_service.event.OrderCancelledEvent;
+import vn.cnpm.delivery_service.service.PreDispatchService;
+
+/**
+ * Đơn bị hủy: giải phóng drone đang được giữ chỗ mềm cho đơn
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OrderCancelledEventConsumer {
+
+    private final PreDispatchService preDispatchService;
+
+    @RabbitListener(queues = RabbitMQConfig.DELIVERY_ORDER_CANCELLED_QUEUE)
+    public void handleOrderCancelledEvent(OrderCancelledEvent event) {
+        try {
+            log.info("Received OrderCancelledEvent for orderId: {} (was {})",
+                    event.getOrderId(), event.getPreviousStatus());
+            preDispatchService.cancel(event.getOrderId());
+        } catch (Exception e) {
+            log.error("Failed to process OrderCancelledEvent for orderId: {}", event.getOrderId(), e);
+            throw new RuntimeException("Failed to process order cancelled event", e);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package vn.cnpm.delivery_service.messaging;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+import vn.cnpm.delivery_service.config.RabbitMQConfig;
+import vn.cnpm.delivery_service.event.OrderPaidEvent;
+import vn.cnpm.delivery_service.service.PreDispatchService;
+
+/**
+ * Đơn vừa thanh toán: cho drone bay trước tới nhà hàng (không tạo delivery, chờ OrderReadyEvent)
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OrderPaidEventConsumer {
+
+    private final PreDispatchService preDispatchService;
+
+    @RabbitListener(queues = RabbitMQConfig.DELIVERY_ORDER_PAID_QUEUE)
+    public void handleOrderPaidEvent(OrderPaidEvent event) {
+        try {
+            log.debug("Received OrderPaidEvent for orderId: {}, restaurantId: {}",
+                    event.getOrderId(), event.getRestaurantId());
+            preDispatchService.onOrderPaid(event.getOrderId(), event.getRestaurantId());
+        } catch (Exception e) {
+            // Bay trước chỉ là tối ưu: không requeue, đơn vẫn được gán drone khi OrderReadyEvent tới
+            log.error("Failed to pre-dispatch drone for orderId: {}", event.getOrderId(), e);
+        }
+    }
+}
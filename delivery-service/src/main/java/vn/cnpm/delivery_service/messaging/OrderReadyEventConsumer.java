@@ -5,16 +5,20 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.stereotype.Component;
 import vn.cnpm.delivery_service.config.RabbitMQConfig;
-import vn.cnpm.delivery_service.event.OrderPickedUpEvent;
 import vn.cnpm.delivery_service.event.OrderReadyEvent;
 import vn.cnpm.delivery_service.model.Delivery;
 import vn.cnpm.delivery_service.model.DeliveryStatus;
 import vn.cnpm.delivery_service.repository.DeliveryRepository;
+import vn.cnpm.delivery_service.service.BatchDispatcher;
+import vn.cnpm.delivery_service.service.DeliveryLifecycleService;
+import vn.cnpm.delivery_service.service.DemandHeatmap;
 import vn.cnpm.delivery_service.service.DroneService;
 import vn.cnpm.delivery_service.service.GpsSimulationService;
+import vn.cnpm.delivery_service.service.PendingAssignmentQueue;
+import vn.cnpm.delivery_service.service.PreDispatchService;
 import vn.cnpm.delivery_service.util.GeoPoint;
 
-import java.util.concurrent.CompletableFuture;
+import java.util.Optional;
 
 @Component
 @RequiredArgsConstructor
@@ -23,10 +27,16 @@ public class OrderReadyEventConsumer {
 
     private final DeliveryRepository deliveryRepository;
     private final DroneService droneService;
-    private final DeliveryEventPublisher eventPublisher;
     private final GpsSimulationService gpsSimulationService;
-
-    @RabbitListener(queues = RabbitMQConfig.ORDER_READY_QUEUE)
+    private final DeliveryLifecycleService deliveryLifecycleService;
+    private final BatchDispatcher batchDispatcher;
+    private final PendingAssignmentQueue pendingAssignmentQueue;
+    private final PreDispatchService preDispatchService;
+    private final DemandHeatmap demandHeatmap;
+
+    // Số consumer song song - an toàn vì DroneService giữ chỗ drone bằng CAS
+    @RabbitListener(queues = RabbitMQConfig.ORDER_READY_QUEUE,
+                    concurrency = "${delivery.assignment.consumers:4}")
     public void handleOrderReadyEvent(OrderReadyEvent event) {
         try {
             log.info("Received OrderReadyEvent for orderId: {} from restaurant {}",
@@ -42,6 +52,7 @@ public class OrderReadyEventConsumer {
             // Tạo delivery record
             GeoPoint restaurantGPS = gpsSimulationService.parseAddressToGPS(event.getRestaurantAddress());
             GeoPoint customerGPS = gpsSimulationService.parseAddressToGPS(event.getDeliveryAddress());
+            demandHeatmap.record(restaurantGPS.getLat(), restaurantGPS.getLng());
 
             Delivery delivery = Delivery.builder()
                     .orderId(event.getOrderId())
@@ -55,51 +66,32 @@ public class OrderReadyEventConsumer {
                     .deliveryLat(customerGPS.getLat())
                     .deliveryLng(customerGPS.getLng())
                     .status(DeliveryStatus.PENDING)
+                    .priority(event.getPriority())
                     .build();
 
-            delivery = deliveryRepository.save(delivery);
+            delivery = droneService.saveAndTrack(delivery);
             log.info("Delivery record created for order {}", event.getOrderId());
+            // Cập nhật vị trí nhà hàng và thời gian chuẩn bị ước lượng cho lần bay trước sau
+            preDispatchService.onOrderReady(delivery);
+
+            if (batchDispatcher.isEnabled()) {
+                // Chế độ batch: delivery ở trạng thái PENDING, dispatcher gán drone theo từng cửa sổ
+                batchDispatcher.submit(delivery);
+                return;
+            }
 
             // Tự động gán drone
-            delivery = droneService.assignDrone(delivery);
+            Optional<Delivery> assigned = droneService.tryAssignDrone(delivery);
+            if (assigned.isEmpty()) {
+                // Hết drone rảnh: delivery đã lưu PENDING, chờ trong hàng đợi thay vì requeue message
+                pendingAssignmentQueue.enqueue(delivery);
+                return;
+            }
+            delivery = assigned.get();
             log.info("Drone {} assigned to order {}", delivery.getDroneId(), event.getOrderId());
 
             // Giả lập quá trình giao hàng tự động (async)
-            Long deliveryId = delivery.getId();
-            String droneId = delivery.getDroneId();
-            Long orderId = event.getOrderId();
-
-            CompletableFuture.runAsync(() -> {
-                try {
-                    // Giả lập: Drone bay đến nhà hàng (5 giây)
-                    Thread.sleep(5000);
-                    log.info("Drone {} arriving at restaurant for order {}", droneId, orderId);
-                    
-                    // Drone lấy hàng
-                    Delivery updated = droneService.simulatePickup(deliveryId);
-                    log.info("Drone {} picked up order {}", droneId, orderId);
-
-                    // Phát sự kiện OrderPickedUpEvent
-                    OrderPickedUpEvent pickedUpEvent = OrderPickedUpEvent.builder()
-                            .orderId(orderId)
-                            .droneId(droneId)
-                            .build();
-                    eventPublisher.publishOrderPickedUpEvent(pickedUpEvent);
-
-                    // Giả lập: Bắt đầu giao hàng
-                    Thread.sleep(3000);
-                    droneService.startDelivery(deliveryId);
-                    log.info("Drone {} started delivering order {}", droneId, orderId);
-
-                    // Giả lập: Giao hàng thành công (30 giây - drone đang bay đến khách hàng)
-                    Thread.sleep(30000);
-                    droneService.completeDelivery(deliveryId);
-                    log.info("Drone {} completed delivery for order {}", droneId, orderId);
-
-                } catch (Exception e) {
-                    log.error("Error in drone delivery simulation for order {}", orderId, e);
-                }
-            });
+            deliveryLifecycleService.start(delivery);
 
         } catch (Exception e) {
             log.error("Failed to process OrderReadyEvent for orderId: {}",
@@ -2,14 +2,18 @@ package vn.cnpm.delivery_service.model;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.DynamicUpdate;
 import java.time.Instant;
 
 @Entity
-@Table(name = "deliveries")
+@DynamicUpdate  // Chỉ UPDATE cột thay đổi, không ghi đè vị trí do write-behind flush
+@Table(name = "deliveries", indexes = {
+        @Index(name = "idx_deliveries_status", columnList = "status"),
+        @Index(name = "idx_deliveries_updated_at", columnList = "updated_at")})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 public class Delivery {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -37,7 +41,7 @@ public class Delivery {
     // Timestamps
     private Instant createdAt;       // Khi nhận yêu cầu
     private Instant assignedAt;      // Khi gán drone
-    private Instant pickedUpAt;      // Khi drone lấy hàng
+    private Instant pickedUpAt;      // Khi drone lấy hàng (trước đó: thời điểm dự kiến)
     private Instant deliveringAt;    // Khi bắt đầu giao
     private Instant completedAt;     // Khi hoàn thành
     
@@ -48,11 +52,28 @@ public class Delivery {
     private Double currentSpeed;       // km/h hiện tại
     private Instant estimatedArrival;  // ETA - dự kiến đến
 
+    // Độ ưu tiên khi chờ drone (cao hơn được gán trước, mặc định 0)
+    private Integer priority;
+
+    // Thứ tự điểm giao trong chuyến nhiều đơn của drone (0 = giao đầu tiên); null = chuyến một đơn
+    private Integer stopSequence;
+
+    // Lần ghi gần nhất qua JPA (thời gian thật) - dùng để bắt kịp DB sau khi khôi phục snapshot
+    private Instant updatedAt;
+
     @PrePersist
     protected void onCreate() {
-        createdAt = Instant.now();
+        if (createdAt == null) {
+            createdAt = Instant.now();
+        }
         if (status == null) {
             status = DeliveryStatus.PENDING;
         }
+        updatedAt = Instant.now();
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = Instant.now();
     }
 }
@@ -2,13 +2,15 @@ package vn.cnpm.delivery_service.model;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.DynamicUpdate;
 import java.time.Instant;
 
 /**
  * Entity quản lý thông tin Drone
  */
 @Entity
-@Table(name = "drones")
+@DynamicUpdate  // Chỉ UPDATE cột thay đổi, không ghi đè vị trí do write-behind flush
+@Table(name = "drones", indexes = @Index(name = "idx_drones_updated_at", columnList = "updated_at"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -1,10 +1,13 @@
 package vn.cnpm.delivery_service.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import vn.cnpm.delivery_service.model.Delivery;
 import vn.cnpm.delivery_service.model.DeliveryStatus;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -13,4 +16,13 @@ public interface DeliveryRepository extends JpaRepository<Delivery, Long> {
     Optional<Delivery> findByOrderId(Long orderId);
     List<Delivery> findByStatus(DeliveryStatus status);
     List<Delivery> findByDroneId(String droneId);
+    List<Delivery> findByStatusIn(Collection<DeliveryStatus> statuses);
+    List<Delivery> findByUpdatedAtAfter(Instant since);
+
+    /**
+     * Vị trí đã biết của từng nhà hàng: [restaurantId, restaurantLat, restaurantLng]
+     */
+    @Query("SELECT DISTINCT d.restaurantId, d.restaurantLat, d.restaurantLng FROM Delivery d " +
+            "WHERE d.restaurantId IS NOT NULL AND d.restaurantLat IS NOT NULL AND d.restaurantLng IS NOT NULL")
+    List<Object[]> findRestaurantLocations();
 }
@@ -1,11 +1,14 @@
 package vn.cnpm.delivery_service.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import vn.cnpm.delivery_service.model.Drone;
 import vn.cnpm.delivery_service.model.DroneStatus;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,6 +23,16 @@ public interface DroneRepository extends JpaRepository<Drone, Long> {
      */
     Optional<Drone> findByDroneCode(String droneCode);
 
+    /**
+     * Tìm nhiều drone theo danh sách mã code (một query IN)
+     */
+    List<Drone> findByDroneCodeIn(Collection<String> droneCodes);
+
+    /**
+     * Drone được ghi sau thời điểm since (bắt kịp DB sau khi khôi phục snapshot)
+     */
+    List<Drone> findByUpdatedAtAfter(Instant since);
+
     /**
      * Tìm tất cả drone theo status
      */
@@ -32,20 +45,25 @@ public interface DroneRepository extends JpaRepository<Drone, Long> {
     List<Drone> findAvailableDrones();
 
     /**
-     * Tìm drone gần vị trí nhất (sẵn sàng)
-     * Note: Simple implementation, production nên dùng PostGIS
+     * Đổi trạng thái drone có điều kiện (compare-and-set trên DB)
+     * Chỉ cập nhật khi drone vẫn đang ở trạng thái 'expected' và đủ pin => trả về 1 nếu giành được drone
      */
-    @Query(value = "SELECT * FROM drones " +
-            "WHERE status = 'AVAILABLE' AND battery_level >= 30 " +
-            "ORDER BY SQRT(POW(current_lat - :lat, 2) + POW(current_lng - :lng, 2)) ASC " +
-            "LIMIT 1", nativeQuery = true)
-    Optional<Drone> findNearestAvailableDrone(Double lat, Double lng);
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Drone d SET d.status = :newStatus, d.updatedAt = :now " +
+            "WHERE d.droneCode = :droneCode AND d.status = :expected AND d.batteryLevel >= :minBattery")
+    int compareAndSetStatus(String droneCode, DroneStatus expected, DroneStatus newStatus,
+                            int minBattery, Instant now);
 
     /**
      * Đếm số drone theo status
      */
     long countByStatus(DroneStatus status);
 
+    /**
+     * Đếm drone có mã bắt đầu bằng prefix (vd. drone seed bởi load simulation)
+     */
+    long countByDroneCodeStartingWith(String prefix);
+
     /**
      * Kiểm tra drone code đã tồn tại chưa
      */
@@ -0,0 +1,164 @@
+package vn.cnpm.delivery_service.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import vn.cnpm.delivery_service.model.Delivery;
+import vn.cnpm.delivery_service.model.DeliveryStatus;
+import vn.cnpm.delivery_service.repository.DeliveryRepository;
+import vn.cnpm.delivery_service.snapshot.FleetSnapshot;
+import vn.cnpm.delivery_service.snapshot.FleetSnapshotStore;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry in-memory các delivery chưa kết thúc
+ * GPS tick duyệt registry này thay vì quét toàn bộ bảng deliveries
+ * Registry giữ bản sao riêng và chỉ trả ra bản sao: tick, timer lifecycle và request HTTP
+ * không dùng chung entity nào; thay đổi chỉ vào registry qua track/updatePosition
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ActiveDeliveryRegistry {
+
+    // Các trạng thái chưa kết thúc (không phải COMPLETED/CANCELLED)
+    public static final Set<DeliveryStatus> ACTIVE_STATUSES = EnumSet.of(
+            DeliveryStatus.PENDING,
+            DeliveryStatus.ASSIGNED,
+            DeliveryStatus.PICKING_UP,
+            DeliveryStatus.PICKED_UP,
+            DeliveryStatus.DELIVERING);
+
+    // Các trạng thái drone đang bay - GPS tick cần cập nhật
+    public static final Set<DeliveryStatus> IN_FLIGHT_STATUSES = EnumSet.of(
+            DeliveryStatus.PICKING_UP,
+            DeliveryStatus.PICKED_UP,
+            DeliveryStatus.DELIVERING);
+
+    private final DeliveryRepository deliveryRepository;
+    private final FleetSnapshotStore snapshotStore;
+
+    private final Map<Long, Delivery> deliveries = new ConcurrentHashMap<>();
+
+    /**
+     * Nạp lại registry khi khởi động, trước các listener khác (lifecycle, hàng đợi gán drone đọc từ registry)
+     * Có snapshot: khôi phục rồi bắt kịp các delivery được ghi sau lúc chụp; không có: query theo index status
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void reload() {
+        deliveries.clear();
+        Optional<FleetSnapshot> snapshot = snapshotStore.restored();
+        if (snapshot.isPresent()) {
+            snapshot.get().deliveries().forEach(d -> deliveries.put(d.getId(), copyOf(d)));
+            List<Delivery> changed = deliveryRepository.findByUpdatedAtAfter(
+                    snapshotStore.catchUpSince(snapshot.get()));
+            changed.forEach(this::track);
+            log.info("Restored {} active deliveries from snapshot ({} caught up from DB)",
+                    deliveries.size(), changed.size());
+            return;
+        }
+        List<Delivery> active = deliveryRepository.findByStatusIn(ACTIVE_STATUSES);
+        active.forEach(d -> deliveries.put(d.getId(), copyOf(d)));
+        log.info("Loaded {} active deliveries into registry", active.size());
+    }
+
+    /**
+     * Ghi nhận trạng thái mới nhất của delivery
+     * Delivery đã kết thúc sẽ bị loại khỏi registry
+     * Gọi trong transaction: chỉ áp dụng sau khi commit (rollback thì registry giữ nguyên)
+     */
+    public void track(Delivery delivery) {
+        if (delivery == null || delivery.getId() == null) {
+            return;
+        }
+        afterCommit(() -> {
+            if (ACTIVE_STATUSES.contains(delivery.getStatus())) {
+                deliveries.put(delivery.getId(), copyOf(delivery));
+            } else {
+                deliveries.remove(delivery.getId());
+            }
+        });
+    }
+
+    /**
+     * Ghi vị trí GPS mới của delivery vào registry, giữ nguyên các trường còn lại
+     * Delivery đã rời registry (hủy/hoàn thành ở nơi khác trong lúc tick) thì bỏ qua
+     */
+    public void updatePosition(Delivery delivery) {
+        deliveries.computeIfPresent(delivery.getId(), (id, current) -> current.toBuilder()
+                .currentLat(delivery.getCurrentLat())
+                .currentLng(delivery.getCurrentLng())
+                .distanceRemaining(delivery.getDistanceRemaining())
+                .currentSpeed(delivery.getCurrentSpeed())
+                .estimatedArrival(delivery.getEstimatedArrival())
+                .build());
+    }
+
+    public Optional<Delivery> find(Long deliveryId) {
+        return Optional.ofNullable(deliveries.get(deliveryId)).map(ActiveDeliveryRegistry::copyOf);
+    }
+
+    public void untrack(Long deliveryId) {
+        afterCommit(() -> deliveries.remove(deliveryId));
+    }
+
+    /**
+     * Tất cả delivery chưa kết thúc
+     */
+    public List<Delivery> getActiveDeliveries() {
+        List<Delivery> active = new ArrayList<>(deliveries.size());
+        for (Delivery delivery : deliveries.values()) {
+            active.add(copyOf(delivery));
+        }
+        return active;
+    }
+
+    /**
+     * Các delivery có drone đang bay (PICKING_UP, PICKED_UP, DELIVERING)
+     */
+    public List<Delivery> getInFlightDeliveries() {
+        List<Delivery> inFlight = new ArrayList<>();
+        for (Delivery delivery : deliveries.values()) {
+            if (IN_FLIGHT_STATUSES.contains(delivery.getStatus())) {
+                inFlight.add(copyOf(delivery));
+            }
+        }
+        return inFlight;
+    }
+
+    public int size() {
+        return deliveries.size();
+    }
+
+    // Các trường của Delivery đều bất biến (String, Double, Instant...) nên sao chép nông là đủ
+    private static Delivery copyOf(Delivery delivery) {
+        return delivery.toBuilder().build();
+    }
+
+    private static void afterCommit(Runnable update) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            update.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                update.run();
+            }
+        });
+    }
+}
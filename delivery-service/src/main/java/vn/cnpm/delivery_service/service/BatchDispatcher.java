@@ -0,0 +1,226 @@
+package vn.cnpm.delivery_service.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import vn.cnpm.delivery_service.model.Delivery;
+import vn.cnpm.delivery_service.model.DeliveryStatus;
+import vn.cnpm.delivery_service.util.AssignmentSolver;
+import vn.cnpm.delivery_service.util.GeoPoint;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Dispatcher gán drone theo lô (tùy chọn, delivery.dispatch.mode=batch)
+ * Gom các delivery PENDING trong một cửa sổ ngắn (mặc định 2s), ghép tối ưu toàn cục
+ * với drone sẵn sàng theo tổng khoảng cách Haversine (Hungarian), rồi commit trong một transaction
+ * Mỗi lượt ghép tối đa batch-max-size delivery (ưu tiên cao, chờ lâu trước) để Hungarian O(n^2 * m)
+ * không chạy trên cả backlog; phần còn lại chờ lượt sau
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BatchDispatcher {
+
+    // Số drone gần nhất lấy làm ứng viên cho mỗi delivery (giới hạn kích thước ma trận chi phí)
+    private static final int CANDIDATES_PER_DELIVERY = 10;
+
+    // Ưu tiên cao trước, cùng ưu tiên thì chờ lâu (createdAt sớm) trước
+    private static final Comparator<Delivery> ROUND_ORDER = Comparator
+            .comparingInt((Delivery d) -> d.getPriority() != null ? d.getPriority() : 0).reversed()
+            .thenComparing(d -> d.getCreatedAt() != null ? d.getCreatedAt() : Instant.MAX);
+
+    private final DroneService droneService;
+    private final DroneSpatialIndex droneSpatialIndex;
+    private final DeliveryLifecycleService deliveryLifecycleService;
+    private final ActiveDeliveryRegistry activeDeliveryRegistry;
+    private final MeterRegistry meterRegistry;
+
+    private final Queue<Delivery> pending = new ConcurrentLinkedQueue<>();
+
+    @Value("${delivery.dispatch.mode:greedy}")
+    private String mode;
+
+    @Value("${delivery.dispatch.batch-max-size:200}")
+    private int batchMaxSize;
+
+    public boolean isEnabled() {
+        return "batch".equalsIgnoreCase(mode);
+    }
+
+    /**
+     * Đưa delivery PENDING vào cửa sổ gán kế tiếp
+     */
+    public void submit(Delivery delivery) {
+        pending.add(delivery);
+    }
+
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Khởi động lại: nạp các delivery còn PENDING chưa có drone
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadPending() {
+        if (!isEnabled()) {
+            return;
+        }
+        activeDeliveryRegistry.getActiveDeliveries().stream()
+                .filter(d -> d.getStatus() == DeliveryStatus.PENDING && d.getDroneId() == null)
+                .forEach(pending::add);
+        log.info("Batch dispatcher started with {} pending deliveries", pending.size());
+    }
+
+    /**
+     * Mỗi cửa sổ: ghép toàn bộ delivery đang chờ với drone sẵn sàng
+     */
+    @Scheduled(fixedDelayString = "${delivery.dispatch.batch-window-ms:2000}")
+    public void dispatch() {
+        if (!isEnabled() || pending.isEmpty()) {
+            return;
+        }
+
+        List<Delivery> batch = new ArrayList<>();
+        int joined = 0;
+        Delivery next;
+        while ((next = pending.poll()) != null) {
+            // Đơn ghép được vào chuyến đang đến cùng nhà hàng thì không cần drone mới
+            Optional<Delivery> trip = joinOpenTrip(next);
+            if (trip.isPresent()) {
+                deliveryLifecycleService.start(trip.get());
+                joined++;
+            } else {
+                batch.add(next);
+            }
+        }
+        if (batch.isEmpty()) {
+            log.info("Batch dispatch: {} deliveries joined open trips", joined);
+            return;
+        }
+        int backlog = batch.size();
+        batch = takeRound(batch, batchMaxSize, pending);
+
+        double[] lat = new double[batch.size()];
+        double[] lng = new double[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            lat[i] = DroneService.restaurantLat(batch.get(i));
+            lng[i] = DroneService.restaurantLng(batch.get(i));
+        }
+        String[] matched = match(lat, lng, droneSpatialIndex, CANDIDATES_PER_DELIVERY);
+
+        List<Delivery> toAssign = new ArrayList<>();
+        List<String> droneCodes = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            if (matched[i] != null) {
+                toAssign.add(batch.get(i));
+                droneCodes.add(matched[i]);
+            } else {
+                pending.add(batch.get(i)); // Không đủ drone: chờ cửa sổ sau
+            }
+        }
+
+        List<Delivery> assigned;
+        try {
+            assigned = toAssign.isEmpty() ? List.of() : droneService.assignDrones(toAssign, droneCodes);
+        } catch (Exception e) {
+            log.error("Batch assignment failed, requeueing {} deliveries: {}", toAssign.size(), e.getMessage());
+            pending.addAll(toAssign);
+            return;
+        }
+
+        // Cặp nào thua CAS (drone vừa bị lấy) thì delivery quay lại hàng đợi
+        Set<Long> assignedIds = new HashSet<>();
+        for (Delivery delivery : assigned) {
+            assignedIds.add(delivery.getId());
+            deliveryLifecycleService.start(delivery);
+        }
+        for (Delivery delivery : toAssign) {
+            if (!assignedIds.contains(delivery.getId())) {
+                pending.add(delivery);
+            }
+        }
+
+        meterRegistry.summary("delivery.dispatch.batch.size").record(batch.size());
+        meterRegistry.summary("delivery.dispatch.batch.backlog").record(backlog);
+        log.info("Batch dispatch: {} deliveries, {} assigned, {} joined open trips, {} waiting",
+                batch.size(), assigned.size(), joined, pending.size());
+    }
+
+    /**
+     * Chọn tối đa maxSize delivery cho lượt này theo ưu tiên rồi thời gian chờ;
+     * phần còn lại được trả về deferred cho lượt sau (maxSize <= 0: không giới hạn)
+     */
+    static List<Delivery> takeRound(List<Delivery> batch, int maxSize, Collection<Delivery> deferred) {
+        if (maxSize <= 0 || batch.size() <= maxSize) {
+            return batch;
+        }
+        List<Delivery> sorted = new ArrayList<>(batch);
+        sorted.sort(ROUND_ORDER);
+        deferred.addAll(sorted.subList(maxSize, sorted.size()));
+        return new ArrayList<>(sorted.subList(0, maxSize));
+    }
+
+    private Optional<Delivery> joinOpenTrip(Delivery delivery) {
+        try {
+            return droneService.joinOpenTrip(delivery);
+        } catch (Exception e) {
+            log.warn("Could not add delivery {} to an open trip: {}", delivery.getId(), e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Ghép tối ưu toàn cục: mỗi điểm lấy hàng (lat[i], lng[i]) nhận một drone sẵn sàng sao cho
+     * tổng quãng bay đến nhà hàng nhỏ nhất. Trả về droneCode cho từng điểm, null nếu không đủ drone
+     * Ứng viên = hợp của k drone gần nhất của từng điểm
+     */
+    public static String[] match(double[] lat, double[] lng, DroneSpatialIndex index, int candidatesPerDelivery) {
+        int n = lat.length;
+        Map<String, DroneSpatialIndex.IndexedDrone> candidates = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++) {
+            for (DroneSpatialIndex.Candidate c : index.nearest(lat[i], lng[i], candidatesPerDelivery)) {
+                index.get(c.droneCode()).ifPresent(d -> candidates.putIfAbsent(d.droneCode(), d));
+            }
+        }
+
+        String[] result = new String[n];
+        if (candidates.isEmpty()) {
+            return result;
+        }
+
+        List<DroneSpatialIndex.IndexedDrone> drones = new ArrayList<>(candidates.values());
+        double[][] cost = new double[n][drones.size()];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < drones.size(); j++) {
+                DroneSpatialIndex.IndexedDrone d = drones.get(j);
+                cost[i][j] = GeoPoint.haversine(lat[i], lng[i], d.lat(), d.lng());
+            }
+        }
+
+        int[] assignment = AssignmentSolver.solve(cost);
+        for (int i = 0; i < n; i++) {
+            if (assignment[i] >= 0) {
+                result[i] = drones.get(assignment[i]).droneCode();
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,240 @@
+package vn.cnpm.delivery_service.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import vn.cnpm.delivery_service.event.OrderPickedUpEvent;
+import vn.cnpm.delivery_service.messaging.DeliveryEventPublisher;
+import vn.cnpm.delivery_service.model.Delivery;
+import vn.cnpm.delivery_service.model.DeliveryStatus;
+import vn.cnpm.delivery_service.util.SimulationClock;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Giả lập vòng đời giao hàng sau khi delivery đã được gán drone
+ * (lấy hàng -> bắt đầu giao -> hoàn thành)
+ *
+ * Mỗi bước là một timer trên ScheduledExecutorService dùng chung (không giữ thread ngủ cho mỗi đơn);
+ * thời điểm đến hạn tính từ timestamp của Delivery nên khởi động lại service chỉ cần lên lịch lại
+ * Các khoảng chờ là thời gian giả lập ({@link SimulationClock}), đổi sang thời gian thật khi lên lịch
+ * Chuyến nhiều đơn được sắp lại thứ tự khi có đơn ghép thêm: timer của các điểm bị đổi stopSequence
+ * được lên lịch lại theo thứ tự mới
+ */
+@Service
+@Slf4j
+public class DeliveryLifecycleService {
+
+    // Lấy hàng tại nhà hàng (sau khi drone bay tới nơi)
+    static final Duration PICKUP_DELAY = Duration.ofSeconds(5);
+    // Từ lúc lấy hàng đến lúc bắt đầu giao
+    static final Duration START_DELAY = Duration.ofSeconds(3);
+    // Drone đang bay đến khách hàng
+    static final Duration COMPLETE_DELAY = Duration.ofSeconds(30);
+    // Timer chạy sớm hơn hạn (tính lại theo delivery hiện tại) quá mức này thì lên lịch lại
+    private static final Duration EARLY_TOLERANCE = Duration.ofSeconds(1);
+
+    private final DroneService droneService;
+    private final DeliveryEventPublisher eventPublisher;
+    private final ActiveDeliveryRegistry activeDeliveryRegistry;
+    private final SimulationClock clock;
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final Map<Long, ScheduledFuture<?>> timers = new ConcurrentHashMap<>();
+
+    public DeliveryLifecycleService(DroneService droneService,
+                                    DeliveryEventPublisher eventPublisher,
+                                    ActiveDeliveryRegistry activeDeliveryRegistry,
+                                    SimulationClock clock,
+                                    @Value("${delivery.lifecycle.threads:2}") int threads) {
+        this.droneService = droneService;
+        this.eventPublisher = eventPublisher;
+        this.activeDeliveryRegistry = activeDeliveryRegistry;
+        this.clock = clock;
+
+        AtomicInteger counter = new AtomicInteger();
+        this.scheduler = new ScheduledThreadPoolExecutor(threads, runnable -> {
+            Thread thread = new Thread(runnable, "delivery-lifecycle-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Timer bị hủy được gỡ khỏi hàng đợi ngay
+        this.scheduler.setRemoveOnCancelPolicy(true);
+        droneService.addTripReorderListener(this::reschedule);
+    }
+
+    /**
+     * Chạy giả lập quá trình giao hàng tự động (async)
+     */
+    public void start(Delivery delivery) {
+        schedule(delivery);
+    }
+
+    /**
+     * Lên lịch lại timer của các delivery vừa đổi thứ tự điểm giao (theo trạng thái hiện tại trong registry)
+     */
+    void reschedule(List<Long> deliveryIds) {
+        for (Long deliveryId : deliveryIds) {
+            activeDeliveryRegistry.find(deliveryId)
+                    .filter(delivery -> delivery.getDroneId() != null)
+                    .ifPresent(this::schedule);
+        }
+    }
+
+    /**
+     * Thời gian thật (ms) còn lại đến khi timer của delivery chạy, -1 nếu không có timer
+     */
+    long timerDelayMillis(Long deliveryId) {
+        ScheduledFuture<?> timer = timers.get(deliveryId);
+        return timer != null ? timer.getDelay(TimeUnit.MILLISECONDS) : -1;
+    }
+
+    /**
+     * Số timer đang chờ
+     */
+    public int pendingTimers() {
+        return timers.size();
+    }
+
+    /**
+     * Khởi động lại: lên lịch lại bước kế tiếp cho mọi delivery đã gán drone chưa hoàn thành
+     * Bước đã quá hạn trong lúc service tắt sẽ chạy ngay
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rehydrate() {
+        // Registry đã được nạp (snapshot hoặc DB) trước listener này
+        int scheduled = 0;
+        for (Delivery delivery : activeDeliveryRegistry.getActiveDeliveries()) {
+            if (delivery.getDroneId() != null && schedule(delivery)) {
+                scheduled++;
+            }
+        }
+        log.info("Rehydrated {} delivery lifecycle timers", scheduled);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Lên lịch bước kế tiếp theo status hiện tại; false nếu delivery không còn bước nào
+     */
+    private boolean schedule(Delivery delivery) {
+        DeliveryStatus status = delivery.getStatus();
+        Instant due = dueAt(delivery);
+        if (due == null) {
+            return false;
+        }
+        Duration remaining = Duration.between(clock.instant(), due);
+        long delayMs = remaining.isNegative() ? 0 : clock.toRealMillis(remaining);
+        Long deliveryId = delivery.getId();
+        ScheduledFuture<?> previous = timers.put(deliveryId,
+                scheduler.schedule(() -> fire(deliveryId, status), delayMs, TimeUnit.MILLISECONDS));
+        if (previous != null) {
+            previous.cancel(false);
+        }
+        return true;
+    }
+
+    /**
+     * Thời điểm đến hạn của bước kế tiếp, tính từ timestamp của bước trước
+     */
+    private Instant dueAt(Delivery delivery) {
+        switch (delivery.getStatus()) {
+            case PENDING:
+                if (delivery.getDroneId() == null) {
+                    return null;
+                }
+                // Chưa lấy hàng: pickedUpAt là thời điểm dự kiến (drone bay tới nhà hàng + PICKUP_DELAY)
+                Instant earliest = firstNonNull(delivery.getAssignedAt(), delivery.getCreatedAt()).plus(PICKUP_DELAY);
+                Instant planned = delivery.getPickedUpAt();
+                return planned != null && planned.isAfter(earliest) ? planned : earliest;
+            case PICKED_UP:
+                return firstNonNull(delivery.getPickedUpAt(), delivery.getAssignedAt()).plus(START_DELAY);
+            case DELIVERING:
+                // Chuyến nhiều đơn: mỗi điểm giao phía trước thêm một chặng bay
+                int legs = delivery.getStopSequence() != null ? delivery.getStopSequence() + 1 : 1;
+                return firstNonNull(delivery.getDeliveringAt(), delivery.getPickedUpAt())
+                        .plus(COMPLETE_DELAY.multipliedBy(legs));
+            default:
+                return null;
+        }
+    }
+
+    private Instant firstNonNull(Instant first, Instant second) {
+        if (first != null) {
+            return first;
+        }
+        return second != null ? second : clock.instant();
+    }
+
+    /**
+     * Timer đến hạn: chỉ chuyển trạng thái nếu delivery vẫn ở status lúc lên lịch
+     * (GPS tick hoặc API có thể đã chuyển trước)
+     */
+    private void fire(Long deliveryId, DeliveryStatus expected) {
+        timers.remove(deliveryId);
+        try {
+            Delivery delivery = activeDeliveryRegistry.find(deliveryId).orElse(null);
+            if (delivery == null) {
+                return; // Đã hoàn thành hoặc bị hủy
+            }
+            if (delivery.getStatus() != expected) {
+                schedule(delivery);
+                return;
+            }
+            // Timer lên lịch theo thứ tự điểm giao cũ (chuyến vừa được sắp lại) chạy sớm: chờ tiếp
+            Instant due = dueAt(delivery);
+            if (due != null && due.isAfter(clock.instant().plus(EARLY_TOLERANCE))) {
+                schedule(delivery);
+                return;
+            }
+
+            String droneId = delivery.getDroneId();
+            Long orderId = delivery.getOrderId();
+            switch (expected) {
+                case PENDING:
+                    log.info("Drone {} arriving at restaurant for order {}", droneId, orderId);
+
+                    // Drone lấy hàng
+                    delivery = droneService.simulatePickup(deliveryId);
+                    log.info("Drone {} picked up order {}", droneId, orderId);
+
+                    // Phát sự kiện OrderPickedUpEvent
+                    OrderPickedUpEvent pickedUpEvent = OrderPickedUpEvent.builder()
+                            .orderId(orderId)
+                            .droneId(droneId)
+                            .build();
+                    eventPublisher.publishOrderPickedUpEvent(pickedUpEvent);
+                    schedule(delivery);
+                    break;
+                case PICKED_UP:
+                    // Bắt đầu giao hàng
+                    delivery = droneService.startDelivery(deliveryId);
+                    log.info("Drone {} started delivering order {}", droneId, orderId);
+                    schedule(delivery);
+                    break;
+                case DELIVERING:
+                    // Giao hàng thành công
+                    droneService.completeDelivery(deliveryId);
+                    log.info("Drone {} completed delivery for order {}", droneId, orderId);
+                    break;
+                default:
+                    break;
+            }
+        } catch (Exception e) {
+            log.error("Error in drone delivery simulation for delivery {}", deliveryId, e);
+        }
+    }
+}
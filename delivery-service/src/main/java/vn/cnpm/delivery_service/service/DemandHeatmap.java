@@ -0,0 +1,123 @@
+package vn.cnpm.delivery_service.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import vn.cnpm.delivery_service.util.Geohash;
+import vn.cnpm.delivery_service.util.SimulationClock;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bản đồ nhiệt nhu cầu: số đơn (vị trí nhà hàng của OrderReadyEvent) theo ô geohash trong cửa sổ trượt
+ * Cửa sổ chia thành các bucket thời gian (giả lập); mỗi bucket giữ số đếm riêng theo ô và tổng theo ô
+ * được cộng khi ghi, trừ khi bucket hết hạn - mỗi đơn được cộng một lần và trừ một lần (O(1) khấu hao)
+ */
+@Component
+public class DemandHeatmap {
+
+    private final SimulationClock clock;
+    private final int precision;
+    private final long bucketMillis;
+    private final int bucketCount;
+    private final double windowHours;
+
+    // Vòng bucket: ô -> số đơn trong bucket
+    private final Map<Long, Integer>[] buckets;
+    // Ô -> tổng số đơn trong cả cửa sổ
+    private final Map<Long, Integer> totals = new HashMap<>();
+    private long currentBucket = Long.MIN_VALUE;
+
+    public record Cell(String geohash, double lat, double lng, int orders, double ordersPerHour) {
+    }
+
+    @SuppressWarnings("unchecked")
+    public DemandHeatmap(SimulationClock clock,
+                         @Value("${delivery.heatmap.geohash-precision:6}") int precision,
+                         @Value("${delivery.heatmap.window-minutes:15}") int windowMinutes,
+                         @Value("${delivery.heatmap.bucket-seconds:60}") int bucketSeconds) {
+        this.clock = clock;
+        this.precision = precision;
+        this.bucketMillis = bucketSeconds * 1000L;
+        this.bucketCount = Math.max(1, windowMinutes * 60 / bucketSeconds);
+        this.windowHours = bucketCount * bucketMillis / 3_600_000.0;
+        this.buckets = new Map[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            buckets[i] = new HashMap<>();
+        }
+        Geohash.encode(0, 0, precision); // Kiểm tra cấu hình ngay khi khởi động
+    }
+
+    public int precision() {
+        return precision;
+    }
+
+    public double windowMinutes() {
+        return windowHours * 60;
+    }
+
+    /**
+     * Ghi nhận một đơn tại (lat, lng)
+     */
+    public synchronized void record(double lat, double lng) {
+        advance(clock.millis());
+        long cell = Geohash.encode(lat, lng, precision);
+        buckets[slot(currentBucket)].merge(cell, 1, Integer::sum);
+        totals.merge(cell, 1, Integer::sum);
+    }
+
+    /**
+     * Số đơn dự báo trong horizonMinutes tới tại ô chứa (lat, lng), giả định tốc độ như trong cửa sổ
+     */
+    public synchronized double forecast(double lat, double lng, double horizonMinutes) {
+        advance(clock.millis());
+        Integer orders = totals.get(Geohash.encode(lat, lng, precision));
+        return orders == null ? 0 : orders / windowHours * horizonMinutes / 60;
+    }
+
+    /**
+     * Các ô có đơn trong cửa sổ, nhiều đơn trước
+     */
+    public synchronized List<Cell> snapshot() {
+        advance(clock.millis());
+        List<Cell> cells = new ArrayList<>(totals.size());
+        for (Map.Entry<Long, Integer> entry : totals.entrySet()) {
+            double[] center = Geohash.center(entry.getKey(), precision);
+            cells.add(new Cell(Geohash.toString(entry.getKey(), precision), center[0], center[1],
+                    entry.getValue(), entry.getValue() / windowHours));
+        }
+        cells.sort(Comparator.comparingInt(Cell::orders).reversed());
+        return cells;
+    }
+
+    /**
+     * Chuyển sang bucket của thời điểm now, trừ các bucket vừa ra khỏi cửa sổ khỏi tổng
+     */
+    private void advance(long now) {
+        long bucket = Math.floorDiv(now, bucketMillis);
+        if (currentBucket == Long.MIN_VALUE) {
+            currentBucket = bucket;
+            return;
+        }
+        if (bucket <= currentBucket) {
+            return;
+        }
+        // Khoảng trống dài hơn cửa sổ: chỉ cần xóa mỗi bucket một lần
+        for (long b = Math.max(currentBucket + 1, bucket - bucketCount + 1); b <= bucket; b++) {
+            Map<Long, Integer> expired = buckets[slot(b)];
+            for (Map.Entry<Long, Integer> entry : expired.entrySet()) {
+                totals.computeIfPresent(entry.getKey(), (cell, total) -> total - entry.getValue() > 0
+                        ? total - entry.getValue() : null);
+            }
+            expired.clear();
+        }
+        currentBucket = bucket;
+    }
+
+    private int slot(long bucket) {
+        return (int) Math.floorMod(bucket, (long) bucketCount);
+    }
+}
@@ -0,0 +1,131 @@
+package vn.cnpm.delivery_service.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Cân bằng lại đội drone theo nhu cầu: drone AVAILABLE ở vùng vắng đơn bay tới các ô geohash
+ * có nhu cầu dự báo (DemandHeatmap, horizon-minutes tới) lớn hơn số drone rảnh trong supply-radius-km
+ * Drone cân bằng vẫn nằm trong spatial index nên được gán ngay khi có đơn (chuyến bay bị dừng)
+ */
+@Component
+@Slf4j
+public class DroneRebalancer {
+
+    // Số ứng viên xét thêm ngoài số drone cần điều
+    private static final int EXTRA_CANDIDATES = 16;
+    private static final String REASON = "rebalance";
+
+    private final DemandHeatmap demandHeatmap;
+    private final DroneSpatialIndex droneSpatialIndex;
+    private final DroneRelocator droneRelocator;
+    private final MeterRegistry meterRegistry;
+    private final Counter moves;
+
+    @Value("${delivery.rebalance.enabled:true}")
+    private boolean enabled;
+
+    @Value("${delivery.rebalance.horizon-minutes:10}")
+    private double horizonMinutes;
+
+    @Value("${delivery.rebalance.supply-radius-km:1.5}")
+    private double supplyRadiusKm;
+
+    @Value("${delivery.rebalance.max-distance-km:8}")
+    private double maxDistanceKm;
+
+    @Value("${delivery.rebalance.max-moves:20}")
+    private int maxMoves;
+
+    public DroneRebalancer(DemandHeatmap demandHeatmap,
+                           DroneSpatialIndex droneSpatialIndex,
+                           DroneRelocator droneRelocator,
+                           MeterRegistry meterRegistry) {
+        this.demandHeatmap = demandHeatmap;
+        this.droneSpatialIndex = droneSpatialIndex;
+        this.droneRelocator = droneRelocator;
+        this.meterRegistry = meterRegistry;
+        this.moves = meterRegistry.counter("delivery.rebalance.moves");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public double totalMoves() {
+        return moves.count();
+    }
+
+    /**
+     * Quãng bay trung bình tới nhà hàng (km) của mọi lần gán drone từ lúc khởi động
+     * (delivery.dispatch.pickup.distance, mọi chế độ) - so sánh trước/sau khi bật cân bằng
+     */
+    public double meanPickupDistanceKm() {
+        double total = 0;
+        long count = 0;
+        for (DistributionSummary summary : meterRegistry.find("delivery.dispatch.pickup.distance").summaries()) {
+            total += summary.totalAmount();
+            count += summary.count();
+        }
+        return count == 0 ? 0 : total / count;
+    }
+
+    @Scheduled(fixedDelayString = "${delivery.rebalance.interval-ms:30000}", initialDelay = 30000)
+    public void rebalance() {
+        if (!enabled) {
+            return;
+        }
+        int moved = 0;
+        for (DemandHeatmap.Cell cell : demandHeatmap.snapshot()) {
+            if (moved >= maxMoves) {
+                break;
+            }
+            int demand = (int) Math.ceil(cell.ordersPerHour() * horizonMinutes / 60);
+            if (demand <= 0) {
+                break; // Các ô sau còn ít đơn hơn
+            }
+
+            // Cung: drone rảnh trong bán kính + drone đang bay tới ô
+            Set<String> supply = new HashSet<>(droneRelocator.headingTo(cell.lat(), cell.lng(), supplyRadiusKm));
+            List<DroneSpatialIndex.Candidate> candidates = droneSpatialIndex.nearest(cell.lat(), cell.lng(),
+                    demand + EXTRA_CANDIDATES);
+            for (DroneSpatialIndex.Candidate candidate : candidates) {
+                if (candidate.distanceKm() <= supplyRadiusKm) {
+                    supply.add(candidate.droneCode());
+                }
+            }
+            int deficit = demand - supply.size();
+
+            for (DroneSpatialIndex.Candidate candidate : candidates) {
+                if (deficit <= 0 || moved >= maxMoves) {
+                    break;
+                }
+                if (candidate.distanceKm() <= supplyRadiusKm || candidate.distanceKm() > maxDistanceKm
+                        || droneRelocator.isRelocating(candidate.droneCode())) {
+                    continue;
+                }
+                DroneSpatialIndex.IndexedDrone drone = droneSpatialIndex.get(candidate.droneCode()).orElse(null);
+                // Không lấy drone khỏi vùng cũng đang có nhu cầu
+                if (drone == null || demandHeatmap.forecast(drone.lat(), drone.lng(), horizonMinutes) >= 1) {
+                    continue;
+                }
+                droneRelocator.relocate(drone.droneCode(), drone.lat(), drone.lng(), cell.lat(), cell.lng(), REASON);
+                moves.increment();
+                moved++;
+                deficit--;
+            }
+        }
+        if (moved > 0) {
+            log.info("Rebalancing {} idle drones toward high-demand cells", moved);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package vn.cnpm.delivery_service.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import vn.cnpm.delivery_service.util.GeoKernel;
+import vn.cnpm.delivery_service.util.SimulationClock;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Di chuyển drone chưa mang hàng tới một điểm (bay trước tới nhà hàng, cân bằng lại đội drone,
+ * bay tới nhà hàng lấy hàng sau khi được gán)
+ * Mỗi tick tiến một bước theo tốc độ trung bình như tick GPS; vị trí ghi qua PositionWriteBehindBuffer
+ * Drone vẫn nằm trong spatial index (không bị giữ chỗ) được cập nhật vị trí trong index để vẫn gán được
+ */
+@Component
+@Slf4j
+public class DroneRelocator {
+
+    // Tốc độ drone trung bình (km/h), như GpsSimulationService
+    private static final double AVERAGE_DRONE_SPEED = 45.0;
+    private static final double ARRIVAL_DISTANCE_KM = 0.05;
+
+    private final PositionWriteBehindBuffer positionBuffer;
+    private final DroneSpatialIndex droneSpatialIndex;
+    private final SimulationClock clock;
+
+    private final Map<String, Relocation> relocations = new ConcurrentHashMap<>();
+
+    @Value("${delivery.gps.tick-interval-ms:5000}")
+    private long tickIntervalMs;
+
+    private double distancePerTick;
+
+    /**
+     * Chuyến bay không mang đơn; reason dùng cho log/metric (predispatch, rebalance)
+     * indexed: drone vẫn nằm trong spatial index (gán được) - rời index nghĩa là đã được dùng ở nơi khác
+     */
+    public record Relocation(String droneCode, double lat, double lng, double targetLat, double targetLng,
+                             String reason, boolean indexed) {
+
+        boolean arrived() {
+            return GeoKernel.distanceKm(lat, lng, targetLat, targetLng) < ARRIVAL_DISTANCE_KM;
+        }
+    }
+
+    public DroneRelocator(PositionWriteBehindBuffer positionBuffer,
+                          DroneSpatialIndex droneSpatialIndex,
+                          SimulationClock clock,
+                          MeterRegistry meterRegistry) {
+        this.positionBuffer = positionBuffer;
+        this.droneSpatialIndex = droneSpatialIndex;
+        this.clock = clock;
+        meterRegistry.gauge("delivery.relocation.active", relocations, Map::size);
+    }
+
+    @PostConstruct
+    void init() {
+        distancePerTick = AVERAGE_DRONE_SPEED / 3600.0 * clock.toSimulatedSeconds(tickIntervalMs);
+    }
+
+    /**
+     * Bắt đầu (hoặc đổi đích) chuyến bay của drone từ vị trí hiện tại
+     */
+    public void relocate(String droneCode, double lat, double lng, double targetLat, double targetLng,
+                         String reason) {
+        relocations.put(droneCode, new Relocation(droneCode, lat, lng, targetLat, targetLng, reason,
+                droneSpatialIndex.contains(droneCode)));
+    }
+
+    /**
+     * Chặng bay tới nhà hàng của drone vừa được gán đơn: không phụ thuộc spatial index (drone đã rời index)
+     * DeliveryLifecycleService lấy hàng theo {@link #flightTime} của chặng này
+     */
+    public void flyToPickup(String droneCode, double lat, double lng, double restaurantLat, double restaurantLng) {
+        relocations.put(droneCode, new Relocation(droneCode, lat, lng, restaurantLat, restaurantLng, "pickup",
+                false));
+    }
+
+    /**
+     * Thời gian bay (giả lập) của quãng distanceKm ở tốc độ trung bình
+     */
+    public static Duration flightTime(double distanceKm) {
+        return Duration.ofMillis(Math.round(distanceKm / AVERAGE_DRONE_SPEED * 3_600_000));
+    }
+
+    /**
+     * Dừng chuyến bay (drone được gán đơn, giữ chỗ bị hủy...); trả về vị trí hiện tại nếu đang bay
+     */
+    public Optional<Relocation> stop(String droneCode) {
+        return Optional.ofNullable(relocations.remove(droneCode));
+    }
+
+    public Optional<Relocation> get(String droneCode) {
+        return Optional.ofNullable(relocations.get(droneCode));
+    }
+
+    public boolean isRelocating(String droneCode) {
+        return relocations.containsKey(droneCode);
+    }
+
+    public int size() {
+        return relocations.size();
+    }
+
+    /**
+     * Các drone đang bay tới trong bán kính radiusKm quanh (lat, lng)
+     */
+    public List<String> headingTo(double lat, double lng, double radiusKm) {
+        List<String> codes = new ArrayList<>();
+        for (Relocation relocation : relocations.values()) {
+            if (GeoKernel.distanceKm(relocation.targetLat(), relocation.targetLng(), lat, lng) <= radiusKm) {
+                codes.add(relocation.droneCode());
+            }
+        }
+        return codes;
+    }
+
+    @Scheduled(fixedRateString = "${delivery.gps.tick-interval-ms:5000}", initialDelay = 10000)
+    public void tick() {
+        for (Relocation relocation : relocations.values()) {
+            if (relocation.indexed() && !droneSpatialIndex.contains(relocation.droneCode())) {
+                // Drone đã được gán hoặc không còn sẵn sàng: vị trí do luồng khác quản lý
+                relocations.remove(relocation.droneCode(), relocation);
+                continue;
+            }
+            double distance = GeoKernel.distanceKm(relocation.lat(), relocation.lng(),
+                    relocation.targetLat(), relocation.targetLng());
+            double ratio = GeoKernel.stepRatio(distance, distancePerTick);
+            Relocation moved = new Relocation(relocation.droneCode(),
+                    GeoKernel.interpolate(relocation.lat(), relocation.targetLat(), ratio),
+                    GeoKernel.interpolate(relocation.lng(), relocation.targetLng(), ratio),
+                    relocation.targetLat(), relocation.targetLng(), relocation.reason(), relocation.indexed());
+
+            // Chỉ ghi nếu chuyến bay chưa bị dừng/đổi đích trong lúc tính
+            if (!relocations.replace(relocation.droneCode(), relocation, moved)) {
+                continue;
+            }
+            positionBuffer.bufferDronePosition(moved.droneCode(), moved.lat(), moved.lng());
+            droneSpatialIndex.move(moved.droneCode(), moved.lat(), moved.lng(), null);
+            if (moved.arrived()) {
+                // Đến nơi: drone đứng chờ tại đích, vị trí đã nằm trong write-behind buffer
+                relocations.remove(moved.droneCode(), moved);
+                log.debug("Drone {} reached {} target", moved.droneCode(), moved.reason());
+            }
+        }
+    }
+}
@@ -1,22 +1,37 @@
 package vn.cnpm.delivery_service.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import vn.cnpm.delivery_service.model.Delivery;
 import vn.cnpm.delivery_service.model.DeliveryStatus;
 import vn.cnpm.delivery_service.model.Drone;
 import vn.cnpm.delivery_service.model.DroneStatus;
 import vn.cnpm.delivery_service.repository.DeliveryRepository;
 import vn.cnpm.delivery_service.repository.DroneRepository;
-import org.springframework.scheduling.annotation.Async;
-import java.util.concurrent.TimeUnit;
+import vn.cnpm.delivery_service.snapshot.FleetSnapshot;
+import vn.cnpm.delivery_service.snapshot.FleetSnapshotStore;
+import vn.cnpm.delivery_service.util.GeoKernel;
+import vn.cnpm.delivery_service.util.SimulationClock;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Random;
-import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 /**
  * Service quản lý drone delivery
@@ -29,81 +44,335 @@ public class DroneService {
 
     private final DeliveryRepository deliveryRepository;
     private final DroneRepository droneRepository;
+    private final ActiveDeliveryRegistry activeDeliveryRegistry;
+    private final PositionWriteBehindBuffer positionBuffer;
+    private final DroneSpatialIndex droneSpatialIndex;
+    private final TripBatcher tripBatcher;
+    private final PreDispatchService preDispatchService;
+    private final DroneRelocator droneRelocator;
+    private final FleetSnapshotStore snapshotStore;
+    private final MeterRegistry meterRegistry;
+    // Thời gian giả lập cho timestamp của delivery (updatedAt của drone vẫn là thời gian thật)
+    private final SimulationClock clock;
     private final Random random = new Random();
+    // Được gọi sau commit với các điểm giao (của delivery đã có) bị đổi stopSequence khi ghép chuyến
+    private final List<Consumer<List<Long>>> tripReorderListeners = new CopyOnWriteArrayList<>();
+
+    // Tọa độ mặc định (trung tâm HCM) khi delivery chưa có GPS nhà hàng
+    private static final double DEFAULT_LAT = 10.7769;
+    private static final double DEFAULT_LNG = 106.7009;
+
+    // Số ứng viên gần nhất lấy từ spatial index trước khi kiểm tra lại với DB
+    private static final int NEAREST_CANDIDATES = 5;
+
+    // Pin tối thiểu để nhận đơn (khớp Drone.isAvailableForDelivery)
+    private static final int MIN_BATTERY_FOR_DELIVERY = 30;
+
+    /**
+     * Nạp spatial index các drone sẵn sàng khi khởi động
+     * Có snapshot: khôi phục index, trả lại các drone đang giữ chỗ mềm lúc chụp và áp các drone
+     * được ghi sau lúc chụp; không có: quét các drone AVAILABLE trong DB
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void loadSpatialIndex() {
+        Optional<FleetSnapshot> snapshot = snapshotStore.restored();
+        if (snapshot.isEmpty()) {
+            droneSpatialIndex.rebuild(droneRepository.findAvailableDrones());
+            return;
+        }
+        droneSpatialIndex.restore(snapshot.get().availableDrones());
+        if (!snapshot.get().heldDrones().isEmpty()) {
+            droneRepository.findByDroneCodeIn(snapshot.get().heldDrones()).forEach(droneSpatialIndex::update);
+        }
+        List<Drone> changed = droneRepository.findByUpdatedAtAfter(snapshotStore.catchUpSince(snapshot.get()));
+        changed.forEach(droneSpatialIndex::update);
+        log.info("Drone spatial index caught up with {} drones changed since the snapshot", changed.size());
+    }
 
     /**
      * Tự động gán drone thông minh cho đơn hàng mới
-     * Tìm drone gần nhất, có pin đủ
+     * Tìm drone gần nhà hàng nhất (Haversine), có pin đủ
      */
     @Transactional
     public Delivery assignDrone(Delivery delivery) {
-        String droneId = "DRONE-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+        return tryAssignDrone(delivery).orElseThrow(() -> {
+            log.error("No available drones found!");
+            return new RuntimeException("No available drones at the moment. Please try again later.");
+        });
+    }
+
+    /**
+     * Như {@link #assignDrone} nhưng trả về empty khi không còn drone rảnh
+     * (delivery giữ nguyên PENDING, caller đưa vào PendingAssignmentQueue)
+     */
+    @Transactional
+    public Optional<Delivery> tryAssignDrone(Delivery delivery) {
+        // Drone đã bay trước tới nhà hàng từ lúc đơn được thanh toán
+        Optional<Delivery> predispatched = assignPreDispatchedDrone(delivery);
+        if (predispatched.isPresent()) {
+            return predispatched;
+        }
+
+        // Ưu tiên ghép vào chuyến của drone đang đến cùng nhà hàng
+        Optional<Delivery> joined = joinOpenTrip(delivery);
+        if (joined.isPresent()) {
+            return joined;
+        }
+
         // Tìm drone sẵn sàng gần nhà hàng nhất
-        // Parse restaurant address to get approximate lat/lng (simplified)
-        Double restaurantLat = 10.7769; // Default HCM center
-        Double restaurantLng = 106.7009;
+        double restaurantLat = restaurantLat(delivery);
+        double restaurantLng = restaurantLng(delivery);
 
-        Optional<Drone> availableDrone = droneRepository.findNearestAvailableDrone(restaurantLat, restaurantLng);
+        // Giữ chỗ drone nguyên tử: nhiều consumer chạy song song không thể gán trùng một drone
+        Optional<Drone> reservedDrone = reserveNearestAvailableDrone(restaurantLat, restaurantLng);
 
         Drone drone;
-        if (availableDrone.isPresent()) {
-            drone = availableDrone.get();
+        if (reservedDrone.isPresent()) {
+            drone = reservedDrone.get();
             log.info("Found available drone: {}", drone.getDroneCode());
         } else {
-            // Fallback: Tìm bất kỳ drone available nào
-            List<Drone> availableDrones = droneRepository.findAvailableDrones();
-            if (!availableDrones.isEmpty()) {
-                drone = availableDrones.get(0);
-                log.info("Using fallback drone: {}", drone.getDroneCode());
+            // Fallback: Tìm bất kỳ drone available nào (index có thể chưa kịp đồng bộ)
+            Optional<Drone> fallback = droneRepository.findAvailableDrones().stream()
+                    .filter(candidate -> reserve(candidate.getDroneCode()))
+                    .findFirst()
+                    .flatMap(candidate -> droneRepository.findByDroneCode(candidate.getDroneCode()));
+            if (fallback.isEmpty()) {
+                return Optional.empty();
+            }
+            drone = fallback.get();
+            log.info("Using fallback drone: {}", drone.getDroneCode());
+        }
+
+        attachDrone(delivery, drone, restaurantLat, restaurantLng, "greedy");
+
+        return Optional.of(saveAndTrack(delivery));
+    }
+
+    /**
+     * Gán drone được giữ chỗ mềm bởi PreDispatchService (đang bay tới hoặc đã chờ ở nhà hàng)
+     * Drone vẫn AVAILABLE trong DB nên vẫn phải qua CAS; thua thì trả drone lại và gán như bình thường
+     */
+    private Optional<Delivery> assignPreDispatchedDrone(Delivery delivery) {
+        Optional<String> droneCode = preDispatchService.take(delivery.getOrderId());
+        if (droneCode.isEmpty()) {
+            return Optional.empty();
+        }
+        if (!reserve(droneCode.get())) {
+            preDispatchService.release(droneCode.get());
+            return Optional.empty();
+        }
+        Optional<Drone> drone = droneRepository.findByDroneCode(droneCode.get());
+        if (drone.isEmpty()) {
+            return Optional.empty();
+        }
+        // Vị trí hiện tại của chuyến bay trước (chưa flush) để ghi nhận quãng bay còn lại
+        positionBuffer.applyPending(drone.get());
+        attachDrone(delivery, drone.get(), restaurantLat(delivery), restaurantLng(delivery), "predispatch");
+        return Optional.of(saveAndTrack(delivery));
+    }
+
+    /**
+     * Ghép delivery vào chuyến đang mở (drone đã gán, chưa lấy hàng) của cùng nhà hàng
+     * Các điểm giao của chuyến được sắp lại thứ tự (stopSequence); cả chuyến lấy hàng cùng lúc
+     * nên delivery mới nhận assignedAt của chuyến
+     */
+    @Transactional
+    public Optional<Delivery> joinOpenTrip(Delivery delivery) {
+        Optional<TripBatcher.Trip> joined = tripBatcher.tryJoin(delivery);
+        if (joined.isEmpty()) {
+            return Optional.empty();
+        }
+        TripBatcher.Trip trip = joined.get();
+        delivery.setDroneId(trip.droneCode());
+        delivery.setAssignedAt(trip.assignedAt());
+        delivery.setPickedUpAt(trip.pickupAt());
+
+        List<Delivery> stops = new ArrayList<>(trip.stops().size());
+        List<Long> reordered = new ArrayList<>();
+        Delivery self = null;
+        for (int i = 0; i < trip.stops().size(); i++) {
+            Delivery stop = trip.stops().get(i);
+            if (!stop.getId().equals(delivery.getId())) {
+                stop = activeDeliveryRegistry.find(stop.getId()).orElse(stop);
+                if (!Objects.equals(stop.getStopSequence(), i)) {
+                    reordered.add(stop.getId());
+                }
             } else {
-                log.error("No available drones found!");
-                throw new RuntimeException("No available drones at the moment. Please try again later.");
+                stop = delivery;
+            }
+            stop.setStopSequence(i);
+            stops.add(stop);
+        }
+        for (Delivery saved : deliveryRepository.saveAll(stops)) {
+            activeDeliveryRegistry.track(saved);
+            if (saved.getId().equals(delivery.getId())) {
+                self = saved;
+            }
+        }
+
+        if (!reordered.isEmpty()) {
+            // Thời điểm giao phụ thuộc stopSequence: timer của các điểm bị đổi thứ tự cần lên lịch lại
+            afterCommit(() -> tripReorderListeners.forEach(listener -> listener.accept(reordered)));
+        }
+
+        meterRegistry.counter("delivery.dispatch.batched").increment();
+        meterRegistry.summary("delivery.dispatch.trip.stops").record(stops.size());
+        log.info("Order {} added to drone {} trip as stop {}/{}", delivery.getOrderId(), trip.droneCode(),
+                delivery.getStopSequence() + 1, stops.size());
+        return Optional.of(self);
+    }
+
+    /**
+     * Đăng ký callback khi thứ tự điểm giao của một chuyến thay đổi (sau commit, registry đã cập nhật)
+     */
+    public void addTripReorderListener(Consumer<List<Long>> listener) {
+        tripReorderListeners.add(listener);
+    }
+
+    /**
+     * Gán drone cho nhiều delivery trong một transaction (dùng bởi BatchDispatcher)
+     * Mỗi cặp vẫn giữ chỗ drone bằng CAS; cặp nào thua thì delivery giữ nguyên PENDING
+     * và không có trong danh sách trả về
+     */
+    @Transactional
+    public List<Delivery> assignDrones(List<Delivery> deliveries, List<String> droneCodes) {
+        List<Delivery> won = new ArrayList<>();
+        List<String> wonCodes = new ArrayList<>();
+        for (int i = 0; i < deliveries.size(); i++) {
+            String droneCode = droneCodes.get(i);
+            if (droneCode != null && droneSpatialIndex.tryClaim(droneCode) && reserve(droneCode)) {
+                won.add(deliveries.get(i));
+                wonCodes.add(droneCode);
             }
         }
+        if (won.isEmpty()) {
+            return won;
+        }
+
+        // Một query IN cho toàn bộ drone đã giữ chỗ
+        Map<String, Drone> drones = new HashMap<>();
+        droneRepository.findByDroneCodeIn(wonCodes).forEach(d -> drones.put(d.getDroneCode(), d));
+
+        for (int i = 0; i < won.size(); i++) {
+            Delivery delivery = won.get(i);
+            attachDrone(delivery, drones.get(wonCodes.get(i)),
+                    restaurantLat(delivery), restaurantLng(delivery), "batch");
+        }
+        List<Delivery> saved = deliveryRepository.saveAll(won);
+        saved.forEach(activeDeliveryRegistry::track);
+        return saved;
+    }
+
+    /**
+     * Gán drone đã giữ chỗ cho delivery và cập nhật drone
+     * Drone bay từ vị trí hiện tại tới nhà hàng (DroneRelocator, sau commit); pickedUpAt được đặt là thời điểm
+     * dự kiến lấy hàng = lúc bay tới nơi + PICKUP_DELAY, DeliveryLifecycleService lấy hàng theo mốc này
+     * (lấy hàng thật thì ghi đè) - drone bay trước tới gần nhà hàng nhờ vậy lấy hàng sớm hơn drone ở xa
+     */
+    private void attachDrone(Delivery delivery, Drone drone, double restaurantLat, double restaurantLng,
+                             String mode) {
+        // Drone đang bay không mang đơn (bay trước, cân bằng lại) thì dừng chuyến bay đó tại vị trí hiện tại
+        droneRelocator.stop(drone.getDroneCode())
+                .ifPresent(flight -> drone.updateLocation(flight.lat(), flight.lng()));
+        if (drone.getCurrentLat() == null || drone.getCurrentLng() == null) {
+            // Chưa biết vị trí: coi như đang ở nhà hàng
+            drone.updateLocation(restaurantLat, restaurantLng);
+        }
+
+        // Ghi nhận quãng bay và thời gian bay đến nhà hàng (so sánh greedy, batch và bay trước)
+        double pickupKm = GeoKernel.distanceKm(drone.getCurrentLat(), drone.getCurrentLng(),
+                restaurantLat, restaurantLng);
+        Duration flight = DroneRelocator.flightTime(pickupKm);
+        meterRegistry.summary("delivery.dispatch.pickup.distance", "mode", mode).record(pickupKm);
+        meterRegistry.timer("delivery.dispatch.pickup.flight", "mode", mode).record(flight);
 
         // Gán drone cho delivery
+        Instant now = clock.instant();
         delivery.setDroneId(drone.getDroneCode());
-        delivery.setPickedUpAt(Instant.now());
+        delivery.setAssignedAt(now);
+        delivery.setPickedUpAt(now.plus(flight).plus(DeliveryLifecycleService.PICKUP_DELAY));
 
-        log.info("Drone {} picked up order {} from restaurant", 
-                drone.getDroneCode(), delivery.getOrderId());
-        // Cập nhật trạng thái drone
+        // Cập nhật trạng thái drone (đã BUSY trong DB sau khi giữ chỗ)
         drone.markAsBusy();
-        drone.updateLocation(restaurantLat, restaurantLng);
-        droneRepository.save(drone);
+        saveAndIndex(drone);
+        String droneCode = drone.getDroneCode();
+        double lat = drone.getCurrentLat();
+        double lng = drone.getCurrentLng();
+        afterCommit(() -> droneRelocator.flyToPickup(droneCode, lat, lng, restaurantLat, restaurantLng));
+        // Drone đang đến nhà hàng: các đơn kế tiếp của nhà hàng có thể đi cùng chuyến
+        tripBatcher.open(delivery, drone, restaurantLat, restaurantLng);
 
         log.info("Drone {} assigned to order {}", drone.getDroneCode(), delivery.getOrderId());
-
-        return deliveryRepository.save(delivery);
     }
-    @Async
-@Transactional
-public void autoCompleteAfterDelay(Long deliveryId, int delayMinutes) {
-    try {
-        Delivery delivery = deliveryRepository.findById(deliveryId)
-                .orElseThrow(() -> new RuntimeException("Delivery not found"));
 
-        // Chờ 'delayMinutes' phút
-        TimeUnit.MINUTES.sleep(delayMinutes);
+    static double restaurantLat(Delivery delivery) {
+        return delivery.getRestaurantLat() != null ? delivery.getRestaurantLat() : DEFAULT_LAT;
+    }
 
-        // Kiểm tra xem delivery vẫn đang ở trạng thái DELIVERING
-        delivery = deliveryRepository.findById(deliveryId)
-                .orElseThrow(() -> new RuntimeException("Delivery not found"));
+    static double restaurantLng(Delivery delivery) {
+        return delivery.getRestaurantLng() != null ? delivery.getRestaurantLng() : DEFAULT_LNG;
+    }
 
-        if (delivery.getStatus() == DeliveryStatus.DELIVERING) {
-            delivery.setStatus(DeliveryStatus.COMPLETED);
-            delivery.setCompletedAt(Instant.now());
-            deliveryRepository.save(delivery);
+    /**
+     * Giữ chỗ drone sẵn sàng gần nhất (k-nearest Haversine qua spatial index)
+     * Mỗi ứng viên phải qua 2 bước CAS: giành slot trong index, rồi UPDATE ... WHERE status = 'AVAILABLE';
+     * thua ở bước nào thì thử ứng viên kế tiếp
+     */
+    private Optional<Drone> reserveNearestAvailableDrone(double lat, double lng) {
+        for (DroneSpatialIndex.Candidate candidate : droneSpatialIndex.nearest(lat, lng, NEAREST_CANDIDATES)) {
+            if (!droneSpatialIndex.tryClaim(candidate.droneCode())) {
+                continue; // Consumer khác vừa giành drone này
+            }
+            if (reserve(candidate.droneCode())) {
+                return droneRepository.findByDroneCode(candidate.droneCode());
+            }
+            // DB cho biết drone không còn sẵn sàng: index đã lệch, slot đã được loại khỏi index
+        }
+        return Optional.empty();
+    }
 
-            log.info("Auto-completed delivery {} after {} minutes",
-                    deliveryId, delayMinutes);
+    /**
+     * Conditional UPDATE AVAILABLE -> BUSY; nếu transaction rollback thì trả drone lại vào index
+     */
+    private boolean reserve(String droneCode) {
+        boolean reserved = droneRepository.compareAndSetStatus(droneCode, DroneStatus.AVAILABLE,
+                DroneStatus.BUSY, MIN_BATTERY_FOR_DELIVERY, Instant.now()) == 1;
+        if (reserved && TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        droneRepository.findByDroneCode(droneCode).ifPresent(droneSpatialIndex::update);
+                    }
+                }
+            });
         }
+        return reserved;
+    }
+
+    /**
+     * Lưu drone rồi đồng bộ spatial index sau khi commit (markAsBusy, markAsAvailable, chargeBattery,
+     * updateLocation...); rollback thì index giữ nguyên như DB
+     */
+    public Drone saveAndIndex(Drone drone) {
+        Drone saved = droneRepository.save(drone);
+        afterCommit(() -> droneSpatialIndex.update(saved));
+        return saved;
+    }
 
-    } catch (InterruptedException e) {
-        Thread.currentThread().interrupt();
-        log.error("Auto-complete interrupted for delivery {}", deliveryId);
+    private static void afterCommit(Runnable update) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            update.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                update.run();
+            }
+        });
     }
-}
 
     /**
      * Bắt đầu giao hàng
@@ -118,13 +387,9 @@ public void autoCompleteAfterDelay(Long deliveryId, int delayMinutes) {
         }
 
         delivery.setStatus(DeliveryStatus.DELIVERING);
-        delivery.setDeliveringAt(Instant.now());
-        
-        
-        // Tự động hoàn thành sau 1 phút (giả lập)
-        autoCompleteAfterDelay(deliveryId, 1);
+        delivery.setDeliveringAt(clock.instant());
+        // Hoàn thành do DeliveryLifecycleService lên lịch (timer), không chờ trong transaction này
 
-        
         // Giả lập vị trí GPS của drone
         delivery.setCurrentLat(10.7769 + random.nextDouble() * 0.1);  // HCM area
         delivery.setCurrentLng(106.7009 + random.nextDouble() * 0.1);
@@ -132,7 +397,7 @@ public void autoCompleteAfterDelay(Long deliveryId, int delayMinutes) {
         log.info("Drone {} started delivering order {} to customer", 
                 delivery.getDroneId(), delivery.getOrderId());
         
-        return deliveryRepository.save(delivery);
+        return saveAndTrack(delivery);
     }
 
     /**
@@ -147,22 +412,19 @@ public void autoCompleteAfterDelay(Long deliveryId, int delayMinutes) {
         }
 
         delivery.setStatus(DeliveryStatus.COMPLETED);
-        delivery.setCompletedAt(Instant.now());
+        delivery.setCompletedAt(clock.instant());
         
         log.info("Drone {} completed delivery for order {}", 
                 delivery.getDroneId(), delivery.getOrderId());
         
-        return deliveryRepository.save(delivery);
+        return saveAndTrack(delivery);
     }
 
     /**
      * Lấy tất cả delivery đang hoạt động
      */
     public List<Delivery> getActiveDeliveries() {
-        return deliveryRepository.findAll().stream()
-                .filter(d -> d.getStatus() != DeliveryStatus.COMPLETED 
-                        && d.getStatus() != DeliveryStatus.CANCELLED)
-                .toList();
+        return activeDeliveryRegistry.getActiveDeliveries();
     }
 
     /**
@@ -176,7 +438,7 @@ public void autoCompleteAfterDelay(Long deliveryId, int delayMinutes) {
         delivery.setCurrentLat(lat);
         delivery.setCurrentLng(lng);
         
-        return deliveryRepository.save(delivery);
+        return saveAndTrack(delivery);
     }
 
     // ==================== DRONE MANAGEMENT METHODS ====================
@@ -234,7 +496,7 @@ public void autoCompleteAfterDelay(Long deliveryId, int delayMinutes) {
         }
         
         log.info("Creating new drone: {}", drone.getDroneCode());
-        return droneRepository.save(drone);
+        return saveAndIndex(drone);
     }
 
     /**
@@ -275,7 +537,7 @@ public void autoCompleteAfterDelay(Long deliveryId, int delayMinutes) {
         }
 
         log.info("Updated drone: {}", drone.getDroneCode());
-        return droneRepository.save(drone);
+        return saveAndIndex(drone);
     }
 
     /**
@@ -288,6 +550,8 @@ public void autoCompleteAfterDelay(Long deliveryId, int delayMinutes) {
         
         log.info("Deleting drone: {}", drone.getDroneCode());
         droneRepository.delete(drone);
+        String droneCode = drone.getDroneCode();
+        afterCommit(() -> droneSpatialIndex.remove(droneCode));
     }
 
     /**
@@ -308,7 +572,7 @@ public void autoCompleteAfterDelay(Long deliveryId, int delayMinutes) {
         }
         
         log.info("Updated battery for drone {} to {}%", drone.getDroneCode(), level);
-        return droneRepository.save(drone);
+        return saveAndIndex(drone);
     }
 
     /**
@@ -320,11 +584,32 @@ public void autoCompleteAfterDelay(Long deliveryId, int delayMinutes) {
                 .orElseThrow(() -> new RuntimeException("Delivery not found"));
         
         delivery.setStatus(DeliveryStatus.PICKED_UP);
-        delivery.setPickedUpAt(Instant.now());
-        
+        delivery.setPickedUpAt(clock.instant());
+        // Drone đã tới nhà hàng: kết thúc chặng bay lấy hàng (timer có thể chạy trước tick cuối của chặng)
+        if (delivery.getDroneId() != null) {
+            droneRelocator.stop(delivery.getDroneId());
+            positionBuffer.bufferDronePosition(delivery.getDroneId(), restaurantLat(delivery),
+                    restaurantLng(delivery));
+        }
+
         log.info("Drone {} picked up order {}", delivery.getDroneId(), delivery.getOrderId());
         
-        return deliveryRepository.save(delivery);
+        return saveAndTrack(delivery);
+    }
+
+    /**
+     * Lưu delivery và đồng bộ registry delivery đang hoạt động
+     */
+    public Delivery saveAndTrack(Delivery delivery) {
+        // Giữ vị trí GPS mới nhất chưa flush, tránh ghi đè bằng giá trị cũ trong DB;
+        // bỏ khỏi buffer vì lần lưu này đã bao gồm, flush sau không được ghi lại vị trí cũ hơn
+        positionBuffer.applyAndDiscard(delivery);
+        if (delivery.getCreatedAt() == null) {
+            delivery.setCreatedAt(clock.instant());
+        }
+        Delivery saved = deliveryRepository.save(delivery);
+        activeDeliveryRegistry.track(saved);
+        return saved;
     }
 }
 
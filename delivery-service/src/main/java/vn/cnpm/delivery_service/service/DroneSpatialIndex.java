@@ -0,0 +1,273 @@
+package vn.cnpm.delivery_service.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import vn.cnpm.delivery_service.model.Drone;
+import vn.cnpm.delivery_service.util.GeoPoint;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Spatial index in-process cho các drone sẵn sàng (AVAILABLE, pin >= 30%)
+ * Lưới ô vuông theo lat/lng (~1.1 km mỗi ô), tìm k drone gần nhất bằng cách mở rộng
+ * từng vòng ô quanh điểm cần tìm và tính khoảng cách Haversine thật
+ */
+@Component
+@Slf4j
+public class DroneSpatialIndex {
+
+    // Kích thước ô lưới (độ) ~ 1.1 km theo vĩ độ
+    private static final double CELL_DEGREES = 0.01;
+    private static final double KM_PER_DEGREE = 111.19;
+    // Quá số vòng này (~35 km) thì quét tuyến tính - tránh duyệt quá nhiều ô rỗng khi drone ở rất xa
+    private static final int MAX_RING = 32;
+    // Cùng ngưỡng với Drone.isAvailableForDelivery
+    private static final int MIN_BATTERY = 30;
+
+    private final Map<Long, Set<String>> cells = new ConcurrentHashMap<>();
+    private final Map<String, IndexedDrone> drones = new ConcurrentHashMap<>();
+    // Được gọi khi một drone vừa vào index (vừa sẵn sàng); không gọi khi rebuild
+    private final List<Consumer<String>> availabilityListeners = new CopyOnWriteArrayList<>();
+
+    public record IndexedDrone(String droneCode, double lat, double lng, int batteryLevel) {
+    }
+
+    public record Candidate(String droneCode, double distanceKm) {
+    }
+
+    /**
+     * Đăng ký callback khi drone chuyển sang sẵn sàng (markAsAvailable, chargeBattery...)
+     * Callback chạy trong lock của index nên chỉ được báo hiệu, không xử lý nặng
+     */
+    public void addAvailabilityListener(Consumer<String> listener) {
+        availabilityListeners.add(listener);
+    }
+
+    /**
+     * Xây lại toàn bộ index từ danh sách drone
+     */
+    public synchronized void rebuild(Collection<Drone> allDrones) {
+        cells.clear();
+        drones.clear();
+        for (Drone drone : allDrones) {
+            if (drone.isAvailableForDelivery() && drone.getCurrentLat() != null && drone.getCurrentLng() != null) {
+                put(new IndexedDrone(drone.getDroneCode(), drone.getCurrentLat(), drone.getCurrentLng(),
+                        drone.getBatteryLevel()));
+            }
+        }
+        log.info("Drone spatial index built with {} available drones", drones.size());
+    }
+
+    /**
+     * Khôi phục index từ snapshot (không gọi availability listener)
+     */
+    public synchronized void restore(Collection<IndexedDrone> snapshot) {
+        cells.clear();
+        drones.clear();
+        for (IndexedDrone drone : snapshot) {
+            put(drone);
+        }
+        log.info("Drone spatial index restored with {} available drones", drones.size());
+    }
+
+    /**
+     * Bản sao các drone trong index (để chụp snapshot)
+     */
+    public List<IndexedDrone> snapshot() {
+        return new ArrayList<>(drones.values());
+    }
+
+    /**
+     * Cập nhật một drone: thêm vào index nếu sẵn sàng giao hàng, ngược lại loại bỏ
+     */
+    public synchronized void update(Drone drone) {
+        if (drone == null || drone.getDroneCode() == null) {
+            return;
+        }
+        if (!drone.isAvailableForDelivery() || drone.getCurrentLat() == null || drone.getCurrentLng() == null) {
+            remove(drone.getDroneCode());
+            return;
+        }
+        boolean becameAvailable = put(new IndexedDrone(drone.getDroneCode(), drone.getCurrentLat(),
+                drone.getCurrentLng(), drone.getBatteryLevel()));
+        if (becameAvailable) {
+            availabilityListeners.forEach(listener -> listener.accept(drone.getDroneCode()));
+        }
+    }
+
+    /**
+     * Cập nhật vị trí/pin của drone đã có trong index (telemetry); drone chưa có trong index
+     * (đang bận, không sẵn sàng) được bỏ qua. Pin xuống dưới ngưỡng thì loại khỏi index
+     */
+    public synchronized void move(String droneCode, double lat, double lng, Integer batteryLevel) {
+        IndexedDrone old = drones.get(droneCode);
+        if (old == null) {
+            return;
+        }
+        int battery = batteryLevel != null ? batteryLevel : old.batteryLevel();
+        if (battery < MIN_BATTERY) {
+            remove(droneCode);
+            return;
+        }
+        put(new IndexedDrone(droneCode, lat, lng, battery));
+    }
+
+    /**
+     * Giành quyền một drone trong index (CAS in-memory): chỉ một caller nhận được true,
+     * các consumer đồng thời sẽ chuyển sang ứng viên kế tiếp
+     */
+    public synchronized boolean tryClaim(String droneCode) {
+        IndexedDrone old = drones.remove(droneCode);
+        if (old == null) {
+            return false;
+        }
+        removeFromCell(cellKey(old.lat(), old.lng()), droneCode);
+        return true;
+    }
+
+    public synchronized void remove(String droneCode) {
+        IndexedDrone old = drones.remove(droneCode);
+        if (old != null) {
+            removeFromCell(cellKey(old.lat(), old.lng()), droneCode);
+        }
+    }
+
+    /**
+     * @return true nếu drone vừa được thêm mới vào index
+     */
+    private boolean put(IndexedDrone drone) {
+        IndexedDrone old = drones.put(drone.droneCode(), drone);
+        long newKey = cellKey(drone.lat(), drone.lng());
+        if (old != null) {
+            long oldKey = cellKey(old.lat(), old.lng());
+            if (oldKey == newKey) {
+                return false;
+            }
+            removeFromCell(oldKey, drone.droneCode());
+        }
+        cells.computeIfAbsent(newKey, k -> ConcurrentHashMap.newKeySet()).add(drone.droneCode());
+        return old == null;
+    }
+
+    private void removeFromCell(long key, String droneCode) {
+        Set<String> cell = cells.get(key);
+        if (cell != null) {
+            cell.remove(droneCode);
+            if (cell.isEmpty()) {
+                cells.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Tìm k drone sẵn sàng gần (lat, lng) nhất, sắp xếp theo khoảng cách Haversine tăng dần
+     */
+    public List<Candidate> nearest(double lat, double lng, int k) {
+        int totalCells = cells.size();
+        if (k <= 0 || totalCells == 0) {
+            return List.of();
+        }
+
+        // Max-heap giữ k ứng viên tốt nhất
+        PriorityQueue<Candidate> best = new PriorityQueue<>(
+                Comparator.comparingDouble(Candidate::distanceKm).reversed());
+        int centerLat = cellIndex(lat);
+        int centerLng = cellIndex(lng);
+        int visitedCells = 0;
+        boolean complete = false;
+
+        for (int ring = 0; ring <= MAX_RING; ring++) {
+            for (int dLat = -ring; dLat <= ring; dLat++) {
+                for (int dLng = -ring; dLng <= ring; dLng++) {
+                    // Chỉ duyệt viền của vòng hiện tại
+                    if (Math.abs(dLat) != ring && Math.abs(dLng) != ring) {
+                        continue;
+                    }
+                    Set<String> cell = cells.get(cellKey(centerLat + dLat, centerLng + dLng));
+                    if (cell == null) {
+                        continue;
+                    }
+                    visitedCells++;
+                    for (String code : cell) {
+                        IndexedDrone drone = drones.get(code);
+                        if (drone == null) {
+                            continue;
+                        }
+                        offer(best, k, code, GeoPoint.haversine(lat, lng, drone.lat(), drone.lng()));
+                    }
+                }
+            }
+
+            // Các ô chưa duyệt cách điểm tìm ít nhất 'ring' ô => dừng nếu đã đủ k và không thể có ứng viên tốt hơn
+            if (visitedCells >= totalCells
+                    || (best.size() == k && best.peek().distanceKm() <= minDistanceOutsideRing(lat, ring))) {
+                complete = true;
+                break;
+            }
+        }
+
+        if (!complete) {
+            best.clear();
+            for (IndexedDrone drone : drones.values()) {
+                offer(best, k, drone.droneCode(), GeoPoint.haversine(lat, lng, drone.lat(), drone.lng()));
+            }
+        }
+
+        List<Candidate> result = new ArrayList<>(best);
+        result.sort(Comparator.comparingDouble(Candidate::distanceKm));
+        return result;
+    }
+
+    private static void offer(PriorityQueue<Candidate> best, int k, String droneCode, double distance) {
+        if (best.size() < k) {
+            best.add(new Candidate(droneCode, distance));
+        } else if (distance < best.peek().distanceKm()) {
+            best.poll();
+            best.add(new Candidate(droneCode, distance));
+        }
+    }
+
+    public int size() {
+        return drones.size();
+    }
+
+    public boolean contains(String droneCode) {
+        return drones.containsKey(droneCode);
+    }
+
+    public Optional<IndexedDrone> get(String droneCode) {
+        return Optional.ofNullable(drones.get(droneCode));
+    }
+
+    /**
+     * Cận dưới khoảng cách (km) tới mọi ô nằm ngoài vòng 'ring'
+     * Dùng cos của vĩ độ xa xích đạo hơn để cận dưới luôn đúng theo chiều kinh độ
+     */
+    private static double minDistanceOutsideRing(double lat, int ring) {
+        double farLat = Math.min(89.0, Math.abs(lat) + (ring + 1) * CELL_DEGREES);
+        double cellKm = CELL_DEGREES * KM_PER_DEGREE * Math.cos(Math.toRadians(farLat));
+        return ring * cellKm;
+    }
+
+    private static int cellIndex(double degrees) {
+        return (int) Math.floor(degrees / CELL_DEGREES);
+    }
+
+    private static long cellKey(double lat, double lng) {
+        return cellKey(cellIndex(lat), cellIndex(lng));
+    }
+
+    private static long cellKey(int latIndex, int lngIndex) {
+        return ((long) latIndex << 32) | (lngIndex & 0xffffffffL);
+    }
+}
@@ -0,0 +1,276 @@
+package vn.cnpm.delivery_service.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import vn.cnpm.delivery_service.util.FleetArrays;
+import vn.cnpm.delivery_service.util.FleetKernel;
+import vn.cnpm.delivery_service.util.GeoKernel;
+import vn.cnpm.delivery_service.util.ScalarFleetKernel;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Trạng thái vị trí của các drone đang bay, giữ dạng structure-of-arrays ({@link FleetArrays})
+ * Mỗi delivery đang bay chiếm một slot; {@link #advance} tiến cả đội một tick trong một lượt
+ * (Vector API nếu có, ngược lại vô hướng) và trả về các slot cần ghi/publish
+ *
+ * Engine mô phỏng song song vị trí mà client đang ngoại suy (dead reckoning từ vị trí, hướng, tốc độ
+ * của lần publish cuối) nên chỉ báo dirty khi dự đoán đó sai quá ngưỡng, khi vào vùng tiếp cận
+ * hoặc khi im lặng quá lâu
+ *
+ * Chỉ được dùng từ thread của tick GPS (không đồng bộ hóa)
+ */
+@Component
+@Slf4j
+public class FleetStateEngine {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final FleetKernel kernel;
+    private final FleetArrays fleet = new FleetArrays(INITIAL_CAPACITY);
+    private final Map<Long, Integer> slotByDelivery = new HashMap<>();
+    private long[] deliveryIds = new long[INITIAL_CAPACITY];
+    private boolean[] towardsCustomer = new boolean[INITIAL_CAPACITY];
+    private int[] dirty = new int[INITIAL_CAPACITY];
+    // Đánh dấu slot đã nằm trong danh sách dirty của tick hiện tại (so với dirtyEpoch)
+    private long[] dirtyMark = new long[INITIAL_CAPACITY];
+    private long dirtyEpoch;
+    private boolean dirtyMarked;
+    private int size;
+
+    public FleetStateEngine(@Value("${delivery.gps.vector-kernel:true}") boolean useVectorKernel) {
+        this.kernel = useVectorKernel ? FleetKernel.best() : new ScalarFleetKernel();
+        log.info("Fleet state engine using {} kernel", kernel.name());
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String kernelName() {
+        return kernel.name();
+    }
+
+    public boolean contains(Long deliveryId) {
+        return slotByDelivery.containsKey(deliveryId);
+    }
+
+    /**
+     * Slot của delivery; -1 nếu chưa có
+     */
+    public int slotOf(Long deliveryId) {
+        Integer slot = slotByDelivery.get(deliveryId);
+        return slot == null ? -1 : slot;
+    }
+
+    /**
+     * Slot đang bay về phía khách hàng (true) hay về nhà hàng (false); null nếu chưa có slot
+     */
+    public Boolean isTowardsCustomer(Long deliveryId) {
+        Integer slot = slotByDelivery.get(deliveryId);
+        return slot == null ? null : towardsCustomer[slot];
+    }
+
+    /**
+     * Thêm (hoặc đặt lại) slot cho delivery tại vị trí hiện tại của drone
+     */
+    public void put(Long deliveryId, double lat, double lng, double stepKm) {
+        Integer slot = slotByDelivery.get(deliveryId);
+        if (slot == null) {
+            ensureCapacity(size + 1);
+            slot = size++;
+            slotByDelivery.put(deliveryId, slot);
+            deliveryIds[slot] = deliveryId;
+        }
+        fleet.lat[slot] = lat;
+        fleet.lng[slot] = lng;
+        fleet.stepKm[slot] = stepKm;
+        fleet.stepLat[slot] = 0;
+        fleet.stepLng[slot] = 0;
+        fleet.predictedLat[slot] = lat;
+        fleet.predictedLng[slot] = lng;
+        fleet.velocityLat[slot] = 0;
+        fleet.velocityLng[slot] = 0;
+        fleet.silentTicks[slot] = 0;
+        fleet.remainingKm[slot] = 0;
+        fleet.approachKm[slot] = 0;
+        fleet.milestoneKm[slot] = -1;
+    }
+
+    /**
+     * Đổi đích bay của slot; milestoneKm < 0 nếu không cần mốc
+     * approachKm: slot dirty mỗi tick khi còn cách đích không quá khoảng này (tối thiểu là ngưỡng đến đích)
+     */
+    public void retarget(int slot, double targetLat, double targetLng, boolean customer,
+                         double milestoneKm, double approachKm) {
+        fleet.targetLat[slot] = targetLat;
+        fleet.targetLng[slot] = targetLng;
+        fleet.targetCos[slot] = GeoKernel.cosLat(targetLat);
+        fleet.targetSin[slot] = GeoKernel.sinLat(targetLat);
+        fleet.milestoneKm[slot] = milestoneKm;
+        fleet.approachKm[slot] = approachKm;
+        towardsCustomer[slot] = customer;
+    }
+
+    public void retarget(Long deliveryId, double targetLat, double targetLng, boolean customer,
+                         double milestoneKm, double approachKm) {
+        retarget(slotByDelivery.get(deliveryId), targetLat, targetLng, customer, milestoneKm, approachKm);
+    }
+
+    /**
+     * Xóa slot bằng cách chuyển slot cuối vào chỗ trống (O(1))
+     * Không gọi trong lúc đang duyệt kết quả {@link #advance}
+     */
+    public void remove(Long deliveryId) {
+        Integer slot = slotByDelivery.remove(deliveryId);
+        if (slot == null) {
+            return;
+        }
+        int last = --size;
+        if (slot != last) {
+            fleet.copySlot(last, slot);
+            deliveryIds[slot] = deliveryIds[last];
+            towardsCustomer[slot] = towardsCustomer[last];
+            slotByDelivery.put(deliveryIds[slot], slot);
+        }
+    }
+
+    /**
+     * Bỏ slot của các delivery không còn đang bay
+     */
+    public void retainOnly(Set<Long> activeIds) {
+        if (size == activeIds.size() && activeIds.containsAll(slotByDelivery.keySet())) {
+            return;
+        }
+        for (int slot = size - 1; slot >= 0; slot--) {
+            if (!activeIds.contains(deliveryIds[slot])) {
+                remove(deliveryIds[slot]);
+            }
+        }
+    }
+
+    public void clear() {
+        slotByDelivery.clear();
+        size = 0;
+    }
+
+    /**
+     * Tiến toàn bộ đội một tick
+     *
+     * @param publishKm      độ lệch tối đa giữa vị trí thật và vị trí client suy đoán
+     * @param maxSilentTicks số tick tối đa giữa hai lần publish của một slot
+     * @return số slot dirty, đọc bằng {@link #dirtySlot(int)}
+     */
+    public int advance(double publishKm, int maxSilentTicks) {
+        dirtyEpoch++;
+        dirtyMarked = false;
+        return kernel.advance(fleet, size, publishKm, maxSilentTicks, dirty);
+    }
+
+    /**
+     * Vị trí do drone thật báo về (telemetry), gọi sau {@link #advance}: slot không tự bay nữa (stepKm = 0),
+     * bước vừa đi là chênh lệch so với vị trí trước, và slot luôn được xử lý trong tick này
+     *
+     * @return số slot dirty sau khi thêm slot này (nếu chưa có)
+     */
+    public int report(int slot, double lat, double lng, int dirtyCount) {
+        if (!dirtyMarked) {
+            for (int k = 0; k < dirtyCount; k++) {
+                dirtyMark[dirty[k]] = dirtyEpoch;
+            }
+            dirtyMarked = true;
+        }
+        fleet.stepLat[slot] = lat - fleet.lat[slot];
+        fleet.stepLng[slot] = lng - fleet.lng[slot];
+        fleet.lat[slot] = lat;
+        fleet.lng[slot] = lng;
+        fleet.stepKm[slot] = 0;
+        fleet.remainingKm[slot] = GeoKernel.distanceKm(lat, lng, fleet.targetLat[slot], fleet.targetLng[slot]);
+        if (dirtyMark[slot] != dirtyEpoch) {
+            dirtyMark[slot] = dirtyEpoch;
+            dirty[dirtyCount++] = slot;
+        }
+        return dirtyCount;
+    }
+
+    public int dirtySlot(int index) {
+        return dirty[index];
+    }
+
+    public long deliveryId(int slot) {
+        return deliveryIds[slot];
+    }
+
+    public double lat(int slot) {
+        return fleet.lat[slot];
+    }
+
+    public double lng(int slot) {
+        return fleet.lng[slot];
+    }
+
+    public double remainingKm(int slot) {
+        return fleet.remainingKm[slot];
+    }
+
+    public double milestoneKm(int slot) {
+        return fleet.milestoneKm[slot];
+    }
+
+    public void clearMilestone(int slot) {
+        fleet.milestoneKm[slot] = -1;
+    }
+
+    /**
+     * Hướng bay của tick gần nhất (độ, 0 = bắc, theo chiều kim đồng hồ)
+     */
+    public double headingDegrees(int slot) {
+        return GeoKernel.headingDegrees(fleet.lat[slot], fleet.stepLat[slot], fleet.stepLng[slot]);
+    }
+
+    /**
+     * Tốc độ của tick gần nhất (km/h); 0 khi đứng yên
+     */
+    public double speedKmh(int slot, double tickSeconds) {
+        double stepKm = GeoKernel.stepLengthKm(fleet.lat[slot], fleet.stepLat[slot], fleet.stepLng[slot]);
+        return stepKm * 3600.0 / tickSeconds;
+    }
+
+    /**
+     * Đặt vị trí slot (vd. đứng yên tại nhà hàng khi lấy hàng) - bước vừa đi coi như bằng 0
+     */
+    public void moveTo(int slot, double lat, double lng) {
+        fleet.lat[slot] = lat;
+        fleet.lng[slot] = lng;
+        fleet.stepLat[slot] = 0;
+        fleet.stepLng[slot] = 0;
+    }
+
+    /**
+     * Ghi nhận vị trí hiện tại đã được ghi/publish cùng vận tốc của tick gần nhất:
+     * từ đây client ngoại suy theo vận tốc này cho đến lần publish sau
+     */
+    public void markPublished(int slot) {
+        fleet.predictedLat[slot] = fleet.lat[slot];
+        fleet.predictedLng[slot] = fleet.lng[slot];
+        fleet.velocityLat[slot] = fleet.stepLat[slot];
+        fleet.velocityLng[slot] = fleet.stepLng[slot];
+        fleet.silentTicks[slot] = 0;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= fleet.capacity()) {
+            return;
+        }
+        int capacity = Math.max(required, fleet.capacity() * 2);
+        fleet.grow(capacity);
+        deliveryIds = Arrays.copyOf(deliveryIds, capacity);
+        towardsCustomer = Arrays.copyOf(towardsCustomer, capacity);
+        dirty = Arrays.copyOf(dirty, capacity);
+        dirtyMark = Arrays.copyOf(dirtyMark, capacity);
+    }
+}
@@ -1,30 +1,45 @@
 package vn.cnpm.delivery_service.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import vn.cnpm.delivery_service.event.DroneLocationUpdateEvent;
 import vn.cnpm.delivery_service.event.OrderCompletedEvent;
 import vn.cnpm.delivery_service.event.OrderDeliveringEvent;
+import vn.cnpm.delivery_service.geocoding.Geocoder;
 import vn.cnpm.delivery_service.messaging.DeliveryEventPublisher;
 import vn.cnpm.delivery_service.model.Delivery;
 import vn.cnpm.delivery_service.model.DeliveryStatus;
 import vn.cnpm.delivery_service.model.Drone;
 import vn.cnpm.delivery_service.repository.DeliveryRepository;
 import vn.cnpm.delivery_service.repository.DroneRepository;
+import vn.cnpm.delivery_service.telemetry.TelemetryIngestService;
+import vn.cnpm.delivery_service.track.GpsTrackStore;
+import vn.cnpm.delivery_service.util.GeoKernel;
 import vn.cnpm.delivery_service.util.GeoPoint;
+import vn.cnpm.delivery_service.util.SimulationClock;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Optional;
-import java.util.Random;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Service giả lập GPS tracking cho drone
  * Tự động cập nhật vị trí drone mỗi 5 giây
+ * Mỗi tick tương ứng tick-interval-ms x time-compression thời gian giả lập ({@link SimulationClock})
  */
 @Service
 @RequiredArgsConstructor
@@ -33,143 +48,472 @@ public class GpsSimulationService {
 
     private final DeliveryRepository deliveryRepository;
     private final DroneRepository droneRepository;
+    private final DroneService droneService;
     private final DeliveryEventPublisher eventPublisher;
-    private final Random random = new Random();
+    private final ActiveDeliveryRegistry activeDeliveryRegistry;
+    private final PositionWriteBehindBuffer positionBuffer;
+    private final MeterRegistry meterRegistry;
+    private final Geocoder geocoder;
+    private final SimulationClock clock;
+    private final GpsTrackStore trackStore;
+    private final TelemetryIngestService telemetry;
+    private final TransactionTemplate transactionTemplate;
+
+    private final FleetStateEngine fleetState;
+
+    // Route đã tính sẵn theo deliveryId (chỉ giữ cho delivery đang bay)
+    private final Map<Long, Route> routes = new ConcurrentHashMap<>();
+
+    // Chỉ ghi/publish vị trí khi drone lệch khỏi vị trí client đang ngoại suy (dead reckoning từ vị trí,
+    // hướng, tốc độ của lần publish trước) từ ngưỡng này (km); 0 = mọi tick
+    @Value("${delivery.gps.publish-threshold-km:0}")
+    private double publishThresholdKm;
+
+    // Trong bán kính này quanh khách hàng (km) vị trí được publish mọi tick
+    @Value("${delivery.gps.final-approach-km:0.3}")
+    private double finalApproachKm;
+
+    // Số tick tối đa giữa hai lần publish của một drone (heartbeat cho client vừa kết nối)
+    @Value("${delivery.gps.max-silent-ticks:12}")
+    private int maxSilentTicks;
+
+    // Gộp cập nhật vị trí của cả tick thành DroneLocationFrame (drone.location.frame) thay vì từng message
+    @Value("${delivery.gps.location-frames:false}")
+    private boolean locationFrames;
 
     // Tốc độ drone trung bình (km/h)
     private static final double AVERAGE_DRONE_SPEED = 45.0;
 
+    // Chu kỳ tick thật (ms)
+    @Value("${delivery.gps.tick-interval-ms:5000}")
+    private long tickIntervalMs;
+
+    // Thời gian giả lập mỗi tick (giây) = tickIntervalMs x time-compression
+    private double tickSeconds;
+
     // Khoảng cách mỗi lần update (km) - với update interval 5s
     // 45 km/h = 0.0125 km/s => 0.0625 km mỗi 5s
-    private static final double DISTANCE_PER_UPDATE = (AVERAGE_DRONE_SPEED / 3600.0) * 5.0;
+    private double distancePerUpdate;
+
+    // Coi như đã đến đích khi còn cách dưới 50m
+    private static final double ARRIVAL_DISTANCE_KM = 0.05;
+
+    @PostConstruct
+    void init() {
+        tickSeconds = clock.toSimulatedSeconds(tickIntervalMs);
+        distancePerUpdate = (AVERAGE_DRONE_SPEED / 3600.0) * tickSeconds;
+        if (clock.isAccelerated()) {
+            log.info("GPS tick every {} ms covers {} simulated seconds ({} km per step)",
+                    tickIntervalMs, tickSeconds, distancePerUpdate);
+        }
+    }
 
     /**
      * Scheduled task chạy mỗi 5 giây để cập nhật vị trí drone
      */
-    @Scheduled(fixedRate = 5000, initialDelay = 10000) // 5s interval, delay 10s để app khởi động
-    @Transactional
+    @Scheduled(fixedRateString = "${delivery.gps.tick-interval-ms:5000}", initialDelay = 10000) // delay 10s để app khởi động
     public void updateAllActiveDroneLocations() {
-        List<Delivery> activeDeliveries = deliveryRepository.findAll().stream()
-                .filter(d -> d.getStatus() == DeliveryStatus.PICKING_UP
-                          || d.getStatus() == DeliveryStatus.PICKED_UP
-                          || d.getStatus() == DeliveryStatus.DELIVERING)
-                .toList();
-
-        if (!activeDeliveries.isEmpty()) {
-            log.debug("Updating GPS for {} active deliveries", activeDeliveries.size());
+        // Chỉ duyệt các delivery đang bay trong registry, không quét cả bảng deliveries
+        // Vị trí trong registry là bản mới nhất; DB được cập nhật sau bởi PositionWriteBehindBuffer
+        // Registry trả về bản sao: vị trí mới được ghi lại bằng updatePosition, chuyển trạng thái bằng track
+        List<Delivery> activeDeliveries = activeDeliveryRegistry.getInFlightDeliveries();
+
+        if (activeDeliveries.isEmpty()) {
+            telemetry.drainReports((droneCode, sample) -> { });
+            fleetState.clear();
+            routes.clear();
+            trackStore.finishAllExcept(Set.of());
+            return;
+        }
+        log.debug("Updating GPS for {} active deliveries", activeDeliveries.size());
+
+        TickStats stats = new TickStats();
+        stats.startedNanos = System.nanoTime();
+        stats.tickAt = clock.millis();
+
+        // Chuyến nhiều đơn: chỉ điểm giao kế tiếp của mỗi drone chiếm slot, các đơn còn lại đi cùng drone
+        Set<Long> inFlightIds = new HashSet<>();
+        Map<Long, Delivery> deliveriesById = new HashMap<>();
+        Map<Long, List<Delivery>> ridersByLeader = groupTrips(activeDeliveries, deliveriesById, inFlightIds);
+
+        // Slot mới, hoặc delivery vừa đổi pha từ bên ngoài tick (vd. DeliveryLifecycleService) cần đặt lại
+        List<Delivery> toPlace = new ArrayList<>();
+        for (Delivery delivery : deliveriesById.values()) {
+            Boolean towardsCustomer = fleetState.isTowardsCustomer(delivery.getId());
+            if (towardsCustomer == null || towardsCustomer != isTowardsCustomer(delivery)) {
+                toPlace.add(delivery);
+            }
+        }
+        // Bỏ slot/route của delivery đã rời registry (bị hủy, hoàn thành ở nơi khác)
+        fleetState.retainOnly(deliveriesById.keySet());
+        trackStore.finishAllExcept(inFlightIds);
+        if (routes.size() > inFlightIds.size()) {
+            routes.keySet().retainAll(inFlightIds);
         }
 
-        for (Delivery delivery : activeDeliveries) {
+        Map<String, Drone> placedDrones = loadDrones(toPlace, stats);
+        for (Delivery delivery : toPlace) {
+            Drone drone = placedDrones.get(delivery.getDroneId());
+            if (drone == null) {
+                log.warn("Drone not found: {}", delivery.getDroneId());
+                fleetState.remove(delivery.getId());
+                continue;
+            }
+            place(delivery, drone);
+        }
+
+        // Tiến cả đội trong một lượt; chỉ các slot dirty (vùng tiếp cận/đến đích, lệch dự đoán quá ngưỡng,
+        // qua mốc, im lặng quá lâu) được xử lý tiếp
+        int dirtyCount = fleetState.advance(publishThresholdKm, maxSilentTicks);
+        // Drone thật: vị trí lấy theo telemetry mới nhất thay cho bước mô phỏng
+        dirtyCount = applyTelemetry(deliveriesById, dirtyCount);
+
+        // Chỉ slot đến đích cần entity Drone (chuyển trạng thái) - nạp bằng một query IN
+        List<Delivery> arrived = new ArrayList<>();
+        for (int k = 0; k < dirtyCount; k++) {
+            int slot = fleetState.dirtySlot(k);
+            if (fleetState.remainingKm(slot) < ARRIVAL_DISTANCE_KM) {
+                arrived.add(deliveriesById.get(fleetState.deliveryId(slot)));
+            }
+        }
+        Map<String, Drone> arrivedDrones = loadDrones(arrived, stats);
+
+        List<Long> completed = new ArrayList<>();
+        for (int k = 0; k < dirtyCount; k++) {
+            int slot = fleetState.dirtySlot(k);
+            Delivery delivery = deliveriesById.get(fleetState.deliveryId(slot));
+            List<Delivery> riders = ridersByLeader.getOrDefault(delivery.getId(), List.of());
             try {
-                updateDroneLocationForDelivery(delivery);
+                applyStep(delivery, slot, riders, arrivedDrones, completed, stats);
+                if (!riders.isEmpty()) {
+                    applyRiders(delivery, slot, riders, stats);
+                }
             } catch (Exception e) {
                 log.error("Error updating GPS for delivery {}: {}", delivery.getId(), e.getMessage());
             }
         }
+        // Mọi drone đang bay đều được ghi vào hành trình, kể cả slot không dirty
+        appendTrackPoints(stats.tickAt, ridersByLeader);
+
+        for (Long deliveryId : completed) {
+            fleetState.remove(deliveryId);
+            routes.remove(deliveryId);
+            trackStore.finish(deliveryId);
+        }
+
+        // Một message (hoặc vài chunk) cho cả tick thay vì một message mỗi drone
+        if (locationFrames) {
+            stats.publishedBytes += eventPublisher.publishDroneLocationFrame(stats.locationUpdates);
+        }
+
+        recordTickMetrics(activeDeliveries.size(), dirtyCount, stats);
+    }
+
+    private int applyTelemetry(Map<Long, Delivery> deliveriesById, int dirtyCount) {
+        Map<String, Long> deliveryByDrone = new HashMap<>();
+        int[] count = {dirtyCount};
+        telemetry.drainReports((droneCode, sample) -> {
+            if (deliveryByDrone.isEmpty()) {
+                deliveriesById.values().forEach(d -> deliveryByDrone.put(d.getDroneId(), d.getId()));
+            }
+            Long deliveryId = deliveryByDrone.get(droneCode);
+            int slot = deliveryId != null ? fleetState.slotOf(deliveryId) : -1;
+            if (slot >= 0) {
+                count[0] = fleetState.report(slot, sample.lat(), sample.lng(), count[0]);
+            }
+        });
+        return count[0];
+    }
+
+    private void appendTrackPoints(long tickAt, Map<Long, List<Delivery>> ridersByLeader) {
+        if (!trackStore.isEnabled()) {
+            return;
+        }
+        for (int slot = 0; slot < fleetState.size(); slot++) {
+            trackStore.append(fleetState.deliveryId(slot), tickAt, fleetState.lat(slot), fleetState.lng(slot),
+                    fleetState.speedKmh(slot, tickSeconds));
+        }
+        // Đơn đi cùng chuyến có cùng hành trình với drone
+        ridersByLeader.forEach((leaderId, riders) -> {
+            int slot = fleetState.slotOf(leaderId);
+            if (slot < 0) {
+                return;
+            }
+            for (Delivery rider : riders) {
+                trackStore.append(rider.getId(), tickAt, fleetState.lat(slot), fleetState.lng(slot),
+                        fleetState.speedKmh(slot, tickSeconds));
+            }
+        });
     }
 
     /**
-     * Cập nhật vị trí GPS cho một delivery
+     * Tách delivery đang bay thành điểm giao kế tiếp của mỗi drone (leader, chiếm slot)
+     * và các đơn đi cùng chuyến theo stopSequence (riders)
      */
-    private void updateDroneLocationForDelivery(Delivery delivery) {
-        Optional<Drone> droneOpt = droneRepository.findByDroneCode(delivery.getDroneId());
-        if (droneOpt.isEmpty()) {
-            log.warn("Drone not found: {}", delivery.getDroneId());
-            return;
+    private static Map<Long, List<Delivery>> groupTrips(List<Delivery> activeDeliveries,
+                                                        Map<Long, Delivery> leaders, Set<Long> inFlightIds) {
+        Map<String, List<Delivery>> trips = null;
+        for (Delivery delivery : activeDeliveries) {
+            inFlightIds.add(delivery.getId());
+            if (delivery.getStopSequence() == null || delivery.getDroneId() == null) {
+                leaders.put(delivery.getId(), delivery);
+                continue;
+            }
+            if (trips == null) {
+                trips = new HashMap<>();
+            }
+            trips.computeIfAbsent(delivery.getDroneId(), code -> new ArrayList<>()).add(delivery);
+        }
+        if (trips == null) {
+            return Map.of();
+        }
+
+        Map<Long, List<Delivery>> ridersByLeader = new HashMap<>();
+        for (List<Delivery> stops : trips.values()) {
+            stops.sort(Comparator.comparingInt(Delivery::getStopSequence));
+            Delivery leader = stops.get(0);
+            leaders.put(leader.getId(), leader);
+            if (stops.size() > 1) {
+                ridersByLeader.put(leader.getId(), stops.subList(1, stops.size()));
+            }
+        }
+        return ridersByLeader;
+    }
+
+    /**
+     * Đơn đi cùng chuyến: vị trí là vị trí drone, quãng còn lại = quãng tới điểm giao hiện tại
+     * cộng các chặng giữa những điểm giao phía trước
+     */
+    private void applyRiders(Delivery leader, int slot, List<Delivery> riders, TickStats stats) {
+        double lat = fleetState.lat(slot);
+        double lng = fleetState.lng(slot);
+        double heading = fleetState.headingDegrees(slot);
+        double speed = fleetState.speedKmh(slot, tickSeconds);
+        double remaining = fleetState.remainingKm(slot);
+        Delivery previous = leader;
+        for (Delivery rider : riders) {
+            remaining += routeOf(rider, previous).totalKm();
+            previous = rider;
+
+            long etaSeconds = (long) (remaining / AVERAGE_DRONE_SPEED * 3600);
+            rider.setCurrentLat(lat);
+            rider.setCurrentLng(lng);
+            rider.setDistanceRemaining(remaining);
+            rider.setCurrentSpeed(speed);
+            rider.setEstimatedArrival(clock.instant().plusSeconds(etaSeconds));
+            positionBuffer.bufferDeliveryPosition(rider);
+            activeDeliveryRegistry.updatePosition(rider);
+            if (rider.getStatus() != DeliveryStatus.COMPLETED) {
+                publishLocationUpdate(rider, lat, lng, heading, speed, remaining, etaSeconds, stats);
+            }
+        }
+    }
+
+    /**
+     * Số query DB mà một tick đã phát ra (để theo dõi tick giữ O(1) round trip)
+     */
+    private static class TickStats {
+        int reads;
+        int writes;
+        // Cập nhật vị trí gom lại để gửi một frame cuối tick (khi bật location frames)
+        final List<DroneLocationUpdateEvent> locationUpdates = new ArrayList<>();
+        long publishedBytes;
+        // Thời điểm lấy mẫu vị trí của tick (epoch millis, thời gian giả lập)
+        long tickAt;
+        long startedNanos;
+    }
+
+    private void recordTickMetrics(int deliveries, int dirty, TickStats stats) {
+        meterRegistry.summary("delivery.gps.tick.deliveries").record(deliveries);
+        meterRegistry.summary("delivery.gps.tick.dirty").record(dirty);
+        meterRegistry.summary("delivery.gps.tick.queries", "type", "read").record(stats.reads);
+        meterRegistry.summary("delivery.gps.tick.queries", "type", "write").record(stats.writes);
+        meterRegistry.summary("delivery.gps.tick.publish.bytes").record(stats.publishedBytes);
+        meterRegistry.timer("delivery.gps.tick.duration").record(System.nanoTime() - stats.startedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Nạp drone của các delivery bằng một query IN thay vì findByDroneCode cho từng delivery
+     */
+    private Map<String, Drone> loadDrones(List<Delivery> deliveries, TickStats stats) {
+        Set<String> droneCodes = new HashSet<>();
+        for (Delivery delivery : deliveries) {
+            if (delivery.getDroneId() != null) {
+                droneCodes.add(delivery.getDroneId());
+            }
         }
+        Map<String, Drone> drones = new HashMap<>();
+        if (!droneCodes.isEmpty()) {
+            droneRepository.findByDroneCodeIn(droneCodes).forEach(drone -> {
+                positionBuffer.applyPending(drone);
+                drones.put(drone.getDroneCode(), drone);
+            });
+            stats.reads++;
+        }
+        return drones;
+    }
 
-        Drone drone = droneOpt.get();
+    private static boolean isTowardsCustomer(Delivery delivery) {
+        return delivery.getStatus() != DeliveryStatus.PICKING_UP;
+    }
 
-        // Parse địa chỉ thành GPS (giả lập - production nên dùng Geocoding API)
-        GeoPoint restaurantLocation = parseAddressToGPS(delivery.getRestaurantAddress());
-        GeoPoint customerLocation = parseAddressToGPS(delivery.getDeliveryAddress());
+    /**
+     * Đặt slot cho delivery tại vị trí hiện tại của drone, đích theo status
+     */
+    private void place(Delivery delivery, Drone drone) {
+        Route route = routeOf(delivery);
+        double lat = drone.getCurrentLat() != null ? drone.getCurrentLat() : route.restaurantLat();
+        double lng = drone.getCurrentLng() != null ? drone.getCurrentLng() : route.restaurantLng();
+
+        // Drone gửi telemetry thì vị trí chỉ đổi theo báo cáo, không tự bay
+        double stepKm = telemetry.isReporting(drone.getDroneCode()) ? 0 : distancePerUpdate;
+        fleetState.put(delivery.getId(), lat, lng, stepKm);
+        if (isTowardsCustomer(delivery)) {
+            double remaining = GeoKernel.distanceKm(lat, lng, route.customerLat(), route.customerLng());
+            fleetState.retarget(delivery.getId(), route.customerLat(), route.customerLng(), true,
+                    halfwayMilestone(route, remaining), customerApproachKm());
+        } else {
+            fleetState.retarget(delivery.getId(), route.restaurantLat(), route.restaurantLng(), false,
+                    -1, ARRIVAL_DISTANCE_KM);
+        }
+    }
 
-        // Lưu GPS của nhà hàng và khách hàng vào delivery nếu chưa có
+    // Gần khách hàng thì publish mọi tick (client hiển thị chặng cuối chính xác)
+    private double customerApproachKm() {
+        return Math.max(ARRIVAL_DISTANCE_KM, finalApproachKm);
+    }
+
+    // Mốc nửa đường chỉ đặt khi drone chưa qua nửa đường
+    private static double halfwayMilestone(Route route, double remainingKm) {
+        double half = route.totalKm() / 2;
+        return remainingKm > half ? half : -1;
+    }
+
+    /**
+     * Tọa độ cố định của một delivery - tạo một lần, dùng lại mọi tick
+     * totalKm: độ dài chặng bay tới khách hàng (từ nhà hàng, hoặc từ điểm giao trước trong chuyến nhiều đơn)
+     */
+    private record Route(double restaurantLat, double restaurantLng,
+                         double customerLat, double customerLng, double totalKm) {
+    }
+
+    private Route routeOf(Delivery delivery) {
+        return routeOf(delivery, null);
+    }
+
+    /**
+     * previousStop: điểm giao ngay trước trong chuyến nhiều đơn - chặng bay bắt đầu từ khách hàng đó
+     * thay vì từ nhà hàng (null = chặng đầu)
+     */
+    private Route routeOf(Delivery delivery, Delivery previousStop) {
+        Route route = routes.get(delivery.getId());
+        if (route != null) {
+            return route;
+        }
+
+        // Tọa độ nhà hàng/khách đã được geocode khi tạo delivery - tick chỉ đọc lại
+        // Chỉ geocode (qua cache) cho delivery cũ chưa lưu tọa độ, rồi lưu lại để tick sau không cần
         if (delivery.getRestaurantLat() == null || delivery.getRestaurantLng() == null) {
-            delivery.setRestaurantLat(restaurantLocation.getLat());
-            delivery.setRestaurantLng(restaurantLocation.getLng());
+            GeoPoint point = parseAddressToGPS(delivery.getRestaurantAddress());
+            delivery.setRestaurantLat(point.getLat());
+            delivery.setRestaurantLng(point.getLng());
         }
         if (delivery.getDeliveryLat() == null || delivery.getDeliveryLng() == null) {
-            delivery.setDeliveryLat(customerLocation.getLat());
-            delivery.setDeliveryLng(customerLocation.getLng());
+            GeoPoint point = parseAddressToGPS(delivery.getDeliveryAddress());
+            delivery.setDeliveryLat(point.getLat());
+            delivery.setDeliveryLng(point.getLng());
         }
 
-        // Lấy vị trí hiện tại của drone
-        GeoPoint currentLocation = new GeoPoint(
-                drone.getCurrentLat() != null ? drone.getCurrentLat() : restaurantLocation.getLat(),
-                drone.getCurrentLng() != null ? drone.getCurrentLng() : restaurantLocation.getLng()
-        );
+        double restaurantLat = delivery.getRestaurantLat();
+        double restaurantLng = delivery.getRestaurantLng();
+        double customerLat = delivery.getDeliveryLat();
+        double customerLng = delivery.getDeliveryLng();
+        double originLat = restaurantLat;
+        double originLng = restaurantLng;
+        if (previousStop != null) {
+            Route previous = routeOf(previousStop);
+            originLat = previous.customerLat();
+            originLng = previous.customerLng();
+        }
+        route = new Route(restaurantLat, restaurantLng, customerLat, customerLng,
+                GeoKernel.distanceKm(originLat, originLng, customerLat, customerLng));
+        routes.put(delivery.getId(), route);
+        return route;
+    }
 
-        GeoPoint nextLocation;
-        double distanceRemaining;
+    /**
+     * Ghi kết quả tick của một slot dirty vào delivery/drone: chuyển trạng thái, buffer vị trí, publish
+     */
+    private void applyStep(Delivery delivery, int slot, List<Delivery> riders, Map<String, Drone> arrivedDrones,
+                           List<Long> completed, TickStats stats) {
+        Route route = routeOf(delivery);
+        double nextLat = fleetState.lat(slot);
+        double nextLng = fleetState.lng(slot);
+        double distanceRemaining = fleetState.remainingKm(slot);
         boolean statusChanged = false;
-        DeliveryStatus oldStatus = delivery.getStatus();
+        Drone drone = null;
 
-        // Xác định đích đến dựa vào status
-        if (delivery.getStatus() == DeliveryStatus.PICKING_UP) {
-            // Đang bay đến nhà hàng
-            nextLocation = moveTowards(currentLocation, restaurantLocation, DISTANCE_PER_UPDATE);
-            distanceRemaining = nextLocation.distanceTo(restaurantLocation);
+        if (distanceRemaining < ARRIVAL_DISTANCE_KM) { // < 50m
+            drone = arrivedDrones.get(delivery.getDroneId());
+            if (drone == null) {
+                log.warn("Drone not found: {}", delivery.getDroneId());
+                return;
+            }
 
-            // Nếu đã đến nhà hàng, chuyển status
-            if (distanceRemaining < 0.05) { // < 50m
+            if (delivery.getStatus() == DeliveryStatus.PICKING_UP) {
+                // Đã đến nhà hàng, chuyển status
                 delivery.setStatus(DeliveryStatus.PICKED_UP);
-                delivery.setPickedUpAt(Instant.now());
+                delivery.setPickedUpAt(clock.instant());
                 log.info("Drone {} picked up order {} from restaurant",
                         drone.getDroneCode(), delivery.getOrderId());
 
                 // Tự động chuyển sang DELIVERING
                 delivery.setStatus(DeliveryStatus.DELIVERING);
-                delivery.setDeliveringAt(Instant.now());
-                nextLocation = restaurantLocation; // Đứng yên tại nhà hàng
+                delivery.setDeliveringAt(clock.instant());
+                // Đứng yên tại nhà hàng, tick sau bay về phía khách
+                nextLat = route.restaurantLat();
+                nextLng = route.restaurantLng();
+                fleetState.moveTo(slot, nextLat, nextLng);
+                fleetState.retarget(slot, route.customerLat(), route.customerLng(), true,
+                        halfwayMilestone(route, route.totalKm()), customerApproachKm());
                 statusChanged = true;
-                
-                // Gửi thông báo bắt đầu giao hàng
-                publishDeliveringEvent(delivery, nextLocation);
-            }
-
-        } else {
-            // Đang giao hàng cho khách
-            nextLocation = moveTowards(currentLocation, customerLocation, DISTANCE_PER_UPDATE);
-            distanceRemaining = nextLocation.distanceTo(customerLocation);
-
-            // Nếu đã đến khách, hoàn thành
-            if (distanceRemaining < 0.05) { // < 50m
+            } else {
+                // Đã đến khách, hoàn thành
                 delivery.setStatus(DeliveryStatus.COMPLETED);
-                delivery.setCompletedAt(Instant.now());
+                delivery.setCompletedAt(clock.instant());
 
-                // Release drone
-                drone.markAsAvailable();
+                // Release drone (chuyến nhiều đơn: chỉ sau điểm giao cuối, drone bay tiếp tới điểm kế tiếp)
+                if (riders.isEmpty()) {
+                    drone.markAsAvailable();
+                }
                 drone.setTotalDeliveries(drone.getTotalDeliveries() + 1);
-                double totalDistance = restaurantLocation.distanceTo(customerLocation);
+                // Quãng bay của chặng này (từ nhà hàng hoặc điểm giao trước)
+                double totalDistance = route.totalKm();
                 drone.setTotalDistance(drone.getTotalDistance() + totalDistance);
                 drone.consumeBattery(totalDistance);
 
                 log.info("Drone {} completed delivery for order {}",
                         drone.getDroneCode(), delivery.getOrderId());
-                        
+
                 statusChanged = true;
-                
-                // Gửi thông báo hoàn thành
-                publishCompletedEvent(delivery, customerLocation);
             }
+            drone.updateLocation(nextLat, nextLng);
         }
 
-        // Cập nhật GPS
-        drone.updateLocation(nextLocation.getLat(), nextLocation.getLng());
-        delivery.setCurrentLat(nextLocation.getLat());
-        delivery.setCurrentLng(nextLocation.getLng());
+        // Cập nhật GPS (hướng/tốc độ theo bước vừa đi - client dùng để ngoại suy giữa hai lần publish)
+        double heading = fleetState.headingDegrees(slot);
+        double speed = fleetState.speedKmh(slot, tickSeconds);
+        delivery.setCurrentLat(nextLat);
+        delivery.setCurrentLng(nextLng);
         delivery.setDistanceRemaining(distanceRemaining);
-        delivery.setCurrentSpeed(AVERAGE_DRONE_SPEED);
+        delivery.setCurrentSpeed(speed);
 
-        double totalDistance=restaurantLocation.distanceTo(customerLocation);
-        double distanceCovered=((totalDistance - distanceRemaining)/ totalDistance) * 100;
-
-        if (distanceCovered >= 50 && distanceCovered < 55 && 
+        double milestone = fleetState.milestoneKm(slot);
+        if (milestone >= 0 && distanceRemaining <= milestone &&
             delivery.getStatus() == DeliveryStatus.DELIVERING) {
-    
-    // Gửi thông báo nửa đường
-        publishHalfwayNotification(delivery, nextLocation, distanceRemaining);
+            // Gửi thông báo nửa đường
+            publishHalfwayNotification(delivery, nextLat, nextLng, distanceRemaining, heading, speed, stats.tickAt);
+            fleetState.clearMilestone(slot);
         }
 
         // Tính ETA
@@ -177,25 +521,54 @@ public class GpsSimulationService {
         if (distanceRemaining > 0) {
             double hoursRemaining = distanceRemaining / AVERAGE_DRONE_SPEED;
             estimatedArrivalSeconds = (long) (hoursRemaining * 3600);
-            delivery.setEstimatedArrival(Instant.now().plusSeconds(estimatedArrivalSeconds));
+            delivery.setEstimatedArrival(clock.instant().plusSeconds(estimatedArrivalSeconds));
         }
 
-        droneRepository.save(drone);
-        deliveryRepository.save(delivery);
+        if (statusChanged) {
+            // Chuyển trạng thái (PICKED_UP/DELIVERING, COMPLETED): drone và delivery ghi trong cùng một transaction,
+            // spatial index và registry chỉ cập nhật sau commit. Lỗi thì rollback cả hai: registry vẫn giữ status cũ
+            // nên tick sau đặt lại slot và thử lại
+            // Bỏ vị trí cũ đang chờ flush, nếu không flush sau sẽ ghi đè vị trí cuối vừa lưu
+            positionBuffer.discard(delivery.getId(), delivery.getDroneId());
+            Drone transitioned = drone;
+            transactionTemplate.executeWithoutResult(status -> {
+                droneService.saveAndIndex(transitioned);
+                activeDeliveryRegistry.track(deliveryRepository.save(delivery));
+            });
+            stats.writes += 2;
+
+            // Event chỉ gửi sau khi đã commit
+            if (delivery.getStatus() == DeliveryStatus.COMPLETED) {
+                completed.add(delivery.getId());
+                publishCompletedEvent(delivery, route.customerLat(), route.customerLng());
+            } else {
+                publishDeliveringEvent(delivery, nextLat, nextLng);
+            }
+        } else {
+            // Chỉ thay đổi vị trí: giữ trong bộ nhớ, flush bằng JDBC batch theo chu kỳ
+            positionBuffer.bufferDronePosition(delivery.getDroneId(), nextLat, nextLng);
+            positionBuffer.bufferDeliveryPosition(delivery);
+            // Tick làm việc trên bản sao - ghi vị trí mới về registry
+            activeDeliveryRegistry.updatePosition(delivery);
+        }
+        fleetState.markPublished(slot);
 
         // Gửi GPS update real-time (nếu không phải lúc chuyển status)
         if (!statusChanged && delivery.getStatus() != DeliveryStatus.COMPLETED) {
-            publishLocationUpdate(delivery, nextLocation, distanceRemaining, estimatedArrivalSeconds);
+            publishLocationUpdate(delivery, nextLat, nextLng, heading, speed,
+                    distanceRemaining, estimatedArrivalSeconds, stats);
         }
 
-        log.debug("Drone {} at {} - Distance remaining: {:.2f} km",
-                drone.getDroneCode(), nextLocation, distanceRemaining);
+        if (log.isDebugEnabled()) {
+            log.debug("Drone {} at ({}, {}) - Distance remaining: {} km",
+                    delivery.getDroneId(), nextLat, nextLng, distanceRemaining);
+        }
     }
 
     /**
      * Gửi thông báo bắt đầu giao hàng
      */
-    private void publishDeliveringEvent(Delivery delivery, GeoPoint currentLocation) {
+    private void publishDeliveringEvent(Delivery delivery, double currentLat, double currentLng) {
         try {
             double hoursRemaining = delivery.getDistanceRemaining() / AVERAGE_DRONE_SPEED;
             double estimatedMinutes = hoursRemaining * 60;
@@ -203,8 +576,8 @@ public class GpsSimulationService {
             OrderDeliveringEvent event = OrderDeliveringEvent.builder()
                     .orderId(delivery.getOrderId())
                     .droneId(delivery.getDroneId())
-                    .currentLat(currentLocation.getLat())
-                    .currentLng(currentLocation.getLng())
+                    .currentLat(currentLat)
+                    .currentLng(currentLng)
                     .estimatedMinutes(estimatedMinutes)
                     .build();
                     
@@ -217,14 +590,14 @@ public class GpsSimulationService {
     /**
      * Gửi thông báo hoàn thành giao hàng
      */
-    private void publishCompletedEvent(Delivery delivery, GeoPoint deliveryLocation) {
+    private void publishCompletedEvent(Delivery delivery, double deliveryLat, double deliveryLng) {
         try {
             OrderCompletedEvent event = OrderCompletedEvent.builder()
                     .orderId(delivery.getOrderId())
                     .droneId(delivery.getDroneId())
                     .completedAt(delivery.getCompletedAt())
-                    .deliveryLat(deliveryLocation.getLat())
-                    .deliveryLng(deliveryLocation.getLng())
+                    .deliveryLat(deliveryLat)
+                    .deliveryLng(deliveryLng)
                     .build();
                     
             eventPublisher.publishOrderCompletedEvent(event);
@@ -236,60 +609,37 @@ public class GpsSimulationService {
     /**
      * Gửi cập nhật vị trí GPS real-time
      */
-    private void publishLocationUpdate(Delivery delivery, GeoPoint location, 
-                                      double distanceRemaining, long etaSeconds) {
+    private void publishLocationUpdate(Delivery delivery, double lat, double lng, double heading, double speed,
+                                      double distanceRemaining, long etaSeconds, TickStats stats) {
         try {
             DroneLocationUpdateEvent event = DroneLocationUpdateEvent.builder()
                     .orderId(delivery.getOrderId())
                     .droneId(delivery.getDroneId())
                     .status(delivery.getStatus().name())
-                    .currentLat(location.getLat())
-                    .currentLng(location.getLng())
+                    .currentLat(lat)
+                    .currentLng(lng)
                     .distanceRemaining(distanceRemaining)
-                    .currentSpeed(AVERAGE_DRONE_SPEED)
+                    .currentSpeed(speed)
+                    .heading(heading)
                     .estimatedArrivalSeconds(etaSeconds)
+                    .timestamp(stats.tickAt)
                     .build();
                     
-            eventPublisher.publishDroneLocationUpdate(event);
+            if (locationFrames) {
+                stats.locationUpdates.add(event);
+            } else {
+                stats.publishedBytes += eventPublisher.publishDroneLocationUpdate(event);
+            }
         } catch (Exception e) {
             log.error("Failed to publish location update for order {}", delivery.getOrderId(), e);
         }
     }
 
     /**
-     * Di chuyển từ điểm A đến B một khoảng cách nhất định
-     */
-    private GeoPoint moveTowards(GeoPoint from, GeoPoint to, double maxDistance) {
-        double totalDistance = from.distanceTo(to);
-
-        if (totalDistance <= maxDistance) {
-            return to; // Đã đến đích
-        }
-
-        double ratio = maxDistance / totalDistance;
-        return from.interpolate(to, ratio);
-    }
-
-    /**
-     * Parse địa chỉ thành GPS (giả lập)
-     * Production: Dùng Google Geocoding API hoặc OpenStreetMap Nominatim
+     * Parse địa chỉ thành GPS qua geocoder dùng chung (có cache LRU)
      */
     public GeoPoint parseAddressToGPS(String address) {
-        // Giả lập: Random GPS trong khu vực HCM
-        // Quận 1: 10.7769, 106.7009
-        // Thêm random offset trong phạm vi ±0.05 degrees (~5km)
-
-        double baseLat = 10.7769;
-        double baseLng = 106.7009;
-
-        // Hash address để có kết quả consistent
-        int hash = address != null ? address.hashCode() : 0;
-        Random r = new Random(hash);
-
-        double lat = baseLat + (r.nextDouble() - 0.5) * 0.1;  // ±5km
-        double lng = baseLng + (r.nextDouble() - 0.5) * 0.1;
-
-        return new GeoPoint(lat, lng);
+        return geocoder.geocode(address);
     }
 
     /**
@@ -298,7 +648,7 @@ public class GpsSimulationService {
     public Instant calculateETA(double distanceKm, double speedKmh) {
         double hours = distanceKm / speedKmh;
         long seconds = (long) (hours * 3600);
-        return Instant.now().plusSeconds(seconds);
+        return clock.instant().plusSeconds(seconds);
     }
 
     /**
@@ -309,8 +659,8 @@ public class GpsSimulationService {
         GeoPoint pointB = parseAddressToGPS(addressB);
         return pointA.distanceTo(pointB);
     }
-    private void publishHalfwayNotification(Delivery delivery, GeoPoint currentLocation, 
-                                        double distanceRemaining) {
+    private void publishHalfwayNotification(Delivery delivery, double currentLat, double currentLng,
+                                        double distanceRemaining, double heading, double speed, long sampledAt) {
     try {
         // Option 1: Tạo event mới (DroneHalfwayEvent)
         // Option 2: Dùng lại DroneLocationUpdateEvent với flag đặc biệt
@@ -322,11 +672,13 @@ public class GpsSimulationService {
                 .orderId(delivery.getOrderId())
                 .droneId(delivery.getDroneId())
                 .status("HALFWAY") // Đánh dấu là nửa đường
-                .currentLat(currentLocation.getLat())
-                .currentLng(currentLocation.getLng())
+                .currentLat(currentLat)
+                .currentLng(currentLng)
                 .distanceRemaining(distanceRemaining)
-                .currentSpeed(AVERAGE_DRONE_SPEED)
+                .currentSpeed(speed)
+                .heading(heading)
                 .estimatedArrivalSeconds(eta)
+                .timestamp(sampledAt)
                 .build();
                 
         eventPublisher.publishDroneLocationUpdate(event);
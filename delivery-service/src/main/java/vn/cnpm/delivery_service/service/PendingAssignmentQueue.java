@@ -0,0 +1,216 @@
+package vn.cnpm.delivery_service.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import vn.cnpm.delivery_service.model.Delivery;
+import vn.cnpm.delivery_service.model.DeliveryStatus;
+import vn.cnpm.delivery_service.util.SimulationClock;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Hàng đợi delivery chờ drone khi không còn drone rảnh (chế độ greedy)
+ * Delivery vẫn được lưu PENDING (chưa có drone) nên hàng đợi được dựng lại từ DB khi khởi động;
+ * message OrderReadyEvent được ack thay vì requeue lặp lại
+ *
+ * Thứ tự: độ ưu tiên cao trước, cùng độ ưu tiên thì chờ lâu trước. Mỗi mức ưu tiên tương đương
+ * priority-aging-seconds thời gian chờ nên đơn ưu tiên thấp không bị bỏ đói
+ * (khóa sắp xếp createdAt - priority x aging không đổi theo thời gian)
+ *
+ * Drone vừa sẵn sàng (markAsAvailable, chargeBattery... qua DroneSpatialIndex) kích hoạt gán ngay
+ * cho đầu hàng đợi trên một thread riêng, sau khi transaction của drone commit
+ */
+@Component
+@Slf4j
+public class PendingAssignmentQueue {
+
+    private final DroneService droneService;
+    private final DeliveryLifecycleService deliveryLifecycleService;
+    private final ActiveDeliveryRegistry activeDeliveryRegistry;
+    private final BatchDispatcher batchDispatcher;
+    private final SimulationClock clock;
+    private final long agingMillis;
+
+    private final PriorityQueue<Entry> queue = new PriorityQueue<>(
+            Comparator.comparingLong(Entry::sortKey).thenComparingLong(Entry::deliveryId));
+    private final Map<Long, Entry> entries = new HashMap<>();
+
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final ExecutorService matcher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "pending-assignment");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Timer waitTimer;
+
+    private record Entry(long deliveryId, Instant waitingSince, long sortKey) {
+    }
+
+    public PendingAssignmentQueue(DroneService droneService,
+                                  DeliveryLifecycleService deliveryLifecycleService,
+                                  ActiveDeliveryRegistry activeDeliveryRegistry,
+                                  BatchDispatcher batchDispatcher,
+                                  DroneSpatialIndex droneSpatialIndex,
+                                  SimulationClock clock,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${delivery.assignment.priority-aging-seconds:60}") long agingSeconds) {
+        this.droneService = droneService;
+        this.deliveryLifecycleService = deliveryLifecycleService;
+        this.activeDeliveryRegistry = activeDeliveryRegistry;
+        this.batchDispatcher = batchDispatcher;
+        this.clock = clock;
+        this.agingMillis = TimeUnit.SECONDS.toMillis(agingSeconds);
+        this.waitTimer = meterRegistry.timer("delivery.assignment.queue.wait");
+        meterRegistry.gauge("delivery.assignment.queue.depth", this, PendingAssignmentQueue::size);
+        meterRegistry.gauge("delivery.assignment.queue.oldest.wait.seconds", this,
+                PendingAssignmentQueue::oldestWaitSeconds);
+        droneSpatialIndex.addAvailabilityListener(droneCode -> onDroneAvailable());
+    }
+
+    /**
+     * Khởi động lại: nạp các delivery PENDING chưa có drone (chế độ batch do BatchDispatcher tự nạp)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (batchDispatcher.isEnabled()) {
+            return;
+        }
+        activeDeliveryRegistry.getActiveDeliveries().stream()
+                .filter(d -> d.getStatus() == DeliveryStatus.PENDING && d.getDroneId() == null)
+                .forEach(this::add);
+        if (size() > 0) {
+            log.info("Pending assignment queue restored with {} deliveries", size());
+            signal();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        matcher.shutdownNow();
+    }
+
+    /**
+     * Đưa delivery PENDING (đã lưu) vào hàng đợi chờ drone
+     */
+    public void enqueue(Delivery delivery) {
+        add(delivery);
+        log.info("No drone available for order {}, queued ({} waiting)", delivery.getOrderId(), size());
+        // Drone có thể vừa rảnh giữa lúc gán thất bại và lúc vào hàng đợi
+        signal();
+    }
+
+    public synchronized int size() {
+        return queue.size();
+    }
+
+    public synchronized double oldestWaitSeconds() {
+        Instant now = clock.instant();
+        long oldest = 0;
+        for (Entry entry : queue) {
+            oldest = Math.max(oldest, Duration.between(entry.waitingSince(), now).toMillis());
+        }
+        return oldest / 1000.0;
+    }
+
+    /**
+     * Lưới an toàn: drone sẵn sàng mà không đi qua index (sửa DB trực tiếp, rebuild) vẫn được dùng
+     */
+    @Scheduled(fixedDelayString = "${delivery.assignment.retry-interval-ms:5000}")
+    public void retry() {
+        if (size() > 0) {
+            signal();
+        }
+    }
+
+    private synchronized void add(Delivery delivery) {
+        if (delivery.getId() == null || entries.containsKey(delivery.getId())) {
+            return;
+        }
+        Instant since = delivery.getCreatedAt() != null ? delivery.getCreatedAt() : clock.instant();
+        int priority = delivery.getPriority() != null ? delivery.getPriority() : 0;
+        Entry entry = new Entry(delivery.getId(), since, since.toEpochMilli() - priority * agingMillis);
+        entries.put(entry.deliveryId(), entry);
+        queue.add(entry);
+    }
+
+    private synchronized Entry peek() {
+        return queue.peek();
+    }
+
+    private synchronized void remove(Entry entry) {
+        queue.remove(entry);
+        entries.remove(entry.deliveryId());
+    }
+
+    private void onDroneAvailable() {
+        if (size() == 0) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    signal();
+                }
+            });
+        } else {
+            signal();
+        }
+    }
+
+    private void signal() {
+        if (drainScheduled.compareAndSet(false, true)) {
+            matcher.execute(this::drain);
+        }
+    }
+
+    /**
+     * Gán drone cho đầu hàng đợi đến khi hết drone rảnh hoặc hết delivery chờ
+     */
+    private void drain() {
+        drainScheduled.set(false);
+        Entry head;
+        while ((head = peek()) != null) {
+            Delivery delivery = activeDeliveryRegistry.find(head.deliveryId()).orElse(null);
+            if (delivery == null || delivery.getStatus() != DeliveryStatus.PENDING || delivery.getDroneId() != null) {
+                remove(head); // Đã bị hủy hoặc được gán ở nơi khác
+                continue;
+            }
+
+            Optional<Delivery> assigned;
+            try {
+                assigned = droneService.tryAssignDrone(delivery);
+            } catch (Exception e) {
+                log.error("Failed to assign queued delivery {}: {}", head.deliveryId(), e.getMessage());
+                return; // Thử lại ở lần kích hoạt sau
+            }
+            if (assigned.isEmpty()) {
+                return; // Vẫn chưa có drone
+            }
+
+            remove(head);
+            waitTimer.record(Duration.between(head.waitingSince(), clock.instant()));
+            log.info("Queued order {} assigned to drone {}", delivery.getOrderId(), assigned.get().getDroneId());
+            deliveryLifecycleService.start(assigned.get());
+        }
+    }
+}
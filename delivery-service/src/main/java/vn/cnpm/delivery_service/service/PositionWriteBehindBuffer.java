@@ -0,0 +1,230 @@
+package vn.cnpm.delivery_service.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import vn.cnpm.delivery_service.model.Delivery;
+import vn.cnpm.delivery_service.model.Drone;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind cho vị trí GPS của drone và delivery
+ * GPS tick chỉ ghi vị trí vào bộ nhớ, buffer flush xuống MySQL bằng JDBC batch UPDATE theo chu kỳ
+ * Các chuyển trạng thái (PICKED_UP, COMPLETED...) vẫn được lưu đồng bộ qua repository: trước khi lưu, caller gọi
+ * discard để bỏ vị trí đang chờ, nếu không lần flush sau sẽ ghi vị trí cũ đè lên vị trí vừa lưu
+ * flush và discard loại trừ nhau (flushLock): discard chờ lần flush đang chạy xong (kể cả trả lại buffer khi lỗi)
+ * nên không có vị trí cũ nào được ghi/đưa lại vào buffer sau khi caller đã lưu đồng bộ
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PositionWriteBehindBuffer {
+
+    private static final String UPDATE_DELIVERY_POSITION_SQL =
+            "UPDATE deliveries SET current_lat = ?, current_lng = ?, distance_remaining = ?, " +
+            "current_speed = ?, estimated_arrival = ? WHERE id = ?";
+
+    private static final String UPDATE_DRONE_POSITION_SQL =
+            "UPDATE drones SET current_lat = ?, current_lng = ?, battery_level = COALESCE(?, battery_level), " +
+            "updated_at = ? WHERE drone_code = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // Chỉ giữ vị trí mới nhất cho mỗi delivery/drone - các tick trung gian được gộp lại
+    private final Map<Long, DeliveryPosition> pendingDeliveries = new ConcurrentHashMap<>();
+    private final Map<String, DronePosition> pendingDrones = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    record DeliveryPosition(double lat, double lng, double distanceRemaining,
+                            double speed, Instant estimatedArrival) {
+    }
+
+    // batteryLevel null: giữ nguyên pin trong DB
+    record DronePosition(double lat, double lng, Integer batteryLevel, Instant updatedAt) {
+    }
+
+    /**
+     * Ghi nhận vị trí hiện tại của delivery (chưa ghi DB)
+     */
+    public void bufferDeliveryPosition(Delivery delivery) {
+        if (delivery.getId() == null || delivery.getCurrentLat() == null || delivery.getCurrentLng() == null) {
+            return;
+        }
+        pendingDeliveries.put(delivery.getId(), new DeliveryPosition(
+                delivery.getCurrentLat(),
+                delivery.getCurrentLng(),
+                delivery.getDistanceRemaining() != null ? delivery.getDistanceRemaining() : 0.0,
+                delivery.getCurrentSpeed() != null ? delivery.getCurrentSpeed() : 0.0,
+                delivery.getEstimatedArrival()));
+    }
+
+    /**
+     * Ghi nhận vị trí hiện tại của drone (chưa ghi DB)
+     */
+    public void bufferDronePosition(String droneCode, double lat, double lng) {
+        // Giữ mức pin telemetry chưa flush nếu có
+        pendingDrones.compute(droneCode, (code, old) ->
+                new DronePosition(lat, lng, old != null ? old.batteryLevel() : null, Instant.now()));
+    }
+
+    /**
+     * Ghi nhận vị trí và pin do drone báo về (telemetry), chưa ghi DB
+     * updated_at là giờ server (ts của drone có thể lệch hoặc sai), như bufferDronePosition
+     */
+    public void bufferDroneTelemetry(String droneCode, double lat, double lng, Integer batteryLevel) {
+        pendingDrones.compute(droneCode, (code, old) -> new DronePosition(lat, lng,
+                batteryLevel != null ? batteryLevel : old != null ? old.batteryLevel() : null, Instant.now()));
+    }
+
+    /**
+     * Áp vị trí chưa flush lên entity vừa đọc từ DB, tránh vị trí bị lùi về giá trị cũ
+     */
+    public void applyPending(Delivery delivery) {
+        if (delivery == null || delivery.getId() == null) {
+            return;
+        }
+        DeliveryPosition position = pendingDeliveries.get(delivery.getId());
+        if (position != null) {
+            delivery.setCurrentLat(position.lat());
+            delivery.setCurrentLng(position.lng());
+            delivery.setDistanceRemaining(position.distanceRemaining());
+            delivery.setCurrentSpeed(position.speed());
+            delivery.setEstimatedArrival(position.estimatedArrival());
+        }
+    }
+
+    /**
+     * Áp vị trí chưa flush lên drone vừa đọc từ DB
+     */
+    public void applyPending(Drone drone) {
+        if (drone == null) {
+            return;
+        }
+        DronePosition position = pendingDrones.get(drone.getDroneCode());
+        if (position != null) {
+            drone.setCurrentLat(position.lat());
+            drone.setCurrentLng(position.lng());
+            if (position.batteryLevel() != null) {
+                drone.setBatteryLevel(position.batteryLevel());
+            }
+        }
+    }
+
+    /**
+     * Áp vị trí chưa flush lên delivery rồi bỏ khỏi buffer - gọi ngay trước khi lưu đồng bộ delivery
+     */
+    public void applyAndDiscard(Delivery delivery) {
+        if (delivery == null || delivery.getId() == null) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            applyPending(delivery);
+            pendingDeliveries.remove(delivery.getId());
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Bỏ vị trí chưa flush của delivery và drone - gọi ngay trước khi lưu đồng bộ cả hai (entity đã có vị trí mới nhất)
+     * Chờ nếu đang flush (chỉ xảy ra khi chuyển trạng thái trùng lúc flush)
+     */
+    public void discard(Long deliveryId, String droneCode) {
+        flushLock.lock();
+        try {
+            if (deliveryId != null) {
+                pendingDeliveries.remove(deliveryId);
+            }
+            if (droneCode != null) {
+                pendingDrones.remove(droneCode);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    public int pendingCount() {
+        return pendingDeliveries.size() + pendingDrones.size();
+    }
+
+    /**
+     * Flush vị trí xuống DB bằng JDBC batch UPDATE
+     * Chu kỳ cấu hình bằng delivery.gps.flush-interval-ms
+     */
+    @Scheduled(fixedDelayString = "${delivery.gps.flush-interval-ms:30000}",
+               initialDelayString = "${delivery.gps.flush-interval-ms:30000}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            flushLocked();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flushLocked() {
+        Map<Long, DeliveryPosition> deliveries = drain(pendingDeliveries);
+        Map<String, DronePosition> drones = drain(pendingDrones);
+        if (deliveries.isEmpty() && drones.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> deliveryArgs = new ArrayList<>(deliveries.size());
+        deliveries.forEach((id, p) -> deliveryArgs.add(new Object[]{
+                p.lat(), p.lng(), p.distanceRemaining(), p.speed(),
+                p.estimatedArrival() != null ? Timestamp.from(p.estimatedArrival()) : null,
+                id}));
+
+        List<Object[]> droneArgs = new ArrayList<>(drones.size());
+        drones.forEach((code, p) -> droneArgs.add(new Object[]{
+                p.lat(), p.lng(), p.batteryLevel(), Timestamp.from(p.updatedAt()), code}));
+
+        try {
+            if (!deliveryArgs.isEmpty()) {
+                jdbcTemplate.batchUpdate(UPDATE_DELIVERY_POSITION_SQL, deliveryArgs);
+            }
+            if (!droneArgs.isEmpty()) {
+                jdbcTemplate.batchUpdate(UPDATE_DRONE_POSITION_SQL, droneArgs);
+            }
+            log.debug("Flushed {} delivery and {} drone positions", deliveryArgs.size(), droneArgs.size());
+        } catch (Exception e) {
+            log.error("Failed to flush GPS positions, will retry next cycle: {}", e.getMessage());
+            // Trả lại buffer, trừ khi tick đã ghi vị trí mới hơn
+            // (lưu đồng bộ sau đó sẽ discard phần trả lại vì discard chờ flush xong)
+            deliveries.forEach(pendingDeliveries::putIfAbsent);
+            drones.forEach(pendingDrones::putIfAbsent);
+        }
+    }
+
+    /**
+     * Lấy ra toàn bộ giá trị đang chờ; chỉ xóa đúng giá trị vừa đọc
+     * để vị trí mà tick ghi trong lúc flush được giữ lại cho lần sau
+     */
+    private static <K, V> Map<K, V> drain(Map<K, V> pending) {
+        Map<K, V> drained = new HashMap<>();
+        for (Map.Entry<K, V> entry : pending.entrySet()) {
+            if (pending.remove(entry.getKey(), entry.getValue())) {
+                drained.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return drained;
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        log.info("Flushing {} pending GPS positions before shutdown", pendingCount());
+        flush();
+    }
+}
@@ -0,0 +1,352 @@
+package vn.cnpm.delivery_service.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import vn.cnpm.delivery_service.model.Delivery;
+import vn.cnpm.delivery_service.repository.DeliveryRepository;
+import vn.cnpm.delivery_service.repository.DroneRepository;
+import vn.cnpm.delivery_service.util.SimulationClock;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bay trước tới nhà hàng khi đơn vừa được thanh toán (order.paid), trước khi có OrderReadyEvent
+ * Thời gian từ lúc thanh toán đến lúc OrderReadyEvent tới được ước lượng theo từng nhà hàng (EWMA);
+ * drone gần nhất cất cánh sao cho tới nhà hàng vừa lúc đơn sẵn sàng (trừ margin-seconds)
+ *
+ * Giữ chỗ mềm chỉ nằm trong bộ nhớ: drone bị lấy khỏi DroneSpatialIndex (không gán cho đơn khác)
+ * nhưng vẫn AVAILABLE trong DB; khi OrderReadyEvent tới, DroneService giữ chỗ thật bằng CAS như thường.
+ * Đơn bị hủy hoặc quá hold-seconds mà chưa sẵn sàng thì drone được trả lại index tại vị trí hiện tại.
+ * Khởi động lại thì mất các giữ chỗ mềm (drone vẫn AVAILABLE nên được nạp lại vào index bình thường)
+ *
+ * Chỉ chạy ở chế độ greedy; vị trí nhà hàng lấy từ các delivery trước đó (order.paid không mang địa chỉ)
+ */
+@Service
+@Slf4j
+public class PreDispatchService {
+
+    // Tốc độ drone trung bình (km/h), như DroneRelocator
+    private static final double AVERAGE_DRONE_SPEED = 45.0;
+    private static final int NEAREST_CANDIDATES = 5;
+    private static final String REASON = "predispatch";
+
+    private final DeliveryRepository deliveryRepository;
+    private final DroneRepository droneRepository;
+    private final DroneSpatialIndex droneSpatialIndex;
+    private final DroneRelocator droneRelocator;
+    private final PositionWriteBehindBuffer positionBuffer;
+    private final SimulationClock clock;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final double defaultPrepSeconds;
+    private final double smoothing;
+    private final double marginSeconds;
+    private final double holdSeconds;
+
+    // restaurantId -> {lat, lng}
+    private final Map<Long, double[]> restaurantLocations = new ConcurrentHashMap<>();
+    // restaurantId -> thời gian thanh toán -> sẵn sàng ước lượng (giây giả lập)
+    private final Map<Long, Double> prepSeconds = new ConcurrentHashMap<>();
+    // orderId -> giữ chỗ mềm
+    private final Map<Long, Reservation> reservations = new ConcurrentHashMap<>();
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    private static final class Reservation {
+        final long orderId;
+        final long restaurantId;
+        final Instant paidAt;
+        String droneCode;
+        ScheduledFuture<?> timer;
+        boolean done;
+
+        Reservation(long orderId, long restaurantId, Instant paidAt) {
+            this.orderId = orderId;
+            this.restaurantId = restaurantId;
+            this.paidAt = paidAt;
+        }
+    }
+
+    public PreDispatchService(DeliveryRepository deliveryRepository,
+                              DroneRepository droneRepository,
+                              DroneSpatialIndex droneSpatialIndex,
+                              DroneRelocator droneRelocator,
+                              PositionWriteBehindBuffer positionBuffer,
+                              SimulationClock clock,
+                              MeterRegistry meterRegistry,
+                              @Value("${delivery.predispatch.enabled:true}") boolean enabled,
+                              @Value("${delivery.dispatch.mode:greedy}") String dispatchMode,
+                              @Value("${delivery.predispatch.default-prep-seconds:600}") double defaultPrepSeconds,
+                              @Value("${delivery.predispatch.smoothing:0.2}") double smoothing,
+                              @Value("${delivery.predispatch.margin-seconds:30}") double marginSeconds,
+                              @Value("${delivery.predispatch.hold-seconds:600}") double holdSeconds) {
+        this.deliveryRepository = deliveryRepository;
+        this.droneRepository = droneRepository;
+        this.droneSpatialIndex = droneSpatialIndex;
+        this.droneRelocator = droneRelocator;
+        this.positionBuffer = positionBuffer;
+        this.clock = clock;
+        this.meterRegistry = meterRegistry;
+        // Chế độ batch tự ghép drone theo cửa sổ, không dùng giữ chỗ mềm
+        this.enabled = enabled && !"batch".equalsIgnoreCase(dispatchMode);
+        this.defaultPrepSeconds = defaultPrepSeconds;
+        this.smoothing = smoothing;
+        this.marginSeconds = marginSeconds;
+        this.holdSeconds = holdSeconds;
+
+        this.scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "predispatch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.setRemoveOnCancelPolicy(true);
+        meterRegistry.gauge("delivery.predispatch.reservations", reservations, Map::size);
+    }
+
+    /**
+     * Nạp vị trí nhà hàng đã biết từ các delivery trước đó
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadRestaurantLocations() {
+        if (!enabled) {
+            return;
+        }
+        List<Object[]> rows = deliveryRepository.findRestaurantLocations();
+        for (Object[] row : rows) {
+            restaurantLocations.put((Long) row[0], new double[]{(Double) row[1], (Double) row[2]});
+        }
+        log.info("Pre-dispatch knows {} restaurant locations", restaurantLocations.size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int reservationCount() {
+        return reservations.size();
+    }
+
+    /**
+     * Drone đang bị giữ chỗ mềm (đã cất cánh, chưa được gán/giải phóng)
+     */
+    public List<String> heldDroneCodes() {
+        List<String> codes = new ArrayList<>();
+        for (Reservation reservation : reservations.values()) {
+            synchronized (reservation) {
+                if (!reservation.done && reservation.droneCode != null) {
+                    codes.add(reservation.droneCode);
+                }
+            }
+        }
+        return codes;
+    }
+
+    /**
+     * Thời gian thanh toán -> sẵn sàng ước lượng của nhà hàng (giây giả lập)
+     */
+    public double estimatedPrepSeconds(Long restaurantId) {
+        return prepSeconds.getOrDefault(restaurantId, defaultPrepSeconds);
+    }
+
+    /**
+     * Đơn vừa thanh toán: lên lịch cất cánh drone gần nhất tới nhà hàng
+     */
+    public void onOrderPaid(Long orderId, Long restaurantId) {
+        if (!enabled || orderId == null || restaurantId == null) {
+            return;
+        }
+        double[] location = restaurantLocations.get(restaurantId);
+        if (location == null) {
+            count("unknown_restaurant");
+            return;
+        }
+        Reservation reservation = new Reservation(orderId, restaurantId, clock.instant());
+        if (reservations.putIfAbsent(orderId, reservation) != null) {
+            return; // Message trùng
+        }
+
+        // Cất cánh sao cho tới nơi margin-seconds trước lúc đơn dự kiến sẵn sàng
+        double flightSeconds = droneSpatialIndex.nearest(location[0], location[1], 1).stream()
+                .mapToDouble(candidate -> candidate.distanceKm() / AVERAGE_DRONE_SPEED * 3600)
+                .findFirst()
+                .orElse(0);
+        double launchIn = Math.max(0, estimatedPrepSeconds(restaurantId) - flightSeconds - marginSeconds);
+        synchronized (reservation) {
+            reservation.timer = schedule(() -> launch(reservation, location), launchIn);
+        }
+        log.debug("Order {} paid: drone launch toward restaurant {} in {} s", orderId, restaurantId,
+                Math.round(launchIn));
+    }
+
+    /**
+     * OrderReadyEvent tới: ghi nhận vị trí nhà hàng và cập nhật ước lượng thời gian chuẩn bị
+     */
+    public void onOrderReady(Delivery delivery) {
+        if (!enabled || delivery.getRestaurantId() == null) {
+            return;
+        }
+        if (delivery.getRestaurantLat() != null && delivery.getRestaurantLng() != null) {
+            restaurantLocations.put(delivery.getRestaurantId(),
+                    new double[]{delivery.getRestaurantLat(), delivery.getRestaurantLng()});
+        }
+        Reservation reservation = reservations.get(delivery.getOrderId());
+        if (reservation == null) {
+            return;
+        }
+        double observed = Duration.between(reservation.paidAt, clock.instant()).toMillis() / 1000.0;
+        prepSeconds.merge(reservation.restaurantId, observed,
+                (old, sample) -> old + smoothing * (sample - old));
+        meterRegistry.summary("delivery.predispatch.prep.seconds").record(observed);
+    }
+
+    /**
+     * Lấy drone đã bay trước cho đơn (dừng chuyến bay, drone vẫn nằm ngoài index)
+     * Caller phải giữ chỗ thật bằng CAS; thất bại thì gọi {@link #release}
+     */
+    public Optional<String> take(Long orderId) {
+        Reservation reservation = orderId != null ? reservations.remove(orderId) : null;
+        if (reservation == null) {
+            return Optional.empty();
+        }
+        String droneCode;
+        synchronized (reservation) {
+            if (reservation.done) {
+                return Optional.empty();
+            }
+            reservation.done = true;
+            cancelTimer(reservation);
+            droneCode = reservation.droneCode;
+        }
+        if (droneCode == null) {
+            count("not_launched"); // Đơn sẵn sàng sớm hơn ước lượng: gán như bình thường
+            return Optional.empty();
+        }
+        droneRelocator.stop(droneCode);
+        count("used");
+        return Optional.of(droneCode);
+    }
+
+    /**
+     * Đơn bị hủy: giải phóng drone đã bay trước (nếu có)
+     */
+    public void cancel(Long orderId) {
+        Reservation reservation = orderId != null ? reservations.remove(orderId) : null;
+        if (reservation == null) {
+            return;
+        }
+        String droneCode;
+        synchronized (reservation) {
+            if (reservation.done) {
+                return;
+            }
+            reservation.done = true;
+            cancelTimer(reservation);
+            droneCode = reservation.droneCode;
+        }
+        count("cancelled");
+        if (droneCode != null) {
+            log.info("Order {} cancelled, releasing pre-dispatched drone {}", orderId, droneCode);
+            release(droneCode);
+        }
+    }
+
+    /**
+     * Trả drone về index tại vị trí hiện tại (nếu trong DB vẫn sẵn sàng)
+     */
+    public void release(String droneCode) {
+        droneRelocator.stop(droneCode);
+        droneRepository.findByDroneCode(droneCode).ifPresent(drone -> {
+            positionBuffer.applyPending(drone);
+            droneSpatialIndex.update(drone);
+        });
+    }
+
+    /**
+     * Giành drone gần nhà hàng nhất trong index và cho bay tới nhà hàng
+     */
+    private void launch(Reservation reservation, double[] location) {
+        synchronized (reservation) {
+            if (reservation.done) {
+                return;
+            }
+            for (DroneSpatialIndex.Candidate candidate
+                    : droneSpatialIndex.nearest(location[0], location[1], NEAREST_CANDIDATES)) {
+                DroneSpatialIndex.IndexedDrone drone = droneSpatialIndex.get(candidate.droneCode()).orElse(null);
+                if (drone == null || !droneSpatialIndex.tryClaim(candidate.droneCode())) {
+                    continue;
+                }
+                reservation.droneCode = drone.droneCode();
+                droneRelocator.relocate(drone.droneCode(), drone.lat(), drone.lng(), location[0], location[1],
+                        REASON);
+                break;
+            }
+            if (reservation.droneCode == null) {
+                reservation.done = true;
+                reservations.remove(reservation.orderId, reservation);
+                count("no_drone");
+                return;
+            }
+            // Quá hạn: đơn chưa sẵn sàng sau thời gian ước lượng + hold-seconds
+            double elapsed = Duration.between(reservation.paidAt, clock.instant()).toMillis() / 1000.0;
+            double expireIn = Math.max(0, estimatedPrepSeconds(reservation.restaurantId) + holdSeconds - elapsed);
+            reservation.timer = schedule(() -> expire(reservation), expireIn);
+        }
+        count("launched");
+        log.info("Drone {} pre-dispatched to restaurant {} for order {}", reservation.droneCode,
+                reservation.restaurantId, reservation.orderId);
+    }
+
+    private void expire(Reservation reservation) {
+        String droneCode;
+        synchronized (reservation) {
+            if (reservation.done) {
+                return;
+            }
+            reservation.done = true;
+            droneCode = reservation.droneCode;
+        }
+        reservations.remove(reservation.orderId, reservation);
+        count("expired");
+        log.info("Pre-dispatch for order {} expired, releasing drone {}", reservation.orderId, droneCode);
+        release(droneCode);
+    }
+
+    private ScheduledFuture<?> schedule(Runnable task, double simulatedSeconds) {
+        long delay = clock.toRealMillis(Duration.ofMillis(Math.round(simulatedSeconds * 1000)));
+        return scheduler.schedule(() -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                log.error("Pre-dispatch task failed: {}", e.getMessage());
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private static void cancelTimer(Reservation reservation) {
+        if (reservation.timer != null) {
+            reservation.timer.cancel(false);
+        }
+    }
+
+    private void count(String result) {
+        meterRegistry.counter("delivery.predispatch", "result", result).increment();
+    }
+}
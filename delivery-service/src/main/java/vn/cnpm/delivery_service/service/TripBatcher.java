@@ -0,0 +1,180 @@
+package vn.cnpm.delivery_service.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import vn.cnpm.delivery_service.model.Delivery;
+import vn.cnpm.delivery_service.model.DeliveryStatus;
+import vn.cnpm.delivery_service.model.Drone;
+import vn.cnpm.delivery_service.util.RouteOptimizer;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Ghép nhiều đơn cùng nhà hàng vào một chuyến drone
+ * Chuyến còn "mở" khi drone đã được gán nhưng chưa lấy hàng (mọi đơn trong chuyến còn PENDING);
+ * đơn mới của cùng nhà hàng được thêm vào nếu còn tải trọng (maxPayload / order-weight-kg)
+ * và lộ trình giao (sắp bằng {@link RouteOptimizer}) nằm trong tầm bay của drone
+ *
+ * Chỉ giữ trong bộ nhớ: khởi động lại thì các chuyến đang mở không nhận thêm đơn
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TripBatcher {
+
+    // Mỗi km bay tiêu tốn ~2% pin (Drone.consumeBattery)
+    private static final double BATTERY_PERCENT_PER_KM = 2.0;
+
+    private final ActiveDeliveryRegistry activeDeliveryRegistry;
+
+    @Value("${delivery.batching.enabled:true}")
+    private boolean enabled;
+
+    // Khối lượng danh nghĩa mỗi đơn (kg) - đơn hàng chưa mang khối lượng thật
+    @Value("${delivery.batching.order-weight-kg:1.0}")
+    private double orderWeightKg;
+
+    @Value("${delivery.batching.max-stops:4}")
+    private int maxStops;
+
+    // restaurantId -> các chuyến đang mở
+    private final Map<Long, List<OpenTrip>> openTrips = new HashMap<>();
+
+    /**
+     * Chuyến sau khi thêm đơn: các điểm giao theo thứ tự bay
+     */
+    public record Trip(String droneCode, Instant assignedAt, Instant pickupAt, List<Delivery> stops) {
+    }
+
+    private static final class OpenTrip {
+        final String droneCode;
+        final double originLat;
+        final double originLng;
+        final int capacity;
+        final double rangeKm;
+        final Instant assignedAt;
+        // Thời điểm dự kiến lấy hàng (drone đang bay tới nhà hàng)
+        final Instant pickupAt;
+        List<Delivery> stops = new ArrayList<>();
+
+        OpenTrip(String droneCode, double originLat, double originLng, int capacity, double rangeKm,
+                 Instant assignedAt, Instant pickupAt) {
+            this.droneCode = droneCode;
+            this.originLat = originLat;
+            this.originLng = originLng;
+            this.capacity = capacity;
+            this.rangeKm = rangeKm;
+            this.assignedAt = assignedAt;
+            this.pickupAt = pickupAt;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Mở chuyến mới cho delivery vừa được gán drone (drone xuất phát tại nhà hàng)
+     */
+    public synchronized void open(Delivery delivery, Drone drone, double originLat, double originLng) {
+        if (!enabled || delivery.getRestaurantId() == null) {
+            return;
+        }
+        int capacity = Math.min(maxStops, (int) Math.floor(drone.getMaxPayload() / orderWeightKg));
+        if (capacity < 2) {
+            return;
+        }
+        double rangeKm = Math.min(drone.getMaxRange(), drone.getBatteryLevel() / BATTERY_PERCENT_PER_KM);
+        OpenTrip trip = new OpenTrip(drone.getDroneCode(), originLat, originLng, capacity, rangeKm,
+                delivery.getAssignedAt(), delivery.getPickedUpAt());
+        trip.stops.add(delivery);
+        openTrips.computeIfAbsent(delivery.getRestaurantId(), id -> new ArrayList<>()).add(trip);
+    }
+
+    /**
+     * Thêm delivery vào một chuyến đang mở của cùng nhà hàng; chọn chuyến có lộ trình sau khi thêm ngắn nhất
+     * Không có chuyến phù hợp thì trả về empty (gán drone mới như bình thường)
+     */
+    public synchronized Optional<Trip> tryJoin(Delivery delivery) {
+        if (!enabled || delivery.getRestaurantId() == null || delivery.getDeliveryLat() == null
+                || delivery.getDeliveryLng() == null) {
+            return Optional.empty();
+        }
+        List<OpenTrip> trips = openTrips.get(delivery.getRestaurantId());
+        if (trips == null) {
+            return Optional.empty();
+        }
+
+        OpenTrip best = null;
+        List<Delivery> bestStops = null;
+        double bestKm = Double.MAX_VALUE;
+        Iterator<OpenTrip> it = trips.iterator();
+        while (it.hasNext()) {
+            OpenTrip trip = it.next();
+            if (!isOpen(trip)) {
+                it.remove();
+                continue;
+            }
+            if (trip.stops.size() >= trip.capacity) {
+                continue;
+            }
+            List<Delivery> candidate = new ArrayList<>(trip.stops);
+            candidate.add(delivery);
+            double[] lat = new double[candidate.size()];
+            double[] lng = new double[candidate.size()];
+            for (int i = 0; i < candidate.size(); i++) {
+                lat[i] = candidate.get(i).getDeliveryLat();
+                lng[i] = candidate.get(i).getDeliveryLng();
+            }
+            int[] order = RouteOptimizer.order(trip.originLat, trip.originLng, lat, lng);
+            double km = RouteOptimizer.pathKm(trip.originLat, trip.originLng, lat, lng, order);
+            if (km <= trip.rangeKm && km < bestKm) {
+                best = trip;
+                bestKm = km;
+                bestStops = new ArrayList<>(order.length);
+                for (int i : order) {
+                    bestStops.add(candidate.get(i));
+                }
+            }
+        }
+        if (trips.isEmpty()) {
+            openTrips.remove(delivery.getRestaurantId());
+        }
+        if (best == null) {
+            return Optional.empty();
+        }
+        best.stops = bestStops;
+        if (best.stops.size() >= best.capacity) {
+            trips.remove(best);
+        }
+        log.debug("Order {} joins drone {} trip ({} stops, {} km)",
+                delivery.getOrderId(), best.droneCode, bestStops.size(), bestKm);
+        return Optional.of(new Trip(best.droneCode, best.assignedAt, best.pickupAt, List.copyOf(bestStops)));
+    }
+
+    public synchronized int openTripCount() {
+        return openTrips.values().stream().mapToInt(List::size).sum();
+    }
+
+    /**
+     * Chuyến còn mở khi mọi đơn vẫn đang chờ drone lấy hàng
+     */
+    private boolean isOpen(OpenTrip trip) {
+        for (Delivery stop : trip.stops) {
+            Delivery current = activeDeliveryRegistry.find(stop.getId()).orElse(null);
+            if (current == null || current.getStatus() != DeliveryStatus.PENDING
+                    || !trip.droneCode.equals(current.getDroneId())) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
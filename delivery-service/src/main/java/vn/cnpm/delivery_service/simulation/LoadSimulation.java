@@ -0,0 +1,196 @@
+package vn.cnpm.delivery_service.simulation;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import vn.cnpm.delivery_service.config.RabbitMQConfig;
+import vn.cnpm.delivery_service.event.OrderReadyEvent;
+import vn.cnpm.delivery_service.repository.DroneRepository;
+import vn.cnpm.delivery_service.service.ActiveDeliveryRegistry;
+import vn.cnpm.delivery_service.service.DeliveryLifecycleService;
+import vn.cnpm.delivery_service.service.DroneService;
+import vn.cnpm.delivery_service.util.SimulationClock;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Chế độ load test (delivery.simulation.enabled=true):
+ * - seed đủ N drone SIM-xxxxxx rải quanh trung tâm thành phố (JDBC batch, bỏ qua drone đã có)
+ * - phát OrderReadyEvent giả lập theo quá trình Poisson (orders-per-minute tính theo thời gian giả lập)
+ *   vào restaurant.exchange để đi qua đúng luồng consumer -> gán drone -> vòng đời -> tick GPS
+ * Kết hợp với delivery.simulation.time-compression để chạy cả giờ cao điểm trong vài phút;
+ * đo bằng delivery.gps.tick.duration, delivery.gps.tick.queries, delivery.gps.publish.* trên /actuator/prometheus
+ *
+ * Order id bắt đầu từ epoch millis x 1000 nên không trùng đơn thật của order-service
+ */
+@Component
+@ConditionalOnProperty(name = "delivery.simulation.enabled", havingValue = "true")
+@Slf4j
+public class LoadSimulation {
+
+    static final String DRONE_CODE_PREFIX = "SIM-";
+
+    private static final String INSERT_DRONE_SQL =
+            "INSERT INTO drones (drone_code, name, status, battery_level, current_lat, current_lng, " +
+            "max_speed, max_range, max_payload, total_deliveries, total_distance, created_at, updated_at) " +
+            "VALUES (?, ?, 'AVAILABLE', 100, ?, ?, 50.0, 10.0, 3.0, 0, 0.0, ?, ?)";
+
+    private static final double CENTER_LAT = 10.7769;
+    private static final double CENTER_LNG = 106.7009;
+    // Bán kính rải drone (độ, ~±10 km)
+    private static final double DRONE_SPREAD = 0.09;
+    private static final int SEED_BATCH_SIZE = 1000;
+    private static final long ARRIVAL_POLL_MS = 100;
+    private static final long REPORT_INTERVAL_MS = 10_000;
+
+    private final DroneRepository droneRepository;
+    private final DroneService droneService;
+    private final ActiveDeliveryRegistry activeDeliveryRegistry;
+    private final DeliveryLifecycleService deliveryLifecycleService;
+    private final JdbcTemplate jdbcTemplate;
+    private final RabbitTemplate rabbitTemplate;
+    private final SimulationClock clock;
+    private final Counter generatedOrders;
+    private final Random random = new Random(42);
+    private final AtomicLong nextOrderId = new AtomicLong(System.currentTimeMillis() * 1000);
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "load-simulation");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final int drones;
+    private final double ordersPerSimSecond;
+    private final int restaurants;
+
+    // Thời điểm (ms giả lập) của đơn kế tiếp
+    private double nextArrivalMillis;
+
+    public LoadSimulation(DroneRepository droneRepository,
+                          DroneService droneService,
+                          ActiveDeliveryRegistry activeDeliveryRegistry,
+                          DeliveryLifecycleService deliveryLifecycleService,
+                          JdbcTemplate jdbcTemplate,
+                          RabbitTemplate rabbitTemplate,
+                          SimulationClock clock,
+                          MeterRegistry meterRegistry,
+                          @Value("${delivery.simulation.drones:10000}") int drones,
+                          @Value("${delivery.simulation.orders-per-minute:600}") double ordersPerMinute,
+                          @Value("${delivery.simulation.restaurants:300}") int restaurants) {
+        this.droneRepository = droneRepository;
+        this.droneService = droneService;
+        this.activeDeliveryRegistry = activeDeliveryRegistry;
+        this.deliveryLifecycleService = deliveryLifecycleService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.rabbitTemplate = rabbitTemplate;
+        this.clock = clock;
+        this.generatedOrders = meterRegistry.counter("delivery.simulation.orders.generated");
+        this.drones = drones;
+        this.ordersPerSimSecond = ordersPerMinute / 60.0;
+        this.restaurants = restaurants;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        seedDrones();
+        if (ordersPerSimSecond > 0) {
+            nextArrivalMillis = clock.millis() + nextGapMillis();
+            scheduler.scheduleAtFixedRate(this::emitDueOrders, ARRIVAL_POLL_MS, ARRIVAL_POLL_MS, TimeUnit.MILLISECONDS);
+        }
+        scheduler.scheduleAtFixedRate(this::report, REPORT_INTERVAL_MS, REPORT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        log.info("Load simulation started: {} drones, {} orders/min (simulated), {}x time compression",
+                drones, ordersPerSimSecond * 60, clock.compression());
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Thêm drone SIM-xxxxxx cho đến khi đủ N (chạy lại không tạo trùng)
+     */
+    void seedDrones() {
+        long existing = droneRepository.countByDroneCodeStartingWith(DRONE_CODE_PREFIX);
+        if (existing >= drones) {
+            log.info("Load simulation: {} simulated drones already present", existing);
+            return;
+        }
+        Timestamp now = Timestamp.from(Instant.now());
+        List<Object[]> batch = new ArrayList<>(SEED_BATCH_SIZE);
+        for (long i = existing + 1; i <= drones; i++) {
+            String code = String.format("%s%06d", DRONE_CODE_PREFIX, i);
+            batch.add(new Object[]{code, "Sim Drone " + i, randomAround(CENTER_LAT), randomAround(CENTER_LNG), now, now});
+            if (batch.size() == SEED_BATCH_SIZE) {
+                jdbcTemplate.batchUpdate(INSERT_DRONE_SQL, batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_DRONE_SQL, batch);
+        }
+        // Drone chèn bằng JDBC không qua DroneService.saveAndIndex -> nạp lại spatial index
+        droneService.loadSpatialIndex();
+        log.info("Load simulation: seeded {} drones", drones - existing);
+    }
+
+    /**
+     * Phát mọi đơn có thời điểm đến (giả lập) đã qua; khoảng cách giữa hai đơn ~ phân phối mũ
+     */
+    private void emitDueOrders() {
+        try {
+            long now = clock.millis();
+            while (nextArrivalMillis <= now) {
+                rabbitTemplate.convertAndSend(RabbitMQConfig.RESTAURANT_EXCHANGE,
+                        RabbitMQConfig.ORDER_READY_ROUTING_KEY, nextOrder());
+                generatedOrders.increment();
+                nextArrivalMillis += nextGapMillis();
+            }
+        } catch (Exception e) {
+            log.error("Load simulation failed to emit order", e);
+        }
+    }
+
+    private OrderReadyEvent nextOrder() {
+        long orderId = nextOrderId.incrementAndGet();
+        long restaurantId = 1 + random.nextInt(restaurants);
+        return OrderReadyEvent.builder()
+                .orderId(orderId)
+                .restaurantId(restaurantId)
+                .restaurantAddress("Sim Restaurant " + restaurantId)
+                .deliveryAddress("Sim Customer " + orderId)
+                .deliveryPhone("0900000000")
+                .deliveryFullName("Sim Customer")
+                .build();
+    }
+
+    private double nextGapMillis() {
+        return -Math.log(1.0 - random.nextDouble()) / ordersPerSimSecond * 1000.0;
+    }
+
+    private double randomAround(double center) {
+        return center + (random.nextDouble() * 2 - 1) * DRONE_SPREAD;
+    }
+
+    private void report() {
+        log.info("Load simulation: {} orders generated, {} active deliveries, {} lifecycle timers",
+                (long) generatedOrders.count(), activeDeliveryRegistry.size(),
+                deliveryLifecycleService.pendingTimers());
+    }
+}
@@ -0,0 +1,21 @@
+package vn.cnpm.delivery_service.snapshot;
+
+import vn.cnpm.delivery_service.model.Delivery;
+import vn.cnpm.delivery_service.service.DroneSpatialIndex;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Ảnh chụp trạng thái đội drone và các delivery đang hoạt động
+ *
+ * @param takenAt         thời điểm chụp (thời gian thật, cùng đồng hồ với updatedAt trong DB)
+ * @param availableDrones nội dung spatial index (drone sẵn sàng)
+ * @param heldDrones      drone AVAILABLE trong DB nhưng đang bị giữ chỗ mềm (bay trước tới nhà hàng)
+ * @param deliveries      nội dung ActiveDeliveryRegistry (vị trí mới nhất, kể cả chưa flush)
+ */
+public record FleetSnapshot(Instant takenAt,
+                            List<DroneSpatialIndex.IndexedDrone> availableDrones,
+                            List<String> heldDrones,
+                            List<Delivery> deliveries) {
+}
@@ -0,0 +1,215 @@
+package vn.cnpm.delivery_service.snapshot;
+
+import vn.cnpm.delivery_service.model.Delivery;
+import vn.cnpm.delivery_service.model.DeliveryStatus;
+import vn.cnpm.delivery_service.service.DroneSpatialIndex;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Định dạng nhị phân của {@link FleetSnapshot} (big-endian, DataOutput):
+ * <pre>
+ * header  : u32 magic "FLSN", u16 version, i64 takenAt (epoch ms)
+ * drones  : i32 n, n x (utf code, f64 lat, f64 lng, i8 battery)
+ * held    : i32 n, n x utf code
+ * delivery: i32 n, n x (u32 null bitmap, các trường khác null theo thứ tự khai báo)
+ * </pre>
+ * Chuỗi dùng modified UTF-8 (writeUTF), Instant ghi epoch ms; CRC32 của toàn bộ file do FleetSnapshotStore thêm
+ * File cụt, sai magic/version hoặc số phần tử vô lý đều ném IOException - không trả về snapshot dở dang
+ */
+final class FleetSnapshotCodec {
+
+    static final int MAGIC = 0x464C534E; // "FLSN"
+    static final int VERSION = 1;
+
+    private static final DeliveryStatus[] STATUSES = DeliveryStatus.values();
+    // Dung lượng cấp trước tối đa cho mỗi danh sách - số phần tử đọc từ file hỏng không được làm tràn heap
+    private static final int MAX_INITIAL_CAPACITY = 1 << 16;
+
+    private FleetSnapshotCodec() {
+    }
+
+    static void write(FleetSnapshot snapshot, DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeLong(snapshot.takenAt().toEpochMilli());
+
+        out.writeInt(snapshot.availableDrones().size());
+        for (DroneSpatialIndex.IndexedDrone drone : snapshot.availableDrones()) {
+            out.writeUTF(drone.droneCode());
+            out.writeDouble(drone.lat());
+            out.writeDouble(drone.lng());
+            out.writeByte(drone.batteryLevel());
+        }
+
+        out.writeInt(snapshot.heldDrones().size());
+        for (String code : snapshot.heldDrones()) {
+            out.writeUTF(code);
+        }
+
+        out.writeInt(snapshot.deliveries().size());
+        for (Delivery delivery : snapshot.deliveries()) {
+            writeDelivery(delivery, out);
+        }
+    }
+
+    static FleetSnapshot read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a fleet snapshot");
+        }
+        int version = in.readUnsignedShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported fleet snapshot version " + version);
+        }
+        Instant takenAt = Instant.ofEpochMilli(in.readLong());
+
+        int droneCount = readCount(in);
+        List<DroneSpatialIndex.IndexedDrone> drones = new ArrayList<>(Math.min(droneCount, MAX_INITIAL_CAPACITY));
+        for (int i = 0; i < droneCount; i++) {
+            drones.add(new DroneSpatialIndex.IndexedDrone(in.readUTF(), in.readDouble(), in.readDouble(),
+                    in.readByte()));
+        }
+
+        int heldCount = readCount(in);
+        List<String> held = new ArrayList<>(Math.min(heldCount, MAX_INITIAL_CAPACITY));
+        for (int i = 0; i < heldCount; i++) {
+            held.add(in.readUTF());
+        }
+
+        int deliveryCount = readCount(in);
+        List<Delivery> deliveries = new ArrayList<>(Math.min(deliveryCount, MAX_INITIAL_CAPACITY));
+        for (int i = 0; i < deliveryCount; i++) {
+            deliveries.add(readDelivery(in));
+        }
+        return new FleetSnapshot(takenAt, drones, held, deliveries);
+    }
+
+    private static int readCount(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Corrupt fleet snapshot (negative count " + count + ")");
+        }
+        return count;
+    }
+
+    /**
+     * Delivery: bitmap các trường null rồi các trường khác null theo đúng thứ tự dưới đây
+     */
+    private static void writeDelivery(Delivery d, DataOutputStream out) throws IOException {
+        Object[] fields = {d.getId(), d.getOrderId(), d.getDroneId(), d.getStatus(), d.getRestaurantId(),
+                d.getRestaurantAddress(), d.getRestaurantLat(), d.getRestaurantLng(), d.getDeliveryAddress(),
+                d.getDeliveryPhone(), d.getDeliveryFullName(), d.getDeliveryLat(), d.getDeliveryLng(),
+                d.getCreatedAt(), d.getAssignedAt(), d.getPickedUpAt(), d.getDeliveringAt(), d.getCompletedAt(),
+                d.getCurrentLat(), d.getCurrentLng(), d.getDistanceRemaining(), d.getCurrentSpeed(),
+                d.getEstimatedArrival(), d.getPriority(), d.getStopSequence(), d.getUpdatedAt()};
+        int nulls = 0;
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i] == null) {
+                nulls |= 1 << i;
+            }
+        }
+        out.writeInt(nulls);
+        for (Object field : fields) {
+            if (field instanceof Long value) {
+                out.writeLong(value);
+            } else if (field instanceof String value) {
+                out.writeUTF(value);
+            } else if (field instanceof DeliveryStatus value) {
+                out.writeByte(value.ordinal());
+            } else if (field instanceof Double value) {
+                out.writeDouble(value);
+            } else if (field instanceof Instant value) {
+                out.writeLong(value.toEpochMilli());
+            } else if (field instanceof Integer value) {
+                out.writeInt(value);
+            }
+        }
+    }
+
+    private static Delivery readDelivery(DataInputStream in) throws IOException {
+        int nulls = in.readInt();
+        FieldReader r = new FieldReader(in, nulls);
+        return Delivery.builder()
+                .id(r.nextLong())
+                .orderId(r.nextLong())
+                .droneId(r.nextString())
+                .status(r.nextStatus())
+                .restaurantId(r.nextLong())
+                .restaurantAddress(r.nextString())
+                .restaurantLat(r.nextDouble())
+                .restaurantLng(r.nextDouble())
+                .deliveryAddress(r.nextString())
+                .deliveryPhone(r.nextString())
+                .deliveryFullName(r.nextString())
+                .deliveryLat(r.nextDouble())
+                .deliveryLng(r.nextDouble())
+                .createdAt(r.nextInstant())
+                .assignedAt(r.nextInstant())
+                .pickedUpAt(r.nextInstant())
+                .deliveringAt(r.nextInstant())
+                .completedAt(r.nextInstant())
+                .currentLat(r.nextDouble())
+                .currentLng(r.nextDouble())
+                .distanceRemaining(r.nextDouble())
+                .currentSpeed(r.nextDouble())
+                .estimatedArrival(r.nextInstant())
+                .priority(r.nextInt())
+                .stopSequence(r.nextInt())
+                .updatedAt(r.nextInstant())
+                .build();
+    }
+
+    /**
+     * Đọc tuần tự các trường theo bitmap null
+     */
+    private static final class FieldReader {
+        private final DataInputStream in;
+        private final int nulls;
+        private int index;
+
+        FieldReader(DataInputStream in, int nulls) {
+            this.in = in;
+            this.nulls = nulls;
+        }
+
+        private boolean isNull() {
+            return (nulls & (1 << index++)) != 0;
+        }
+
+        Long nextLong() throws IOException {
+            return isNull() ? null : in.readLong();
+        }
+
+        Integer nextInt() throws IOException {
+            return isNull() ? null : in.readInt();
+        }
+
+        Double nextDouble() throws IOException {
+            return isNull() ? null : in.readDouble();
+        }
+
+        String nextString() throws IOException {
+            return isNull() ? null : in.readUTF();
+        }
+
+        Instant nextInstant() throws IOException {
+            return isNull() ? null : Instant.ofEpochMilli(in.readLong());
+        }
+
+        DeliveryStatus nextStatus() throws IOException {
+            if (isNull()) {
+                return null;
+            }
+            int ordinal = in.readUnsignedByte();
+            if (ordinal >= STATUSES.length) {
+                throw new IOException("Unknown delivery status " + ordinal);
+            }
+            return STATUSES[ordinal];
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package vn.cnpm.delivery_service.snapshot;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Đọc/ghi file snapshot trạng thái đội drone trên đĩa cục bộ ({@link FleetSnapshotCodec} + CRC32 ở cuối)
+ * Ghi ra file tạm rồi đổi tên nguyên tử: file đang có luôn là một snapshot hoàn chỉnh
+ *
+ * Khi khởi động, ActiveDeliveryRegistry và DroneService khôi phục từ snapshot (nếu còn mới hơn max-age-seconds)
+ * rồi bắt kịp DB bằng các dòng có updatedAt sau thời điểm chụp, thay vì quét lại toàn bộ
+ */
+@Component
+@Slf4j
+public class FleetSnapshotStore {
+
+    private final boolean enabled;
+    private final Path file;
+    private final Duration maxAge;
+    private final Duration catchUpSkew;
+
+    private boolean loaded;
+    private FleetSnapshot restored;
+
+    public FleetSnapshotStore(@Value("${delivery.snapshot.enabled:true}") boolean enabled,
+                              @Value("${delivery.snapshot.file:data/snapshot/fleet.snap}") String file,
+                              @Value("${delivery.snapshot.max-age-seconds:900}") long maxAgeSeconds,
+                              @Value("${delivery.snapshot.catch-up-skew-ms:2000}") long catchUpSkewMs) {
+        this.enabled = enabled;
+        this.file = Path.of(file);
+        this.maxAge = Duration.ofSeconds(maxAgeSeconds);
+        this.catchUpSkew = Duration.ofMillis(catchUpSkewMs);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Snapshot đọc được lúc khởi động (đọc một lần, dùng chung cho registry và spatial index)
+     * Empty nếu tắt, chưa có file, file hỏng hoặc quá cũ - khi đó caller nạp lại từ DB như trước
+     */
+    public synchronized Optional<FleetSnapshot> restored() {
+        if (!loaded) {
+            loaded = true;
+            restored = enabled ? load() : null;
+        }
+        return Optional.ofNullable(restored);
+    }
+
+    /**
+     * Mốc bắt kịp DB: các dòng có updatedAt sau mốc này có thể mới hơn snapshot
+     * (lùi catch-up-skew-ms để bù độ lệch đồng hồ giữa service và DB)
+     */
+    public Instant catchUpSince(FleetSnapshot snapshot) {
+        return snapshot.takenAt().minus(catchUpSkew);
+    }
+
+    /**
+     * Ghi snapshot: file tạm + CRC32, rồi đổi tên thay file cũ
+     */
+    public void write(FleetSnapshot snapshot) {
+        try {
+            Path dir = file.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+            Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+            try {
+                CRC32 crc = new CRC32();
+                try (OutputStream os = Files.newOutputStream(tmp);
+                     CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(os, 1 << 16), crc);
+                     DataOutputStream out = new DataOutputStream(checked)) {
+                    FleetSnapshotCodec.write(snapshot, out);
+                    out.flush();
+                    // CRC của phần nội dung, không tính chính nó
+                    new DataOutputStream(os).writeLong(crc.getValue());
+                }
+                move(tmp);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write fleet snapshot " + file, e);
+        }
+    }
+
+    private void move(Path tmp) throws IOException {
+        try {
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private FleetSnapshot load() {
+        long start = System.nanoTime();
+        FleetSnapshot snapshot;
+        try (InputStream is = new BufferedInputStream(Files.newInputStream(file), 1 << 16)) {
+            CRC32 crc = new CRC32();
+            DataInputStream in = new DataInputStream(new CheckedInputStream(is, crc));
+            snapshot = FleetSnapshotCodec.read(in);
+            long expected = crc.getValue();
+            if (new DataInputStream(is).readLong() != expected) {
+                log.warn("Fleet snapshot {} is corrupt (CRC mismatch), loading state from DB", file);
+                return null;
+            }
+        } catch (NoSuchFileException e) {
+            log.info("No fleet snapshot at {}, loading state from DB", file);
+            return null;
+        } catch (IOException e) {
+            log.warn("Failed to read fleet snapshot {}: {}, loading state from DB", file, e.getMessage());
+            return null;
+        }
+
+        Duration age = Duration.between(snapshot.takenAt(), Instant.now());
+        if (age.compareTo(maxAge) > 0) {
+            log.info("Fleet snapshot {} is {} s old, loading state from DB", file, age.toSeconds());
+            return null;
+        }
+        log.info("Fleet snapshot read in {} ms: {} available drones, {} active deliveries, {} s old",
+                (System.nanoTime() - start) / 1_000_000, snapshot.availableDrones().size(),
+                snapshot.deliveries().size(), age.toSeconds());
+        return snapshot;
+    }
+}
@@ -0,0 +1,77 @@
+package vn.cnpm.delivery_service.snapshot;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import vn.cnpm.delivery_service.service.ActiveDeliveryRegistry;
+import vn.cnpm.delivery_service.service.DroneSpatialIndex;
+import vn.cnpm.delivery_service.service.PreDispatchService;
+
+import java.time.Instant;
+
+/**
+ * Chụp snapshot định kỳ (và khi tắt service) từ state in-memory: spatial index, drone giữ chỗ mềm,
+ * ActiveDeliveryRegistry - không đọc DB
+ * Chỉ bắt đầu ghi sau khi state đã được khôi phục lúc khởi động, tránh ghi đè snapshot bằng state rỗng
+ */
+@Component
+@Slf4j
+public class FleetSnapshotWriter {
+
+    private final FleetSnapshotStore store;
+    private final ActiveDeliveryRegistry activeDeliveryRegistry;
+    private final DroneSpatialIndex droneSpatialIndex;
+    private final PreDispatchService preDispatchService;
+    private final Timer writeTimer;
+
+    private volatile boolean ready;
+
+    public FleetSnapshotWriter(FleetSnapshotStore store,
+                               ActiveDeliveryRegistry activeDeliveryRegistry,
+                               DroneSpatialIndex droneSpatialIndex,
+                               PreDispatchService preDispatchService,
+                               MeterRegistry meterRegistry) {
+        this.store = store;
+        this.activeDeliveryRegistry = activeDeliveryRegistry;
+        this.droneSpatialIndex = droneSpatialIndex;
+        this.preDispatchService = preDispatchService;
+        this.writeTimer = meterRegistry.timer("delivery.snapshot.write");
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        ready = store.isEnabled();
+    }
+
+    @Scheduled(fixedDelayString = "${delivery.snapshot.interval-ms:10000}",
+               initialDelayString = "${delivery.snapshot.interval-ms:10000}")
+    public void snapshot() {
+        if (!ready) {
+            return;
+        }
+        try {
+            writeTimer.record(this::write);
+        } catch (Exception e) {
+            log.error("Fleet snapshot failed: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void snapshotOnShutdown() {
+        snapshot();
+        ready = false;
+    }
+
+    private void write() {
+        FleetSnapshot snapshot = new FleetSnapshot(Instant.now(), droneSpatialIndex.snapshot(),
+                preDispatchService.heldDroneCodes(), activeDeliveryRegistry.getActiveDeliveries());
+        store.write(snapshot);
+        log.debug("Fleet snapshot written: {} available drones, {} active deliveries",
+                snapshot.availableDrones().size(), snapshot.deliveries().size());
+    }
+}
@@ -0,0 +1,101 @@
+package vn.cnpm.delivery_service.telemetry;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Giải mã body của POST /api/drones/telemetry
+ *
+ * NDJSON (application/x-ndjson): mỗi dòng {"droneCode":"DRONE-1","ts":1700000000000,"lat":10.77,"lng":106.70,"battery":87}
+ * Nhị phân (application/octet-stream), big-endian, lặp lại cho từng mẫu:
+ * [u8 độ dài mã][mã drone UTF-8][i64 ts][f64 lat][f64 lng][i8 pin, -1 = không có]
+ */
+@Component
+public class TelemetryCodec {
+
+    public static final String NDJSON = "application/x-ndjson";
+
+    private final ObjectReader sampleReader;
+
+    public TelemetryCodec(ObjectMapper objectMapper) {
+        this.sampleReader = objectMapper.readerFor(TelemetrySample.class);
+    }
+
+    public List<TelemetrySample> parseNdjson(byte[] body, int maxSamples) {
+        List<TelemetrySample> samples = new ArrayList<>();
+        try (MappingIterator<TelemetrySample> it = sampleReader.readValues(body)) {
+            while (it.hasNextValue()) {
+                samples.add(checked(it.nextValue(), samples.size(), maxSamples));
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed NDJSON telemetry: " + e.getMessage(), e);
+        }
+        return samples;
+    }
+
+    public static List<TelemetrySample> parseBinary(byte[] body, int maxSamples) {
+        ByteBuffer buffer = ByteBuffer.wrap(body);
+        List<TelemetrySample> samples = new ArrayList<>();
+        try {
+            while (buffer.hasRemaining()) {
+                byte[] code = new byte[buffer.get() & 0xFF];
+                buffer.get(code);
+                long ts = buffer.getLong();
+                double lat = buffer.getDouble();
+                double lng = buffer.getDouble();
+                byte battery = buffer.get();
+                samples.add(checked(new TelemetrySample(new String(code, StandardCharsets.UTF_8), ts, lat, lng,
+                        battery < 0 ? null : (int) battery), samples.size(), maxSamples));
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated binary telemetry at sample " + samples.size(), e);
+        }
+        return samples;
+    }
+
+    /**
+     * Mã hóa nhị phân (dùng cho client/simulator)
+     */
+    public static byte[] toBinary(List<TelemetrySample> samples) {
+        List<byte[]> codes = new ArrayList<>(samples.size());
+        int size = 0;
+        for (TelemetrySample sample : samples) {
+            byte[] code = sample.droneCode().getBytes(StandardCharsets.UTF_8);
+            if (code.length > 255) {
+                throw new IllegalArgumentException("Drone code too long: " + sample.droneCode());
+            }
+            codes.add(code);
+            size += 1 + code.length + 8 + 8 + 8 + 1;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (int i = 0; i < samples.size(); i++) {
+            TelemetrySample sample = samples.get(i);
+            buffer.put((byte) codes.get(i).length);
+            buffer.put(codes.get(i));
+            buffer.putLong(sample.ts());
+            buffer.putDouble(sample.lat());
+            buffer.putDouble(sample.lng());
+            buffer.put(sample.battery() != null ? sample.battery().byteValue() : (byte) -1);
+        }
+        return buffer.array();
+    }
+
+    private static TelemetrySample checked(TelemetrySample sample, int index, int maxSamples) {
+        if (index >= maxSamples) {
+            throw new IllegalArgumentException("Telemetry batch exceeds " + maxSamples + " samples");
+        }
+        if (sample == null || !sample.isValid()) {
+            throw new IllegalArgumentException("Invalid telemetry sample at index " + index);
+        }
+        return sample;
+    }
+}
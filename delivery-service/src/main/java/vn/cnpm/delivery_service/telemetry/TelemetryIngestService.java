@@ -0,0 +1,226 @@
+package vn.cnpm.delivery_service.telemetry;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import vn.cnpm.delivery_service.service.DroneSpatialIndex;
+import vn.cnpm.delivery_service.service.PositionWriteBehindBuffer;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+
+/**
+ * Nhận telemetry hàng loạt từ drone thật
+ * Request chỉ đẩy mẫu vào {@link TelemetryRingBuffer} (đầy thì từ chối cả batch -> HTTP 429);
+ * một writer thread duy nhất drain ring, gộp mẫu mới nhất của mỗi drone rồi áp vào:
+ * - PositionWriteBehindBuffer (vị trí + pin, flush bằng JDBC batch UPDATE)
+ * - DroneSpatialIndex (drone đang rảnh)
+ * - báo cáo chờ tick GPS lấy cho drone đang giao hàng ({@link #drainReports})
+ * Drone im lặng quá stale-after-ms không còn được coi là đang báo về (tick mô phỏng lại đường bay)
+ */
+@Service
+@Slf4j
+public class TelemetryIngestService {
+
+    private final PositionWriteBehindBuffer positionBuffer;
+    private final DroneSpatialIndex droneSpatialIndex;
+    private final TelemetryRingBuffer ring;
+    private final int drainBatch;
+    private final long idleParkNanos;
+    private final long staleAfterNanos;
+
+    // Mẫu mới nhất chưa được tick GPS lấy, theo droneCode
+    private final Map<String, TelemetrySample> pendingReports = new ConcurrentHashMap<>();
+    // Lần cuối (System.nanoTime của server) mỗi drone gửi telemetry: tick không tự mô phỏng
+    // đường bay cho các drone này cho đến khi im lặng quá staleAfterNanos
+    private final Map<String, Long> lastSeenNanos = new ConcurrentHashMap<>();
+    // Chỉ writer thread dùng
+    private final Map<String, Long> lastAppliedTs = new HashMap<>();
+    private long lastExpiryNanos = System.nanoTime();
+    private final Map<String, TelemetrySample> coalesced = new HashMap<>();
+
+    private final Counter acceptedSamples;
+    private final Counter rejectedSamples;
+    private final Counter staleSamples;
+
+    private volatile boolean running;
+    private volatile Thread writer;
+
+    public TelemetryIngestService(PositionWriteBehindBuffer positionBuffer,
+                                  DroneSpatialIndex droneSpatialIndex,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${delivery.telemetry.buffer-capacity:65536}") int bufferCapacity,
+                                  @Value("${delivery.telemetry.drain-batch:4096}") int drainBatch,
+                                  @Value("${delivery.telemetry.idle-park-ms:50}") long idleParkMs,
+                                  @Value("${delivery.telemetry.stale-after-ms:30000}") long staleAfterMs) {
+        this.positionBuffer = positionBuffer;
+        this.droneSpatialIndex = droneSpatialIndex;
+        this.ring = new TelemetryRingBuffer(bufferCapacity);
+        this.drainBatch = drainBatch;
+        this.idleParkNanos = TimeUnit.MILLISECONDS.toNanos(idleParkMs);
+        this.staleAfterNanos = TimeUnit.MILLISECONDS.toNanos(staleAfterMs);
+        this.acceptedSamples = meterRegistry.counter("delivery.telemetry.samples", "result", "accepted");
+        this.rejectedSamples = meterRegistry.counter("delivery.telemetry.samples", "result", "rejected");
+        this.staleSamples = meterRegistry.counter("delivery.telemetry.samples", "result", "stale");
+        meterRegistry.gauge("delivery.telemetry.buffer.depth", ring, TelemetryRingBuffer::size);
+        meterRegistry.gauge("delivery.telemetry.reporting.drones", lastSeenNanos, Map::size);
+    }
+
+    @PostConstruct
+    void start() {
+        running = true;
+        Thread thread = new Thread(this::runWriter, "telemetry-writer");
+        thread.setDaemon(true);
+        writer = thread;
+        thread.start();
+        log.info("Telemetry writer started (ring capacity {})", ring.capacity());
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        Thread thread = writer;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    /**
+     * Đẩy cả batch vào ring buffer
+     *
+     * @return false nếu ring không đủ chỗ (không mẫu nào được nhận) - caller trả 429
+     */
+    public boolean offer(List<TelemetrySample> samples) {
+        if (samples.isEmpty()) {
+            return true;
+        }
+        if (!ring.offer(samples)) {
+            rejectedSamples.increment(samples.size());
+            return false;
+        }
+        acceptedSamples.increment(samples.size());
+        Thread thread = writer;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+        return true;
+    }
+
+    public int bufferedSamples() {
+        return ring.size();
+    }
+
+    public boolean isReporting(String droneCode) {
+        return isReporting(droneCode, System.nanoTime());
+    }
+
+    boolean isReporting(String droneCode, long nowNanos) {
+        if (droneCode == null) {
+            return false;
+        }
+        Long lastSeen = lastSeenNanos.get(droneCode);
+        return lastSeen != null && nowNanos - lastSeen <= staleAfterNanos;
+    }
+
+    int reportingDroneCount() {
+        return lastSeenNanos.size();
+    }
+
+    /**
+     * Lấy ra mẫu mới nhất của các drone đã báo về từ tick trước (gọi từ tick GPS)
+     */
+    public void drainReports(BiConsumer<String, TelemetrySample> consumer) {
+        if (pendingReports.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<String, TelemetrySample> entry : pendingReports.entrySet()) {
+            if (pendingReports.remove(entry.getKey(), entry.getValue())) {
+                consumer.accept(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private void runWriter() {
+        while (running) {
+            try {
+                if (drainOnce() == 0) {
+                    LockSupport.parkNanos(this, idleParkNanos);
+                }
+                long now = System.nanoTime();
+                if (now - lastExpiryNanos >= staleAfterNanos) {
+                    expireStale(now);
+                    lastExpiryNanos = now;
+                }
+            } catch (Exception e) {
+                log.error("Telemetry writer failed to apply samples: {}", e.getMessage(), e);
+            }
+        }
+        // Áp nốt phần còn lại trước khi tắt (write-behind buffer flush sau đó)
+        while (drainOnce() > 0) {
+            // tiếp tục
+        }
+    }
+
+    /**
+     * Drain tối đa drainBatch mẫu; mỗi drone chỉ áp mẫu mới nhất, bỏ mẫu cũ hơn mẫu đã áp
+     */
+    int drainOnce() {
+        int drained = ring.drain(this::coalesce, drainBatch);
+        if (drained == 0) {
+            return 0;
+        }
+        for (TelemetrySample sample : coalesced.values()) {
+            apply(sample);
+        }
+        coalesced.clear();
+        return drained;
+    }
+
+    /**
+     * Bỏ các drone đã im lặng quá staleAfterNanos (chỉ writer thread gọi)
+     * Drone báo lại sau đó được nhận như drone mới, kể cả khi ts cũ hơn lần áp trước
+     */
+    void expireStale(long nowNanos) {
+        int before = lastSeenNanos.size();
+        lastSeenNanos.entrySet().removeIf(entry -> {
+            if (nowNanos - entry.getValue() <= staleAfterNanos) {
+                return false;
+            }
+            lastAppliedTs.remove(entry.getKey());
+            return true;
+        });
+        int expired = before - lastSeenNanos.size();
+        if (expired > 0) {
+            log.info("{} drones stopped reporting telemetry, {} still reporting", expired, lastSeenNanos.size());
+        }
+    }
+
+    private void coalesce(String droneCode, long ts, double lat, double lng, int battery) {
+        Long applied = lastAppliedTs.get(droneCode);
+        TelemetrySample current = coalesced.get(droneCode);
+        if ((applied != null && ts < applied) || (current != null && ts < current.ts())) {
+            staleSamples.increment();
+            return;
+        }
+        coalesced.put(droneCode, new TelemetrySample(droneCode, ts, lat, lng, battery >= 0 ? battery : null));
+    }
+
+    private void apply(TelemetrySample sample) {
+        // ts của drone chỉ dùng để bỏ mẫu đến trễ; thời điểm ghi DB và độ tươi theo giờ server
+        lastAppliedTs.put(sample.droneCode(), sample.ts());
+        lastSeenNanos.put(sample.droneCode(), System.nanoTime());
+        positionBuffer.bufferDroneTelemetry(sample.droneCode(), sample.lat(), sample.lng(), sample.battery());
+        droneSpatialIndex.move(sample.droneCode(), sample.lat(), sample.lng(), sample.battery());
+        pendingReports.put(sample.droneCode(), sample);
+    }
+}
@@ -0,0 +1,91 @@
+package vn.cnpm.delivery_service.telemetry;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ring buffer có giới hạn cho telemetry: nhiều producer (request HTTP), một consumer (writer thread)
+ * Lưu dạng mảng nguyên thủy song song, không giữ object của từng mẫu
+ *
+ * Producer giữ lock khi ghi cả batch (tất cả hoặc không), rồi công bố bằng tail (volatile);
+ * consumer đọc đến tail rồi trả chỗ bằng head nên không cần lock
+ */
+final class TelemetryRingBuffer {
+
+    /**
+     * Nhận từng mẫu khi drain; battery < 0 nghĩa là không có
+     */
+    interface SampleConsumer {
+        void accept(String droneCode, long ts, double lat, double lng, int battery);
+    }
+
+    private final int mask;
+    private final String[] droneCodes;
+    private final long[] timestamps;
+    private final double[] lat;
+    private final double[] lng;
+    private final int[] battery;
+
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final ReentrantLock producerLock = new ReentrantLock();
+
+    TelemetryRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        mask = size - 1;
+        droneCodes = new String[size];
+        timestamps = new long[size];
+        lat = new double[size];
+        lng = new double[size];
+        battery = new int[size];
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    /**
+     * Thêm cả batch; false (không thêm gì) nếu không đủ chỗ
+     */
+    boolean offer(List<TelemetrySample> samples) {
+        producerLock.lock();
+        try {
+            long t = tail.get();
+            if (t - head.get() + samples.size() > capacity()) {
+                return false;
+            }
+            for (TelemetrySample sample : samples) {
+                int i = (int) (t++ & mask);
+                droneCodes[i] = sample.droneCode();
+                timestamps[i] = sample.ts();
+                lat[i] = sample.lat();
+                lng[i] = sample.lng();
+                battery[i] = sample.battery() != null ? sample.battery() : -1;
+            }
+            tail.set(t);
+            return true;
+        } finally {
+            producerLock.unlock();
+        }
+    }
+
+    /**
+     * Lấy tối đa max mẫu theo thứ tự đến (chỉ gọi từ một thread)
+     */
+    int drain(SampleConsumer consumer, int max) {
+        long h = head.get();
+        int n = (int) Math.min(max, tail.get() - h);
+        for (int k = 0; k < n; k++) {
+            int i = (int) ((h + k) & mask);
+            consumer.accept(droneCodes[i], timestamps[i], lat[i], lng[i], battery[i]);
+            droneCodes[i] = null;
+        }
+        head.set(h + n);
+        return n;
+    }
+}
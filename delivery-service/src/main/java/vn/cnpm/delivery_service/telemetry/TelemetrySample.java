@@ -0,0 +1,14 @@
+package vn.cnpm.delivery_service.telemetry;
+
+/**
+ * Một mẫu telemetry drone gửi lên: vị trí và pin tại thời điểm ts (epoch millis)
+ * battery null nếu drone không báo pin
+ */
+public record TelemetrySample(String droneCode, long ts, double lat, double lng, Integer battery) {
+
+    public boolean isValid() {
+        return droneCode != null && !droneCode.isBlank()
+                && lat >= -90 && lat <= 90 && lng >= -180 && lng <= 180
+                && (battery == null || (battery >= 0 && battery <= 100));
+    }
+}
@@ -0,0 +1,39 @@
+package vn.cnpm.delivery_service.track;
+
+/**
+ * Đọc lại chuỗi bit do {@link BitWriter} ghi
+ */
+final class BitReader {
+
+    private final long[] words;
+    private long position;
+
+    BitReader(byte[] bytes, int length) {
+        words = new long[(length + 7) / 8 + 1];
+        for (int i = 0; i < length; i++) {
+            words[i >>> 3] |= (bytes[i] & 0xFFL) << (56 - ((i & 7) << 3));
+        }
+    }
+
+    /**
+     * Đọc bits bit (1..64) thành số không dấu
+     */
+    long read(int bits) {
+        int index = (int) (position >>> 6);
+        int used = (int) (position & 63);
+        int available = 64 - used;
+        long value;
+        if (bits <= available) {
+            value = (words[index] << used) >>> (64 - bits);
+        } else {
+            int over = bits - available;
+            value = ((words[index] << used) >>> (64 - bits)) | (words[index + 1] >>> (64 - over));
+        }
+        position += bits;
+        return value;
+    }
+
+    boolean readBit() {
+        return read(1) == 1;
+    }
+}
@@ -0,0 +1,61 @@
+package vn.cnpm.delivery_service.track;
+
+import java.util.Arrays;
+
+/**
+ * Ghi chuỗi bit (MSB trước) vào mảng long tự giãn
+ */
+final class BitWriter {
+
+    private long[] words;
+    private long bitLength;
+
+    BitWriter(int initialWords) {
+        words = new long[Math.max(1, initialWords)];
+    }
+
+    long bitLength() {
+        return bitLength;
+    }
+
+    /**
+     * Ghi bits bit thấp của value (1..64)
+     */
+    void write(long value, int bits) {
+        int index = (int) (bitLength >>> 6);
+        int free = 64 - (int) (bitLength & 63);
+        ensureWords(index + 2);
+        long v = bits == 64 ? value : value & ((1L << bits) - 1);
+        if (bits <= free) {
+            words[index] |= v << (free - bits);
+        } else {
+            int over = bits - free;
+            words[index] |= v >>> over;
+            words[index + 1] |= v << (64 - over);
+        }
+        bitLength += bits;
+    }
+
+    /**
+     * Số byte cần để chứa toàn bộ bit đã ghi
+     */
+    int byteLength() {
+        return (int) ((bitLength + 7) >>> 3);
+    }
+
+    /**
+     * Chép các byte đã ghi (big-endian theo từng long) vào dest
+     */
+    void copyBytes(byte[] dest) {
+        int length = byteLength();
+        for (int i = 0; i < length; i++) {
+            dest[i] = (byte) (words[i >>> 3] >>> (56 - ((i & 7) << 3)));
+        }
+    }
+
+    private void ensureWords(int required) {
+        if (required > words.length) {
+            words = Arrays.copyOf(words, Math.max(required, words.length * 2));
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package vn.cnpm.delivery_service.track;
+
+/**
+ * Toàn bộ hành trình GPS của một delivery, dạng cột (phần tử thứ i của mỗi mảng là cùng một điểm)
+ */
+public record GpsTrack(long deliveryId, long[] timestamps, double[] lat, double[] lng, double[] speed,
+                       long compressedBytes) {
+
+    public int pointCount() {
+        return timestamps.length;
+    }
+}
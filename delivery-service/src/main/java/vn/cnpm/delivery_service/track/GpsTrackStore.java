@@ -0,0 +1,282 @@
+package vn.cnpm.delivery_service.track;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Lưu toàn bộ hành trình GPS của mỗi delivery, nén kiểu Gorilla ({@link TrackBlockEncoder}, vài byte mỗi điểm),
+ * không tạo dòng MySQL nào cho từng điểm
+ *
+ * Delivery đang bay giữ block đang ghi trong bộ nhớ; block được niêm phong vào segment mmap
+ * (data-dir/segment-NNNNNN.trk) khi đầy, khi delivery kết thúc hoặc khi tắt service
+ * Khởi động lại thì quét các segment để dựng lại index deliveryId -> các block
+ * (block đang ghi dở của delivery đang bay lúc service chết đột ngột sẽ mất)
+ *
+ * Retention: segment cũ nhất (trừ segment đang ghi) bị xóa khi không được ghi quá retention-hours
+ * hoặc tổng dung lượng vượt max-size-mb; các block trong đó được bỏ khỏi index
+ */
+@Component
+@Slf4j
+public class GpsTrackStore {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".trk";
+
+    private final boolean enabled;
+    private final Path dataDir;
+    private final int segmentBytes;
+    private final int blockBytes;
+    private final long retentionMillis;
+    private final int maxSegments;
+
+    // Chỉ số segment -> segment, theo thứ tự ghi (segment cuối là segment đang ghi)
+    private final TreeMap<Integer, TrackSegment> segments = new TreeMap<>();
+    // deliveryId -> địa chỉ các block đã niêm phong theo thứ tự thời gian ((segment << 32) | offset)
+    private final Map<Long, List<Long>> sealedBlocks = new HashMap<>();
+    private final Map<Long, TrackBlockEncoder> openBlocks = new HashMap<>();
+    private long appendedPoints;
+    private final Counter sealedBytes;
+    private final Counter droppedSegments;
+
+    public GpsTrackStore(@Value("${delivery.track.enabled:true}") boolean enabled,
+                         @Value("${delivery.track.data-dir:data/tracks}") String dataDir,
+                         @Value("${delivery.track.segment-size-mb:64}") int segmentSizeMb,
+                         @Value("${delivery.track.block-bytes:4096}") int blockBytes,
+                         @Value("${delivery.track.retention-hours:168}") long retentionHours,
+                         @Value("${delivery.track.max-size-mb:4096}") long maxSizeMb,
+                         MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.dataDir = Path.of(dataDir);
+        this.segmentBytes = segmentSizeMb * 1024 * 1024;
+        this.blockBytes = Math.min(blockBytes, segmentBytes - TrackSegment.FILE_HEADER_BYTES
+                - TrackSegment.RECORD_HEADER_BYTES);
+        this.retentionMillis = TimeUnit.HOURS.toMillis(retentionHours);
+        // Luôn giữ ít nhất segment đang ghi và một segment trước đó
+        this.maxSegments = (int) Math.max(2, maxSizeMb / Math.max(1, segmentSizeMb));
+        FunctionCounter.builder("delivery.track.points", this, store -> store.appendedPoints)
+                .register(meterRegistry);
+        this.sealedBytes = meterRegistry.counter("delivery.track.sealed.bytes");
+        this.droppedSegments = meterRegistry.counter("delivery.track.segments.dropped");
+        meterRegistry.gauge("delivery.track.segments", segments, Map::size);
+        meterRegistry.gauge("delivery.track.open.blocks", openBlocks, Map::size);
+        if (enabled) {
+            openSegments();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Thêm một điểm vào hành trình của delivery (gọi từ tick GPS)
+     */
+    public synchronized void append(long deliveryId, long timestamp, double lat, double lng, double speed) {
+        if (!enabled) {
+            return;
+        }
+        TrackBlockEncoder block = openBlocks.computeIfAbsent(deliveryId, id -> new TrackBlockEncoder());
+        block.append(timestamp, lat, lng, speed);
+        appendedPoints++;
+        // Niêm phong trước khi điểm kế tiếp có thể làm block vượt kích thước
+        if (block.bitLength() + TrackBlockEncoder.MAX_POINT_BITS > blockBytes * 8L) {
+            seal(deliveryId, block);
+            openBlocks.remove(deliveryId);
+        }
+    }
+
+    /**
+     * Delivery kết thúc: niêm phong block đang ghi
+     */
+    public synchronized void finish(long deliveryId) {
+        TrackBlockEncoder block = openBlocks.remove(deliveryId);
+        if (block != null) {
+            seal(deliveryId, block);
+        }
+    }
+
+    /**
+     * Niêm phong block của các delivery không còn đang bay (hủy, hoàn thành ngoài tick)
+     */
+    public synchronized void finishAllExcept(Set<Long> activeIds) {
+        if (openBlocks.size() <= activeIds.size() && activeIds.containsAll(openBlocks.keySet())) {
+            return;
+        }
+        Iterator<Map.Entry<Long, TrackBlockEncoder>> it = openBlocks.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Long, TrackBlockEncoder> entry = it.next();
+            if (!activeIds.contains(entry.getKey())) {
+                seal(entry.getKey(), entry.getValue());
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Toàn bộ hành trình (các block đã niêm phong + block đang ghi)
+     * Chỉ chép byte nén trong lock, giải nén ngoài lock
+     */
+    public GpsTrack history(long deliveryId) {
+        List<byte[]> blocks = new ArrayList<>();
+        List<Integer> counts = new ArrayList<>();
+        synchronized (this) {
+            for (long address : sealedBlocks.getOrDefault(deliveryId, List.of())) {
+                TrackSegment segment = segments.get((int) (address >>> 32));
+                if (segment == null) {
+                    continue;
+                }
+                int offset = (int) address;
+                blocks.add(segment.bytes(offset));
+                counts.add(segment.pointCount(offset));
+            }
+            TrackBlockEncoder open = openBlocks.get(deliveryId);
+            if (open != null) {
+                blocks.add(open.toBytes());
+                counts.add(open.count());
+            }
+        }
+
+        int total = counts.stream().mapToInt(Integer::intValue).sum();
+        long[] timestamps = new long[total];
+        double[] lat = new double[total];
+        double[] lng = new double[total];
+        double[] speed = new double[total];
+        long compressedBytes = 0;
+        int offset = 0;
+        for (int i = 0; i < blocks.size(); i++) {
+            byte[] bytes = blocks.get(i);
+            TrackBlockDecoder.decode(bytes, bytes.length, counts.get(i), timestamps, lat, lng, speed, offset);
+            offset += counts.get(i);
+            compressedBytes += bytes.length;
+        }
+        return new GpsTrack(deliveryId, timestamps, lat, lng, speed, compressedBytes);
+    }
+
+    /**
+     * Tắt service: niêm phong mọi block đang ghi và đẩy segment xuống đĩa
+     */
+    @PreDestroy
+    public synchronized void close() {
+        if (!enabled) {
+            return;
+        }
+        openBlocks.forEach(this::seal);
+        openBlocks.clear();
+        segments.values().forEach(TrackSegment::close);
+        log.info("GPS track store closed ({} segments)", segments.size());
+    }
+
+    private void seal(long deliveryId, TrackBlockEncoder block) {
+        if (block.count() == 0) {
+            return;
+        }
+        byte[] bytes = block.toBytes();
+        TrackSegment segment = segments.lastEntry().getValue();
+        if (!segment.fits(bytes.length)) {
+            segment.force();
+            segment = openSegment(segment.index() + 1);
+        }
+        int offset = segment.append(deliveryId, block.count(), bytes);
+        sealedBlocks.computeIfAbsent(deliveryId, id -> new ArrayList<>(1))
+                .add(((long) segment.index() << 32) | offset);
+        sealedBytes.increment(TrackSegment.RECORD_HEADER_BYTES + bytes.length);
+    }
+
+    /**
+     * Xóa segment quá hạn hoặc vượt dung lượng, bắt đầu từ segment cũ nhất
+     */
+    @Scheduled(fixedDelayString = "${delivery.track.retention-check-ms:600000}", initialDelay = 60000)
+    public void enforceRetention() {
+        enforceRetention(System.currentTimeMillis());
+    }
+
+    synchronized int enforceRetention(long nowMillis) {
+        if (!enabled) {
+            return 0;
+        }
+        List<Integer> dropped = new ArrayList<>();
+        while (segments.size() > 1) {
+            TrackSegment oldest = segments.firstEntry().getValue();
+            if (segments.size() <= maxSegments && nowMillis - oldest.lastWriteMillis() <= retentionMillis) {
+                break;
+            }
+            segments.pollFirstEntry();
+            oldest.delete();
+            dropped.add(oldest.index());
+        }
+        if (dropped.isEmpty()) {
+            return 0;
+        }
+        // Bỏ địa chỉ block thuộc segment đã xóa; delivery không còn block nào thì bỏ khỏi index
+        Iterator<List<Long>> it = sealedBlocks.values().iterator();
+        while (it.hasNext()) {
+            List<Long> addresses = it.next();
+            addresses.removeIf(address -> !segments.containsKey((int) (address >>> 32)));
+            if (addresses.isEmpty()) {
+                it.remove();
+            }
+        }
+        droppedSegments.increment(dropped.size());
+        log.info("GPS track retention dropped segments {} ({} segments, {} deliveries left)",
+                dropped, segments.size(), sealedBlocks.size());
+        return dropped.size();
+    }
+
+    synchronized int segmentCount() {
+        return segments.size();
+    }
+
+    private void openSegments() {
+        try {
+            Files.createDirectories(dataDir);
+            // Retention có thể đã xóa các segment đầu: mở theo chỉ số trong tên file, không đếm từ 0
+            List<Integer> indexes;
+            try (Stream<Path> files = Files.list(dataDir)) {
+                indexes = files.map(f -> f.getFileName().toString())
+                        .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                        .map(name -> Integer.parseInt(name.substring(SEGMENT_PREFIX.length(),
+                                name.length() - SEGMENT_SUFFIX.length())))
+                        .sorted()
+                        .toList();
+            }
+            if (indexes.isEmpty()) {
+                openSegment(0);
+            }
+            indexes.forEach(this::openSegment);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open GPS track directory " + dataDir, e);
+        }
+        long blocks = sealedBlocks.values().stream().mapToLong(List::size).sum();
+        log.info("GPS track store opened at {}: {} segments, {} blocks for {} deliveries",
+                dataDir, segments.size(), blocks, sealedBlocks.size());
+    }
+
+    private TrackSegment openSegment(int index) {
+        Path file = dataDir.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+        TrackSegment segment = TrackSegment.open(file, index, segmentBytes, (deliveryId, offset) ->
+                sealedBlocks.computeIfAbsent(deliveryId, id -> new ArrayList<>(1))
+                        .add(((long) index << 32) | offset));
+        segments.put(index, segment);
+        return segment;
+    }
+}
@@ -0,0 +1,71 @@
+package vn.cnpm.delivery_service.track;
+
+/**
+ * Giải nén block do {@link TrackBlockEncoder} ghi, nối vào các mảng kết quả từ vị trí offset
+ */
+final class TrackBlockDecoder {
+
+    private TrackBlockDecoder() {
+    }
+
+    static void decode(byte[] bytes, int length, int count, long[] timestamps, double[] lat, double[] lng,
+                       double[] speed, int offset) {
+        if (count == 0) {
+            return;
+        }
+        BitReader in = new BitReader(bytes, length);
+        long time = in.read(64);
+        long qLat = (int) in.read(32);
+        long qLng = (int) in.read(32);
+        long speedBits = in.read(64);
+        long timeDelta = 0;
+        long latDelta = 0;
+        long lngDelta = 0;
+        int leading = -1;
+        int trailing = 0;
+
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                timeDelta += readDeltaOfDelta(in, TrackBlockEncoder.TIME_BUCKETS);
+                latDelta += readDeltaOfDelta(in, TrackBlockEncoder.COORDINATE_BUCKETS);
+                lngDelta += readDeltaOfDelta(in, TrackBlockEncoder.COORDINATE_BUCKETS);
+                time += timeDelta;
+                qLat += latDelta;
+                qLng += lngDelta;
+
+                if (in.readBit()) {
+                    if (in.readBit()) {
+                        leading = (int) in.read(5);
+                        int meaningful = (int) in.read(6);
+                        if (meaningful == 0) {
+                            meaningful = 64;
+                        }
+                        trailing = 64 - leading - meaningful;
+                    }
+                    speedBits ^= in.read(64 - leading - trailing) << trailing;
+                }
+            }
+            timestamps[offset + i] = time;
+            lat[offset + i] = qLat / TrackBlockEncoder.COORDINATE_SCALE;
+            lng[offset + i] = qLng / TrackBlockEncoder.COORDINATE_SCALE;
+            speed[offset + i] = Double.longBitsToDouble(speedBits);
+        }
+    }
+
+    private static long readDeltaOfDelta(BitReader in, int[] buckets) {
+        int ones = 0;
+        while (ones <= buckets.length && in.readBit()) {
+            ones++;
+        }
+        if (ones == 0) {
+            return 0;
+        }
+        if (ones > buckets.length) {
+            return in.read(64);
+        }
+        int width = buckets[ones - 1];
+        long raw = in.read(width);
+        // Mở rộng dấu
+        return (raw << (64 - width)) >> (64 - width);
+    }
+}
@@ -0,0 +1,146 @@
+package vn.cnpm.delivery_service.track;
+
+/**
+ * Nén một block điểm GPS (kiểu Gorilla), mỗi block giải nén độc lập:
+ * - timestamp (ms): delta-of-delta - tick đều thì mỗi điểm chỉ tốn 1 bit
+ * - lat/lng: lượng tử hóa về 1e-7 độ (~1 cm) rồi delta-of-delta - drone bay thẳng đều nên
+ *   hiệu bậc hai chỉ là nhiễu làm tròn (vài bit), chỉ chỗ đổi hướng mới tốn nhiều bit
+ * - tốc độ (double, làm tròn 0.01 km/h): XOR với giá trị trước - tốc độ gần như không đổi nên phần lớn là 1 bit
+ *
+ * XOR trực tiếp trên lat/lng double không hiệu quả với GPS: các bit thấp của mantissa đổi mỗi tick
+ * (~40 bit có nghĩa mỗi tọa độ), nên tọa độ dùng fixed-point + delta-of-delta thay thế
+ */
+final class TrackBlockEncoder {
+
+    static final double COORDINATE_SCALE = 1e7;
+    static final double SPEED_SCALE = 100.0;
+
+    // Độ rộng các bucket delta-of-delta (bit), sau bucket cuối là giá trị thô 64 bit
+    static final int[] TIME_BUCKETS = {7, 9, 16};
+    static final int[] COORDINATE_BUCKETS = {4, 10, 17};
+
+    // Dung lượng bit tối đa của một điểm (mọi trường rơi vào nhánh thô)
+    static final int MAX_POINT_BITS = 3 * (4 + 64) + 2 + 5 + 6 + 64;
+
+    private final BitWriter out = new BitWriter(8);
+    private int count;
+    private long firstTimestamp;
+    private long lastTimestamp;
+
+    private long prevTime;
+    private long prevTimeDelta;
+    private long prevLat;
+    private long prevLatDelta;
+    private long prevLng;
+    private long prevLngDelta;
+    private long prevSpeedBits;
+    private int prevLeading = -1;
+    private int prevTrailing;
+
+    void append(long timestamp, double lat, double lng, double speed) {
+        long qLat = quantize(lat);
+        long qLng = quantize(lng);
+        // Làm tròn để nhiễu dấu phẩy động không làm đổi bit thấp mỗi tick
+        long speedBits = Double.doubleToRawLongBits(Math.round(speed * SPEED_SCALE) / SPEED_SCALE);
+        if (count == 0) {
+            out.write(timestamp, 64);
+            out.write(qLat, 32);
+            out.write(qLng, 32);
+            out.write(speedBits, 64);
+            firstTimestamp = timestamp;
+        } else {
+            long timeDelta = timestamp - prevTime;
+            writeDeltaOfDelta(out, timeDelta - prevTimeDelta, TIME_BUCKETS);
+            long latDelta = qLat - prevLat;
+            writeDeltaOfDelta(out, latDelta - prevLatDelta, COORDINATE_BUCKETS);
+            long lngDelta = qLng - prevLng;
+            writeDeltaOfDelta(out, lngDelta - prevLngDelta, COORDINATE_BUCKETS);
+            writeXor(speedBits);
+            prevTimeDelta = timeDelta;
+            prevLatDelta = latDelta;
+            prevLngDelta = lngDelta;
+        }
+        prevTime = timestamp;
+        prevLat = qLat;
+        prevLng = qLng;
+        prevSpeedBits = speedBits;
+        lastTimestamp = timestamp;
+        count++;
+    }
+
+    int count() {
+        return count;
+    }
+
+    long firstTimestamp() {
+        return firstTimestamp;
+    }
+
+    long lastTimestamp() {
+        return lastTimestamp;
+    }
+
+    long bitLength() {
+        return out.bitLength();
+    }
+
+    int byteLength() {
+        return out.byteLength();
+    }
+
+    byte[] toBytes() {
+        byte[] bytes = new byte[out.byteLength()];
+        out.copyBytes(bytes);
+        return bytes;
+    }
+
+    static long quantize(double degrees) {
+        return Math.round(degrees * COORDINATE_SCALE);
+    }
+
+    /**
+     * '0' nếu bằng 0; '10' + w0 bit; '110' + w1 bit; ...; toàn '1' + 64 bit thô
+     */
+    static void writeDeltaOfDelta(BitWriter out, long value, int[] buckets) {
+        if (value == 0) {
+            out.write(0, 1);
+            return;
+        }
+        for (int i = 0; i < buckets.length; i++) {
+            int width = buckets[i];
+            if (value >= -(1L << (width - 1)) && value < (1L << (width - 1))) {
+                out.write(((1L << (i + 1)) - 1) << 1, i + 2);
+                out.write(value, width);
+                return;
+            }
+        }
+        out.write((1L << (buckets.length + 1)) - 1, buckets.length + 1);
+        out.write(value, 64);
+    }
+
+    /**
+     * XOR kiểu Gorilla: '0' nếu trùng giá trị trước; '10' + bit có nghĩa nếu nằm trong cửa sổ trước;
+     * '11' + 5 bit số 0 đầu + 6 bit độ dài + bit có nghĩa nếu không
+     */
+    private void writeXor(long bits) {
+        long xor = bits ^ prevSpeedBits;
+        if (xor == 0) {
+            out.write(0, 1);
+            return;
+        }
+        int leading = Math.min(31, Long.numberOfLeadingZeros(xor));
+        int trailing = Long.numberOfTrailingZeros(xor);
+        if (prevLeading >= 0 && leading >= prevLeading && trailing >= prevTrailing) {
+            out.write(0b10, 2);
+            out.write(xor >>> prevTrailing, 64 - prevLeading - prevTrailing);
+        } else {
+            int meaningful = 64 - leading - trailing;
+            out.write(0b11, 2);
+            out.write(leading, 5);
+            out.write(meaningful & 63, 6); // 64 ghi thành 0
+            out.write(xor >>> trailing, meaningful);
+            prevLeading = leading;
+            prevTrailing = trailing;
+        }
+    }
+}
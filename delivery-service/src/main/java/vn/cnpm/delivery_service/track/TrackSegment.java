@@ -0,0 +1,151 @@
+package vn.cnpm.delivery_service.track;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Một file segment cố định kích thước, ánh xạ vào bộ nhớ (mmap), chỉ ghi nối tiếp:
+ * header [magic][version], sau đó các record block [magic][deliveryId][pointCount][byteLength][bytes]
+ * Vùng chưa ghi toàn 0 nên khi mở lại chỉ cần quét đến record đầu tiên không có magic
+ *
+ * Không đồng bộ hóa - {@link GpsTrackStore} giữ lock khi gọi
+ */
+final class TrackSegment {
+
+    static final int FILE_MAGIC = 0x54524B53;   // "TRKS"
+    static final int RECORD_MAGIC = 0x54524B42; // "TRKB"
+    static final int VERSION = 1;
+    static final int FILE_HEADER_BYTES = 8;
+    static final int RECORD_HEADER_BYTES = 4 + 8 + 4 + 4;
+
+    /**
+     * Nhận từng record hợp lệ khi mở lại segment
+     */
+    interface RecordVisitor {
+        void record(long deliveryId, int offset);
+    }
+
+    private final int index;
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private int writePosition;
+    // Lần ghi block gần nhất (epoch millis, thời gian thật) - dùng cho retention theo tuổi
+    private long lastWriteMillis;
+
+    private TrackSegment(int index, Path file, FileChannel channel, MappedByteBuffer buffer, long lastWriteMillis) {
+        this.index = index;
+        this.file = file;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.lastWriteMillis = lastWriteMillis;
+    }
+
+    /**
+     * Mở (hoặc tạo) segment; mỗi record hợp lệ được đưa cho visitor để dựng lại index
+     */
+    static TrackSegment open(Path file, int index, int sizeBytes, RecordVisitor visitor) {
+        try {
+            long lastWrite = Files.exists(file)
+                    ? Files.getLastModifiedTime(file).toMillis() : System.currentTimeMillis();
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            int size = (int) Math.max(sizeBytes, channel.size());
+            TrackSegment segment = new TrackSegment(index, file, channel,
+                    channel.map(FileChannel.MapMode.READ_WRITE, 0, size), lastWrite);
+            segment.scan(visitor);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open GPS track segment " + file, e);
+        }
+    }
+
+    private void scan(RecordVisitor visitor) {
+        if (buffer.getInt(0) != FILE_MAGIC) {
+            buffer.putInt(0, FILE_MAGIC);
+            buffer.putInt(4, VERSION);
+            writePosition = FILE_HEADER_BYTES;
+            return;
+        }
+        int position = FILE_HEADER_BYTES;
+        while (position + RECORD_HEADER_BYTES <= buffer.capacity()
+                && buffer.getInt(position) == RECORD_MAGIC) {
+            int end = position + RECORD_HEADER_BYTES + buffer.getInt(position + 16);
+            if (end > buffer.capacity()) {
+                break; // Record ghi dở (tắt đột ngột)
+            }
+            visitor.record(buffer.getLong(position + 4), position);
+            position = end;
+        }
+        writePosition = position;
+    }
+
+    int index() {
+        return index;
+    }
+
+    long lastWriteMillis() {
+        return lastWriteMillis;
+    }
+
+    boolean fits(int byteLength) {
+        return writePosition + RECORD_HEADER_BYTES + byteLength <= buffer.capacity();
+    }
+
+    /**
+     * Ghi một block, trả về offset của record
+     * Magic được ghi sau cùng để record dở dang không bao giờ được coi là hợp lệ
+     */
+    int append(long deliveryId, int pointCount, byte[] bytes) {
+        int offset = writePosition;
+        buffer.putLong(offset + 4, deliveryId);
+        buffer.putInt(offset + 12, pointCount);
+        buffer.putInt(offset + 16, bytes.length);
+        buffer.put(offset + RECORD_HEADER_BYTES, bytes);
+        buffer.putInt(offset, RECORD_MAGIC);
+        writePosition = offset + RECORD_HEADER_BYTES + bytes.length;
+        lastWriteMillis = System.currentTimeMillis();
+        return offset;
+    }
+
+    int pointCount(int offset) {
+        return buffer.getInt(offset + 12);
+    }
+
+    byte[] bytes(int offset) {
+        byte[] bytes = new byte[buffer.getInt(offset + 16)];
+        buffer.get(offset + RECORD_HEADER_BYTES, bytes);
+        return bytes;
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    void close() {
+        force();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Retention: đóng và xóa file segment
+     * Không còn tham chiếu nào tới buffer nên vùng mmap được giải phóng khi buffer bị GC
+     */
+    void delete() {
+        try {
+            channel.close();
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot delete GPS track segment " + file, e);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package vn.cnpm.delivery_service.util;
+
+import java.util.Arrays;
+
+/**
+ * Bài toán ghép cặp chi phí nhỏ nhất (Hungarian algorithm, O(n^2 * m))
+ * Dùng cho batch dispatcher ghép delivery với drone theo khoảng cách
+ */
+public final class AssignmentSolver {
+
+    private AssignmentSolver() {
+    }
+
+    /**
+     * Giải bài toán ghép cặp trên ma trận chi phí cost[hàng][cột] (có thể không vuông)
+     * Ô không khả thi (POSITIVE_INFINITY hoặc NaN) không bao giờ được ghép
+     * Trả về cột được ghép cho từng hàng, -1 nếu hàng không được ghép
+     * (số hàng > số cột, hoặc không còn cột khả thi cho hàng đó)
+     */
+    public static int[] solve(double[][] cost) {
+        int rows = cost.length;
+        if (rows == 0) {
+            return new int[0];
+        }
+        int cols = cost[0].length;
+        if (cols == 0) {
+            int[] none = new int[rows];
+            Arrays.fill(none, -1);
+            return none;
+        }
+
+        // Thay ô không khả thi bằng chi phí phạt lớn hơn mọi lời giải khả thi, ghép xong thì bỏ các cặp đó
+        double maxFinite = 0;
+        boolean infeasible = false;
+        for (double[] row : cost) {
+            for (double c : row) {
+                if (Double.isFinite(c)) {
+                    maxFinite = Math.max(maxFinite, Math.abs(c));
+                } else {
+                    infeasible = true;
+                }
+            }
+        }
+        double[][] finite = cost;
+        if (infeasible) {
+            double penalty = (2 * maxFinite + 1) * (Math.min(rows, cols) + 1);
+            finite = new double[rows][];
+            for (int i = 0; i < rows; i++) {
+                finite[i] = cost[i].clone();
+                for (int j = 0; j < cols; j++) {
+                    if (!Double.isFinite(finite[i][j])) {
+                        finite[i][j] = penalty;
+                    }
+                }
+            }
+        }
+        int[] rowToCol = solveFinite(finite, rows, cols);
+        if (infeasible) {
+            for (int i = 0; i < rows; i++) {
+                if (rowToCol[i] >= 0 && !Double.isFinite(cost[i][rowToCol[i]])) {
+                    rowToCol[i] = -1;
+                }
+            }
+        }
+        return rowToCol;
+    }
+
+    private static int[] solveFinite(double[][] cost, int rows, int cols) {
+        if (rows <= cols) {
+            return solveRowsLeqCols(cost, rows, cols);
+        }
+
+        // Nhiều hàng hơn cột: giải trên ma trận chuyển vị rồi đảo kết quả
+        double[][] transposed = new double[cols][rows];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                transposed[j][i] = cost[i][j];
+            }
+        }
+        int[] colToRow = solveRowsLeqCols(transposed, cols, rows);
+        int[] rowToCol = new int[rows];
+        Arrays.fill(rowToCol, -1);
+        for (int j = 0; j < cols; j++) {
+            rowToCol[colToRow[j]] = j;
+        }
+        return rowToCol;
+    }
+
+    /**
+     * Hungarian với thế vị (potentials) u/v, yêu cầu rows <= cols
+     */
+    private static int[] solveRowsLeqCols(double[][] cost, int rows, int cols) {
+        double[] u = new double[rows + 1];
+        double[] v = new double[cols + 1];
+        int[] matchedRow = new int[cols + 1];   // matchedRow[j] = hàng (1-based) ghép với cột j
+        int[] way = new int[cols + 1];
+        double[] minV = new double[cols + 1];
+        boolean[] used = new boolean[cols + 1];
+
+        for (int i = 1; i <= rows; i++) {
+            matchedRow[0] = i;
+            int j0 = 0;
+            Arrays.fill(minV, Double.POSITIVE_INFINITY);
+            Arrays.fill(used, false);
+            do {
+                used[j0] = true;
+                int i0 = matchedRow[j0];
+                double delta = Double.POSITIVE_INFINITY;
+                int j1 = 0;
+                for (int j = 1; j <= cols; j++) {
+                    if (used[j]) {
+                        continue;
+                    }
+                    double reduced = cost[i0 - 1][j - 1] - u[i0] - v[j];
+                    if (reduced < minV[j]) {
+                        minV[j] = reduced;
+                        way[j] = j0;
+                    }
+                    if (minV[j] < delta) {
+                        delta = minV[j];
+                        j1 = j;
+                    }
+                }
+                for (int j = 0; j <= cols; j++) {
+                    if (used[j]) {
+                        u[matchedRow[j]] += delta;
+                        v[j] -= delta;
+                    } else {
+                        minV[j] -= delta;
+                    }
+                }
+                j0 = j1;
+            } while (matchedRow[j0] != 0);
+
+            // Lật đường tăng (augmenting path)
+            do {
+                int j1 = way[j0];
+                matchedRow[j0] = matchedRow[j1];
+                j0 = j1;
+            } while (j0 != 0);
+        }
+
+        int[] rowToCol = new int[rows];
+        Arrays.fill(rowToCol, -1);
+        for (int j = 1; j <= cols; j++) {
+            if (matchedRow[j] != 0) {
+                rowToCol[matchedRow[j] - 1] = j - 1;
+            }
+        }
+        return rowToCol;
+    }
+}
@@ -0,0 +1,110 @@
+package vn.cnpm.delivery_service.util;
+
+import java.util.Arrays;
+
+/**
+ * Trạng thái đội drone dạng structure-of-arrays: mỗi thuộc tính là một mảng double song song,
+ * phần tử thứ i của mọi mảng thuộc cùng một slot (một delivery đang bay)
+ * Bố cục liên tục giúp kernel duyệt cả đội trong một lượt và dùng được SIMD
+ */
+public final class FleetArrays {
+
+    // Vị trí hiện tại (độ)
+    public double[] lat;
+    public double[] lng;
+    // Điểm đích và cos/sin vĩ độ đích tính sẵn
+    public double[] targetLat;
+    public double[] targetLng;
+    public double[] targetCos;
+    public double[] targetSin;
+    // Quãng bay mỗi tick (km)
+    public double[] stepKm;
+    // Khoảng cách còn lại đến đích sau tick gần nhất (km)
+    public double[] remainingKm;
+    // Bước di chuyển của tick gần nhất (độ)
+    public double[] stepLat;
+    public double[] stepLng;
+    // Vị trí client đang suy đoán (dead reckoning): vị trí publish lần cuối + vận tốc đã công bố mỗi tick
+    public double[] predictedLat;
+    public double[] predictedLng;
+    // Vận tốc đã công bố ở lần publish cuối (độ mỗi tick)
+    public double[] velocityLat;
+    public double[] velocityLng;
+    // Số tick kể từ lần publish cuối
+    public double[] silentTicks;
+    // Slot dirty mỗi tick khi remaining <= approachKm (đến đích / bay vào vùng tiếp cận cuối)
+    public double[] approachKm;
+    // Mốc khoảng cách còn lại (km) làm slot "dirty" một lần (vd. nửa đường), âm = không dùng
+    public double[] milestoneKm;
+    // Vùng nháp của kernel vector: điểm dirty của tick gần nhất (>= 0 là dirty)
+    public double[] dirtyScore;
+
+    public FleetArrays(int capacity) {
+        lat = new double[capacity];
+        lng = new double[capacity];
+        targetLat = new double[capacity];
+        targetLng = new double[capacity];
+        targetCos = new double[capacity];
+        targetSin = new double[capacity];
+        stepKm = new double[capacity];
+        remainingKm = new double[capacity];
+        stepLat = new double[capacity];
+        stepLng = new double[capacity];
+        predictedLat = new double[capacity];
+        predictedLng = new double[capacity];
+        velocityLat = new double[capacity];
+        velocityLng = new double[capacity];
+        silentTicks = new double[capacity];
+        approachKm = new double[capacity];
+        milestoneKm = new double[capacity];
+        dirtyScore = new double[capacity];
+    }
+
+    public int capacity() {
+        return lat.length;
+    }
+
+    public void grow(int capacity) {
+        lat = Arrays.copyOf(lat, capacity);
+        lng = Arrays.copyOf(lng, capacity);
+        targetLat = Arrays.copyOf(targetLat, capacity);
+        targetLng = Arrays.copyOf(targetLng, capacity);
+        targetCos = Arrays.copyOf(targetCos, capacity);
+        targetSin = Arrays.copyOf(targetSin, capacity);
+        stepKm = Arrays.copyOf(stepKm, capacity);
+        remainingKm = Arrays.copyOf(remainingKm, capacity);
+        stepLat = Arrays.copyOf(stepLat, capacity);
+        stepLng = Arrays.copyOf(stepLng, capacity);
+        predictedLat = Arrays.copyOf(predictedLat, capacity);
+        predictedLng = Arrays.copyOf(predictedLng, capacity);
+        velocityLat = Arrays.copyOf(velocityLat, capacity);
+        velocityLng = Arrays.copyOf(velocityLng, capacity);
+        silentTicks = Arrays.copyOf(silentTicks, capacity);
+        approachKm = Arrays.copyOf(approachKm, capacity);
+        milestoneKm = Arrays.copyOf(milestoneKm, capacity);
+        dirtyScore = new double[capacity];
+    }
+
+    /**
+     * Chép toàn bộ thuộc tính của slot from sang slot to (dùng khi xóa slot bằng cách đổi chỗ với slot cuối)
+     */
+    public void copySlot(int from, int to) {
+        lat[to] = lat[from];
+        lng[to] = lng[from];
+        targetLat[to] = targetLat[from];
+        targetLng[to] = targetLng[from];
+        targetCos[to] = targetCos[from];
+        targetSin[to] = targetSin[from];
+        stepKm[to] = stepKm[from];
+        remainingKm[to] = remainingKm[from];
+        stepLat[to] = stepLat[from];
+        stepLng[to] = stepLng[from];
+        predictedLat[to] = predictedLat[from];
+        predictedLng[to] = predictedLng[from];
+        velocityLat[to] = velocityLat[from];
+        velocityLng[to] = velocityLng[from];
+        silentTicks[to] = silentTicks[from];
+        approachKm[to] = approachKm[from];
+        milestoneKm[to] = milestoneKm[from];
+    }
+}
@@ -0,0 +1,33 @@
+package vn.cnpm.delivery_service.util;
+
+/**
+ * Kernel tiến một tick cho toàn bộ slot trong {@link FleetArrays}:
+ * mỗi drone bay thẳng về đích tối đa stepKm, cập nhật remainingKm và bước vừa đi (stepLat/stepLng),
+ * tiến vị trí client suy đoán (predicted += velocity đã công bố) và ghi vào dirty các slot cần ghi/publish:
+ * - trong vùng tiếp cận (remaining <= approachKm của slot, gồm cả đến đích)
+ * - vị trí thật lệch khỏi vị trí client suy đoán >= publishKm
+ * - vừa vượt qua mốc milestoneKm
+ * - im lặng đủ maxSilentTicks tick (heartbeat cho client mới kết nối)
+ *
+ * Khoảng cách dùng xấp xỉ equirectangular như {@link GeoKernel} (quãng bay trong thành phố, dưới 20 km)
+ */
+public interface FleetKernel {
+
+    /**
+     * @return số slot dirty đã ghi vào dirty[0..n)
+     */
+    int advance(FleetArrays fleet, int size, double publishKm, double maxSilentTicks, int[] dirty);
+
+    String name();
+
+    /**
+     * Kernel Vector API nếu JVM chạy với --add-modules jdk.incubator.vector, ngược lại kernel vô hướng
+     */
+    static FleetKernel best() {
+        try {
+            return new VectorFleetKernel();
+        } catch (LinkageError e) {
+            return new ScalarFleetKernel();
+        }
+    }
+}
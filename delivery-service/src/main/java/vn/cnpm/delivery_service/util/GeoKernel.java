@@ -0,0 +1,110 @@
+package vn.cnpm.delivery_service.util;
+
+/**
+ * Các phép tính địa lý trên kiểu double nguyên thủy, không cấp phát object - dùng cho vòng lặp nóng (tick GPS)
+ *
+ * Điểm cố định (nhà hàng, khách hàng) tính sẵn cos/sin vĩ độ một lần bằng {@link #cosLat}/{@link #sinLat}
+ * Khoảng cách dưới {@link #FAST_PATH_MAX_KM} dùng xấp xỉ equirectangular (1 sqrt, không lượng giác):
+ * sai số tương đối so với Haversine < 1e-6 khi |lat| <= 45°, < 2e-6 (tối đa ~4 cm) khi |lat| <= 60°
+ * Xa hơn thì dùng Haversine chính xác
+ */
+public final class GeoKernel {
+
+    public static final double EARTH_RADIUS_KM = 6371.0;
+
+    // Ngưỡng dùng xấp xỉ equirectangular (km)
+    public static final double FAST_PATH_MAX_KM = 20.0;
+
+    private static final double DEG_TO_RAD = Math.PI / 180.0;
+
+    private GeoKernel() {
+    }
+
+    public static double cosLat(double latDeg) {
+        return Math.cos(latDeg * DEG_TO_RAD);
+    }
+
+    public static double sinLat(double latDeg) {
+        return Math.sin(latDeg * DEG_TO_RAD);
+    }
+
+    /**
+     * Khoảng cách (km) từ điểm bất kỳ đến điểm đích có cos/sin vĩ độ tính sẵn
+     */
+    public static double distanceKm(double lat, double lng, double toLat, double toLng,
+                                    double toCosLat, double toSinLat) {
+        double dLat = (toLat - lat) * DEG_TO_RAD;
+        double dLng = wrapLongitude(toLng - lng) * DEG_TO_RAD;
+
+        // cos(vĩ độ trung bình) ≈ cos(toLat) + sin(toLat) * dLat/2 (khai triển bậc 1 quanh điểm đích)
+        double cosMid = toCosLat + toSinLat * dLat * 0.5;
+        double x = dLng * cosMid;
+        double fast = EARTH_RADIUS_KM * Math.sqrt(x * x + dLat * dLat);
+        if (fast <= FAST_PATH_MAX_KM) {
+            return fast;
+        }
+        return haversineKm(lat, lng, toLat, toLng, toCosLat);
+    }
+
+    /**
+     * Khoảng cách (km) giữa hai điểm bất kỳ (tính cos/sin vĩ độ điểm đích tại chỗ)
+     */
+    public static double distanceKm(double lat, double lng, double toLat, double toLng) {
+        return distanceKm(lat, lng, toLat, toLng, cosLat(toLat), sinLat(toLat));
+    }
+
+    /**
+     * Haversine chính xác (km) với cos vĩ độ điểm đích tính sẵn
+     */
+    public static double haversineKm(double lat, double lng, double toLat, double toLng, double toCosLat) {
+        double sinHalfLat = Math.sin((toLat - lat) * DEG_TO_RAD * 0.5);
+        double sinHalfLng = Math.sin((toLng - lng) * DEG_TO_RAD * 0.5);
+        double a = sinHalfLat * sinHalfLat + cosLat(lat) * toCosLat * sinHalfLng * sinHalfLng;
+        return 2 * EARTH_RADIUS_KM * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    /**
+     * Tỷ lệ quãng đường đi được trong một bước: 1.0 nghĩa là tới đích
+     */
+    public static double stepRatio(double distanceKm, double maxStepKm) {
+        return distanceKm <= maxStepKm ? 1.0 : maxStepKm / distanceKm;
+    }
+
+    /**
+     * Nội suy tuyến tính một tọa độ theo tỷ lệ (0.0 = from, 1.0 = to)
+     */
+    public static double interpolate(double from, double to, double ratio) {
+        return ratio >= 1.0 ? to : from + (to - from) * ratio;
+    }
+
+    /**
+     * Hướng (độ, 0 = bắc, theo chiều kim đồng hồ) của một bước nhỏ dLat/dLng (độ) tại vĩ độ lat; 0 nếu đứng yên
+     */
+    public static double headingDegrees(double lat, double dLatDeg, double dLngDeg) {
+        if (dLatDeg == 0 && dLngDeg == 0) {
+            return 0;
+        }
+        double heading = Math.toDegrees(Math.atan2(dLngDeg * cosLat(lat), dLatDeg));
+        return heading < 0 ? heading + 360 : heading;
+    }
+
+    /**
+     * Độ dài (km) của một bước nhỏ dLat/dLng (độ) tại vĩ độ lat
+     */
+    public static double stepLengthKm(double lat, double dLatDeg, double dLngDeg) {
+        double y = dLatDeg * DEG_TO_RAD;
+        double x = dLngDeg * DEG_TO_RAD * cosLat(lat);
+        return EARTH_RADIUS_KM * Math.sqrt(x * x + y * y);
+    }
+
+    // Đưa chênh lệch kinh độ về [-180, 180] để không bị sai khi đi qua kinh tuyến 180
+    private static double wrapLongitude(double dLng) {
+        if (dLng > 180) {
+            return dLng - 360;
+        }
+        if (dLng < -180) {
+            return dLng + 360;
+        }
+        return dLng;
+    }
+}
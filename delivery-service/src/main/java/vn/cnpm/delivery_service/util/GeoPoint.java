@@ -18,20 +18,14 @@ public class GeoPoint {
      * Tính khoảng cách đến điểm khác (km) - Haversine formula
      */
     public double distanceTo(GeoPoint other) {
-        final int R = 6371; // Bán kính trái đất (km)
-
-        double lat1Rad = Math.toRadians(this.lat);
-        double lat2Rad = Math.toRadians(other.lat);
-        double deltaLat = Math.toRadians(other.lat - this.lat);
-        double deltaLng = Math.toRadians(other.lng - this.lng);
-
-        double a = Math.sin(deltaLat / 2) * Math.sin(deltaLat / 2) +
-                   Math.cos(lat1Rad) * Math.cos(lat2Rad) *
-                   Math.sin(deltaLng / 2) * Math.sin(deltaLng / 2);
-
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+        return haversine(this.lat, this.lng, other.lat, other.lng);
+    }
 
-        return R * c;
+    /**
+     * Khoảng cách Haversine (km) giữa hai tọa độ, không cấp phát object
+     */
+    public static double haversine(double fromLat, double fromLng, double toLat, double toLng) {
+        return GeoKernel.haversineKm(fromLat, fromLng, toLat, toLng, GeoKernel.cosLat(toLat));
     }
 
     /**
@@ -0,0 +1,109 @@
+package vn.cnpm.delivery_service.util;
+
+/**
+ * Sắp thứ tự các điểm giao của một chuyến nhiều đơn (TSP đường mở, điểm xuất phát cố định)
+ * Nearest-neighbour dựng lộ trình ban đầu, 2-opt đảo đoạn cho đến khi không còn cải thiện
+ * Số điểm mỗi chuyến nhỏ (giới hạn bởi maxPayload) nên O(n^2) mỗi lượt 2-opt là đủ rẻ
+ */
+public final class RouteOptimizer {
+
+    private static final double EPSILON_KM = 1e-9;
+
+    private RouteOptimizer() {
+    }
+
+    /**
+     * Thứ tự ghé các điểm (lat[i], lng[i]) xuất phát từ (originLat, originLng), không quay về
+     */
+    public static int[] order(double originLat, double originLng, double[] lat, double[] lng) {
+        int n = lat.length;
+        // dist[i][j]; chỉ số n là điểm xuất phát
+        double[][] dist = new double[n + 1][n + 1];
+        for (int i = 0; i <= n; i++) {
+            for (int j = i + 1; j <= n; j++) {
+                double d = GeoKernel.distanceKm(pointLat(i, n, originLat, lat), pointLng(i, n, originLng, lng),
+                        pointLat(j, n, originLat, lat), pointLng(j, n, originLng, lng));
+                dist[i][j] = d;
+                dist[j][i] = d;
+            }
+        }
+
+        int[] route = nearestNeighbour(dist, n);
+        twoOpt(dist, route, n);
+        return route;
+    }
+
+    /**
+     * Tổng quãng bay (km) từ điểm xuất phát qua các điểm theo thứ tự order
+     */
+    public static double pathKm(double originLat, double originLng, double[] lat, double[] lng, int[] order) {
+        double total = 0;
+        double fromLat = originLat;
+        double fromLng = originLng;
+        for (int i : order) {
+            total += GeoKernel.distanceKm(fromLat, fromLng, lat[i], lng[i]);
+            fromLat = lat[i];
+            fromLng = lng[i];
+        }
+        return total;
+    }
+
+    private static int[] nearestNeighbour(double[][] dist, int n) {
+        int[] route = new int[n];
+        boolean[] visited = new boolean[n];
+        int current = n;
+        for (int k = 0; k < n; k++) {
+            int best = -1;
+            for (int j = 0; j < n; j++) {
+                if (!visited[j] && (best < 0 || dist[current][j] < dist[current][best])) {
+                    best = j;
+                }
+            }
+            route[k] = best;
+            visited[best] = true;
+            current = best;
+        }
+        return route;
+    }
+
+    /**
+     * 2-opt cho đường mở: đảo đoạn route[i..j]; cạnh sau j không tồn tại khi j là điểm cuối
+     */
+    private static void twoOpt(double[][] dist, int[] route, int n) {
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int i = 0; i < n - 1; i++) {
+                int before = i == 0 ? n : route[i - 1];
+                for (int j = i + 1; j < n; j++) {
+                    double removed = dist[before][route[i]];
+                    double added = dist[before][route[j]];
+                    if (j + 1 < n) {
+                        removed += dist[route[j]][route[j + 1]];
+                        added += dist[route[i]][route[j + 1]];
+                    }
+                    if (added < removed - EPSILON_KM) {
+                        reverse(route, i, j);
+                        improved = true;
+                    }
+                }
+            }
+        }
+    }
+
+    private static void reverse(int[] route, int from, int to) {
+        while (from < to) {
+            int tmp = route[from];
+            route[from++] = route[to];
+            route[to--] = tmp;
+        }
+    }
+
+    private static double pointLat(int i, int n, double originLat, double[] lat) {
+        return i == n ? originLat : lat[i];
+    }
+
+    private static double pointLng(int i, int n, double originLng, double[] lng) {
+        return i == n ? originLng : lng[i];
+    }
+}
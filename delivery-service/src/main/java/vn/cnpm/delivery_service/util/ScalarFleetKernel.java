@@ -0,0 +1,63 @@
+package vn.cnpm.delivery_service.util;
+
+/**
+ * Kernel vô hướng - dùng khi không có module jdk.incubator.vector và để xử lý phần đuôi mảng
+ */
+public final class ScalarFleetKernel implements FleetKernel {
+
+    static final double DEG_TO_RAD = Math.PI / 180.0;
+
+    @Override
+    public int advance(FleetArrays fleet, int size, double publishKm, double maxSilentTicks, int[] dirty) {
+        return advanceRange(fleet, 0, size, publishKm, maxSilentTicks, dirty, 0);
+    }
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+
+    static int advanceRange(FleetArrays f, int from, int to, double publishKm, double maxSilentTicks,
+                            int[] dirty, int dirtyCount) {
+        for (int i = from; i < to; i++) {
+            double dLatDeg = f.targetLat[i] - f.lat[i];
+            double dLngDeg = f.targetLng[i] - f.lng[i];
+            double dLat = dLatDeg * DEG_TO_RAD;
+            double cosMid = f.targetCos[i] + f.targetSin[i] * dLat * 0.5;
+            double x = dLngDeg * DEG_TO_RAD * cosMid;
+            double distance = GeoKernel.EARTH_RADIUS_KM * Math.sqrt(x * x + dLat * dLat);
+
+            double step = f.stepKm[i];
+            // Cùng kết quả với min(1, step/distance) và max(0, distance - step) của kernel vector
+            double ratio = distance <= step ? 1.0 : step / distance;
+            double stepLat = dLatDeg * ratio;
+            double stepLng = dLngDeg * ratio;
+            double lat = f.lat[i] + stepLat;
+            double lng = f.lng[i] + stepLng;
+            double remaining = distance > step ? distance - step : 0.0;
+            f.lat[i] = lat;
+            f.lng[i] = lng;
+            f.stepLat[i] = stepLat;
+            f.stepLng[i] = stepLng;
+            f.remainingKm[i] = remaining;
+
+            // Client ngoại suy từ lần publish cuối với vận tốc đã công bố
+            double predictedLat = f.predictedLat[i] + f.velocityLat[i];
+            double predictedLng = f.predictedLng[i] + f.velocityLng[i];
+            double silent = f.silentTicks[i] + 1.0;
+            f.predictedLat[i] = predictedLat;
+            f.predictedLng[i] = predictedLng;
+            f.silentTicks[i] = silent;
+
+            double pLat = (lat - predictedLat) * DEG_TO_RAD;
+            double pLng = (lng - predictedLng) * DEG_TO_RAD * cosMid;
+            double drift = GeoKernel.EARTH_RADIUS_KM * Math.sqrt(pLat * pLat + pLng * pLng);
+
+            if (remaining <= f.approachKm[i] || drift >= publishKm || remaining <= f.milestoneKm[i]
+                    || silent >= maxSilentTicks) {
+                dirty[dirtyCount++] = i;
+            }
+        }
+        return dirtyCount;
+    }
+}
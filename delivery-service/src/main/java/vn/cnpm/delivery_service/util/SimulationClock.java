@@ -0,0 +1,86 @@
+package vn.cnpm.delivery_service.util;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+
+/**
+ * Đồng hồ giả lập có hệ số nén thời gian: thời gian giả lập trôi nhanh gấp compression lần thời gian thật,
+ * tính từ lúc tạo đồng hồ (compression = 1 thì trùng với đồng hồ hệ thống)
+ *
+ * Timestamp của delivery, ETA, quãng bay mỗi tick và hạn của các bước vòng đời đều tính theo đồng hồ này;
+ * thời gian thật chỉ dùng khi lên lịch (chia cho compression bằng {@link #toRealMillis})
+ */
+public final class SimulationClock extends Clock {
+
+    private final Clock base;
+    private final double compression;
+    private final long originMillis;
+
+    public SimulationClock(Clock base, double compression) {
+        this(base, compression, base.millis());
+    }
+
+    private SimulationClock(Clock base, double compression, long originMillis) {
+        if (compression <= 0) {
+            throw new IllegalArgumentException("Time compression must be positive: " + compression);
+        }
+        this.base = base;
+        this.compression = compression;
+        this.originMillis = originMillis;
+    }
+
+    public static SimulationClock realTime() {
+        return new SimulationClock(Clock.systemUTC(), 1.0);
+    }
+
+    /**
+     * Số giây giả lập trôi qua trong một giây thật
+     */
+    public double compression() {
+        return compression;
+    }
+
+    public boolean isAccelerated() {
+        return compression != 1.0;
+    }
+
+    /**
+     * Đổi một khoảng thời gian giả lập sang mili giây thật (để lên lịch timer)
+     */
+    public long toRealMillis(Duration simulated) {
+        return (long) Math.ceil(simulated.toMillis() / compression);
+    }
+
+    /**
+     * Đổi một khoảng thời gian thật (ms) sang giây giả lập
+     */
+    public double toSimulatedSeconds(long realMillis) {
+        return realMillis / 1000.0 * compression;
+    }
+
+    @Override
+    public long millis() {
+        long real = base.millis();
+        if (compression == 1.0) {
+            return real;
+        }
+        return originMillis + (long) ((real - originMillis) * compression);
+    }
+
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochMilli(millis());
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return base.getZone();
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return new SimulationClock(base.withZone(zone), compression, originMillis);
+    }
+}
@@ -0,0 +1,95 @@
+package vn.cnpm.delivery_service.util;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Kernel SIMD dùng jdk.incubator.vector (JVM cần --add-modules jdk.incubator.vector)
+ * Cùng phép tính với {@link ScalarFleetKernel}, mỗi lượt xử lý SPECIES.length() drone
+ * Viết không rẽ nhánh (min/max thay cho blend, một phép so sánh cho cờ dirty) để JIT giữ toàn bộ trong thanh ghi
+ */
+public final class VectorFleetKernel implements FleetKernel {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public int advance(FleetArrays f, int size, double publishKm, double maxSilentTicks, int[] dirty) {
+        int lanes = SPECIES.length();
+        int upper = SPECIES.loopBound(size);
+        int dirtyCount = 0;
+
+        // Hằng số broadcast một lần ngoài vòng lặp
+        DoubleVector degToRad = DoubleVector.broadcast(SPECIES, ScalarFleetKernel.DEG_TO_RAD);
+        DoubleVector half = DoubleVector.broadcast(SPECIES, 0.5);
+        DoubleVector one = DoubleVector.broadcast(SPECIES, 1.0);
+        DoubleVector zero = DoubleVector.zero(SPECIES);
+        DoubleVector radius = DoubleVector.broadcast(SPECIES, GeoKernel.EARTH_RADIUS_KM);
+        DoubleVector publish = DoubleVector.broadcast(SPECIES, publishKm);
+        DoubleVector maxSilent = DoubleVector.broadcast(SPECIES, maxSilentTicks);
+
+        for (int i = 0; i < upper; i += lanes) {
+            DoubleVector lat = DoubleVector.fromArray(SPECIES, f.lat, i);
+            DoubleVector lng = DoubleVector.fromArray(SPECIES, f.lng, i);
+
+            DoubleVector dLatDeg = DoubleVector.fromArray(SPECIES, f.targetLat, i).sub(lat);
+            DoubleVector dLngDeg = DoubleVector.fromArray(SPECIES, f.targetLng, i).sub(lng);
+            DoubleVector dLat = dLatDeg.mul(degToRad);
+            DoubleVector cosMid = DoubleVector.fromArray(SPECIES, f.targetSin, i)
+                    .mul(dLat).mul(half)
+                    .add(DoubleVector.fromArray(SPECIES, f.targetCos, i));
+            DoubleVector x = dLngDeg.mul(degToRad).mul(cosMid);
+            DoubleVector distance = x.mul(x).add(dLat.mul(dLat)).sqrt().mul(radius);
+
+            // ratio = min(1, step / distance); distance = 0 cho +Inf nên cũng thành 1
+            DoubleVector step = DoubleVector.fromArray(SPECIES, f.stepKm, i);
+            DoubleVector ratio = step.div(distance).min(one);
+            DoubleVector stepLat = dLatDeg.mul(ratio);
+            DoubleVector stepLng = dLngDeg.mul(ratio);
+            DoubleVector newLat = lat.add(stepLat);
+            DoubleVector newLng = lng.add(stepLng);
+            DoubleVector remaining = distance.sub(step).max(zero);
+            newLat.intoArray(f.lat, i);
+            newLng.intoArray(f.lng, i);
+            stepLat.intoArray(f.stepLat, i);
+            stepLng.intoArray(f.stepLng, i);
+            remaining.intoArray(f.remainingKm, i);
+
+            // Client ngoại suy từ lần publish cuối với vận tốc đã công bố
+            DoubleVector predictedLat = DoubleVector.fromArray(SPECIES, f.predictedLat, i)
+                    .add(DoubleVector.fromArray(SPECIES, f.velocityLat, i));
+            DoubleVector predictedLng = DoubleVector.fromArray(SPECIES, f.predictedLng, i)
+                    .add(DoubleVector.fromArray(SPECIES, f.velocityLng, i));
+            DoubleVector silent = DoubleVector.fromArray(SPECIES, f.silentTicks, i).add(one);
+            predictedLat.intoArray(f.predictedLat, i);
+            predictedLng.intoArray(f.predictedLng, i);
+            silent.intoArray(f.silentTicks, i);
+
+            DoubleVector pLat = newLat.sub(predictedLat).mul(degToRad);
+            DoubleVector pLng = newLng.sub(predictedLng).mul(degToRad).mul(cosMid);
+            DoubleVector drift = pLat.mul(pLat).add(pLng.mul(pLng)).sqrt().mul(radius);
+
+            // dirty khi một trong bốn hiệu >= 0: trong vùng tiếp cận, lệch dự đoán quá ngưỡng, qua mốc, im lặng quá lâu
+            DoubleVector score = DoubleVector.fromArray(SPECIES, f.approachKm, i).sub(remaining)
+                    .max(drift.sub(publish))
+                    .max(DoubleVector.fromArray(SPECIES, f.milestoneKm, i).sub(remaining))
+                    .max(silent.sub(maxSilent));
+            score.intoArray(f.dirtyScore, i);
+        }
+
+        // Thu thập slot dirty bằng vòng lặp vô hướng: VectorMask.toLong() chưa được JIT intrinsic trên JDK 17
+        // (mỗi lần gọi cấp phát object), còn quét mảng double thì rẻ và dễ dự đoán nhánh
+        for (int i = 0; i < upper; i++) {
+            if (f.dirtyScore[i] >= 0) {
+                dirty[dirtyCount++] = i;
+            }
+        }
+
+        // Phần đuôi không đủ một vector
+        return ScalarFleetKernel.advanceRange(f, upper, size, publishKm, maxSilentTicks, dirty, dirtyCount);
+    }
+
+    @Override
+    public String name() {
+        return "vector-" + SPECIES.length();
+    }
+}
@@ -0,0 +1,185 @@
+package vn.cnpm.delivery_service.benchmark;
+
+import vn.cnpm.delivery_service.model.Drone;
+import vn.cnpm.delivery_service.model.DroneStatus;
+import vn.cnpm.delivery_service.service.BatchDispatcher;
+import vn.cnpm.delivery_service.service.DroneSpatialIndex;
+import vn.cnpm.delivery_service.util.GeoPoint;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Simulation giờ cao điểm: so sánh gán drone greedy (mỗi đơn lấy drone gần nhất khi tới)
+ * với batch dispatcher (gom đơn mỗi 2s, ghép Hungarian toàn cục)
+ * Đo tổng/trung bình quãng bay đến nhà hàng và số transaction gán drone
+ *
+ * Chạy: mvn -Pbenchmark test-compile exec:exec -Dbenchmark.main=vn.cnpm.delivery_service.benchmark.DispatchSimulation
+ */
+public class DispatchSimulation {
+
+    private static final double CENTER_LAT = 10.7769;
+    private static final double CENTER_LNG = 106.7009;
+    private static final double SPREAD = 0.15;           // ~±16 km
+    private static final int RESTAURANTS = 300;
+    private static final double WINDOW_SECONDS = 2.0;
+    private static final double SIM_SECONDS = 3600;      // 1 giờ cao điểm
+    private static final double DRONE_SPEED_KMH = 45.0;
+    private static final double DROP_OFF_SECONDS = 120;
+
+    private record Order(double arrival, double restLat, double restLng, double custLat, double custLng) {
+    }
+
+    private record Return(double time, Drone drone) {
+    }
+
+    private record Result(int assigned, double totalPickupKm, double totalWaitSeconds, int transactions) {
+    }
+
+    public static void main(String[] args) {
+        int[][] scenarios = {
+                // {số drone, đơn/phút}
+                {1000, 60},
+                {1000, 120},
+                {2000, 240},
+        };
+        System.out.printf("%-8s %-10s %-8s %10s %14s %12s %14s%n",
+                "drones", "orders/min", "mode", "assigned", "mean pickup km", "mean wait s", "transactions");
+        for (int[] scenario : scenarios) {
+            List<Order> orders = generateOrders(scenario[1], 7);
+            Result greedy = run(scenario[0], orders, false);
+            Result batch = run(scenario[0], orders, true);
+            print(scenario, "greedy", greedy);
+            print(scenario, "batch", batch);
+            System.out.printf(Locale.ROOT, "  -> batch saves %.1f%% pickup distance per order%n",
+                    100.0 * (1 - (batch.totalPickupKm() / batch.assigned()) / (greedy.totalPickupKm() / greedy.assigned())));
+        }
+    }
+
+    private static void print(int[] scenario, String mode, Result r) {
+        System.out.printf(Locale.ROOT, "%-8d %-10d %-8s %10d %14.3f %12.1f %14d%n",
+                scenario[0], scenario[1], mode, r.assigned(),
+                r.totalPickupKm() / Math.max(1, r.assigned()),
+                r.totalWaitSeconds() / Math.max(1, r.assigned()),
+                r.transactions());
+    }
+
+    private static List<Order> generateOrders(int perMinute, long seed) {
+        Random random = new Random(seed);
+        double[][] restaurants = new double[RESTAURANTS][2];
+        for (double[] r : restaurants) {
+            // Nhà hàng tập trung gần trung tâm hơn
+            r[0] = CENTER_LAT + random.nextGaussian() * SPREAD / 3;
+            r[1] = CENTER_LNG + random.nextGaussian() * SPREAD / 3;
+        }
+        List<Order> orders = new ArrayList<>();
+        double rate = perMinute / 60.0;
+        double t = 0;
+        while (true) {
+            t += -Math.log(1 - random.nextDouble()) / rate; // Poisson arrivals
+            if (t > SIM_SECONDS) {
+                break;
+            }
+            double[] r = restaurants[random.nextInt(RESTAURANTS)];
+            orders.add(new Order(t, r[0], r[1],
+                    r[0] + (random.nextDouble() - 0.5) * 0.06,
+                    r[1] + (random.nextDouble() - 0.5) * 0.06));
+        }
+        return orders;
+    }
+
+    private static Result run(int droneCount, List<Order> orders, boolean batchMode) {
+        Random random = new Random(11);
+        List<Drone> fleet = new ArrayList<>();
+        for (int i = 0; i < droneCount; i++) {
+            fleet.add(Drone.builder()
+                    .droneCode("DRONE-" + i)
+                    .status(DroneStatus.AVAILABLE)
+                    .batteryLevel(100)
+                    .currentLat(CENTER_LAT + (random.nextDouble() - 0.5) * 2 * SPREAD)
+                    .currentLng(CENTER_LNG + (random.nextDouble() - 0.5) * 2 * SPREAD)
+                    .build());
+        }
+        Map<String, Drone> byCode = new HashMap<>();
+        fleet.forEach(d -> byCode.put(d.getDroneCode(), d));
+
+        DroneSpatialIndex index = new DroneSpatialIndex();
+        index.rebuild(fleet);
+
+        PriorityQueue<Return> returns = new PriorityQueue<>(Comparator.comparingDouble(Return::time));
+        Deque<Order> waiting = new ArrayDeque<>();
+        int nextOrder = 0;
+        int assigned = 0;
+        int transactions = 0;
+        double totalPickup = 0;
+        double totalWait = 0;
+
+        for (double now = WINDOW_SECONDS; now <= SIM_SECONDS + WINDOW_SECONDS; now += WINDOW_SECONDS) {
+            while (!returns.isEmpty() && returns.peek().time() <= now) {
+                Drone drone = returns.poll().drone();
+                drone.setStatus(DroneStatus.AVAILABLE);
+                index.update(drone);
+            }
+            while (nextOrder < orders.size() && orders.get(nextOrder).arrival() <= now) {
+                waiting.add(orders.get(nextOrder++));
+            }
+            if (waiting.isEmpty()) {
+                continue;
+            }
+
+            List<Order> window = new ArrayList<>(waiting);
+            waiting.clear();
+            String[] chosen = new String[window.size()];
+            if (batchMode) {
+                double[] lat = new double[window.size()];
+                double[] lng = new double[window.size()];
+                for (int i = 0; i < window.size(); i++) {
+                    lat[i] = window.get(i).restLat();
+                    lng[i] = window.get(i).restLng();
+                }
+                chosen = BatchDispatcher.match(lat, lng, index, 10);
+                transactions++;
+            } else {
+                // Greedy: từng đơn theo thứ tự đến lấy drone gần nhất còn trống
+                for (int i = 0; i < window.size(); i++) {
+                    for (DroneSpatialIndex.Candidate c : index.nearest(window.get(i).restLat(), window.get(i).restLng(), 1)) {
+                        if (index.tryClaim(c.droneCode())) {
+                            chosen[i] = c.droneCode();
+                            transactions++;
+                        }
+                    }
+                }
+            }
+
+            for (int i = 0; i < window.size(); i++) {
+                Order order = window.get(i);
+                if (chosen[i] == null || (batchMode && !index.tryClaim(chosen[i]))) {
+                    waiting.add(order);
+                    continue;
+                }
+                Drone drone = byCode.get(chosen[i]);
+                double pickupKm = GeoPoint.haversine(drone.getCurrentLat(), drone.getCurrentLng(),
+                        order.restLat(), order.restLng());
+                double tripKm = GeoPoint.haversine(order.restLat(), order.restLng(), order.custLat(), order.custLng());
+                totalPickup += pickupKm;
+                totalWait += now - order.arrival();
+                assigned++;
+
+                drone.setStatus(DroneStatus.BUSY);
+                drone.setCurrentLat(order.custLat());
+                drone.setCurrentLng(order.custLng());
+                double busySeconds = (pickupKm + tripKm) / DRONE_SPEED_KMH * 3600 + DROP_OFF_SECONDS;
+                returns.add(new Return(now + busySeconds, drone));
+            }
+        }
+        return new Result(assigned, totalPickup, totalWait, transactions);
+    }
+}
@@ -0,0 +1,97 @@
+package vn.cnpm.delivery_service.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import vn.cnpm.delivery_service.model.Drone;
+import vn.cnpm.delivery_service.model.DroneStatus;
+import vn.cnpm.delivery_service.service.DroneSpatialIndex;
+import vn.cnpm.delivery_service.util.GeoPoint;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * So sánh tìm drone gần nhất: spatial index (lưới + Haversine k-nearest)
+ * với quét toàn bộ drone như query ORDER BY SQRT(...) LIMIT 1 cũ
+ *
+ * Chạy: mvn -Pbenchmark test-compile exec:exec -Dbenchmark=DroneSpatialIndex
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DroneSpatialIndexBenchmark {
+
+    // Khu vực HCM ~ ±15 km quanh trung tâm
+    private static final double CENTER_LAT = 10.7769;
+    private static final double CENTER_LNG = 106.7009;
+    private static final double SPREAD = 0.15;
+
+    @Param({"10000"})
+    public int droneCount;
+
+    @Param({"1", "5"})
+    public int k;
+
+    private DroneSpatialIndex index;
+    private double[] droneLat;
+    private double[] droneLng;
+    private double[] queryLat;
+    private double[] queryLng;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        List<Drone> drones = new ArrayList<>(droneCount);
+        droneLat = new double[droneCount];
+        droneLng = new double[droneCount];
+        for (int i = 0; i < droneCount; i++) {
+            droneLat[i] = CENTER_LAT + (random.nextDouble() - 0.5) * 2 * SPREAD;
+            droneLng[i] = CENTER_LNG + (random.nextDouble() - 0.5) * 2 * SPREAD;
+            drones.add(Drone.builder()
+                    .droneCode("DRONE-" + i)
+                    .status(DroneStatus.AVAILABLE)
+                    .batteryLevel(30 + random.nextInt(71))
+                    .currentLat(droneLat[i])
+                    .currentLng(droneLng[i])
+                    .build());
+        }
+        index = new DroneSpatialIndex();
+        index.rebuild(drones);
+
+        queryLat = new double[1024];
+        queryLng = new double[1024];
+        for (int i = 0; i < queryLat.length; i++) {
+            queryLat[i] = CENTER_LAT + (random.nextDouble() - 0.5) * 2 * SPREAD;
+            queryLng[i] = CENTER_LNG + (random.nextDouble() - 0.5) * 2 * SPREAD;
+        }
+    }
+
+    @Benchmark
+    public void spatialIndexNearest(Blackhole bh) {
+        int i = next++ & (queryLat.length - 1);
+        bh.consume(index.nearest(queryLat[i], queryLng[i], k));
+    }
+
+    @Benchmark
+    public void fullScanNearest(Blackhole bh) {
+        int i = next++ & (queryLat.length - 1);
+        double lat = queryLat[i];
+        double lng = queryLng[i];
+        int best = -1;
+        double bestDistance = Double.MAX_VALUE;
+        for (int d = 0; d < droneCount; d++) {
+            double distance = GeoPoint.haversine(lat, lng, droneLat[d], droneLng[d]);
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = d;
+            }
+        }
+        bh.consume(best);
+    }
+}
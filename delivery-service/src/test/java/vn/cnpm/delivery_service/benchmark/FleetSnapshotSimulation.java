@@ -0,0 +1,106 @@
+package vn.cnpm.delivery_service.benchmark;
+
+import vn.cnpm.delivery_service.model.Delivery;
+import vn.cnpm.delivery_service.model.DeliveryStatus;
+import vn.cnpm.delivery_service.service.DroneSpatialIndex;
+import vn.cnpm.delivery_service.snapshot.FleetSnapshot;
+import vn.cnpm.delivery_service.snapshot.FleetSnapshotStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Simulation FleetSnapshotStore ở quy mô load-test (10.000 drone sẵn sàng, 5.000 delivery đang hoạt động):
+ * kích thước file, thời gian ghi, thời gian đọc lại + khôi phục spatial index, và kiểm tra dữ liệu đọc lại khớp
+ *
+ * Chạy: mvn -Pbenchmark test-compile exec:exec -Dbenchmark.main=vn.cnpm.delivery_service.benchmark.FleetSnapshotSimulation
+ */
+public class FleetSnapshotSimulation {
+
+    private static final double CENTER_LAT = 10.7769;
+    private static final double CENTER_LNG = 106.7009;
+    private static final double SPREAD = 0.2;
+    private static final int DRONES = 10_000;
+    private static final int DELIVERIES = 5_000;
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) throws IOException {
+        Random random = new Random(20);
+        List<DroneSpatialIndex.IndexedDrone> drones = new ArrayList<>(DRONES);
+        for (int i = 0; i < DRONES; i++) {
+            drones.add(new DroneSpatialIndex.IndexedDrone(String.format("SIM-%06d", i),
+                    CENTER_LAT + (random.nextDouble() - 0.5) * SPREAD,
+                    CENTER_LNG + (random.nextDouble() - 0.5) * SPREAD, 30 + random.nextInt(71)));
+        }
+        DeliveryStatus[] statuses = {DeliveryStatus.PENDING, DeliveryStatus.PICKED_UP, DeliveryStatus.DELIVERING};
+        Instant now = Instant.ofEpochMilli(System.currentTimeMillis()); // snapshot lưu epoch ms
+        List<Delivery> deliveries = new ArrayList<>(DELIVERIES);
+        for (int i = 0; i < DELIVERIES; i++) {
+            deliveries.add(Delivery.builder()
+                    .id((long) i + 1)
+                    .orderId(100_000L + i)
+                    .droneId(String.format("SIM-%06d", random.nextInt(DRONES)))
+                    .status(statuses[random.nextInt(statuses.length)])
+                    .restaurantId((long) random.nextInt(300))
+                    .restaurantAddress("Restaurant " + random.nextInt(300) + ", District " + random.nextInt(12))
+                    .restaurantLat(CENTER_LAT + (random.nextDouble() - 0.5) * SPREAD)
+                    .restaurantLng(CENTER_LNG + (random.nextDouble() - 0.5) * SPREAD)
+                    .deliveryAddress(random.nextInt(500) + " Le Loi, District " + random.nextInt(12))
+                    .deliveryPhone("09" + (10_000_000 + random.nextInt(89_999_999)))
+                    .deliveryFullName("Customer " + i)
+                    .deliveryLat(CENTER_LAT + (random.nextDouble() - 0.5) * SPREAD)
+                    .deliveryLng(CENTER_LNG + (random.nextDouble() - 0.5) * SPREAD)
+                    .createdAt(now.minusSeconds(random.nextInt(600)))
+                    .assignedAt(now.minusSeconds(random.nextInt(300)))
+                    .currentLat(CENTER_LAT + (random.nextDouble() - 0.5) * SPREAD)
+                    .currentLng(CENTER_LNG + (random.nextDouble() - 0.5) * SPREAD)
+                    .distanceRemaining(random.nextDouble() * 8)
+                    .currentSpeed(45.0)
+                    .priority(random.nextInt(4) == 0 ? 1 : null)
+                    .updatedAt(now)
+                    .build());
+        }
+        FleetSnapshot snapshot = new FleetSnapshot(now, drones, List.of("SIM-000001"), deliveries);
+
+        Path dir = Files.createTempDirectory("fleet-snapshot");
+        Path file = dir.resolve("fleet.snap");
+        try {
+            FleetSnapshotStore writer = new FleetSnapshotStore(true, file.toString(), 900, 2000);
+            long writeNanos = Long.MAX_VALUE;
+            for (int round = 0; round < ROUNDS; round++) {
+                long start = System.nanoTime();
+                writer.write(snapshot);
+                writeNanos = Math.min(writeNanos, System.nanoTime() - start);
+            }
+
+            long restoreNanos = Long.MAX_VALUE;
+            FleetSnapshot restored = null;
+            DroneSpatialIndex index = new DroneSpatialIndex();
+            for (int round = 0; round < ROUNDS; round++) {
+                long start = System.nanoTime();
+                // Mỗi lần đọc là một store mới, như khi khởi động service
+                restored = new FleetSnapshotStore(true, file.toString(), 900, 2000).restored().orElseThrow();
+                index.restore(restored.availableDrones());
+                restoreNanos = Math.min(restoreNanos, System.nanoTime() - start);
+            }
+
+            boolean matches = restored.availableDrones().equals(drones)
+                    && restored.heldDrones().equals(snapshot.heldDrones())
+                    && restored.deliveries().equals(deliveries);
+            System.out.printf("snapshot          %,d available drones, %,d active deliveries%n", DRONES, DELIVERIES);
+            System.out.printf("file size         %,d bytes (%.1f bytes per delivery incl. addresses)%n",
+                    Files.size(file), (Files.size(file) - DRONES * 30.0) / DELIVERIES);
+            System.out.printf("write             %.1f ms (best of %d)%n", writeNanos / 1e6, ROUNDS);
+            System.out.printf("read + restore    %.1f ms (best of %d, incl. spatial index)%n", restoreNanos / 1e6, ROUNDS);
+            System.out.printf("round trip        %s%n", matches ? "identical" : "MISMATCH");
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(dir);
+        }
+    }
+}
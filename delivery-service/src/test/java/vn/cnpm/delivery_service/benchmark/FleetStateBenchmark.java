@@ -0,0 +1,131 @@
+package vn.cnpm.delivery_service.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import vn.cnpm.delivery_service.model.Delivery;
+import vn.cnpm.delivery_service.model.Drone;
+import vn.cnpm.delivery_service.util.FleetArrays;
+import vn.cnpm.delivery_service.util.FleetKernel;
+import vn.cnpm.delivery_service.util.GeoKernel;
+import vn.cnpm.delivery_service.util.ScalarFleetKernel;
+import vn.cnpm.delivery_service.util.VectorFleetKernel;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * So sánh một tick GPS cho cả đội drone:
+ * vòng lặp theo entity (Drone/Delivery, như tick trước khi có FleetStateEngine)
+ * với FleetArrays + kernel vô hướng / Vector API (publish khi lệch dự đoán >= 0.5 km hoặc im lặng 12 tick)
+ * Mỗi iteration đặt lại đội để drone luôn còn đang bay
+ *
+ * Chạy: mvn -Pbenchmark test-compile exec:exec -Dbenchmark=FleetState
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FleetStateBenchmark {
+
+    private static final double CENTER_LAT = 10.7769;
+    private static final double CENTER_LNG = 106.7009;
+    private static final double STEP_KM = (45.0 / 3600.0) * 5.0;
+    private static final double ARRIVAL_KM = 0.05;
+    private static final int MAX_SILENT_TICKS = 12;
+    private static final double PUBLISH_KM = 0.5;
+
+    @Param({"1000", "10000", "100000"})
+    public int drones;
+
+    private List<Delivery> deliveries;
+    private List<Drone> fleetEntities;
+    private FleetArrays fleet;
+    private int[] dirty;
+    private FleetKernel scalar;
+    private FleetKernel vector;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        Random random = new Random(42);
+        deliveries = new ArrayList<>(drones);
+        fleetEntities = new ArrayList<>(drones);
+        fleet = new FleetArrays(drones);
+        dirty = new int[drones];
+        scalar = new ScalarFleetKernel();
+        vector = new VectorFleetKernel();
+
+        for (int i = 0; i < drones; i++) {
+            double lat = CENTER_LAT + (random.nextDouble() - 0.5) * 0.3;
+            double lng = CENTER_LNG + (random.nextDouble() - 0.5) * 0.3;
+            // Đích cách xa (~50 km) để drone không đến nơi trong một iteration
+            double targetLat = lat + (random.nextBoolean() ? 0.45 : -0.45);
+            double targetLng = lng + (random.nextDouble() - 0.5) * 0.3;
+
+            fleetEntities.add(Drone.builder().droneCode("DRONE-" + i).currentLat(lat).currentLng(lng).build());
+            deliveries.add(Delivery.builder().id((long) i).deliveryLat(targetLat).deliveryLng(targetLng).build());
+
+            fleet.lat[i] = lat;
+            fleet.lng[i] = lng;
+            fleet.predictedLat[i] = lat;
+            fleet.predictedLng[i] = lng;
+            fleet.targetLat[i] = targetLat;
+            fleet.targetLng[i] = targetLng;
+            fleet.targetCos[i] = GeoKernel.cosLat(targetLat);
+            fleet.targetSin[i] = GeoKernel.sinLat(targetLat);
+            fleet.stepKm[i] = STEP_KM;
+            fleet.approachKm[i] = ARRIVAL_KM;
+            fleet.milestoneKm[i] = -1;
+        }
+    }
+
+    @Benchmark
+    public void entityLoop(Blackhole bh) {
+        for (int i = 0; i < drones; i++) {
+            Drone drone = fleetEntities.get(i);
+            Delivery delivery = deliveries.get(i);
+            double currentLat = drone.getCurrentLat();
+            double currentLng = drone.getCurrentLng();
+            double ratio = GeoKernel.stepRatio(GeoKernel.distanceKm(currentLat, currentLng,
+                    delivery.getDeliveryLat(), delivery.getDeliveryLng()), STEP_KM);
+            double nextLat = GeoKernel.interpolate(currentLat, delivery.getDeliveryLat(), ratio);
+            double nextLng = GeoKernel.interpolate(currentLng, delivery.getDeliveryLng(), ratio);
+            double remaining = GeoKernel.distanceKm(nextLat, nextLng, delivery.getDeliveryLat(), delivery.getDeliveryLng());
+
+            drone.updateLocation(nextLat, nextLng);
+            delivery.setCurrentLat(nextLat);
+            delivery.setCurrentLng(nextLng);
+            delivery.setDistanceRemaining(remaining);
+            delivery.setEstimatedArrival(Instant.now().plusSeconds((long) (remaining / 45.0 * 3600)));
+        }
+        bh.consume(deliveries);
+    }
+
+    @Benchmark
+    public void scalarKernel(Blackhole bh) {
+        bh.consume(tick(scalar));
+    }
+
+    @Benchmark
+    public void vectorKernel(Blackhole bh) {
+        bh.consume(tick(vector));
+    }
+
+    private int tick(FleetKernel kernel) {
+        int count = kernel.advance(fleet, drones, PUBLISH_KM, MAX_SILENT_TICKS, dirty);
+        // Ghi lại (ở đây chỉ đánh dấu đã publish) các slot dirty, như FleetStateEngine.markPublished
+        for (int k = 0; k < count; k++) {
+            int slot = dirty[k];
+            fleet.predictedLat[slot] = fleet.lat[slot];
+            fleet.predictedLng[slot] = fleet.lng[slot];
+            fleet.velocityLat[slot] = fleet.stepLat[slot];
+            fleet.velocityLng[slot] = fleet.stepLng[slot];
+            fleet.silentTicks[slot] = 0;
+        }
+        return count;
+    }
+}
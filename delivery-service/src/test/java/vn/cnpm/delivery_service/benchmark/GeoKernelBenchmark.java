@@ -0,0 +1,83 @@
+package vn.cnpm.delivery_service.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import vn.cnpm.delivery_service.util.GeoKernel;
+import vn.cnpm.delivery_service.util.GeoPoint;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * So sánh một bước di chuyển drone trong tick GPS:
+ * cách cũ (GeoPoint + distanceTo hai lần + interpolate tạo object mới)
+ * với GeoKernel (double nguyên thủy, cos/sin điểm đích tính sẵn, equirectangular dưới 20 km)
+ * Xem gc.alloc.rate.norm để thấy số byte cấp phát mỗi op
+ *
+ * Chạy: mvn -Pbenchmark test-compile exec:exec -Dbenchmark=GeoKernel
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeoKernelBenchmark {
+
+    private static final double CENTER_LAT = 10.7769;
+    private static final double CENTER_LNG = 106.7009;
+    private static final double STEP_KM = (45.0 / 3600.0) * 5.0;
+    private static final int SIZE = 1024;
+
+    private final double[] droneLat = new double[SIZE];
+    private final double[] droneLng = new double[SIZE];
+    private final double[] targetLat = new double[SIZE];
+    private final double[] targetLng = new double[SIZE];
+    private final double[] targetCos = new double[SIZE];
+    private final double[] targetSin = new double[SIZE];
+    private int next;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        for (int i = 0; i < SIZE; i++) {
+            droneLat[i] = CENTER_LAT + (random.nextDouble() - 0.5) * 0.1;
+            droneLng[i] = CENTER_LNG + (random.nextDouble() - 0.5) * 0.1;
+            targetLat[i] = CENTER_LAT + (random.nextDouble() - 0.5) * 0.1;
+            targetLng[i] = CENTER_LNG + (random.nextDouble() - 0.5) * 0.1;
+            targetCos[i] = GeoKernel.cosLat(targetLat[i]);
+            targetSin[i] = GeoKernel.sinLat(targetLat[i]);
+        }
+    }
+
+    @Benchmark
+    public void geoPointStep(Blackhole bh) {
+        int i = next++ & (SIZE - 1);
+        GeoPoint current = new GeoPoint(droneLat[i], droneLng[i]);
+        GeoPoint target = new GeoPoint(targetLat[i], targetLng[i]);
+
+        double totalDistance = current.distanceTo(target);
+        GeoPoint nextLocation = totalDistance <= STEP_KM
+                ? target
+                : current.interpolate(target, STEP_KM / totalDistance);
+        double remaining = nextLocation.distanceTo(target);
+
+        bh.consume(nextLocation);
+        bh.consume(remaining);
+    }
+
+    @Benchmark
+    public void kernelStep(Blackhole bh) {
+        int i = next++ & (SIZE - 1);
+        double ratio = GeoKernel.stepRatio(GeoKernel.distanceKm(droneLat[i], droneLng[i],
+                targetLat[i], targetLng[i], targetCos[i], targetSin[i]), STEP_KM);
+        double nextLat = GeoKernel.interpolate(droneLat[i], targetLat[i], ratio);
+        double nextLng = GeoKernel.interpolate(droneLng[i], targetLng[i], ratio);
+        double remaining = GeoKernel.distanceKm(nextLat, nextLng,
+                targetLat[i], targetLng[i], targetCos[i], targetSin[i]);
+
+        bh.consume(nextLat);
+        bh.consume(nextLng);
+        bh.consume(remaining);
+    }
+}
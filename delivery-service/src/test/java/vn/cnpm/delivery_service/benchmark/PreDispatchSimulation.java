@@ -0,0 +1,259 @@
+package vn.cnpm.delivery_service.benchmark;
+
+import vn.cnpm.delivery_service.util.GeoKernel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Simulation bay trước tới nhà hàng (PreDispatchService): so sánh độ trễ lấy hàng
+ * (từ lúc đơn sẵn sàng - OrderReadyEvent - đến lúc drone có mặt ở nhà hàng)
+ * khi chỉ gán drone lúc đơn sẵn sàng và khi drone được giữ chỗ mềm, cất cánh từ lúc đơn được thanh toán
+ *
+ * Thời gian chuẩn bị mỗi nhà hàng 5-15 phút, dao động ±25% mỗi đơn; ước lượng bằng EWMA như service
+ * (bắt đầu từ default-prep-seconds). 5% đơn bị hủy trước khi sẵn sàng; drone bay trước cho đơn đó
+ * được trả lại tại vị trí đang bay tới. Hết drone rảnh thì đơn chờ drone sớm rảnh nhất
+ *
+ * Chạy: mvn -Pbenchmark test-compile exec:exec -Dbenchmark.main=vn.cnpm.delivery_service.benchmark.PreDispatchSimulation
+ */
+public class PreDispatchSimulation {
+
+    private static final double CENTER_LAT = 10.7769;
+    private static final double CENTER_LNG = 106.7009;
+    private static final double CITY_SPREAD = 0.18;         // ~20 km x 20 km
+    private static final double CUSTOMER_SPREAD = 0.03;      // ~±3.3 km quanh nhà hàng
+    private static final int RESTAURANTS = 200;
+    private static final int DRONES = 250;
+    private static final double ORDERS_PER_HOUR = 800;
+    private static final double SIM_SECONDS = 3 * 3600;
+    private static final double DRONE_SPEED_KMH = 45.0;
+    private static final double DROP_OFF_SECONDS = 60;
+    private static final double CANCEL_RATE = 0.05;
+    // Như delivery.predispatch.*
+    private static final double DEFAULT_PREP_SECONDS = 600;
+    private static final double SMOOTHING = 0.2;
+    private static final double MARGIN_SECONDS = 30;
+
+    private enum Type { PAID, LAUNCH, CANCEL, READY }
+
+    private record Event(double time, Type type, int order) {
+    }
+
+    private static final class Order {
+        int restaurant;
+        double paidAt;
+        double readyAt;
+        double cancelAt = Double.NaN;
+        double customerLat;
+        double customerLng;
+        // Bay trước
+        int drone = -1;
+        double launchedAt;
+        double arrivesAt;
+    }
+
+    private static final class Result {
+        final List<Double> latencies = new ArrayList<>();
+        double waitingAtRestaurant;     // drone-giây chờ ở nhà hàng (tới sớm)
+        double wastedOnCancelled;       // drone-giây bay trước cho đơn bị hủy
+        int cancelledWithDrone;
+        int reused;
+    }
+
+    public static void main(String[] args) {
+        Random random = new Random(18);
+        double[][] restaurants = new double[RESTAURANTS][];
+        double[] prepBase = new double[RESTAURANTS];
+        for (int r = 0; r < RESTAURANTS; r++) {
+            restaurants[r] = new double[]{CENTER_LAT + (random.nextDouble() - 0.5) * CITY_SPREAD,
+                    CENTER_LNG + (random.nextDouble() - 0.5) * CITY_SPREAD};
+            prepBase[r] = 300 + random.nextDouble() * 600;
+        }
+        List<Order> orders = new ArrayList<>();
+        double t = 0;
+        while ((t += -Math.log(1.0 - random.nextDouble()) / ORDERS_PER_HOUR * 3600) < SIM_SECONDS) {
+            Order order = new Order();
+            order.restaurant = random.nextInt(RESTAURANTS);
+            order.paidAt = t;
+            double prep = prepBase[order.restaurant] * (0.75 + random.nextDouble() * 0.5);
+            order.readyAt = t + prep;
+            if (random.nextDouble() < CANCEL_RATE) {
+                order.cancelAt = t + random.nextDouble() * prep;
+            }
+            double[] rest = restaurants[order.restaurant];
+            order.customerLat = rest[0] + (random.nextDouble() - 0.5) * 2 * CUSTOMER_SPREAD;
+            order.customerLng = rest[1] + (random.nextDouble() - 0.5) * 2 * CUSTOMER_SPREAD;
+            orders.add(order);
+        }
+        long seed = random.nextLong();
+
+        Result baseline = run(orders, restaurants, false, new Random(seed));
+        Result predispatch = run(orders, restaurants, true, new Random(seed));
+
+        long cancelled = orders.stream().filter(o -> !Double.isNaN(o.cancelAt)).count();
+        System.out.printf("orders                  %,d (%,d cancelled), %d drones, %d restaurants%n",
+                orders.size(), cancelled, DRONES, RESTAURANTS);
+        print("assign on ready", baseline);
+        print("pre-dispatch on paid", predispatch);
+        System.out.printf("pickup latency removed  %.1f s mean, %.1f s p90%n",
+                mean(baseline.latencies) - mean(predispatch.latencies),
+                percentile(baseline.latencies, 0.9) - percentile(predispatch.latencies, 0.9));
+        System.out.printf("cost                    %.1f drone-min waiting at restaurants, %.1f drone-min flown "
+                        + "for %d cancelled orders (released drones reused %d times)%n",
+                predispatch.waitingAtRestaurant / 60, predispatch.wastedOnCancelled / 60,
+                predispatch.cancelledWithDrone, predispatch.reused);
+    }
+
+    private static Result run(List<Order> orders, double[][] restaurants, boolean predispatch, Random random) {
+        double[] droneLat = new double[DRONES];
+        double[] droneLng = new double[DRONES];
+        double[] freeAt = new double[DRONES];
+        boolean[] reserved = new boolean[DRONES];
+        boolean[] released = new boolean[DRONES];
+        for (int d = 0; d < DRONES; d++) {
+            droneLat[d] = CENTER_LAT + (random.nextDouble() - 0.5) * CITY_SPREAD;
+            droneLng[d] = CENTER_LNG + (random.nextDouble() - 0.5) * CITY_SPREAD;
+        }
+        Map<Integer, Double> estimates = new HashMap<>();
+        PriorityQueue<Event> events = new PriorityQueue<>((a, b) -> Double.compare(a.time(), b.time()));
+        for (int i = 0; i < orders.size(); i++) {
+            Order order = orders.get(i);
+            order.drone = -1;
+            events.add(new Event(order.paidAt, Type.PAID, i));
+            events.add(Double.isNaN(order.cancelAt)
+                    ? new Event(order.readyAt, Type.READY, i)
+                    : new Event(order.cancelAt, Type.CANCEL, i));
+        }
+
+        Result result = new Result();
+        boolean[] cancelled = new boolean[orders.size()];
+        while (!events.isEmpty()) {
+            Event event = events.poll();
+            Order order = orders.get(event.order());
+            double[] rest = restaurants[order.restaurant];
+            double now = event.time();
+            switch (event.type()) {
+                case PAID -> {
+                    if (predispatch) {
+                        int nearest = nearestIdle(droneLat, droneLng, freeAt, reserved, rest, now);
+                        double flight = nearest < 0 ? 0 : flightSeconds(droneLat[nearest], droneLng[nearest], rest);
+                        double prep = estimates.getOrDefault(order.restaurant, DEFAULT_PREP_SECONDS);
+                        events.add(new Event(now + Math.max(0, prep - flight - MARGIN_SECONDS), Type.LAUNCH,
+                                event.order()));
+                    }
+                }
+                case LAUNCH -> {
+                    if (cancelled[event.order()] || now >= order.readyAt) {
+                        continue; // Đã hủy, hoặc đơn sẵn sàng trước giờ cất cánh (gán như bình thường)
+                    }
+                    int drone = nearestIdle(droneLat, droneLng, freeAt, reserved, rest, now);
+                    if (drone >= 0) {
+                        reserved[drone] = true;
+                        if (released[drone]) {
+                            result.reused++;
+                            released[drone] = false;
+                        }
+                        order.drone = drone;
+                        order.launchedAt = now;
+                        order.arrivesAt = now + flightSeconds(droneLat[drone], droneLng[drone], rest);
+                    }
+                }
+                case CANCEL -> {
+                    cancelled[event.order()] = true;
+                    if (order.drone >= 0) {
+                        // Drone dừng tại vị trí đang bay tới và được trả lại
+                        int drone = order.drone;
+                        double total = order.arrivesAt - order.launchedAt;
+                        double ratio = total <= 0 ? 1 : Math.min(1, (now - order.launchedAt) / total);
+                        droneLat[drone] = GeoKernel.interpolate(droneLat[drone], rest[0], ratio);
+                        droneLng[drone] = GeoKernel.interpolate(droneLng[drone], rest[1], ratio);
+                        reserved[drone] = false;
+                        released[drone] = true;
+                        freeAt[drone] = now;
+                        result.wastedOnCancelled += now - order.launchedAt;
+                        result.cancelledWithDrone++;
+                    }
+                }
+                case READY -> {
+                    if (predispatch) {
+                        double observed = now - order.paidAt;
+                        estimates.merge(order.restaurant, observed, (old, sample) -> old + SMOOTHING * (sample - old));
+                    }
+                    double pickupAt;
+                    int drone = order.drone;
+                    if (drone >= 0) {
+                        pickupAt = Math.max(now, order.arrivesAt);
+                        result.waitingAtRestaurant += Math.max(0, now - order.arrivesAt);
+                        reserved[drone] = false;
+                    } else {
+                        drone = nearestIdle(droneLat, droneLng, freeAt, reserved, rest, now);
+                        if (drone < 0) {
+                            drone = soonestFree(freeAt, reserved);
+                        }
+                        pickupAt = Math.max(now, freeAt[drone]) + flightSeconds(droneLat[drone], droneLng[drone], rest);
+                    }
+                    result.latencies.add(pickupAt - now);
+                    released[drone] = false;
+                    freeAt[drone] = pickupAt
+                            + flightSeconds(rest[0], rest[1], new double[]{order.customerLat, order.customerLng})
+                            + DROP_OFF_SECONDS;
+                    droneLat[drone] = order.customerLat;
+                    droneLng[drone] = order.customerLng;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static int nearestIdle(double[] lat, double[] lng, double[] freeAt, boolean[] reserved, double[] target,
+                                   double now) {
+        int best = -1;
+        double bestKm = Double.MAX_VALUE;
+        for (int d = 0; d < lat.length; d++) {
+            if (reserved[d] || freeAt[d] > now) {
+                continue;
+            }
+            double km = GeoKernel.distanceKm(lat[d], lng[d], target[0], target[1]);
+            if (km < bestKm) {
+                best = d;
+                bestKm = km;
+            }
+        }
+        return best;
+    }
+
+    private static int soonestFree(double[] freeAt, boolean[] reserved) {
+        int best = -1;
+        for (int d = 0; d < freeAt.length; d++) {
+            if (!reserved[d] && (best < 0 || freeAt[d] < freeAt[best])) {
+                best = d;
+            }
+        }
+        return best;
+    }
+
+    private static double flightSeconds(double lat, double lng, double[] target) {
+        return GeoKernel.distanceKm(lat, lng, target[0], target[1]) / DRONE_SPEED_KMH * 3600;
+    }
+
+    private static void print(String label, Result result) {
+        System.out.printf("%-23s pickup latency mean %.1f s, p50 %.1f s, p90 %.1f s, p99 %.1f s%n", label,
+                mean(result.latencies), percentile(result.latencies, 0.5), percentile(result.latencies, 0.9),
+                percentile(result.latencies, 0.99));
+    }
+
+    private static double mean(List<Double> values) {
+        return values.stream().mapToDouble(Double::doubleValue).average().orElse(0);
+    }
+
+    private static double percentile(List<Double> values, double p) {
+        double[] sorted = values.stream().mapToDouble(Double::doubleValue).toArray();
+        Arrays.sort(sorted);
+        return sorted.length == 0 ? 0 : sorted[Math.min(sorted.length - 1, (int) (p * sorted.length))];
+    }
+}
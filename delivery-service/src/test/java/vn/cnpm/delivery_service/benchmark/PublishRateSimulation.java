@@ -0,0 +1,142 @@
+package vn.cnpm.delivery_service.benchmark;
+
+import vn.cnpm.delivery_service.service.FleetStateEngine;
+import vn.cnpm.delivery_service.util.GeoKernel;
+
+import java.util.Random;
+
+/**
+ * Simulation số cập nhật vị trí được publish: mọi tick (ngưỡng 0)
+ * so với dead reckoning (chỉ publish khi vị trí client ngoại suy lệch quá ngưỡng,
+ * trong vùng tiếp cận khách hàng hoặc im lặng quá max-silent-ticks)
+ * Mỗi drone bay liên tục các chuyến: vị trí hiện tại -> nhà hàng -> khách hàng
+ * Client được mô phỏng độc lập: ngoại suy từ vị trí + hướng + tốc độ của lần publish cuối,
+ * sai số là khoảng cách giữa vị trí client hiển thị và vị trí thật ở mỗi tick
+ *
+ * Chạy: mvn -Pbenchmark test-compile exec:exec -Dbenchmark.main=vn.cnpm.delivery_service.benchmark.PublishRateSimulation
+ */
+public class PublishRateSimulation {
+
+    private static final double CENTER_LAT = 10.7769;
+    private static final double CENTER_LNG = 106.7009;
+    private static final double SPREAD = 0.05;           // ~±5 km
+    private static final int DRONES = 2000;
+    private static final int TICKS = 720;                 // 1 giờ với tick 5s
+    private static final double TICK_SECONDS = 5.0;
+    private static final double STEP_KM = (45.0 / 3600.0) * TICK_SECONDS;
+    private static final double ARRIVAL_KM = 0.05;
+
+    private record Result(long published, long samples, double meanErrorKm, double maxErrorKm) {
+    }
+
+    public static void main(String[] args) {
+        double[][] scenarios = {
+                // {ngưỡng lệch km, vùng tiếp cận km, max silent ticks}
+                {0, 0, 1},
+                {0.05, 0.3, 12},
+                {0.05, 0.3, 24},
+                {0.1, 0.2, 24},
+        };
+        System.out.printf("%-10s %-12s %-8s %12s %10s %14s %12s%n",
+                "threshold", "approach km", "silent", "published", "reduction", "mean error m", "max error m");
+        long baseline = 0;
+        for (double[] scenario : scenarios) {
+            Result result = run(scenario[0], scenario[1], (int) scenario[2]);
+            if (baseline == 0) {
+                baseline = result.published();
+            }
+            System.out.printf("%-10.2f %-12.2f %-8d %12d %9.1fx %14.1f %12.1f%n",
+                    scenario[0], scenario[1], (int) scenario[2], result.published(),
+                    (double) baseline / result.published(),
+                    result.meanErrorKm() * 1000, result.maxErrorKm() * 1000);
+        }
+    }
+
+    private static Result run(double publishKm, double finalApproachKm, int maxSilentTicks) {
+        Random random = new Random(11);
+        FleetStateEngine engine = new FleetStateEngine(true);
+
+        double[] customerLat = new double[DRONES];
+        double[] customerLng = new double[DRONES];
+        boolean[] towardsCustomer = new boolean[DRONES];
+        // Trạng thái phía client: vị trí + vận tốc (độ/giây) + thời điểm của lần publish cuối
+        double[] clientLat = new double[DRONES];
+        double[] clientLng = new double[DRONES];
+        double[] clientVLat = new double[DRONES];
+        double[] clientVLng = new double[DRONES];
+        double[] clientAt = new double[DRONES];
+
+        for (int d = 0; d < DRONES; d++) {
+            double lat = randomLat(random);
+            double lng = randomLng(random);
+            engine.put((long) d, lat, lng, STEP_KM);
+            startTrip(engine, random, d, customerLat, customerLng, towardsCustomer);
+            clientLat[d] = lat;
+            clientLng[d] = lng;
+        }
+
+        long published = 0;
+        long samples = 0;
+        double errorSum = 0;
+        double maxError = 0;
+        for (int tick = 1; tick <= TICKS; tick++) {
+            double now = tick * TICK_SECONDS;
+            int dirtyCount = engine.advance(publishKm, maxSilentTicks);
+            for (int k = 0; k < dirtyCount; k++) {
+                int slot = engine.dirtySlot(k);
+                int d = (int) engine.deliveryId(slot);
+                if (engine.remainingKm(slot) < ARRIVAL_KM) {
+                    if (!towardsCustomer[d]) {
+                        // Lấy hàng xong, bay tiếp đến khách
+                        engine.retarget(slot, customerLat[d], customerLng[d], true,
+                                -1, Math.max(ARRIVAL_KM, finalApproachKm));
+                        towardsCustomer[d] = true;
+                    } else {
+                        // Giao xong, chuyến mới từ vị trí hiện tại
+                        startTrip(engine, random, d, customerLat, customerLng, towardsCustomer);
+                    }
+                    engine.moveTo(slot, engine.lat(slot), engine.lng(slot));
+                }
+                // Client nhận vị trí + hướng + tốc độ
+                double heading = Math.toRadians(engine.headingDegrees(slot));
+                double speedKmPerSecond = engine.speedKmh(slot, TICK_SECONDS) / 3600.0;
+                double cos = GeoKernel.cosLat(engine.lat(slot));
+                clientLat[d] = engine.lat(slot);
+                clientLng[d] = engine.lng(slot);
+                clientVLat[d] = Math.toDegrees(speedKmPerSecond * Math.cos(heading) / GeoKernel.EARTH_RADIUS_KM);
+                clientVLng[d] = Math.toDegrees(speedKmPerSecond * Math.sin(heading) / (GeoKernel.EARTH_RADIUS_KM * cos));
+                clientAt[d] = now;
+                engine.markPublished(slot);
+                published++;
+            }
+
+            // Sai số client: vị trí ngoại suy so với vị trí thật
+            for (int slot = 0; slot < engine.size(); slot++) {
+                int d = (int) engine.deliveryId(slot);
+                double elapsed = now - clientAt[d];
+                double error = GeoKernel.distanceKm(clientLat[d] + clientVLat[d] * elapsed,
+                        clientLng[d] + clientVLng[d] * elapsed, engine.lat(slot), engine.lng(slot));
+                errorSum += error;
+                maxError = Math.max(maxError, error);
+                samples++;
+            }
+        }
+        return new Result(published, samples, errorSum / samples, maxError);
+    }
+
+    private static void startTrip(FleetStateEngine engine, Random random, int d,
+                                  double[] customerLat, double[] customerLng, boolean[] towardsCustomer) {
+        customerLat[d] = randomLat(random);
+        customerLng[d] = randomLng(random);
+        towardsCustomer[d] = false;
+        engine.retarget((long) d, randomLat(random), randomLng(random), false, -1, ARRIVAL_KM);
+    }
+
+    private static double randomLat(Random random) {
+        return CENTER_LAT + (random.nextDouble() - 0.5) * 2 * SPREAD;
+    }
+
+    private static double randomLng(Random random) {
+        return CENTER_LNG + (random.nextDouble() - 0.5) * 2 * SPREAD;
+    }
+}
@@ -0,0 +1,243 @@
+package vn.cnpm.delivery_service.benchmark;
+
+import vn.cnpm.delivery_service.service.DemandHeatmap;
+import vn.cnpm.delivery_service.util.GeoKernel;
+import vn.cnpm.delivery_service.util.SimulationClock;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Simulation cân bằng lại drone rảnh theo bản đồ nhiệt nhu cầu (DemandHeatmap thật, đồng hồ giả lập bước 5 s)
+ * 70% đơn đến từ nhà hàng trong 3 khu trung tâm, khách hàng cách nhà hàng tới ~6.6 km nên drone giao xong
+ * thường dừng xa khu đông đơn. So sánh quãng bay trung bình từ drone tới nhà hàng khi không cân bằng
+ * và khi chạy chính sách của DroneRebalancer (mặc định delivery.rebalance.*) mỗi 30 s
+ *
+ * Chạy: mvn -Pbenchmark test-compile exec:exec -Dbenchmark.main=vn.cnpm.delivery_service.benchmark.RebalanceSimulation
+ */
+public class RebalanceSimulation {
+
+    private static final double CENTER_LAT = 10.7769;
+    private static final double CENTER_LNG = 106.7009;
+    private static final double CITY_SPREAD = 0.2;           // ~22 km x 22 km
+    private static final double HOTSPOT_SPREAD = 0.02;       // ~±1.1 km
+    private static final double HOT_SHARE = 0.7;
+    private static final double CUSTOMER_SPREAD = 0.06;      // ~±6.6 km quanh nhà hàng
+    private static final int DRONES = 200;
+    private static final double ORDERS_PER_HOUR = 400;
+    private static final double SIM_SECONDS = 3 * 3600;
+    private static final double WARM_UP_SECONDS = 15 * 60;
+    private static final double TICK_SECONDS = 5;
+    private static final double REBALANCE_SECONDS = 30;
+    private static final double DRONE_SPEED_KMH = 45.0;
+    private static final double DROP_OFF_SECONDS = 60;
+    // Như delivery.rebalance.*
+    private static final double HORIZON_MINUTES = 10;
+    private static final double SUPPLY_RADIUS_KM = 1.5;
+    private static final double MAX_DISTANCE_KM = 8;
+    private static final int MAX_MOVES = 20;
+
+    private static final double[][] HOTSPOTS = {
+            {10.7769, 106.7009}, {10.8012, 106.6645}, {10.7553, 106.6682}};
+
+    /**
+     * Đồng hồ do simulation điều khiển
+     */
+    private static final class SteppedClock extends Clock {
+        long millis;
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+
+    private record Order(double at, double lat, double lng, double customerLat, double customerLng) {
+    }
+
+    private static final class Fleet {
+        final double[] lat = new double[DRONES];
+        final double[] lng = new double[DRONES];
+        final double[] freeAt = new double[DRONES];
+        // Đích cân bằng (NaN = không bay)
+        final double[] targetLat = new double[DRONES];
+        final double[] targetLng = new double[DRONES];
+        double pickupKm;
+        int assigned;
+        int moves;
+        int waited;
+    }
+
+    public static void main(String[] args) {
+        Random random = new Random(19);
+        List<Order> orders = new ArrayList<>();
+        double t = 0;
+        while ((t += -Math.log(1.0 - random.nextDouble()) / ORDERS_PER_HOUR * 3600) < SIM_SECONDS) {
+            double lat;
+            double lng;
+            if (random.nextDouble() < HOT_SHARE) {
+                double[] hotspot = HOTSPOTS[random.nextInt(HOTSPOTS.length)];
+                lat = hotspot[0] + (random.nextDouble() - 0.5) * 2 * HOTSPOT_SPREAD;
+                lng = hotspot[1] + (random.nextDouble() - 0.5) * 2 * HOTSPOT_SPREAD;
+            } else {
+                lat = CENTER_LAT + (random.nextDouble() - 0.5) * CITY_SPREAD;
+                lng = CENTER_LNG + (random.nextDouble() - 0.5) * CITY_SPREAD;
+            }
+            orders.add(new Order(t, lat, lng, lat + (random.nextDouble() - 0.5) * 2 * CUSTOMER_SPREAD,
+                    lng + (random.nextDouble() - 0.5) * 2 * CUSTOMER_SPREAD));
+        }
+        long seed = random.nextLong();
+
+        Fleet before = run(orders, false, new Random(seed));
+        Fleet after = run(orders, true, new Random(seed));
+        System.out.printf("orders                  %,d (%.0f%% from %d hotspots), %d drones, %.0f h%n",
+                orders.size(), HOT_SHARE * 100, HOTSPOTS.length, DRONES, SIM_SECONDS / 3600);
+        print("no rebalancing", before);
+        print("heatmap rebalancing", after);
+        System.out.printf("mean pickup distance    %.3f km -> %.3f km (%.1f%% shorter)%n",
+                before.pickupKm / before.assigned, after.pickupKm / after.assigned,
+                100 * (1 - (after.pickupKm / after.assigned) / (before.pickupKm / before.assigned)));
+    }
+
+    private static Fleet run(List<Order> orders, boolean rebalance, Random random) {
+        SteppedClock base = new SteppedClock();
+        DemandHeatmap heatmap = new DemandHeatmap(new SimulationClock(base, 1.0), 6, 15, 60);
+        Fleet fleet = new Fleet();
+        for (int d = 0; d < DRONES; d++) {
+            fleet.lat[d] = CENTER_LAT + (random.nextDouble() - 0.5) * CITY_SPREAD;
+            fleet.lng[d] = CENTER_LNG + (random.nextDouble() - 0.5) * CITY_SPREAD;
+            fleet.targetLat[d] = Double.NaN;
+        }
+        double stepKm = DRONE_SPEED_KMH / 3600 * TICK_SECONDS;
+        int next = 0;
+        double nextRebalance = 0;
+        for (double now = 0; now < SIM_SECONDS; now += TICK_SECONDS) {
+            base.millis = (long) (now * 1000);
+            for (int d = 0; d < DRONES; d++) {
+                if (!Double.isNaN(fleet.targetLat[d])) {
+                    double km = GeoKernel.distanceKm(fleet.lat[d], fleet.lng[d], fleet.targetLat[d], fleet.targetLng[d]);
+                    double ratio = GeoKernel.stepRatio(km, stepKm);
+                    fleet.lat[d] = GeoKernel.interpolate(fleet.lat[d], fleet.targetLat[d], ratio);
+                    fleet.lng[d] = GeoKernel.interpolate(fleet.lng[d], fleet.targetLng[d], ratio);
+                    if (ratio >= 1.0) {
+                        fleet.targetLat[d] = Double.NaN;
+                    }
+                }
+            }
+            while (next < orders.size() && orders.get(next).at() < now + TICK_SECONDS) {
+                Order order = orders.get(next++);
+                heatmap.record(order.lat(), order.lng());
+                assign(fleet, order, now, now >= WARM_UP_SECONDS);
+            }
+            if (rebalance && now >= nextRebalance) {
+                rebalance(fleet, heatmap, now);
+                nextRebalance = now + REBALANCE_SECONDS;
+            }
+        }
+        return fleet;
+    }
+
+    /**
+     * Gán drone rảnh gần nhất (kể cả drone đang bay cân bằng); hết drone rảnh thì chờ drone sớm rảnh nhất
+     */
+    private static void assign(Fleet fleet, Order order, double now, boolean measure) {
+        int best = -1;
+        double bestKm = Double.MAX_VALUE;
+        for (int d = 0; d < DRONES; d++) {
+            if (fleet.freeAt[d] <= now) {
+                double km = GeoKernel.distanceKm(fleet.lat[d], fleet.lng[d], order.lat(), order.lng());
+                if (km < bestKm) {
+                    best = d;
+                    bestKm = km;
+                }
+            }
+        }
+        double start = now;
+        if (best < 0) {
+            for (int d = 0; d < DRONES; d++) {
+                if (best < 0 || fleet.freeAt[d] < fleet.freeAt[best]) {
+                    best = d;
+                }
+            }
+            bestKm = GeoKernel.distanceKm(fleet.lat[best], fleet.lng[best], order.lat(), order.lng());
+            start = fleet.freeAt[best];
+            fleet.waited++;
+        }
+        if (measure) {
+            fleet.pickupKm += bestKm;
+            fleet.assigned++;
+        }
+        double deliveryKm = GeoKernel.distanceKm(order.lat(), order.lng(), order.customerLat(), order.customerLng());
+        fleet.freeAt[best] = start + (bestKm + deliveryKm) / DRONE_SPEED_KMH * 3600 + DROP_OFF_SECONDS;
+        fleet.lat[best] = order.customerLat();
+        fleet.lng[best] = order.customerLng();
+        fleet.targetLat[best] = Double.NaN;
+    }
+
+    /**
+     * Chính sách của DroneRebalancer trên mảng drone của simulation
+     */
+    private static void rebalance(Fleet fleet, DemandHeatmap heatmap, double now) {
+        int moved = 0;
+        for (DemandHeatmap.Cell cell : heatmap.snapshot()) {
+            if (moved >= MAX_MOVES) {
+                break;
+            }
+            int demand = (int) Math.ceil(cell.ordersPerHour() * HORIZON_MINUTES / 60);
+            if (demand <= 0) {
+                break;
+            }
+            Set<Integer> supply = new HashSet<>();
+            List<int[]> donors = new ArrayList<>();
+            for (int d = 0; d < DRONES; d++) {
+                if (fleet.freeAt[d] > now) {
+                    continue;
+                }
+                boolean heading = !Double.isNaN(fleet.targetLat[d]);
+                double km = GeoKernel.distanceKm(fleet.lat[d], fleet.lng[d], cell.lat(), cell.lng());
+                if (km <= SUPPLY_RADIUS_KM || heading && GeoKernel.distanceKm(fleet.targetLat[d],
+                        fleet.targetLng[d], cell.lat(), cell.lng()) <= SUPPLY_RADIUS_KM) {
+                    supply.add(d);
+                } else if (!heading && km <= MAX_DISTANCE_KM
+                        && heatmap.forecast(fleet.lat[d], fleet.lng[d], HORIZON_MINUTES) < 1) {
+                    donors.add(new int[]{d, (int) (km * 1000)});
+                }
+            }
+            donors.sort((a, b) -> Integer.compare(a[1], b[1]));
+            int deficit = demand - supply.size();
+            for (int i = 0; i < donors.size() && deficit > 0 && moved < MAX_MOVES; i++, deficit--, moved++) {
+                int d = donors.get(i)[0];
+                fleet.targetLat[d] = cell.lat();
+                fleet.targetLng[d] = cell.lng();
+                fleet.moves++;
+            }
+        }
+    }
+
+    private static void print(String label, Fleet fleet) {
+        System.out.printf("%-23s mean pickup %.3f km over %,d orders (%d waited for a busy drone, %d rebalance moves)%n",
+                label, fleet.pickupKm / fleet.assigned, fleet.assigned, fleet.waited, fleet.moves);
+    }
+}
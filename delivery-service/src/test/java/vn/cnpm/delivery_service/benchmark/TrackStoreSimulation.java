@@ -0,0 +1,128 @@
+package vn.cnpm.delivery_service.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import vn.cnpm.delivery_service.service.FleetStateEngine;
+import vn.cnpm.delivery_service.track.GpsTrack;
+import vn.cnpm.delivery_service.track.GpsTrackStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Simulation GpsTrackStore: ghi hành trình của đội drone như tick GPS (mỗi slot một điểm mỗi tick),
+ * đo số byte nén mỗi điểm, thời gian append, rồi mở lại store từ segment và kiểm tra giải nén
+ * khớp vị trí gốc (sai số lượng tử hóa 1e-7 độ)
+ *
+ * Chạy: mvn -Pbenchmark test-compile exec:exec -Dbenchmark.main=vn.cnpm.delivery_service.benchmark.TrackStoreSimulation
+ */
+public class TrackStoreSimulation {
+
+    private static final double CENTER_LAT = 10.7769;
+    private static final double CENTER_LNG = 106.7009;
+    private static final double SPREAD = 0.05;
+    private static final int DRONES = 5000;
+    private static final int TICKS = 400;                 // 2 triệu điểm
+    private static final long TICK_MILLIS = 5000;
+    private static final double STEP_KM = (45.0 / 3600.0) * 5.0;
+    private static final double ARRIVAL_KM = 0.05;
+
+    public static void main(String[] args) throws IOException {
+        Path dir = Files.createTempDirectory("gps-tracks");
+        try {
+            run(dir);
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    private static void run(Path dir) {
+        Random random = new Random(5);
+        FleetStateEngine engine = new FleetStateEngine(true);
+        GpsTrackStore store = new GpsTrackStore(true, dir.toString(), 64, 4096, 168, 4096, new SimpleMeterRegistry());
+
+        // Giữ lại hành trình gốc của vài drone để đối chiếu
+        int sampled = 10;
+        double[][] expectedLat = new double[sampled][TICKS];
+        double[][] expectedLng = new double[sampled][TICKS];
+
+        for (int d = 0; d < DRONES; d++) {
+            engine.put((long) d, randomLat(random), randomLng(random), STEP_KM);
+            engine.retarget((long) d, randomLat(random), randomLng(random), false, -1, ARRIVAL_KM);
+        }
+
+        long appendNanos = 0;
+        long start = System.currentTimeMillis();
+        for (int tick = 0; tick < TICKS; tick++) {
+            int dirtyCount = engine.advance(0.05, 12);
+            for (int k = 0; k < dirtyCount; k++) {
+                int slot = engine.dirtySlot(k);
+                if (engine.remainingKm(slot) < ARRIVAL_KM) {
+                    // Đến đích thì bay tiếp chặng mới (đổi hướng)
+                    engine.retarget(slot, randomLat(random), randomLng(random), false, -1, ARRIVAL_KM);
+                }
+                engine.markPublished(slot);
+            }
+            long tickAt = start + tick * TICK_MILLIS + random.nextInt(20); // scheduler lệch vài ms
+            long t0 = System.nanoTime();
+            for (int slot = 0; slot < engine.size(); slot++) {
+                store.append(engine.deliveryId(slot), tickAt, engine.lat(slot), engine.lng(slot),
+                        engine.speedKmh(slot, TICK_MILLIS / 1000.0));
+            }
+            appendNanos += System.nanoTime() - t0;
+            for (int slot = 0; slot < engine.size(); slot++) {
+                int d = (int) engine.deliveryId(slot);
+                if (d < sampled) {
+                    expectedLat[d][tick] = engine.lat(slot);
+                    expectedLng[d][tick] = engine.lng(slot);
+                }
+            }
+        }
+        for (int d = 0; d < DRONES; d++) {
+            store.finish(d);
+        }
+        store.close();
+
+        long points = (long) DRONES * TICKS;
+        long bytes = 0;
+        GpsTrackStore reopened = new GpsTrackStore(true, dir.toString(), 64, 4096, 168, 4096, new SimpleMeterRegistry());
+        double maxErrorDeg = 0;
+        long readNanos = 0;
+        for (int d = 0; d < DRONES; d++) {
+            long t0 = System.nanoTime();
+            GpsTrack track = reopened.history(d);
+            readNanos += System.nanoTime() - t0;
+            bytes += track.compressedBytes();
+            if (track.pointCount() != TICKS) {
+                throw new IllegalStateException("Delivery " + d + " has " + track.pointCount() + " points");
+            }
+            if (d < sampled) {
+                for (int i = 0; i < TICKS; i++) {
+                    maxErrorDeg = Math.max(maxErrorDeg, Math.abs(track.lat()[i] - expectedLat[d][i]));
+                    maxErrorDeg = Math.max(maxErrorDeg, Math.abs(track.lng()[i] - expectedLng[d][i]));
+                }
+            }
+        }
+        reopened.close();
+
+        System.out.printf("points            %,d%n", points);
+        System.out.printf("compressed bytes  %,d (%.2f bytes/point, raw 32 bytes/point)%n",
+                bytes, (double) bytes / points);
+        System.out.printf("append            %.1f ns/point%n", (double) appendNanos / points);
+        System.out.printf("history read      %.1f us/track (%d points)%n", readNanos / 1000.0 / DRONES, TICKS);
+        System.out.printf("max coord error   %.2e deg%n", maxErrorDeg);
+    }
+
+    private static double randomLat(Random random) {
+        return CENTER_LAT + (random.nextDouble() - 0.5) * 2 * SPREAD;
+    }
+
+    private static double randomLng(Random random) {
+        return CENTER_LNG + (random.nextDouble() - 0.5) * 2 * SPREAD;
+    }
+}
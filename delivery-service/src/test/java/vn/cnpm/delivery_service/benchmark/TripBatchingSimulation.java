@@ -0,0 +1,186 @@
+package vn.cnpm.delivery_service.benchmark;
+
+import vn.cnpm.delivery_service.util.GeoKernel;
+import vn.cnpm.delivery_service.util.RouteOptimizer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Simulation giờ cao điểm cho chuyến nhiều đơn: đơn của cùng nhà hàng tới trong lúc drone đang bay đến
+ * nhà hàng được ghép vào chuyến đó (tối đa 3 đơn = maxPayload 3 kg / 1 kg, lộ trình trong tầm bay 10 km)
+ * So sánh số đơn mỗi giờ-drone khi mỗi drone một đơn và khi ghép chuyến,
+ * và chất lượng thứ tự điểm giao: theo thứ tự đặt, nearest-neighbour, nearest-neighbour + 2-opt, tối ưu (vét cạn)
+ *
+ * Chạy: mvn -Pbenchmark test-compile exec:exec -Dbenchmark.main=vn.cnpm.delivery_service.benchmark.TripBatchingSimulation
+ */
+public class TripBatchingSimulation {
+
+    private static final double CENTER_LAT = 10.7769;
+    private static final double CENTER_LNG = 106.7009;
+    private static final double CUSTOMER_SPREAD = 0.03;     // ~±3.3 km quanh nhà hàng
+    private static final int RESTAURANTS = 50;
+    private static final double ORDERS_PER_RESTAURANT_PER_HOUR = 30;
+    private static final double SIM_SECONDS = 3600;
+    private static final double DRONE_SPEED_KMH = 45.0;
+    private static final double APPROACH_KM = 1.5;           // drone rảnh gần nhất cách nhà hàng
+    private static final double DROP_OFF_SECONDS = 60;
+    private static final int CAPACITY = 3;
+    private static final double MAX_RANGE_KM = 10.0;
+
+    public static void main(String[] args) {
+        Random random = new Random(16);
+        double approachSeconds = APPROACH_KM / DRONE_SPEED_KMH * 3600;
+
+        long orders = 0;
+        double singleDroneSeconds = 0;
+        double batchedDroneSeconds = 0;
+        long trips = 0;
+
+        for (int r = 0; r < RESTAURANTS; r++) {
+            double restLat = CENTER_LAT + (random.nextDouble() - 0.5) * 0.2;
+            double restLng = CENTER_LNG + (random.nextDouble() - 0.5) * 0.2;
+            double t = nextGap(random);
+            // Chuyến đang mở: drone tới nhà hàng lúc openUntil, các đơn tới trước đó được ghép
+            List<double[]> open = new ArrayList<>();
+            double openUntil = -1;
+            while (t < SIM_SECONDS) {
+                double[] customer = {restLat + (random.nextDouble() - 0.5) * 2 * CUSTOMER_SPREAD,
+                        restLng + (random.nextDouble() - 0.5) * 2 * CUSTOMER_SPREAD};
+                orders++;
+                // Mỗi drone một đơn: tiếp cận + bay tới khách + thả hàng + bay về nhà hàng
+                double km = GeoKernel.distanceKm(restLat, restLng, customer[0], customer[1]);
+                singleDroneSeconds += approachSeconds + 2 * km / DRONE_SPEED_KMH * 3600 + DROP_OFF_SECONDS;
+
+                List<double[]> joined = new ArrayList<>(open);
+                joined.add(customer);
+                if (t < openUntil && open.size() < CAPACITY && routeKm(restLat, restLng, joined) <= MAX_RANGE_KM) {
+                    open = joined;
+                } else {
+                    if (!open.isEmpty()) {
+                        batchedDroneSeconds += tripSeconds(restLat, restLng, open, approachSeconds);
+                        trips++;
+                    }
+                    open = new ArrayList<>(List.of(customer));
+                    openUntil = t + approachSeconds;
+                }
+                t += nextGap(random);
+            }
+            if (!open.isEmpty()) {
+                batchedDroneSeconds += tripSeconds(restLat, restLng, open, approachSeconds);
+                trips++;
+            }
+        }
+
+        System.out.printf("orders                      %,d (%d restaurants, %.0f orders/restaurant/h)%n",
+                orders, RESTAURANTS, ORDERS_PER_RESTAURANT_PER_HOUR);
+        System.out.printf("one order per drone         %.2f deliveries per drone-hour%n",
+                orders / (singleDroneSeconds / 3600));
+        System.out.printf("multi-order trips           %.2f deliveries per drone-hour (%.2f stops/trip)%n",
+                orders / (batchedDroneSeconds / 3600), (double) orders / trips);
+
+        compareOrdering(random);
+    }
+
+    /**
+     * Quãng bay lộ trình 4 điểm giao theo từng cách sắp thứ tự (trung bình trên nhiều chuyến ngẫu nhiên)
+     */
+    private static void compareOrdering(Random random) {
+        int samples = 20_000;
+        int stops = 4;
+        double arrivalKm = 0;
+        double nnKm = 0;
+        double twoOptKm = 0;
+        double optimalKm = 0;
+        long nanos = 0;
+        for (int s = 0; s < samples; s++) {
+            double[] lat = new double[stops];
+            double[] lng = new double[stops];
+            for (int i = 0; i < stops; i++) {
+                lat[i] = CENTER_LAT + (random.nextDouble() - 0.5) * 2 * CUSTOMER_SPREAD;
+                lng[i] = CENTER_LNG + (random.nextDouble() - 0.5) * 2 * CUSTOMER_SPREAD;
+            }
+            arrivalKm += RouteOptimizer.pathKm(CENTER_LAT, CENTER_LNG, lat, lng, new int[]{0, 1, 2, 3});
+            nnKm += RouteOptimizer.pathKm(CENTER_LAT, CENTER_LNG, lat, lng, nearestNeighbour(lat, lng));
+            long t0 = System.nanoTime();
+            int[] order = RouteOptimizer.order(CENTER_LAT, CENTER_LNG, lat, lng);
+            nanos += System.nanoTime() - t0;
+            twoOptKm += RouteOptimizer.pathKm(CENTER_LAT, CENTER_LNG, lat, lng, order);
+            optimalKm += optimal(lat, lng, new int[stops], new boolean[stops], 0);
+        }
+        System.out.printf("route of %d stops (mean km) arrival order %.3f, nearest-neighbour %.3f, "
+                        + "+2-opt %.3f, optimal %.3f (%.1f us per plan)%n",
+                stops, arrivalKm / samples, nnKm / samples, twoOptKm / samples, optimalKm / samples,
+                nanos / 1000.0 / samples);
+    }
+
+    private static double tripSeconds(double restLat, double restLng, List<double[]> customers,
+                                      double approachSeconds) {
+        double[] lat = new double[customers.size()];
+        double[] lng = new double[customers.size()];
+        for (int i = 0; i < lat.length; i++) {
+            lat[i] = customers.get(i)[0];
+            lng[i] = customers.get(i)[1];
+        }
+        int[] order = RouteOptimizer.order(restLat, restLng, lat, lng);
+        double km = RouteOptimizer.pathKm(restLat, restLng, lat, lng, order);
+        int last = order[order.length - 1];
+        km += GeoKernel.distanceKm(lat[last], lng[last], restLat, restLng); // về lại khu nhà hàng
+        return approachSeconds + km / DRONE_SPEED_KMH * 3600 + DROP_OFF_SECONDS * lat.length;
+    }
+
+    private static double routeKm(double restLat, double restLng, List<double[]> customers) {
+        double[] lat = new double[customers.size()];
+        double[] lng = new double[customers.size()];
+        for (int i = 0; i < lat.length; i++) {
+            lat[i] = customers.get(i)[0];
+            lng[i] = customers.get(i)[1];
+        }
+        return RouteOptimizer.pathKm(restLat, restLng, lat, lng, RouteOptimizer.order(restLat, restLng, lat, lng));
+    }
+
+    private static int[] nearestNeighbour(double[] lat, double[] lng) {
+        int n = lat.length;
+        int[] order = new int[n];
+        boolean[] used = new boolean[n];
+        double fromLat = CENTER_LAT;
+        double fromLng = CENTER_LNG;
+        for (int k = 0; k < n; k++) {
+            int best = -1;
+            double bestKm = Double.MAX_VALUE;
+            for (int i = 0; i < n; i++) {
+                double km = GeoKernel.distanceKm(fromLat, fromLng, lat[i], lng[i]);
+                if (!used[i] && km < bestKm) {
+                    best = i;
+                    bestKm = km;
+                }
+            }
+            order[k] = best;
+            used[best] = true;
+            fromLat = lat[best];
+            fromLng = lng[best];
+        }
+        return order;
+    }
+
+    private static double optimal(double[] lat, double[] lng, int[] order, boolean[] used, int depth) {
+        if (depth == lat.length) {
+            return RouteOptimizer.pathKm(CENTER_LAT, CENTER_LNG, lat, lng, order);
+        }
+        double best = Double.MAX_VALUE;
+        for (int i = 0; i < lat.length; i++) {
+            if (!used[i]) {
+                used[i] = true;
+                order[depth] = i;
+                best = Math.min(best, optimal(lat, lng, order, used, depth + 1));
+                used[i] = false;
+            }
+        }
+        return best;
+    }
+
+    private static double nextGap(Random random) {
+        return -Math.log(1.0 - random.nextDouble()) / ORDERS_PER_RESTAURANT_PER_HOUR * 3600;
+    }
+}
@@ -0,0 +1,114 @@
+package vn.cnpm.delivery_service.messaging;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.test.util.ReflectionTestUtils;
+import vn.cnpm.delivery_service.config.RabbitMQConfig;
+import vn.cnpm.delivery_service.event.DroneLocationFrame;
+import vn.cnpm.delivery_service.event.DroneLocationUpdateEvent;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DeliveryEventPublisherTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private RabbitTemplate rabbitTemplate;
+    private DeliveryEventPublisher publisher;
+
+    @BeforeEach
+    void setUp() {
+        rabbitTemplate = mock(RabbitTemplate.class);
+        when(rabbitTemplate.getMessageConverter()).thenReturn(new Jackson2JsonMessageConverter());
+        publisher = new DeliveryEventPublisher(rabbitTemplate, new SimpleMeterRegistry());
+    }
+
+    private void limits(int maxUpdates, int maxBytes) {
+        ReflectionTestUtils.setField(publisher, "frameMaxUpdates", maxUpdates);
+        ReflectionTestUtils.setField(publisher, "frameMaxBytes", maxBytes);
+    }
+
+    private static List<DroneLocationUpdateEvent> updates(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> DroneLocationUpdateEvent.builder()
+                        .orderId(1_000L + i).droneId("DRONE-" + i).status("DELIVERING")
+                        .currentLat(10.7 + i * 1e-4).currentLng(106.6 + i * 1e-4)
+                        .distanceRemaining(1.25).currentSpeed(40.0).heading(90.0)
+                        .estimatedArrivalSeconds(120L).timestamp(1_760_000_000_000L)
+                        .build())
+                .toList();
+    }
+
+    private List<Message> sentFrames() {
+        ArgumentCaptor<Message> sent = ArgumentCaptor.forClass(Message.class);
+        verify(rabbitTemplate, atLeastOnce()).send(eq(RabbitMQConfig.DELIVERY_EXCHANGE),
+                eq(RabbitMQConfig.DRONE_LOCATION_FRAME_ROUTING_KEY), sent.capture());
+        return sent.getAllValues();
+    }
+
+    private List<DroneLocationFrame> decode(List<Message> messages) throws IOException {
+        List<DroneLocationFrame> frames = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            frames.add(objectMapper.readValue(message.getBody(), DroneLocationFrame.class));
+        }
+        return frames;
+    }
+
+    @Test
+    void chunksByUpdateCountWhenUnderByteBudget() throws IOException {
+        limits(100, 1 << 20);
+
+        publisher.publishDroneLocationFrame(updates(250));
+
+        List<DroneLocationFrame> frames = decode(sentFrames());
+        assertThat(frames).extracting(frame -> frame.getOrderIds().length).containsExactly(100, 100, 50);
+        assertThat(frames).allSatisfy(frame -> assertThat(frame.getChunkCount()).isEqualTo(3));
+    }
+
+    @Test
+    void oversizedChunksAreSplitToFitByteBudget() throws IOException {
+        limits(500, 4096);
+
+        long bytes = publisher.publishDroneLocationFrame(updates(400));
+
+        List<Message> messages = sentFrames();
+        assertThat(messages).allSatisfy(message -> assertThat(message.getBody().length).isLessThanOrEqualTo(4096));
+        assertThat(messages.stream().mapToLong(message -> message.getBody().length).sum()).isEqualTo(bytes);
+
+        // Đủ cập nhật, đúng thứ tự, chunk/chunkCount nhất quán
+        List<DroneLocationFrame> frames = decode(messages);
+        assertThat(frames).extracting(DroneLocationFrame::getChunk)
+                .containsExactlyElementsOf(IntStream.range(0, frames.size()).boxed().toList());
+        assertThat(frames).allSatisfy(frame -> assertThat(frame.getChunkCount()).isEqualTo(frames.size()));
+        assertThat(frames.stream().flatMapToLong(frame -> Arrays.stream(frame.getOrderIds())).toArray())
+                .containsExactly(IntStream.range(0, 400).mapToLong(i -> 1_000L + i).toArray());
+    }
+
+    @Test
+    void singleUpdateOverBudgetIsStillSent() throws IOException {
+        limits(500, 64);
+
+        publisher.publishDroneLocationFrame(updates(3));
+
+        assertThat(decode(sentFrames())).extracting(frame -> frame.getOrderIds().length).containsExactly(1, 1, 1);
+        verify(rabbitTemplate, times(3)).send(any(String.class), any(String.class), any(Message.class));
+    }
+}
@@ -0,0 +1,101 @@
+package vn.cnpm.delivery_service.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import vn.cnpm.delivery_service.model.Delivery;
+import vn.cnpm.delivery_service.model.DeliveryStatus;
+import vn.cnpm.delivery_service.repository.DeliveryRepository;
+import vn.cnpm.delivery_service.snapshot.FleetSnapshotStore;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class ActiveDeliveryRegistryTest {
+
+    private ActiveDeliveryRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new ActiveDeliveryRegistry(mock(DeliveryRepository.class), mock(FleetSnapshotStore.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static Delivery delivery(long id, DeliveryStatus status) {
+        return Delivery.builder().id(id).status(status).droneId("D1").currentLat(10.0).currentLng(106.0).build();
+    }
+
+    @Test
+    void callersNeverShareRegistryEntities() {
+        Delivery delivery = delivery(1L, DeliveryStatus.DELIVERING);
+        registry.track(delivery);
+
+        // Sửa entity sau khi track, hoặc sửa bản trả về, đều không ảnh hưởng registry
+        delivery.setStatus(DeliveryStatus.CANCELLED);
+        registry.find(1L).orElseThrow().setCurrentLat(99.0);
+        registry.getInFlightDeliveries().get(0).setDroneId("D2");
+
+        Delivery stored = registry.find(1L).orElseThrow();
+        assertThat(stored.getStatus()).isEqualTo(DeliveryStatus.DELIVERING);
+        assertThat(stored.getCurrentLat()).isEqualTo(10.0);
+        assertThat(stored.getDroneId()).isEqualTo("D1");
+    }
+
+    @Test
+    void trackInsideTransactionAppliesAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        registry.track(delivery(1L, DeliveryStatus.ASSIGNED));
+
+        assertThat(registry.find(1L)).isEmpty();
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertThat(registry.find(1L)).isPresent();
+    }
+
+    @Test
+    void rolledBackTrackLeavesRegistryUnchanged() {
+        registry.track(delivery(1L, DeliveryStatus.PENDING));
+
+        TransactionSynchronizationManager.initSynchronization();
+        registry.track(delivery(1L, DeliveryStatus.CANCELLED));
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        assertThat(registry.find(1L)).map(Delivery::getStatus).contains(DeliveryStatus.PENDING);
+    }
+
+    @Test
+    void updatePositionKeepsNewerStatus() {
+        registry.track(delivery(1L, DeliveryStatus.PICKED_UP));
+        Delivery tickCopy = registry.getInFlightDeliveries().get(0);
+        // Timer lifecycle chuyển trạng thái trong lúc tick đang chạy trên bản sao cũ
+        registry.track(delivery(1L, DeliveryStatus.DELIVERING));
+
+        tickCopy.setCurrentLat(10.5);
+        registry.updatePosition(tickCopy);
+
+        Delivery stored = registry.find(1L).orElseThrow();
+        assertThat(stored.getStatus()).isEqualTo(DeliveryStatus.DELIVERING);
+        assertThat(stored.getCurrentLat()).isEqualTo(10.5);
+    }
+
+    @Test
+    void updatePositionDoesNotResurrectFinishedDelivery() {
+        registry.track(delivery(1L, DeliveryStatus.DELIVERING));
+        Delivery tickCopy = registry.getInFlightDeliveries().get(0);
+        registry.track(delivery(1L, DeliveryStatus.CANCELLED));
+
+        registry.updatePosition(tickCopy);
+
+        assertThat(registry.find(1L)).isEmpty();
+        assertThat(registry.size()).isZero();
+    }
+}
@@ -0,0 +1,52 @@
+package vn.cnpm.delivery_service.service;
+
+import org.junit.jupiter.api.Test;
+import vn.cnpm.delivery_service.model.Delivery;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BatchDispatcherTest {
+
+    private static Delivery delivery(long id, Integer priority, long createdAtSecond) {
+        return Delivery.builder().id(id).priority(priority).createdAt(Instant.ofEpochSecond(createdAtSecond)).build();
+    }
+
+    @Test
+    void roundWithinCapKeepsWholeBatch() {
+        List<Delivery> batch = List.of(delivery(1, 0, 10), delivery(2, 0, 5));
+        List<Delivery> deferred = new ArrayList<>();
+
+        assertThat(BatchDispatcher.takeRound(batch, 2, deferred)).isSameAs(batch);
+        assertThat(deferred).isEmpty();
+    }
+
+    @Test
+    void roundTakesHighestPriorityThenLongestWaiting() {
+        List<Delivery> batch = List.of(
+                delivery(1, 0, 30),
+                delivery(2, 0, 10),
+                delivery(3, 5, 40),
+                delivery(4, null, 20),
+                delivery(5, 0, 50));
+        List<Delivery> deferred = new ArrayList<>();
+
+        List<Delivery> round = BatchDispatcher.takeRound(batch, 3, deferred);
+
+        assertThat(round).extracting(Delivery::getId).containsExactly(3L, 2L, 4L);
+        // Phần còn lại chờ lượt sau, không bị mất
+        assertThat(deferred).extracting(Delivery::getId).containsExactly(1L, 5L);
+    }
+
+    @Test
+    void zeroCapDisablesLimit() {
+        List<Delivery> batch = List.of(delivery(1, 0, 10), delivery(2, 0, 5));
+        List<Delivery> deferred = new ArrayList<>();
+
+        assertThat(BatchDispatcher.takeRound(batch, 0, deferred)).hasSize(2);
+        assertThat(deferred).isEmpty();
+    }
+}
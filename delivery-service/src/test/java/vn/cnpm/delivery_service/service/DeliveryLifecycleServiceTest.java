@@ -0,0 +1,126 @@
+package vn.cnpm.delivery_service.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import vn.cnpm.delivery_service.messaging.DeliveryEventPublisher;
+import vn.cnpm.delivery_service.model.Delivery;
+import vn.cnpm.delivery_service.model.DeliveryStatus;
+import vn.cnpm.delivery_service.repository.DeliveryRepository;
+import vn.cnpm.delivery_service.snapshot.FleetSnapshotStore;
+import vn.cnpm.delivery_service.util.SimulationClock;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class DeliveryLifecycleServiceTest {
+
+    private final SimulationClock clock = new SimulationClock(Clock.systemUTC(), 1);
+    private DroneService droneService;
+    private ActiveDeliveryRegistry registry;
+    private DeliveryLifecycleService service;
+    private Consumer<List<Long>> reorderListener;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        droneService = mock(DroneService.class);
+        registry = new ActiveDeliveryRegistry(mock(DeliveryRepository.class), mock(FleetSnapshotStore.class));
+        service = new DeliveryLifecycleService(droneService, mock(DeliveryEventPublisher.class), registry, clock, 1);
+        ArgumentCaptor<Consumer<List<Long>>> listener = ArgumentCaptor.forClass(Consumer.class);
+        verify(droneService).addTripReorderListener(listener.capture());
+        reorderListener = listener.getValue();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    private Delivery delivering(int stopSequence, Duration deliveringAgo) {
+        return Delivery.builder().id(1L).droneId("D1").status(DeliveryStatus.DELIVERING)
+                .deliveringAt(clock.instant().minus(deliveringAgo)).stopSequence(stopSequence).build();
+    }
+
+    private static long seconds(long millis) {
+        return Math.round(millis / 1000.0);
+    }
+
+    @Test
+    void pendingPickupWaitsForPlannedArrival() {
+        // Drone ở xa: lấy hàng theo thời điểm dự kiến (bay tới nhà hàng + PICKUP_DELAY)
+        Delivery delivery = Delivery.builder().id(1L).droneId("D1").status(DeliveryStatus.PENDING)
+                .assignedAt(clock.instant()).pickedUpAt(clock.instant().plusSeconds(120)).build();
+        registry.track(delivery);
+
+        service.start(delivery);
+
+        assertThat(seconds(service.timerDelayMillis(1L))).isEqualTo(120);
+    }
+
+    @Test
+    void pendingPickupNeverEarlierThanPickupDelay() {
+        // Dữ liệu cũ: pickedUpAt = assignedAt lúc gán
+        Delivery delivery = Delivery.builder().id(1L).droneId("D1").status(DeliveryStatus.PENDING)
+                .assignedAt(clock.instant()).pickedUpAt(clock.instant()).build();
+        registry.track(delivery);
+
+        service.start(delivery);
+
+        assertThat(seconds(service.timerDelayMillis(1L))).isEqualTo(5);
+    }
+
+    @Test
+    void laterStopIsDueOneLegPerStopAhead() {
+        Delivery delivery = delivering(2, Duration.ZERO);
+        registry.track(delivery);
+
+        service.start(delivery);
+
+        assertThat(seconds(service.timerDelayMillis(1L))).isEqualTo(90);
+    }
+
+    @Test
+    void reorderedStopIsRescheduled() {
+        Delivery delivery = delivering(2, Duration.ZERO);
+        registry.track(delivery);
+        service.start(delivery);
+
+        // Đơn mới ghép vào chuyến, điểm này thành điểm giao đầu tiên
+        registry.track(delivery.toBuilder().stopSequence(0).build());
+        reorderListener.accept(List.of(1L));
+
+        assertThat(seconds(service.timerDelayMillis(1L))).isEqualTo(30);
+    }
+
+    @Test
+    void staleTimerFiringBeforeNewDueTimeWaits() throws InterruptedException {
+        // Timer lên lịch theo thứ tự cũ (điểm đầu, đã quá hạn) nhưng chuyến vừa đẩy điểm này xuống thứ ba
+        registry.track(delivering(2, Duration.ofSeconds(31)));
+        service.start(delivering(0, Duration.ofSeconds(31)));
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (service.timerDelayMillis(1L) < 50_000 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertThat(seconds(service.timerDelayMillis(1L))).isEqualTo(59);
+        verify(droneService, never()).completeDelivery(anyLong());
+    }
+
+    @Test
+    void rescheduleIgnoresDeliveriesThatLeftTheRegistry() {
+        reorderListener.accept(List.of(42L));
+
+        assertThat(service.pendingTimers()).isZero();
+    }
+}
@@ -0,0 +1,157 @@
+package vn.cnpm.delivery_service.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import vn.cnpm.delivery_service.model.Delivery;
+import vn.cnpm.delivery_service.model.DeliveryStatus;
+import vn.cnpm.delivery_service.model.Drone;
+import vn.cnpm.delivery_service.model.DroneStatus;
+import vn.cnpm.delivery_service.repository.DeliveryRepository;
+import vn.cnpm.delivery_service.repository.DroneRepository;
+import vn.cnpm.delivery_service.snapshot.FleetSnapshotStore;
+import vn.cnpm.delivery_service.util.SimulationClock;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DroneServiceTest {
+
+    private static final double RESTAURANT_LAT = 10.7769;
+    private static final double RESTAURANT_LNG = 106.7009;
+
+    private DeliveryRepository deliveryRepository;
+    private DroneRepository droneRepository;
+    private DroneSpatialIndex index;
+    private PreDispatchService preDispatchService;
+    private DroneRelocator droneRelocator;
+    private DroneService service;
+
+    @BeforeEach
+    void setUp() {
+        deliveryRepository = mock(DeliveryRepository.class);
+        when(deliveryRepository.save(any(Delivery.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        droneRepository = mock(DroneRepository.class);
+        when(droneRepository.save(any(Drone.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        index = new DroneSpatialIndex();
+        preDispatchService = mock(PreDispatchService.class);
+        droneRelocator = mock(DroneRelocator.class);
+        service = new DroneService(deliveryRepository, droneRepository,
+                mock(ActiveDeliveryRegistry.class), mock(PositionWriteBehindBuffer.class), index,
+                mock(TripBatcher.class), preDispatchService, droneRelocator,
+                mock(FleetSnapshotStore.class), new SimpleMeterRegistry(),
+                new SimulationClock(Clock.systemUTC(), 1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static Drone drone(long id, DroneStatus status) {
+        return Drone.builder().id(id).droneCode("D" + id).status(status).batteryLevel(100)
+                .currentLat(10.77).currentLng(106.70).build();
+    }
+
+    @Test
+    void indexFollowsSaveOutsideTransaction() {
+        service.saveAndIndex(drone(1L, DroneStatus.AVAILABLE));
+
+        assertThat(index.contains("D1")).isTrue();
+    }
+
+    @Test
+    void indexUpdatedOnlyAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        service.saveAndIndex(drone(1L, DroneStatus.AVAILABLE));
+
+        assertThat(index.contains("D1")).isFalse();
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertThat(index.contains("D1")).isTrue();
+    }
+
+    @Test
+    void rolledBackSaveLeavesIndexUnchanged() {
+        service.saveAndIndex(drone(1L, DroneStatus.AVAILABLE));
+
+        // markAsBusy bị rollback: drone vẫn rảnh trong DB nên phải còn trong index
+        TransactionSynchronizationManager.initSynchronization();
+        service.saveAndIndex(drone(1L, DroneStatus.BUSY));
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        assertThat(index.contains("D1")).isTrue();
+    }
+
+    @Test
+    void deletedDroneLeavesIndexAfterCommit() {
+        service.saveAndIndex(drone(1L, DroneStatus.AVAILABLE));
+        when(droneRepository.findById(1L)).thenReturn(Optional.of(drone(1L, DroneStatus.AVAILABLE)));
+
+        TransactionSynchronizationManager.initSynchronization();
+        service.deleteDrone(1L);
+        assertThat(index.contains("D1")).isTrue();
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertThat(index.contains("D1")).isFalse();
+    }
+
+    private void reservable(Drone drone) {
+        when(droneRepository.compareAndSetStatus(eq(drone.getDroneCode()), eq(DroneStatus.AVAILABLE),
+                eq(DroneStatus.BUSY), anyInt(), any(Instant.class))).thenReturn(1);
+        when(droneRepository.findByDroneCode(drone.getDroneCode())).thenReturn(Optional.of(drone));
+    }
+
+    private static Delivery pendingDelivery() {
+        return Delivery.builder().id(7L).orderId(70L).restaurantId(3L).status(DeliveryStatus.PENDING)
+                .restaurantLat(RESTAURANT_LAT).restaurantLng(RESTAURANT_LNG).build();
+    }
+
+    @Test
+    void pickupIsPlannedAfterFlightFromDronePosition() {
+        // Drone rảnh duy nhất cách nhà hàng ~9 km về phía bắc
+        double droneLat = RESTAURANT_LAT + 9 / 111.195;
+        Drone far = Drone.builder().id(1L).droneCode("D1").status(DroneStatus.AVAILABLE).batteryLevel(100)
+                .currentLat(droneLat).currentLng(RESTAURANT_LNG).build();
+        service.saveAndIndex(far);
+        reservable(far);
+
+        Delivery assigned = service.tryAssignDrone(pendingDelivery()).orElseThrow();
+
+        // 9 km ở 45 km/h = 720 s bay + 5 s lấy hàng; drone không bị dịch tới nhà hàng ngay lúc gán
+        Duration untilPickup = Duration.between(assigned.getAssignedAt(), assigned.getPickedUpAt());
+        assertThat(untilPickup.toSeconds()).isBetween(723L, 727L);
+        assertThat(far.getCurrentLat()).isEqualTo(droneLat);
+        verify(droneRelocator).flyToPickup("D1", droneLat, RESTAURANT_LNG, RESTAURANT_LAT, RESTAURANT_LNG);
+    }
+
+    @Test
+    void preDispatchedDroneAtRestaurantPicksUpWithoutFlight() {
+        Drone waiting = Drone.builder().id(2L).droneCode("D2").status(DroneStatus.AVAILABLE).batteryLevel(100)
+                .currentLat(RESTAURANT_LAT).currentLng(RESTAURANT_LNG).build();
+        reservable(waiting);
+        when(preDispatchService.take(70L)).thenReturn(Optional.of("D2"));
+
+        Delivery assigned = service.tryAssignDrone(pendingDelivery()).orElseThrow();
+
+        assertThat(assigned.getDroneId()).isEqualTo("D2");
+        assertThat(Duration.between(assigned.getAssignedAt(), assigned.getPickedUpAt()))
+                .isEqualTo(DeliveryLifecycleService.PICKUP_DELAY);
+    }
+}
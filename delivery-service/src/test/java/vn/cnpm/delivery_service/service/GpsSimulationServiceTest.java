@@ -0,0 +1,176 @@
+package vn.cnpm.delivery_service.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import vn.cnpm.delivery_service.event.OrderCompletedEvent;
+import vn.cnpm.delivery_service.event.OrderDeliveringEvent;
+import vn.cnpm.delivery_service.geocoding.Geocoder;
+import vn.cnpm.delivery_service.messaging.DeliveryEventPublisher;
+import vn.cnpm.delivery_service.model.Delivery;
+import vn.cnpm.delivery_service.model.DeliveryStatus;
+import vn.cnpm.delivery_service.model.Drone;
+import vn.cnpm.delivery_service.model.DroneStatus;
+import vn.cnpm.delivery_service.repository.DeliveryRepository;
+import vn.cnpm.delivery_service.repository.DroneRepository;
+import vn.cnpm.delivery_service.snapshot.FleetSnapshotStore;
+import vn.cnpm.delivery_service.telemetry.TelemetryIngestService;
+import vn.cnpm.delivery_service.track.GpsTrackStore;
+import vn.cnpm.delivery_service.util.SimulationClock;
+
+import java.time.Clock;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class GpsSimulationServiceTest {
+
+    private static final double RESTAURANT_LAT = 10.7769;
+    private static final double RESTAURANT_LNG = 106.7009;
+    private static final double CUSTOMER_LAT = 10.7900;
+    private static final double CUSTOMER_LNG = 106.7100;
+
+    private final SimulationClock clock = new SimulationClock(Clock.systemUTC(), 1);
+    private DeliveryRepository deliveryRepository;
+    private DroneRepository droneRepository;
+    private DeliveryEventPublisher eventPublisher;
+    private DroneSpatialIndex index;
+    private ActiveDeliveryRegistry registry;
+    private GpsSimulationService service;
+
+    @BeforeEach
+    void setUp() {
+        deliveryRepository = mock(DeliveryRepository.class);
+        droneRepository = mock(DroneRepository.class);
+        eventPublisher = mock(DeliveryEventPublisher.class);
+        index = new DroneSpatialIndex();
+        registry = new ActiveDeliveryRegistry(deliveryRepository, mock(FleetSnapshotStore.class));
+        PositionWriteBehindBuffer positionBuffer = mock(PositionWriteBehindBuffer.class);
+        DroneService droneService = new DroneService(deliveryRepository, droneRepository, registry, positionBuffer,
+                index, mock(TripBatcher.class), mock(PreDispatchService.class), mock(DroneRelocator.class),
+                mock(FleetSnapshotStore.class), new SimpleMeterRegistry(), clock);
+
+        service = new GpsSimulationService(deliveryRepository, droneRepository, droneService, eventPublisher,
+                registry, positionBuffer, new SimpleMeterRegistry(), mock(Geocoder.class), clock,
+                mock(GpsTrackStore.class), mock(TelemetryIngestService.class),
+                new TransactionTemplate(new InMemoryTransactionManager()), new FleetStateEngine(false));
+        ReflectionTestUtils.setField(service, "tickIntervalMs", 5000L);
+        ReflectionTestUtils.setField(service, "finalApproachKm", 0.3);
+        ReflectionTestUtils.setField(service, "maxSilentTicks", 12);
+        service.init();
+
+        when(deliveryRepository.save(any(Delivery.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(droneRepository.save(any(Drone.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    private void trackDelivery(DeliveryStatus status) {
+        registry.track(Delivery.builder().id(1L).orderId(100L).droneId("D1").status(status)
+                .restaurantLat(RESTAURANT_LAT).restaurantLng(RESTAURANT_LNG)
+                .deliveryLat(CUSTOMER_LAT).deliveryLng(CUSTOMER_LNG)
+                .assignedAt(clock.instant()).deliveringAt(clock.instant())
+                .build());
+    }
+
+    /**
+     * Drone (bản mới mỗi lần nạp, như đọc lại từ DB) đang đứng ở (lat, lng)
+     */
+    private void droneAt(double lat, double lng) {
+        when(droneRepository.findByDroneCodeIn(anyCollection())).thenAnswer(invocation -> List.of(
+                Drone.builder().id(1L).droneCode("D1").status(DroneStatus.BUSY).batteryLevel(100)
+                        .totalDeliveries(0).totalDistance(0.0).currentLat(lat).currentLng(lng).build()));
+    }
+
+    @Test
+    void failedDeliverySaveRollsBackCompletion() {
+        trackDelivery(DeliveryStatus.DELIVERING);
+        droneAt(CUSTOMER_LAT, CUSTOMER_LNG);
+        when(deliveryRepository.save(any(Delivery.class))).thenThrow(new IllegalStateException("db down"));
+
+        service.updateAllActiveDroneLocations();
+
+        // Drone đã lưu trong transaction bị rollback: không vào lại spatial index, đơn chưa hoàn thành
+        assertThat(index.contains("D1")).isFalse();
+        assertThat(registry.find(1L)).get().extracting(Delivery::getStatus).isEqualTo(DeliveryStatus.DELIVERING);
+        verify(eventPublisher, never()).publishOrderCompletedEvent(any(OrderCompletedEvent.class));
+
+        // Tick sau DB đã ổn: thử lại và hoàn thành một lần
+        doAnswer(invocation -> invocation.getArgument(0)).when(deliveryRepository).save(any(Delivery.class));
+        service.updateAllActiveDroneLocations();
+
+        assertThat(index.contains("D1")).isTrue();
+        assertThat(registry.find(1L)).isEmpty();
+        verify(eventPublisher, times(1)).publishOrderCompletedEvent(any(OrderCompletedEvent.class));
+    }
+
+    @Test
+    void failedDroneSaveRollsBackPickup() {
+        trackDelivery(DeliveryStatus.PICKING_UP);
+        droneAt(RESTAURANT_LAT, RESTAURANT_LNG);
+        when(droneRepository.save(any(Drone.class))).thenThrow(new IllegalStateException("db down"));
+
+        service.updateAllActiveDroneLocations();
+
+        assertThat(registry.find(1L)).get().extracting(Delivery::getStatus).isEqualTo(DeliveryStatus.PICKING_UP);
+        verify(deliveryRepository, never()).save(any(Delivery.class));
+        verify(eventPublisher, never()).publishOrderDeliveringEvent(any(OrderDeliveringEvent.class));
+
+        doAnswer(invocation -> invocation.getArgument(0)).when(droneRepository).save(any(Drone.class));
+        service.updateAllActiveDroneLocations();
+
+        assertThat(registry.find(1L)).get().extracting(Delivery::getStatus).isEqualTo(DeliveryStatus.DELIVERING);
+        verify(eventPublisher, times(1)).publishOrderDeliveringEvent(any(OrderDeliveringEvent.class));
+    }
+
+    @Test
+    void eventIsPublishedAfterCommit() {
+        trackDelivery(DeliveryStatus.DELIVERING);
+        droneAt(CUSTOMER_LAT, CUSTOMER_LNG);
+        // Lúc gửi event, registry (chỉ cập nhật sau commit) phải đã thấy đơn hoàn thành
+        AtomicBoolean committedBeforePublish = new AtomicBoolean();
+        doAnswer(invocation -> {
+            committedBeforePublish.set(registry.find(1L).isEmpty() && index.contains("D1"));
+            return null;
+        }).when(eventPublisher).publishOrderCompletedEvent(any(OrderCompletedEvent.class));
+
+        service.updateAllActiveDroneLocations();
+
+        verify(eventPublisher).publishOrderCompletedEvent(any(OrderCompletedEvent.class));
+        assertThat(committedBeforePublish).isTrue();
+    }
+
+    /**
+     * Transaction manager giả: không có tài nguyên thật, nhưng chạy đủ synchronization (afterCommit / rollback)
+     */
+    private static final class InMemoryTransactionManager extends AbstractPlatformTransactionManager {
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
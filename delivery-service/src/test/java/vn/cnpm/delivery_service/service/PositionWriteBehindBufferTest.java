@@ -0,0 +1,169 @@
+package vn.cnpm.delivery_service.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import vn.cnpm.delivery_service.model.Delivery;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PositionWriteBehindBufferTest {
+
+    private static Delivery delivery(long id, double lat, double lng) {
+        Delivery delivery = new Delivery();
+        delivery.setId(id);
+        delivery.setCurrentLat(lat);
+        delivery.setCurrentLng(lng);
+        return delivery;
+    }
+
+    @Test
+    void flushWritesLatestBufferedPosition() {
+        RecordingJdbc jdbc = new RecordingJdbc();
+        PositionWriteBehindBuffer buffer = new PositionWriteBehindBuffer(jdbc);
+        buffer.bufferDeliveryPosition(delivery(1L, 10.0, 106.0));
+        buffer.bufferDeliveryPosition(delivery(1L, 10.1, 106.1));
+
+        buffer.flush();
+
+        assertThat(jdbc.deliveryWrites).hasSize(1);
+        assertThat(jdbc.deliveryWrites.get(0)[0]).isEqualTo(10.1);
+        assertThat(buffer.pendingCount()).isZero();
+    }
+
+    @Test
+    void synchronousSaveDropsPendingPositions() {
+        RecordingJdbc jdbc = new RecordingJdbc();
+        PositionWriteBehindBuffer buffer = new PositionWriteBehindBuffer(jdbc);
+        buffer.bufferDeliveryPosition(delivery(1L, 10.0, 106.0));
+        buffer.bufferDronePosition("D1", 10.0, 106.0);
+
+        // Chuyển trạng thái: entity (vị trí cuối) được lưu đồng bộ
+        buffer.discard(1L, "D1");
+        buffer.flush();
+
+        assertThat(jdbc.deliveryWrites).isEmpty();
+        assertThat(jdbc.droneWrites).isEmpty();
+    }
+
+    @Test
+    void applyAndDiscardKeepsNewestPositionOnEntityOnly() {
+        RecordingJdbc jdbc = new RecordingJdbc();
+        PositionWriteBehindBuffer buffer = new PositionWriteBehindBuffer(jdbc);
+        buffer.bufferDeliveryPosition(delivery(1L, 10.5, 106.5));
+        Delivery loaded = delivery(1L, 10.0, 106.0);
+
+        buffer.applyAndDiscard(loaded);
+        buffer.flush();
+
+        assertThat(loaded.getCurrentLat()).isEqualTo(10.5);
+        assertThat(jdbc.deliveryWrites).isEmpty();
+    }
+
+    @Test
+    void failedFlushDoesNotRequeueOverSynchronousSave() {
+        RecordingJdbc jdbc = new RecordingJdbc();
+        PositionWriteBehindBuffer buffer = new PositionWriteBehindBuffer(jdbc);
+        buffer.bufferDeliveryPosition(delivery(1L, 10.0, 106.0));
+        jdbc.fail.set(true);
+
+        buffer.flush();
+        assertThat(buffer.pendingCount()).isEqualTo(1);
+
+        buffer.discard(1L, null);
+        jdbc.fail.set(false);
+        buffer.flush();
+
+        assertThat(jdbc.deliveryWrites).isEmpty();
+    }
+
+    @Test
+    void failedFlushKeepsPositionBufferedDuringFlush() throws Exception {
+        RecordingJdbc jdbc = new RecordingJdbc();
+        PositionWriteBehindBuffer buffer = new PositionWriteBehindBuffer(jdbc);
+        buffer.bufferDeliveryPosition(delivery(1L, 10.0, 106.0));
+        jdbc.fail.set(true);
+        jdbc.block = new CountDownLatch(1);
+
+        Thread flusher = new Thread(buffer::flush);
+        flusher.start();
+        assertThat(jdbc.entered.await(5, TimeUnit.SECONDS)).isTrue();
+        // Tick ghi vị trí mới trong lúc flush đang chạy
+        buffer.bufferDeliveryPosition(delivery(1L, 10.2, 106.2));
+        jdbc.block.countDown();
+        flusher.join(5_000);
+
+        jdbc.fail.set(false);
+        buffer.flush();
+        assertThat(jdbc.deliveryWrites).hasSize(1);
+        assertThat(jdbc.deliveryWrites.get(0)[0]).isEqualTo(10.2);
+    }
+
+    @Test
+    void synchronousSaveWaitsForInFlightFlushAndDropsItsRequeue() throws Exception {
+        RecordingJdbc jdbc = new RecordingJdbc();
+        PositionWriteBehindBuffer buffer = new PositionWriteBehindBuffer(jdbc);
+        buffer.bufferDeliveryPosition(delivery(1L, 10.0, 106.0));
+        buffer.bufferDronePosition("D1", 10.0, 106.0);
+        jdbc.fail.set(true);
+        jdbc.block = new CountDownLatch(1);
+
+        Thread flusher = new Thread(buffer::flush);
+        flusher.start();
+        assertThat(jdbc.entered.await(5, TimeUnit.SECONDS)).isTrue();
+
+        CountDownLatch discarded = new CountDownLatch(1);
+        Thread saver = new Thread(() -> {
+            buffer.discard(1L, "D1");
+            discarded.countDown();
+        });
+        saver.start();
+        // discard phải chờ flush (đang ghi vị trí cũ) xong, nếu không vị trí cũ ghi sau vị trí vừa lưu
+        assertThat(discarded.await(200, TimeUnit.MILLISECONDS)).isFalse();
+
+        jdbc.block.countDown();
+        assertThat(discarded.await(5, TimeUnit.SECONDS)).isTrue();
+        flusher.join(5_000);
+        saver.join(5_000);
+
+        // Vị trí cũ mà flush lỗi trả lại buffer đã bị discard bỏ
+        assertThat(buffer.pendingCount()).isZero();
+        jdbc.fail.set(false);
+        buffer.flush();
+        assertThat(jdbc.deliveryWrites).isEmpty();
+        assertThat(jdbc.droneWrites).isEmpty();
+    }
+
+    /**
+     * JdbcTemplate giả: ghi lại các batch UPDATE, có thể chặn hoặc báo lỗi
+     */
+    private static final class RecordingJdbc extends JdbcTemplate {
+        private final List<Object[]> deliveryWrites = new ArrayList<>();
+        private final List<Object[]> droneWrites = new ArrayList<>();
+        private final AtomicBoolean fail = new AtomicBoolean();
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private volatile CountDownLatch block;
+
+        @Override
+        public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+            entered.countDown();
+            if (block != null) {
+                try {
+                    block.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (fail.get()) {
+                throw new IllegalStateException("database unavailable");
+            }
+            (sql.startsWith("UPDATE deliveries") ? deliveryWrites : droneWrites).addAll(batchArgs);
+            return new int[batchArgs.size()];
+        }
+    }
+}
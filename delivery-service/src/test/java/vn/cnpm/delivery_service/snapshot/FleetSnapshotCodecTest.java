@@ -0,0 +1,125 @@
+package vn.cnpm.delivery_service.snapshot;
+
+import org.junit.jupiter.api.Test;
+import vn.cnpm.delivery_service.model.Delivery;
+import vn.cnpm.delivery_service.model.DeliveryStatus;
+import vn.cnpm.delivery_service.service.DroneSpatialIndex;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FleetSnapshotCodecTest {
+
+    // Instant lưu theo epoch ms
+    private static final Instant T0 = Instant.ofEpochMilli(1_760_000_000_123L);
+    // magic (4) + version (2) + takenAt (8)
+    private static final int HEADER_BYTES = 14;
+
+    static FleetSnapshot sampleSnapshot(Instant takenAt) {
+        Delivery full = Delivery.builder()
+                .id(1L).orderId(100L).droneId("DRONE-001").status(DeliveryStatus.DELIVERING)
+                .restaurantId(7L).restaurantAddress("12 Lê Lợi, Q1").restaurantLat(10.776).restaurantLng(106.701)
+                .deliveryAddress("45 Nguyễn Huệ").deliveryPhone("0901234567").deliveryFullName("Nguyễn Văn A")
+                .deliveryLat(10.774).deliveryLng(106.704)
+                .createdAt(T0).assignedAt(T0.plusSeconds(1)).pickedUpAt(T0.plusSeconds(5))
+                .deliveringAt(T0.plusSeconds(8)).completedAt(null)
+                .currentLat(10.775).currentLng(106.702).distanceRemaining(0.42).currentSpeed(11.5)
+                .estimatedArrival(T0.plusSeconds(60)).priority(2).stopSequence(1).updatedAt(T0.plusSeconds(9))
+                .build();
+        // Đơn mới tạo: phần lớn trường null
+        Delivery sparse = Delivery.builder().id(2L).orderId(101L).status(DeliveryStatus.PENDING).createdAt(T0).build();
+        return new FleetSnapshot(takenAt,
+                List.of(new DroneSpatialIndex.IndexedDrone("DRONE-002", 10.78, 106.69, 87),
+                        new DroneSpatialIndex.IndexedDrone("DRONE-003", 10.80, 106.65, 100)),
+                List.of("DRONE-004"),
+                List.of(full, sparse));
+    }
+
+    private static byte[] encode(FleetSnapshot snapshot) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            FleetSnapshotCodec.write(snapshot, out);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static FleetSnapshot decode(byte[] bytes) throws IOException {
+        return FleetSnapshotCodec.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    @Test
+    void roundTripPreservesEveryField() throws IOException {
+        FleetSnapshot snapshot = sampleSnapshot(T0);
+
+        FleetSnapshot decoded = decode(encode(snapshot));
+
+        assertThat(decoded.takenAt()).isEqualTo(T0);
+        assertThat(decoded.availableDrones()).isEqualTo(snapshot.availableDrones());
+        assertThat(decoded.heldDrones()).isEqualTo(snapshot.heldDrones());
+        assertThat(decoded.deliveries()).usingRecursiveFieldByFieldElementComparator()
+                .isEqualTo(snapshot.deliveries());
+    }
+
+    @Test
+    void roundTripEmptySnapshot() throws IOException {
+        FleetSnapshot decoded = decode(encode(new FleetSnapshot(T0, List.of(), List.of(), List.of())));
+
+        assertThat(decoded.availableDrones()).isEmpty();
+        assertThat(decoded.heldDrones()).isEmpty();
+        assertThat(decoded.deliveries()).isEmpty();
+    }
+
+    @Test
+    void rejectsWrongMagic() throws IOException {
+        byte[] bytes = encode(sampleSnapshot(T0));
+        bytes[0] ^= 0x7F;
+
+        assertThatThrownBy(() -> decode(bytes)).isInstanceOf(IOException.class).hasMessageContaining("Not a fleet");
+    }
+
+    @Test
+    void rejectsUnknownVersion() throws IOException {
+        byte[] bytes = encode(sampleSnapshot(T0));
+        ByteBuffer.wrap(bytes).putShort(4, (short) (FleetSnapshotCodec.VERSION + 1));
+
+        assertThatThrownBy(() -> decode(bytes)).isInstanceOf(IOException.class).hasMessageContaining("version");
+    }
+
+    @Test
+    void everyTruncationIsRejected() throws IOException {
+        byte[] bytes = encode(sampleSnapshot(T0));
+
+        // Cắt ở mọi vị trí: không bao giờ trả về snapshot thiếu drone/delivery
+        for (int length = 0; length < bytes.length; length++) {
+            byte[] truncated = Arrays.copyOf(bytes, length);
+            assertThatThrownBy(() -> decode(truncated)).as("truncated to %d bytes", length)
+                    .isInstanceOf(IOException.class);
+        }
+    }
+
+    @Test
+    void rejectsNegativeCount() throws IOException {
+        byte[] bytes = encode(sampleSnapshot(T0));
+        ByteBuffer.wrap(bytes).putInt(HEADER_BYTES, -1);
+
+        assertThatThrownBy(() -> decode(bytes)).isInstanceOf(IOException.class).hasMessageContaining("negative");
+    }
+
+    @Test
+    void hugeCountFromCorruptFileFailsWithoutPreallocating() throws IOException {
+        byte[] bytes = encode(new FleetSnapshot(T0, List.of(), List.of(), List.of()));
+        ByteBuffer.wrap(bytes).putInt(HEADER_BYTES, Integer.MAX_VALUE);
+
+        assertThatThrownBy(() -> decode(bytes)).isInstanceOf(IOException.class);
+    }
+}
@@ -0,0 +1,126 @@
+package vn.cnpm.delivery_service.snapshot;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import vn.cnpm.delivery_service.model.Delivery;
+import vn.cnpm.delivery_service.model.DeliveryStatus;
+import vn.cnpm.delivery_service.repository.DeliveryRepository;
+import vn.cnpm.delivery_service.service.ActiveDeliveryRegistry;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FleetSnapshotStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private FleetSnapshotStore store(Path file) {
+        return new FleetSnapshotStore(true, file.toString(), 900, 2000);
+    }
+
+    private Path written(FleetSnapshot snapshot) {
+        Path file = dir.resolve("fleet.snap");
+        store(file).write(snapshot);
+        return file;
+    }
+
+    @Test
+    void restoresWhatWasWritten() {
+        FleetSnapshot snapshot = FleetSnapshotCodecTest.sampleSnapshot(Instant.now());
+        Path file = written(snapshot);
+
+        FleetSnapshot restored = store(file).restored().orElseThrow();
+
+        assertThat(restored.availableDrones()).isEqualTo(snapshot.availableDrones());
+        assertThat(restored.deliveries()).usingRecursiveFieldByFieldElementComparator()
+                .isEqualTo(snapshot.deliveries());
+    }
+
+    @Test
+    void truncatedFileIsNotRestored() throws IOException {
+        Path file = written(FleetSnapshotCodecTest.sampleSnapshot(Instant.now()));
+        byte[] bytes = Files.readAllBytes(file);
+
+        // Thiếu CRC, cắt giữa danh sách delivery, cắt giữa danh sách drone
+        for (int length : new int[]{bytes.length - 8, bytes.length / 2, 20}) {
+            Files.write(file, Arrays.copyOf(bytes, length));
+            assertThat(store(file).restored()).as("truncated to %d bytes", length).isEmpty();
+        }
+    }
+
+    @Test
+    void corruptedContentFailsCrc() throws IOException {
+        Path file = written(FleetSnapshotCodecTest.sampleSnapshot(Instant.now()));
+        byte[] bytes = Files.readAllBytes(file);
+        // Lật một bit trong tọa độ drone: vẫn giải mã được nhưng sai CRC
+        bytes[30] ^= 0x01;
+        Files.write(file, bytes);
+
+        assertThat(store(file).restored()).isEmpty();
+    }
+
+    @Test
+    void unknownVersionIsNotRestoredEvenWithValidCrc() throws IOException {
+        Path file = written(FleetSnapshotCodecTest.sampleSnapshot(Instant.now()));
+        byte[] content = Files.readAllBytes(file);
+        content = Arrays.copyOf(content, content.length - 8);
+        ByteBuffer.wrap(content).putShort(4, (short) (FleetSnapshotCodec.VERSION + 1));
+        Files.write(file, withCrc(content));
+
+        assertThat(store(file).restored()).isEmpty();
+    }
+
+    @Test
+    void staleSnapshotIsNotRestored() {
+        Path file = written(FleetSnapshotCodecTest.sampleSnapshot(Instant.now().minus(Duration.ofHours(1))));
+
+        assertThat(store(file).restored()).isEmpty();
+    }
+
+    @Test
+    void registryFallsBackToDatabaseWhenSnapshotIsTruncated() throws IOException {
+        Path file = written(FleetSnapshotCodecTest.sampleSnapshot(Instant.now()));
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length / 2));
+
+        DeliveryRepository repository = mock(DeliveryRepository.class);
+        Delivery fromDb = Delivery.builder().id(9L).status(DeliveryStatus.ASSIGNED).droneId("DRONE-009").build();
+        when(repository.findByStatusIn(anyCollection())).thenReturn(List.of(fromDb));
+        ActiveDeliveryRegistry registry = new ActiveDeliveryRegistry(repository, store(file));
+
+        registry.reload();
+
+        // Không có delivery nào từ nửa snapshot đọc được, toàn bộ trạng thái lấy từ DB
+        assertThat(registry.getActiveDeliveries()).extracting(Delivery::getId).containsExactly(9L);
+        verify(repository, never()).findByUpdatedAtAfter(any());
+    }
+
+    private static byte[] withCrc(byte[] content) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.write(content);
+            out.writeLong(crc.getValue());
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,112 @@
+package vn.cnpm.delivery_service.telemetry;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import vn.cnpm.delivery_service.service.DroneSpatialIndex;
+import vn.cnpm.delivery_service.service.PositionWriteBehindBuffer;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TelemetryIngestServiceTest {
+
+    private static final long STALE_AFTER_MS = 30_000;
+
+    private RecordingJdbc jdbc;
+    private PositionWriteBehindBuffer positionBuffer;
+    private TelemetryIngestService service;
+
+    @BeforeEach
+    void setUp() {
+        jdbc = new RecordingJdbc();
+        positionBuffer = new PositionWriteBehindBuffer(jdbc);
+        // Writer thread không được khởi động: test tự gọi drainOnce
+        service = new TelemetryIngestService(positionBuffer, new DroneSpatialIndex(), new SimpleMeterRegistry(),
+                1024, 1024, 50, STALE_AFTER_MS);
+    }
+
+    private void report(String droneCode, long ts, double lat) {
+        assertThat(service.offer(List.of(new TelemetrySample(droneCode, ts, lat, 106.7, 80)))).isTrue();
+        service.drainOnce();
+    }
+
+    @Test
+    void droneStopsReportingAfterStalenessWindow() {
+        report("D1", 1_000L, 10.7);
+        long now = System.nanoTime();
+
+        assertThat(service.isReporting("D1", now)).isTrue();
+        assertThat(service.isReporting("D1", now + TimeUnit.MILLISECONDS.toNanos(STALE_AFTER_MS + 1_000)))
+                .isFalse();
+        assertThat(service.isReporting("D2", now)).isFalse();
+    }
+
+    @Test
+    void expireStaleForgetsSilentDrones() {
+        report("D1", 1_000L, 10.7);
+        report("D2", 1_000L, 10.8);
+
+        service.expireStale(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(STALE_AFTER_MS + 1_000));
+
+        assertThat(service.reportingDroneCount()).isZero();
+    }
+
+    @Test
+    void expireStaleKeepsRecentDrones() {
+        report("D1", 1_000L, 10.7);
+
+        service.expireStale(System.nanoTime());
+
+        assertThat(service.reportingDroneCount()).isEqualTo(1);
+    }
+
+    @Test
+    void droneReportingAgainAfterExpiryIsAcceptedWithResetClock() {
+        report("D1", 5_000L, 10.7);
+        service.expireStale(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(STALE_AFTER_MS + 1_000));
+
+        // Drone khởi động lại, đồng hồ của nó chạy lại từ đầu
+        report("D1", 10L, 10.9);
+
+        assertThat(service.isReporting("D1")).isTrue();
+        positionBuffer.flush();
+        assertThat(jdbc.droneWrites).hasSize(1);
+        assertThat(jdbc.droneWrites.get(0)[0]).isEqualTo(10.9);
+    }
+
+    @Test
+    void updatedAtUsesServerTimeNotDroneTimestamp() {
+        // Đồng hồ drone lệch một năm về tương lai
+        long skewed = Instant.now().plus(Duration.ofDays(365)).toEpochMilli();
+        Instant before = Instant.now();
+        report("D1", skewed, 10.7);
+
+        positionBuffer.flush();
+
+        Timestamp updatedAt = (Timestamp) jdbc.droneWrites.get(0)[3];
+        assertThat(updatedAt.toInstant()).isBetween(before, Instant.now());
+    }
+
+    /**
+     * JdbcTemplate giả: ghi lại tham số các batch UPDATE drones
+     */
+    private static final class RecordingJdbc extends JdbcTemplate {
+        private final List<Object[]> droneWrites = new ArrayList<>();
+
+        @Override
+        public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+            if (sql.startsWith("UPDATE drones")) {
+                droneWrites.addAll(batchArgs);
+            }
+            return new int[batchArgs.size()];
+        }
+    }
+}
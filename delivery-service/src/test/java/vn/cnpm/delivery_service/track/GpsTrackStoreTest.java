@@ -0,0 +1,112 @@
+package vn.cnpm.delivery_service.track;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GpsTrackStoreTest {
+
+    // Segment 1 MB, block 64 KB: khoảng 16 block mỗi segment
+    private static final int SEGMENT_MB = 1;
+    private static final int BLOCK_BYTES = 64 * 1024;
+
+    @TempDir
+    Path dir;
+
+    private GpsTrackStore store;
+
+    @AfterEach
+    void tearDown() {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    private GpsTrackStore open(long retentionHours, long maxSizeMb) {
+        return new GpsTrackStore(true, dir.toString(), SEGMENT_MB, BLOCK_BYTES, retentionHours, maxSizeMb,
+                new SimpleMeterRegistry());
+    }
+
+    /**
+     * Ghi hành trình ngẫu nhiên (khó nén) cho delivery rồi niêm phong
+     */
+    private static void record(GpsTrackStore store, long deliveryId, int points) {
+        Random random = new Random(deliveryId);
+        for (int i = 0; i < points; i++) {
+            store.append(deliveryId, i * 5_000L, 10 + random.nextDouble(), 106 + random.nextDouble(),
+                    random.nextDouble() * 60);
+        }
+        store.finish(deliveryId);
+    }
+
+    private long segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    void sizeRetentionDropsOldestSegmentsAndTheirDeliveries() throws IOException {
+        store = open(168, 2);
+        // Mỗi delivery ~ 1 block 64 KB
+        for (long id = 1; id <= 60; id++) {
+            record(store, id, 4_000);
+        }
+        assertThat(store.segmentCount()).isGreaterThan(2);
+
+        int dropped = store.enforceRetention(System.currentTimeMillis());
+
+        assertThat(dropped).isPositive();
+        assertThat(store.segmentCount()).isEqualTo(2);
+        assertThat(segmentFiles()).isEqualTo(2);
+        assertThat(store.history(1L).pointCount()).isZero();
+        assertThat(store.history(60L).pointCount()).isEqualTo(4_000);
+    }
+
+    @Test
+    void ageRetentionKeepsOnlyTheSegmentBeingWritten() {
+        store = open(1, 4096);
+        for (long id = 1; id <= 30; id++) {
+            record(store, id, 4_000);
+        }
+        int segments = store.segmentCount();
+        assertThat(segments).isGreaterThan(1);
+
+        assertThat(store.enforceRetention(System.currentTimeMillis())).isZero();
+        int dropped = store.enforceRetention(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(2));
+
+        assertThat(dropped).isEqualTo(segments - 1);
+        assertThat(store.segmentCount()).isEqualTo(1);
+        assertThat(store.history(1L).pointCount()).isZero();
+        assertThat(store.history(30L).pointCount()).isEqualTo(4_000);
+    }
+
+    @Test
+    void reopenAfterRetentionContinuesAfterLastSegment() {
+        store = open(168, 2);
+        for (long id = 1; id <= 60; id++) {
+            record(store, id, 4_000);
+        }
+        store.enforceRetention(System.currentTimeMillis());
+        store.close();
+
+        // Các segment còn lại có chỉ số không bắt đầu từ 0
+        store = open(168, 2);
+        assertThat(store.segmentCount()).isEqualTo(2);
+        assertThat(store.history(60L).pointCount()).isEqualTo(4_000);
+
+        record(store, 61L, 100);
+        assertThat(store.history(61L).pointCount()).isEqualTo(100);
+        assertThat(store.history(60L).pointCount()).isEqualTo(4_000);
+    }
+}
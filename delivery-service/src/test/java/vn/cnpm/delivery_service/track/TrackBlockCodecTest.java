@@ -0,0 +1,123 @@
+package vn.cnpm.delivery_service.track;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TrackBlockCodecTest {
+
+    /**
+     * Nén rồi giải nén, so với giá trị đã lượng tử hóa (1e-7 độ, 0.01 km/h)
+     */
+    private static void assertRoundTrip(long[] timestamps, double[] lat, double[] lng, double[] speed) {
+        TrackBlockEncoder encoder = new TrackBlockEncoder();
+        for (int i = 0; i < timestamps.length; i++) {
+            encoder.append(timestamps[i], lat[i], lng[i], speed[i]);
+        }
+        byte[] bytes = encoder.toBytes();
+        int n = timestamps.length;
+        long[] outTime = new long[n + 2];
+        double[] outLat = new double[n + 2];
+        double[] outLng = new double[n + 2];
+        double[] outSpeed = new double[n + 2];
+
+        // Giải nén từ offset khác 0 như khi nối nhiều block
+        TrackBlockDecoder.decode(bytes, bytes.length, encoder.count(), outTime, outLat, outLng, outSpeed, 2);
+
+        assertThat(encoder.count()).isEqualTo(n);
+        for (int i = 0; i < n; i++) {
+            assertThat(outTime[i + 2]).as("timestamp %d", i).isEqualTo(timestamps[i]);
+            assertThat(outLat[i + 2]).as("lat %d", i)
+                    .isEqualTo(TrackBlockEncoder.quantize(lat[i]) / TrackBlockEncoder.COORDINATE_SCALE);
+            assertThat(outLng[i + 2]).as("lng %d", i)
+                    .isEqualTo(TrackBlockEncoder.quantize(lng[i]) / TrackBlockEncoder.COORDINATE_SCALE);
+            assertThat(outSpeed[i + 2]).as("speed %d", i)
+                    .isEqualTo(Math.round(speed[i] * TrackBlockEncoder.SPEED_SCALE) / TrackBlockEncoder.SPEED_SCALE);
+        }
+    }
+
+    @Test
+    void steadyFlightRoundTripsInAFewBitsPerPoint() {
+        int n = 500;
+        long[] t = new long[n];
+        double[] lat = new double[n];
+        double[] lng = new double[n];
+        double[] speed = new double[n];
+        for (int i = 0; i < n; i++) {
+            t[i] = 1_700_000_000_000L + i * 5_000L;
+            lat[i] = 10.7769 + i * 0.0004;
+            lng[i] = 106.7009 + i * 0.0003;
+            speed[i] = 45.0;
+        }
+
+        assertRoundTrip(t, lat, lng, speed);
+
+        TrackBlockEncoder encoder = new TrackBlockEncoder();
+        for (int i = 0; i < n; i++) {
+            encoder.append(t[i], lat[i], lng[i], speed[i]);
+        }
+        // Tick đều, bay thẳng, tốc độ không đổi: dưới 2 byte mỗi điểm
+        assertThat(encoder.byteLength()).isLessThan(n * 2);
+    }
+
+    @Test
+    void singlePointRoundTrips() {
+        assertRoundTrip(new long[]{42L}, new double[]{-33.8688}, new double[]{151.2093}, new double[]{0.0});
+    }
+
+    @Test
+    void everyDeltaBucketAndRawBranchRoundTrips() {
+        // Hiệu bậc hai rơi vào từng bucket (0, 4, 10, 17 bit) và nhánh thô 64 bit
+        long[] t = {0L, 5_000L, 10_000L, 10_050L, 20_000L, 20_001L, 9_000_000_000L, 9_000_005_000L, 1L};
+        double[] lat = {10.0, 10.0000001, 10.0000003, 10.0001, 10.01, 10.5, -45.0, 89.9999999, -89.9999999};
+        double[] lng = {106.0, 106.0, 105.9999995, 106.002, 106.2, 100.0, -179.9999999, 179.9999999, 0.0};
+        double[] speed = {0.0, 45.0, 45.0, 45.01, 12.5, 12.5, 1e6, 0.01, 45.0};
+
+        assertRoundTrip(t, lat, lng, speed);
+    }
+
+    @Test
+    void speedXorWindowChangesRoundTrip() {
+        // Tốc độ đổi liên tục: lúc dùng lại cửa sổ bit trước, lúc phải ghi cửa sổ mới
+        int n = 200;
+        long[] t = new long[n];
+        double[] lat = new double[n];
+        double[] lng = new double[n];
+        double[] speed = new double[n];
+        for (int i = 0; i < n; i++) {
+            t[i] = i * 5_000L;
+            lat[i] = 10.7769;
+            lng[i] = 106.7009;
+            speed[i] = i % 7 == 0 ? 0.0 : 30.0 + (i % 13) * 1.37;
+        }
+
+        assertRoundTrip(t, lat, lng, speed);
+    }
+
+    @Test
+    void randomWalksRoundTrip() {
+        Random random = new Random(7);
+        for (int run = 0; run < 50; run++) {
+            int n = 1 + random.nextInt(300);
+            long[] t = new long[n];
+            double[] lat = new double[n];
+            double[] lng = new double[n];
+            double[] speed = new double[n];
+            long time = random.nextLong() >>> 20;
+            double la = random.nextDouble() * 170 - 85;
+            double lo = random.nextDouble() * 350 - 175;
+            for (int i = 0; i < n; i++) {
+                time += random.nextInt(3) == 0 ? random.nextInt(100_000) : 5_000;
+                la = Math.max(-89.9, Math.min(89.9, la + random.nextGaussian() * 0.001));
+                lo = Math.max(-179.9, Math.min(179.9, lo + random.nextGaussian() * 0.001));
+                t[i] = time;
+                lat[i] = la;
+                lng[i] = lo;
+                speed[i] = random.nextDouble() * 80;
+            }
+            assertRoundTrip(t, lat, lng, speed);
+        }
+    }
+}
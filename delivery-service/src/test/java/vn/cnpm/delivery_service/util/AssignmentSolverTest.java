@@ -0,0 +1,166 @@
+package vn.cnpm.delivery_service.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class AssignmentSolverTest {
+
+    private static final double X = Double.POSITIVE_INFINITY;
+
+    private static double total(double[][] cost, int[] assignment) {
+        double sum = 0;
+        for (int i = 0; i < assignment.length; i++) {
+            if (assignment[i] >= 0) {
+                sum += cost[i][assignment[i]];
+            }
+        }
+        return sum;
+    }
+
+    private static int matched(int[] assignment) {
+        int count = 0;
+        for (int col : assignment) {
+            if (col >= 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Vét cạn: số cặp khả thi lớn nhất, rồi tổng chi phí nhỏ nhất trong các cách ghép đó
+     * Trả về {số cặp, tổng chi phí}
+     */
+    private static double[] bruteForce(double[][] cost) {
+        double[] best = {-1, Double.POSITIVE_INFINITY};
+        search(cost, 0, new boolean[cost[0].length], 0, 0, best);
+        return best;
+    }
+
+    private static void search(double[][] cost, int row, boolean[] usedCols, int pairs, double sum, double[] best) {
+        if (row == cost.length) {
+            if (pairs > best[0] || (pairs == best[0] && sum < best[1] - 1e-9)) {
+                best[0] = pairs;
+                best[1] = sum;
+            }
+            return;
+        }
+        // Hàng không được ghép
+        search(cost, row + 1, usedCols, pairs, sum, best);
+        for (int j = 0; j < usedCols.length; j++) {
+            if (!usedCols[j] && Double.isFinite(cost[row][j])) {
+                usedCols[j] = true;
+                search(cost, row + 1, usedCols, pairs + 1, sum + cost[row][j], best);
+                usedCols[j] = false;
+            }
+        }
+    }
+
+    private static void assertValid(double[][] cost, int[] assignment) {
+        boolean[] used = new boolean[cost[0].length];
+        for (int i = 0; i < assignment.length; i++) {
+            if (assignment[i] >= 0) {
+                assertThat(used[assignment[i]]).as("column %d used twice", assignment[i]).isFalse();
+                assertThat(cost[i][assignment[i]]).isFinite();
+                used[assignment[i]] = true;
+            }
+        }
+    }
+
+    @Test
+    void squareMatrixFindsMinimumCost() {
+        double[][] cost = {
+                {4, 1, 3},
+                {2, 0, 5},
+                {3, 2, 2}};
+
+        int[] assignment = AssignmentSolver.solve(cost);
+
+        assertThat(assignment).containsExactly(1, 0, 2);
+        assertThat(total(cost, assignment)).isEqualTo(5);
+    }
+
+    @Test
+    void moreColumnsThanRowsAssignsEveryRow() {
+        double[][] cost = {
+                {9, 9, 1, 9},
+                {9, 2, 9, 9}};
+
+        assertThat(AssignmentSolver.solve(cost)).containsExactly(2, 1);
+    }
+
+    @Test
+    void moreRowsThanColumnsLeavesCheapestRowsMatched() {
+        double[][] cost = {
+                {5, 9},
+                {1, 9},
+                {9, 2}};
+
+        assertThat(AssignmentSolver.solve(cost)).containsExactly(-1, 0, 1);
+    }
+
+    @Test
+    void emptyMatrices() {
+        assertThat(AssignmentSolver.solve(new double[0][0])).isEmpty();
+        assertThat(AssignmentSolver.solve(new double[2][0])).containsExactly(-1, -1);
+    }
+
+    @Test
+    void infeasibleCellIsNeverAssigned() {
+        // Hàng 0 chỉ đi được cột 1, dù cột 0 rẻ hơn cho cả hai hàng
+        double[][] cost = {
+                {X, 10},
+                {1, 2}};
+
+        int[] assignment = AssignmentSolver.solve(cost);
+
+        assertThat(assignment).containsExactly(1, 0);
+    }
+
+    @Test
+    void rowWithoutFeasibleColumnStaysUnassigned() {
+        double[][] cost = {
+                {X, X},
+                {3, 1},
+                {Double.NaN, 2}};
+
+        int[] assignment = AssignmentSolver.solve(cost);
+
+        assertThat(assignment[0]).isEqualTo(-1);
+        assertValid(cost, assignment);
+        assertThat(matched(assignment)).isEqualTo(2);
+    }
+
+    @Test
+    void fullyInfeasibleMatrixAssignsNothing() {
+        double[][] cost = {{X, X}, {X, X}};
+
+        assertThat(AssignmentSolver.solve(cost)).containsExactly(-1, -1);
+    }
+
+    @Test
+    void matchesBruteForceOnRandomMatrices() {
+        Random random = new Random(11);
+        for (int run = 0; run < 300; run++) {
+            int rows = 1 + random.nextInt(6);
+            int cols = 1 + random.nextInt(6);
+            double[][] cost = new double[rows][cols];
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < cols; j++) {
+                    cost[i][j] = random.nextInt(5) == 0 ? X : random.nextInt(100) / 4.0;
+                }
+            }
+
+            int[] assignment = AssignmentSolver.solve(cost);
+            double[] expected = bruteForce(cost);
+
+            assertValid(cost, assignment);
+            assertThat(matched(assignment)).as("pairs, run %d", run).isEqualTo((int) expected[0]);
+            assertThat(total(cost, assignment)).as("cost, run %d", run).isCloseTo(expected[1], within(1e-9));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package vn.cnpm.delivery_service.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class RouteOptimizerTest {
+
+    private static final double ORIGIN_LAT = 10.7769;
+    private static final double ORIGIN_LNG = 106.7009;
+
+    private static double bruteForceKm(double[] lat, double[] lng) {
+        return permute(lat, lng, IntStream.range(0, lat.length).toArray(), 0);
+    }
+
+    private static double permute(double[] lat, double[] lng, int[] order, int k) {
+        if (k == order.length) {
+            return RouteOptimizer.pathKm(ORIGIN_LAT, ORIGIN_LNG, lat, lng, order);
+        }
+        double best = Double.POSITIVE_INFINITY;
+        for (int i = k; i < order.length; i++) {
+            swap(order, k, i);
+            best = Math.min(best, permute(lat, lng, order, k + 1));
+            swap(order, k, i);
+        }
+        return best;
+    }
+
+    private static void swap(int[] a, int i, int j) {
+        int tmp = a[i];
+        a[i] = a[j];
+        a[j] = tmp;
+    }
+
+    @Test
+    void emptyAndSingleStop() {
+        assertThat(RouteOptimizer.order(ORIGIN_LAT, ORIGIN_LNG, new double[0], new double[0])).isEmpty();
+        assertThat(RouteOptimizer.order(ORIGIN_LAT, ORIGIN_LNG, new double[]{10.8}, new double[]{106.7}))
+                .containsExactly(0);
+    }
+
+    @Test
+    void stopsAlongOneLineAreVisitedOutwards() {
+        // Các điểm trên cùng một đường thẳng từ nhà hàng, đưa vào lộn xộn
+        double[] lat = {ORIGIN_LAT + 0.03, ORIGIN_LAT + 0.01, ORIGIN_LAT + 0.04, ORIGIN_LAT + 0.02};
+        double[] lng = {ORIGIN_LNG, ORIGIN_LNG, ORIGIN_LNG, ORIGIN_LNG};
+
+        assertThat(RouteOptimizer.order(ORIGIN_LAT, ORIGIN_LNG, lat, lng)).containsExactly(1, 3, 0, 2);
+    }
+
+    @Test
+    void twoOptFixesNearestNeighbourDetour() {
+        // Nearest-neighbour đi điểm gần nhất (phía tây) trước rồi phải bay ngược qua nhà hàng
+        double[] lat = {ORIGIN_LAT, ORIGIN_LAT, ORIGIN_LAT};
+        double[] lng = {ORIGIN_LNG - 0.01, ORIGIN_LNG + 0.012, ORIGIN_LNG + 0.03};
+
+        int[] order = RouteOptimizer.order(ORIGIN_LAT, ORIGIN_LNG, lat, lng);
+
+        assertThat(RouteOptimizer.pathKm(ORIGIN_LAT, ORIGIN_LNG, lat, lng, order))
+                .isLessThanOrEqualTo(RouteOptimizer.pathKm(ORIGIN_LAT, ORIGIN_LNG, lat, lng, new int[]{0, 1, 2}));
+        assertThat(RouteOptimizer.pathKm(ORIGIN_LAT, ORIGIN_LNG, lat, lng, order))
+                .isCloseTo(bruteForceKm(lat, lng), within(1e-9));
+    }
+
+    @Test
+    void randomTripsArePermutationsCloseToOptimal() {
+        Random random = new Random(5);
+        for (int run = 0; run < 200; run++) {
+            int n = 1 + random.nextInt(6);
+            double[] lat = new double[n];
+            double[] lng = new double[n];
+            for (int i = 0; i < n; i++) {
+                lat[i] = ORIGIN_LAT + (random.nextDouble() - 0.5) * 0.1;
+                lng[i] = ORIGIN_LNG + (random.nextDouble() - 0.5) * 0.1;
+            }
+
+            int[] order = RouteOptimizer.order(ORIGIN_LAT, ORIGIN_LNG, lat, lng);
+
+            assertThat(Arrays.stream(order).sorted().toArray()).isEqualTo(IntStream.range(0, n).toArray());
+            double km = RouteOptimizer.pathKm(ORIGIN_LAT, ORIGIN_LNG, lat, lng, order);
+            // Heuristic: không tệ hơn thứ tự đưa vào và không quá 25% so với tối ưu
+            assertThat(km).isLessThanOrEqualTo(
+                    RouteOptimizer.pathKm(ORIGIN_LAT, ORIGIN_LNG, lat, lng, IntStream.range(0, n).toArray()) + 1e-9);
+            assertThat(km).isLessThanOrEqualTo(bruteForceKm(lat, lng) * 1.25 + 1e-9);
+        }
+    }
+
+    @Test
+    void pathKmSumsLegsFromOrigin() {
+        double[] lat = {ORIGIN_LAT + 0.01, ORIGIN_LAT + 0.02};
+        double[] lng = {ORIGIN_LNG, ORIGIN_LNG};
+
+        double expected = GeoKernel.distanceKm(ORIGIN_LAT, ORIGIN_LNG, lat[0], lng[0])
+                + GeoKernel.distanceKm(lat[0], lng[0], lat[1], lng[1]);
+        assertThat(RouteOptimizer.pathKm(ORIGIN_LAT, ORIGIN_LNG, lat, lng, new int[]{0, 1})).isEqualTo(expected);
+    }
+}
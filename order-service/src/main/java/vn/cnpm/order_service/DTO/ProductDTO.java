@@ -8,4 +8,10 @@ public class ProductDTO {
     private String name;
     private double price;
     private int stock;
+    // Stock có thể bán (stock trừ phần đang giữ cho đơn chưa thanh toán), null nếu product-service bản cũ
+    private Integer availableStock;
+
+    public int getAvailableStock() {
+        return availableStock != null ? availableStock : stock;
+    }
 }
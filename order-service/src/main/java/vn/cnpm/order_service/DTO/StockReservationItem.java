@@ -0,0 +1,13 @@
+package vn.cnpm.order_service.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockReservationItem {
+    private Long productId;
+    private int quantity;
+}
@@ -0,0 +1,39 @@
+package vn.cnpm.order_service.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Kết quả giữ stock cho nhiều sản phẩm: reserved = true khi tất cả các dòng đều trừ được,
+ * ngược lại không dòng nào bị trừ (cả transaction đã rollback)
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockReservationResponse {
+    private boolean reserved;
+    private List<Line> lines;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Line {
+        private Long productId;
+        private int quantity;
+        private Status status;
+        private Integer availableStock; // Stock hiện có, chỉ trả về khi dòng không trừ được
+    }
+
+    public enum Status {
+        RESERVED,           // Đã trừ stock
+        INSUFFICIENT_STOCK, // Không đủ stock
+        NOT_FOUND,          // Sản phẩm không tồn tại
+        ROLLED_BACK         // Đủ stock nhưng bị huỷ vì dòng khác thất bại
+    }
+}
@@ -4,11 +4,19 @@ import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
 import io.github.resilience4j.retry.annotation.Retry;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import vn.cnpm.order_service.DTO.ProductDTO;
 import vn.cnpm.order_service.DTO.RestaurantDTO;
+import vn.cnpm.order_service.DTO.StockReservationItem;
+import vn.cnpm.order_service.DTO.StockReservationResponse;
+
+import java.util.List;
+import java.util.Map;
 
 @FeignClient(name = "PRODUCT-SERVICE", fallback = ProductClientFallback.class)
 public interface ProductClient {
@@ -18,11 +26,39 @@ public interface ProductClient {
     @GetMapping("/api/products/{id}")
     ProductDTO getProductById(@PathVariable("id") Long id);
 
+    // Lấy nhiều sản phẩm trong một request: id -> product, id không tồn tại thì không có trong map
+    @CircuitBreaker(name = "productService")
+    @Retry(name = "productService")
+    @PostMapping("/api/products/batch")
+    Map<Long, ProductDTO> getProductsByIds(@RequestBody List<Long> ids);
+
     @CircuitBreaker(name = "productService")
     @Retry(name = "productService")
     @PutMapping("/api/products/{id}/reduce-stock/{quantity}")
     ResponseEntity<Void> reduceStock(@PathVariable("id") Long id, @PathVariable("quantity") int quantity);
 
+    // Giữ tạm stock cả đơn (all-or-nothing) tới khi thanh toán, kết quả từng dòng trong response
+    // Gọi lại cùng orderId trả về hold đã có nên retry an toàn; hold không được confirm sẽ tự hết hạn
+    @CircuitBreaker(name = "productService")
+    @Retry(name = "productService")
+    @PostMapping("/api/products/holds/{orderId}")
+    StockReservationResponse holdStock(@PathVariable("orderId") Long orderId,
+                                       @RequestBody List<StockReservationItem> items);
+
+    // Đơn đã thanh toán: trừ hẳn stock đang giữ, hold đã hết hạn thì trừ trực tiếp các dòng gửi kèm
+    // reserved=false: không đủ hàng, stock không bị trừ. Gọi lại cùng orderId không trừ thêm
+    @CircuitBreaker(name = "productService")
+    @Retry(name = "productService")
+    @PostMapping("/api/products/holds/{orderId}/confirm")
+    StockReservationResponse confirmHolds(@PathVariable("orderId") Long orderId,
+                                          @RequestBody List<StockReservationItem> items);
+
+    // Đơn bị huỷ trước khi thanh toán: trả lại stock đang giữ, trả về số hold đã trả lại
+    @CircuitBreaker(name = "productService")
+    @Retry(name = "productService")
+    @DeleteMapping("/api/products/holds/{orderId}")
+    ResponseEntity<Integer> releaseHolds(@PathVariable("orderId") Long orderId);
+
     @CircuitBreaker(name = "productService")
     @Retry(name = "productService")
     @PutMapping("/api/products/{id}/restore-stock/{quantity}")
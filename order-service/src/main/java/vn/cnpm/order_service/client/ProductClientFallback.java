@@ -5,6 +5,11 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 import vn.cnpm.order_service.DTO.ProductDTO;
 import vn.cnpm.order_service.DTO.RestaurantDTO;
+import vn.cnpm.order_service.DTO.StockReservationItem;
+import vn.cnpm.order_service.DTO.StockReservationResponse;
+
+import java.util.List;
+import java.util.Map;
 
 @Slf4j
 @Component
@@ -15,6 +20,12 @@ public class ProductClientFallback implements ProductClient {
         log.error("Product service is unavailable. Cannot fetch product: {}", id);
         throw new RuntimeException("Product service is currently unavailable. Please try again later.");
     }
+
+    @Override
+    public Map<Long, ProductDTO> getProductsByIds(List<Long> ids) {
+        log.error("Product service is unavailable. Cannot fetch products: {}", ids);
+        throw new RuntimeException("Product service is currently unavailable. Please try again later.");
+    }
     
     @Override
     public ResponseEntity<Void> reduceStock(Long id, int quantity) {
@@ -22,6 +33,24 @@ public class ProductClientFallback implements ProductClient {
         throw new RuntimeException("Product service unavailable - cannot process order");
     }
 
+    @Override
+    public StockReservationResponse holdStock(Long orderId, List<StockReservationItem> items) {
+        log.error("Product service is unavailable. Cannot hold stock for order {} ({} items)", orderId, items.size());
+        throw new RuntimeException("Product service unavailable - cannot process order");
+    }
+
+    @Override
+    public StockReservationResponse confirmHolds(Long orderId, List<StockReservationItem> items) {
+        log.error("Product service is unavailable. Cannot confirm stock holds for order {}", orderId);
+        throw new RuntimeException("Product service unavailable - cannot confirm stock holds");
+    }
+
+    @Override
+    public ResponseEntity<Integer> releaseHolds(Long orderId) {
+        log.error("Product service is unavailable. Cannot release stock holds for order {}", orderId);
+        throw new RuntimeException("Product service unavailable - cannot release stock holds");
+    }
+
     @Override
     public ResponseEntity<Void> restoreStock(Long id, int quantity) {
         log.error("Product service is unavailable. Cannot restore stock for product: {} quantity: {}", id, quantity);
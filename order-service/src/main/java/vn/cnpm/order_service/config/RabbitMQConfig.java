@@ -26,9 +26,11 @@ public class RabbitMQConfig {
     public static final String ORDER_DELIVERING_QUEUE = "order.delivering.queue";
     public static final String ORDER_COMPLETED_QUEUE = "order.completed.queue";
     public static final String DRONE_LOCATION_UPDATE_QUEUE = "drone.location.update.queue";
+    public static final String DRONE_LOCATION_FRAME_QUEUE = "drone.location.frame.queue";
 
     // Routing keys
     public static final String ORDER_CREATED_ROUTING_KEY = "order.created";
+    public static final String ORDER_CANCELLED_ROUTING_KEY = "order.cancelled";
     public static final String PAYMENT_PROCESSED_ROUTING_KEY = "payment.processed";
     public static final String ORDER_PAID_ROUTING_KEY = "order.paid";
     public static final String ORDER_READY_ROUTING_KEY = "order.ready";
@@ -36,6 +38,7 @@ public class RabbitMQConfig {
     public static final String ORDER_DELIVERING_ROUTING_KEY = "order.delivering";
     public static final String ORDER_COMPLETED_ROUTING_KEY = "order.completed";
     public static final String DRONE_LOCATION_UPDATE_ROUTING_KEY = "drone.location.update";
+    public static final String DRONE_LOCATION_FRAME_ROUTING_KEY = "drone.location.frame";
 
     @Bean
     public MessageConverter jsonMessageConverter() {
@@ -121,6 +124,12 @@ public class RabbitMQConfig {
         return new Queue(DRONE_LOCATION_UPDATE_QUEUE, true);
     }
 
+    // Drone Location Frame Queue (GPS gộp theo tick)
+    @Bean
+    public Queue droneLocationFrameQueue() {
+        return new Queue(DRONE_LOCATION_FRAME_QUEUE, true);
+    }
+
     // Binding: Order Created Queue -> Order Exchange
     @Bean
     public Binding orderCreatedBinding() {
@@ -192,5 +201,13 @@ public class RabbitMQConfig {
                 .to(deliveryExchange())
                 .with(DRONE_LOCATION_UPDATE_ROUTING_KEY);
     }
-}
 
+    // Binding: Drone Location Frame Queue -> Delivery Exchange
+    @Bean
+    public Binding droneLocationFrameBinding() {
+        return BindingBuilder
+                .bind(droneLocationFrameQueue())
+                .to(deliveryExchange())
+                .with(DRONE_LOCATION_FRAME_ROUTING_KEY);
+    }
+}
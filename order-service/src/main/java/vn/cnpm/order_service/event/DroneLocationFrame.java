@@ -0,0 +1,56 @@
+package vn.cnpm.order_service.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Toàn bộ cập nhật GPS của một tick từ delivery-service (có thể chia thành nhiều chunk)
+ * Dạng cột: phần tử thứ i của mỗi mảng thuộc cùng một drone
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DroneLocationFrame implements Serializable {
+    private long tickAt; // epoch millis - thời điểm lấy mẫu vị trí của cả tick
+    private int chunk; // 0-based
+    private int chunkCount;
+    private long[] orderIds;
+    private String[] droneIds;
+    private String[] statuses;
+    private double[] currentLat;
+    private double[] currentLng;
+    private double[] distanceRemaining; // km
+    private double[] currentSpeed; // km/h
+    private double[] heading; // độ, 0 = bắc
+    private long[] estimatedArrivalSeconds;
+
+    /**
+     * Tách frame thành các DroneLocationUpdateEvent như khi gửi từng message
+     */
+    public List<DroneLocationUpdateEvent> toEvents() {
+        int n = orderIds != null ? orderIds.length : 0;
+        List<DroneLocationUpdateEvent> events = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            events.add(DroneLocationUpdateEvent.builder()
+                    .orderId(orderIds[i])
+                    .droneId(droneIds[i])
+                    .status(statuses[i])
+                    .currentLat(currentLat[i])
+                    .currentLng(currentLng[i])
+                    .distanceRemaining(distanceRemaining[i])
+                    .currentSpeed(currentSpeed[i])
+                    .heading(heading != null ? heading[i] : null)
+                    .estimatedArrivalSeconds(estimatedArrivalSeconds[i])
+                    .timestamp(tickAt)
+                    .build());
+        }
+        return events;
+    }
+}
@@ -23,5 +23,7 @@ public class DroneLocationUpdateEvent implements Serializable {
     private Double currentLng;
     private Double distanceRemaining; // km
     private Double currentSpeed; // km/h
+    private Double heading; // degrees clockwise from north, for client-side dead reckoning
     private Long estimatedArrivalSeconds; // seconds
+    private Long timestamp; // epoch millis when the position was sampled
 }
@@ -0,0 +1,19 @@
+package vn.cnpm.order_service.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderCancelledEvent implements Serializable {
+    private Long orderId;
+    private Long restaurantId;
+    // Trạng thái đơn trước khi hủy (PENDING, PAID, PREPARING...)
+    private String previousStatus;
+}
@@ -5,6 +5,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.stereotype.Component;
 import vn.cnpm.order_service.config.RabbitMQConfig;
+import vn.cnpm.order_service.event.DroneLocationFrame;
 import vn.cnpm.order_service.event.DroneLocationUpdateEvent;
 import vn.cnpm.order_service.event.OrderCompletedEvent;
 import vn.cnpm.order_service.event.OrderDeliveringEvent;
@@ -15,6 +16,10 @@ import vn.cnpm.order_service.repository.OrderRepository;
 import vn.cnpm.order_service.service.WebSocketService;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 @Component
 @RequiredArgsConstructor
@@ -131,4 +136,38 @@ public class DeliveryEventConsumer {
                     event.getOrderId(), e);
         }
     }
+
+    /**
+     * Xử lý frame GPS gộp cả tick: một query lấy userId cho mọi order trong frame,
+     * rồi chuyển từng cập nhật đến WebSocket như handleDroneLocationUpdate
+     */
+    @RabbitListener(queues = RabbitMQConfig.DRONE_LOCATION_FRAME_QUEUE)
+    public void handleDroneLocationFrame(DroneLocationFrame frame) {
+        try {
+            List<DroneLocationUpdateEvent> events = frame.toEvents();
+            log.debug("Drone location frame {}/{} with {} updates",
+                    frame.getChunk() + 1, frame.getChunkCount(), events.size());
+            if (events.isEmpty()) {
+                return;
+            }
+
+            List<Long> orderIds = new ArrayList<>(events.size());
+            events.forEach(event -> orderIds.add(event.getOrderId()));
+            Map<Long, Long> userIdByOrder = new HashMap<>();
+            orderRepository.findAllById(orderIds)
+                    .forEach(order -> userIdByOrder.put(order.getId(), order.getUserId()));
+
+            for (DroneLocationUpdateEvent event : events) {
+                Long userId = userIdByOrder.get(event.getOrderId());
+                if (userId != null) {
+                    // Forward đến WebSocket cho frontend nhận real-time
+                    webSocketService.sendDroneLocationUpdate(userId, event.getOrderId(), event);
+                }
+            }
+
+        } catch (Exception e) {
+            log.error("Failed to process DroneLocationFrame chunk {}/{}",
+                    frame.getChunk() + 1, frame.getChunkCount(), e);
+        }
+    }
 }
@@ -5,6 +5,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.stereotype.Component;
 import vn.cnpm.order_service.config.RabbitMQConfig;
+import vn.cnpm.order_service.event.OrderCancelledEvent;
 import vn.cnpm.order_service.event.OrderCreatedEvent;
 import vn.cnpm.order_service.event.OrderReadyEvent;
 
@@ -44,5 +45,19 @@ public class OrderEventPublisher {
             throw new RuntimeException("Failed to publish order ready event", e);
         }
     }
-}
 
+    public void publishOrderCancelledEvent(OrderCancelledEvent event) {
+        try {
+            log.info("Publishing OrderCancelledEvent for orderId: {}", event.getOrderId());
+            rabbitTemplate.convertAndSend(
+                    RabbitMQConfig.ORDER_EXCHANGE,
+                    RabbitMQConfig.ORDER_CANCELLED_ROUTING_KEY,
+                    event
+            );
+            log.info("OrderCancelledEvent published successfully for orderId: {}", event.getOrderId());
+        } catch (Exception e) {
+            log.error("Failed to publish OrderCancelledEvent for orderId: {}", event.getOrderId(), e);
+            throw new RuntimeException("Failed to publish order cancelled event", e);
+        }
+    }
+}
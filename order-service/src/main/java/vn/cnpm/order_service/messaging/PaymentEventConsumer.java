@@ -4,21 +4,25 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.stereotype.Component;
-import vn.cnpm.order_service.client.ProductClient;
 import vn.cnpm.order_service.config.RabbitMQConfig;
+import vn.cnpm.order_service.event.OrderCancelledEvent;
 import vn.cnpm.order_service.event.PaymentProcessedEvent;
 import vn.cnpm.order_service.model.Order;
-import vn.cnpm.order_service.model.OrderItem;
 import vn.cnpm.order_service.model.OrderStatus;
 import vn.cnpm.order_service.repository.OrderRepository;
+import vn.cnpm.order_service.service.OrderStockService;
 
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class PaymentEventConsumer {
 
+    // Đã thu tiền nhưng không giao được (hết hàng hoặc đơn đã huỷ) - cần hoàn tiền
+    private static final String REFUND_REQUIRED = "REFUND_REQUIRED";
+
     private final OrderRepository orderRepository;
-    private final ProductClient productClient;
+    private final OrderStockService orderStockService;
+    private final OrderEventPublisher orderEventPublisher;
 
     @RabbitListener(queues = RabbitMQConfig.PAYMENT_PROCESSED_QUEUE)
     public void handlePaymentProcessedEvent(PaymentProcessedEvent event) {
@@ -32,16 +36,29 @@ public class PaymentEventConsumer {
             // Update order based on payment status
             order.setPaymentStatus(event.getStatus());
 
-            if ("SUCCESS".equals(event.getStatus())) {
-                order.setStatus(OrderStatus.CONFIRMED);
-                log.info("Order {} marked as CONFIRMED after successful payment", event.getOrderId());
+            if ("SUCCESS".equals(event.getStatus()) && order.getStatus() == OrderStatus.CANCELLED) {
+                // Paid after the order was cancelled: its stock is already gone back, flag for refund
+                order.setPaymentStatus(REFUND_REQUIRED);
+                log.error("Order {} was paid after it had been cancelled - refund required", event.getOrderId());
+            } else if ("SUCCESS".equals(event.getStatus())) {
+                // Make held stock permanent; if this fails the event is redelivered (confirm is idempotent)
+                if (orderStockService.confirm(order)) {
+                    order.setStatus(OrderStatus.CONFIRMED);
+                    log.info("Order {} marked as CONFIRMED after successful payment", event.getOrderId());
+                } else {
+                    // Holds expired before payment and the stock has been sold since: cancel and flag for refund
+                    cancelForRefund(order);
+                }
+            } else if ("PENDING".equals(event.getStatus())) {
+                // Online payment started (MoMo): keep the order and its stock holds until the callback result
+                log.info("Payment pending for order {}", event.getOrderId());
             } else {
                 order.setStatus(OrderStatus.CANCELLED);
                 log.warn("Order {} cancelled due to payment failure: {}",
                         event.getOrderId(), event.getMessage());
                 
-                // COMPENSATION: Restore stock since payment failed
-                restoreStockForCancelledOrder(order);
+                // COMPENSATION: Give stock back since payment failed
+                orderStockService.release(order);
             }
 
             orderRepository.save(order);
@@ -54,24 +71,20 @@ public class PaymentEventConsumer {
             throw new RuntimeException("Failed to process payment event", e);
         }
     }
-    
-    /**
-     * Restore stock for cancelled order (compensation logic)
-     */
-    private void restoreStockForCancelledOrder(Order order) {
-        log.info("Restoring stock for cancelled order {}", order.getId());
-        
-        for (OrderItem item : order.getOrderItems()) {
-            try {
-                productClient.restoreStock(item.getProductId(), item.getQuantity());
-                log.info("Restored stock for product {} quantity {} (order {})", 
-                        item.getProductId(), item.getQuantity(), order.getId());
-            } catch (Exception e) {
-                log.error("CRITICAL: Failed to restore stock for product {} (order {}) - manual intervention required!",
-                        item.getProductId(), order.getId(), e);
-                // Log to a monitoring system or send alert
-                // In production, this should trigger an alert for manual stock adjustment
-            }
+
+    private void cancelForRefund(Order order) {
+        OrderStatus previousStatus = order.getStatus();
+        order.setStatus(OrderStatus.CANCELLED);
+        order.setPaymentStatus(REFUND_REQUIRED);
+        log.error("Order {} cancelled after payment: out of stock - refund required", order.getId());
+        try {
+            orderEventPublisher.publishOrderCancelledEvent(OrderCancelledEvent.builder()
+                    .orderId(order.getId())
+                    .restaurantId(order.getRestaurantId())
+                    .previousStatus(previousStatus.name())
+                    .build());
+        } catch (Exception e) {
+            log.error("Failed to publish OrderCancelledEvent for order {}", order.getId(), e);
         }
     }
 }
@@ -25,7 +25,10 @@ public class Order {
 
     // Thêm thông tin payment
     private String paymentMethod;  // card, wallet, cash
-    private String paymentStatus;  // SUCCESS, FAILED, PENDING
+    private String paymentStatus;  // SUCCESS, FAILED, PENDING, REFUND_REQUIRED
+
+    // true: stock giữ tạm (stock hold) tới khi thanh toán; null: đơn tạo trước đó, stock đã trừ lúc checkout
+    private Boolean stockHeld;
 
     // Thêm thông tin delivery
     private String deliveryFullName;
@@ -0,0 +1,90 @@
+package vn.cnpm.order_service.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import vn.cnpm.order_service.DTO.StockReservationItem;
+import vn.cnpm.order_service.DTO.StockReservationResponse;
+import vn.cnpm.order_service.client.ProductClient;
+import vn.cnpm.order_service.model.Order;
+import vn.cnpm.order_service.model.OrderItem;
+
+import java.util.List;
+
+/**
+ * Chốt/trả stock của một đơn ở product-service
+ * - Đơn có stock hold (stockHeld = true): stock giữ tạm lúc checkout, chốt khi thanh toán xong, trả lại khi huỷ
+ * - Đơn tạo trước khi có stock hold (stockHeld null): stock đã trừ lúc checkout, huỷ thì cộng lại từng món như cũ
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderStockService {
+
+    private final ProductClient productClient;
+
+    /**
+     * Đơn đã thanh toán: trừ hẳn stock của đơn (hold đã hết hạn thì product-service trừ trực tiếp)
+     * false: không còn đủ hàng, stock không bị trừ - đơn cần huỷ và hoàn tiền
+     * Lỗi gọi product-service được ném ra để event được xử lý lại (confirm gọi lại không trừ thêm)
+     */
+    public boolean confirm(Order order) {
+        if (!Boolean.TRUE.equals(order.getStockHeld())) {
+            return true;
+        }
+        List<StockReservationItem> items = order.getOrderItems().stream()
+                .map(item -> new StockReservationItem(item.getProductId(), item.getQuantity()))
+                .toList();
+        StockReservationResponse confirmation = productClient.confirmHolds(order.getId(), items);
+        if (confirmation.isReserved()) {
+            log.info("Confirmed stock of order {}", order.getId());
+            return true;
+        }
+        log.error("Stock of paid order {} could not be confirmed: {}", order.getId(), confirmation.getLines());
+        return false;
+    }
+
+    /**
+     * Đơn bị huỷ: trả lại stock của đơn, lỗi chỉ ghi log (không chặn việc huỷ)
+     * - đã thanh toán: stock đã trừ hẳn, cộng lại từng món
+     * - chưa thanh toán: trả lại hold; không có hold nào và đơn không dùng hold (đơn cũ) thì cộng lại từng món
+     */
+    public void release(Order order) {
+        if (!"SUCCESS".equals(order.getPaymentStatus())) {
+            boolean stockHeld = Boolean.TRUE.equals(order.getStockHeld());
+            int released = 0;
+            try {
+                ResponseEntity<Integer> response = productClient.releaseHolds(order.getId());
+                released = response != null && response.getBody() != null ? response.getBody() : 0;
+                log.info("Released {} stock holds for order {}", released, order.getId());
+            } catch (Exception e) {
+                if (stockHeld) {
+                    // Hold không được trả lại sẽ tự hết hạn
+                    log.error("Failed to release stock holds for order {} - they will expire after the hold TTL",
+                            order.getId(), e);
+                    return;
+                }
+                log.error("Failed to release stock holds for order {}", order.getId(), e);
+            }
+            // Đơn dùng hold mà không còn hold nào: đã hết hạn, stock đã được trả lại
+            if (released > 0 || stockHeld) {
+                return;
+            }
+        }
+        restoreStock(order);
+    }
+
+    private void restoreStock(Order order) {
+        for (OrderItem item : order.getOrderItems()) {
+            try {
+                productClient.restoreStock(item.getProductId(), item.getQuantity());
+                log.info("Restored stock for product {} by {} (order {})",
+                        item.getProductId(), item.getQuantity(), order.getId());
+            } catch (Exception e) {
+                log.error("CRITICAL: Failed to restore stock for product {} (order {}) - manual intervention required!",
+                        item.getProductId(), order.getId(), e);
+            }
+        }
+    }
+}
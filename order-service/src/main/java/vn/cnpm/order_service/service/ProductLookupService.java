@@ -0,0 +1,138 @@
+package vn.cnpm.order_service.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import vn.cnpm.order_service.DTO.ProductDTO;
+import vn.cnpm.order_service.client.ProductClient;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lấy thông tin nhiều sản phẩm cho một đơn hàng qua API batch của product-service (một request, một câu SQL)
+ * Giỏ lớn hơn batch-size được chia thành nhiều batch gọi song song
+ * Mọi lời gọi vẫn đi qua ProductClient nên circuit breaker/retry/fallback giữ nguyên
+ *
+ * - batch-size: số id tối đa mỗi request batch
+ * - pool-size: số thread dùng chung cho toàn service (giới hạn tổng số request đồng thời tới product-service)
+ * - queue-capacity: số lookup chờ tối đa, đầy thì từ chối ngay (báo lỗi như quá hạn) thay vì chạy không giới hạn thời gian
+ * - max-concurrency: số batch song song tối đa của một đơn
+ * - deadline-ms: tổng thời gian chờ cho cả đơn, quá hạn thì huỷ các lookup còn lại và báo lỗi
+ */
+@Service
+@Slf4j
+public class ProductLookupService {
+
+    private final ProductClient productClient;
+    private final int batchSize;
+    private final int maxConcurrency;
+    private final long deadlineMs;
+    private final ThreadPoolExecutor executor;
+
+    public ProductLookupService(ProductClient productClient,
+                                @Value("${order.product-lookup.batch-size:100}") int batchSize,
+                                @Value("${order.product-lookup.pool-size:32}") int poolSize,
+                                @Value("${order.product-lookup.queue-capacity:256}") int queueCapacity,
+                                @Value("${order.product-lookup.max-concurrency:8}") int maxConcurrency,
+                                @Value("${order.product-lookup.deadline-ms:3000}") long deadlineMs) {
+        this.productClient = productClient;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.deadlineMs = deadlineMs;
+        AtomicInteger threadCount = new AtomicInteger();
+        // Hàng đợi đầy thì từ chối (AbortPolicy): chạy trên thread gọi sẽ không bị giới hạn bởi deadline
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread thread = new Thread(r, "product-lookup-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Lấy sản phẩm theo id (id trùng chỉ lấy một lần)
+     * Mọi batch (kể cả giỏ chỉ có một batch) chạy trên pool để cả đơn bị giới hạn bởi deadline-ms
+     * Lỗi của bất kỳ lookup nào (kể cả fallback khi circuit breaker mở) được ném lại nguyên vẹn
+     */
+    public Map<Long, ProductDTO> getProducts(Collection<Long> productIds) {
+        List<Long> ids = new ArrayList<>(new LinkedHashSet<>(productIds));
+        Map<Long, ProductDTO> products = new ConcurrentHashMap<>();
+        if (ids.isEmpty()) {
+            return products;
+        }
+        List<List<Long>> batches = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            batches.add(ids.subList(from, Math.min(ids.size(), from + batchSize)));
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMs);
+        AtomicInteger next = new AtomicInteger();
+        int workers = Math.min(batches.size(), maxConcurrency);
+        List<Future<?>> futures = new ArrayList<>(workers);
+        try {
+            // Mỗi worker lấy lần lượt batch kế tiếp: tối đa max-concurrency request cùng lúc cho một đơn
+            for (int i = 0; i < workers; i++) {
+                futures.add(executor.submit(() -> {
+                    int index;
+                    while ((index = next.getAndIncrement()) < batches.size() && !Thread.currentThread().isInterrupted()) {
+                        put(products, batches.get(index));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            }
+        } catch (TimeoutException e) {
+            log.error("Product lookup for {} products exceeded deadline of {} ms", ids.size(), deadlineMs);
+            throw timeout();
+        } catch (RejectedExecutionException e) {
+            log.error("Product lookup for {} products rejected: lookup pool is saturated", ids.size());
+            throw timeout();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new RuntimeException("Product lookup failed: " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Product lookup interrupted", e);
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+        return products;
+    }
+
+    private RuntimeException timeout() {
+        return new RuntimeException("Product service did not respond in time. Please try again later.");
+    }
+
+    private void put(Map<Long, ProductDTO> products, List<Long> ids) {
+        Map<Long, ProductDTO> found = productClient.getProductsByIds(ids);
+        for (Long id : ids) {
+            ProductDTO product = found != null ? found.get(id) : null;
+            if (product == null) {
+                throw new RuntimeException("Product not found: " + id);
+            }
+            products.put(id, product);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -2,6 +2,7 @@ package vn.cnpm.order_service.service.impl;
 
 import vn.cnpm.order_service.DTO.*;
 import vn.cnpm.order_service.client.ProductClient;
+import vn.cnpm.order_service.event.OrderCancelledEvent;
 import vn.cnpm.order_service.event.OrderCreatedEvent;
 import vn.cnpm.order_service.messaging.OrderEventPublisher;
 import vn.cnpm.order_service.model.Order;
@@ -9,12 +10,15 @@ import vn.cnpm.order_service.model.OrderItem;
 import vn.cnpm.order_service.model.OrderStatus;
 import vn.cnpm.order_service.repository.OrderRepository;
 import vn.cnpm.order_service.service.OrderService;
+import vn.cnpm.order_service.service.OrderStockService;
+import vn.cnpm.order_service.service.ProductLookupService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -24,6 +28,8 @@ public class OrderServiceImpl implements OrderService {
     private final OrderRepository orderRepository;
     private final ProductClient productClient;
     private final OrderEventPublisher orderEventPublisher;
+    private final ProductLookupService productLookupService;
+    private final OrderStockService orderStockService;
 
     @Override
     @Transactional
@@ -37,6 +43,7 @@ public class OrderServiceImpl implements OrderService {
                 .status(OrderStatus.NEW)
                 .paymentMethod(request.getPaymentMethod())
                 .paymentStatus("PENDING")
+                .stockHeld(true)
                 .build();
 
         // Lưu thông tin delivery nếu có
@@ -52,19 +59,18 @@ public class OrderServiceImpl implements OrderService {
         double totalPrice = 0.0;
         List<OrderItem> items = new ArrayList<>();
 
-        for (OrderRequest.OrderItemRequest itemRequest : request.getItems()) {
-            // Lấy thông tin sản phẩm từ product service
-            ProductDTO product = productClient.getProductById(itemRequest.getProductId());
+        // Lấy thông tin tất cả sản phẩm từ product service bằng API batch (sản phẩm không tồn tại đã báo lỗi trong đó)
+        Map<Long, ProductDTO> products = productLookupService.getProducts(request.getItems().stream()
+                .map(OrderRequest.OrderItemRequest::getProductId)
+                .toList());
 
-            // Validate product availability
-            if (product == null) {
-                throw new RuntimeException("Product not found: " + itemRequest.getProductId());
-            }
+        for (OrderRequest.OrderItemRequest itemRequest : request.getItems()) {
+            ProductDTO product = products.get(itemRequest.getProductId());
 
             // Validate stock availability
-            if (product.getStock() < itemRequest.getQuantity()) {
+            if (product.getAvailableStock() < itemRequest.getQuantity()) {
                 throw new RuntimeException("Insufficient stock for product: " + product.getName() + 
-                    ". Available: " + product.getStock() + ", Requested: " + itemRequest.getQuantity());
+                    ". Available: " + product.getAvailableStock() + ", Requested: " + itemRequest.getQuantity());
             }
 
             // Tính giá cho item này
@@ -90,20 +96,33 @@ public class OrderServiceImpl implements OrderService {
         Order saved = orderRepository.save(order);
         log.info("Order created with id: {}", saved.getId());
 
-        // Reduce stock for all products in the order
-        // CRITICAL: This must be inside @Transactional to rollback order if stock reduction fails
-        for (OrderRequest.OrderItemRequest itemRequest : request.getItems()) {
-            try {
-                productClient.reduceStock(itemRequest.getProductId(), itemRequest.getQuantity());
-                log.info("Reduced stock for product {} by {}", itemRequest.getProductId(), itemRequest.getQuantity());
-            } catch (Exception e) {
-                log.error("CRITICAL: Failed to reduce stock for product {} - rolling back entire order {}",
-                        itemRequest.getProductId(), saved.getId(), e);
-                // Re-throw to trigger @Transactional rollback of the entire order
-                throw new RuntimeException("Stock reduction failed for product " + itemRequest.getProductId()
-                        + ": " + e.getMessage(), e);
-            }
+        // Hold stock for all products in one call - product-service applies all lines or none
+        // Holds become permanent when payment succeeds; if this order rolls back, they expire on their own
+        // CRITICAL: This must be inside @Transactional to rollback order if stock reservation fails
+        List<StockReservationItem> reservationItems = request.getItems().stream()
+                .map(item -> new StockReservationItem(item.getProductId(), item.getQuantity()))
+                .toList();
+        StockReservationResponse reservation;
+        try {
+            reservation = productClient.holdStock(saved.getId(), reservationItems);
+        } catch (Exception e) {
+            log.error("CRITICAL: Failed to reserve stock - rolling back entire order {}", saved.getId(), e);
+            // Re-throw to trigger @Transactional rollback of the entire order
+            throw new RuntimeException("Stock reservation failed: " + e.getMessage(), e);
         }
+        if (!reservation.isReserved()) {
+            String failed = reservation.getLines().stream()
+                    .filter(line -> line.getStatus() == StockReservationResponse.Status.INSUFFICIENT_STOCK
+                            || line.getStatus() == StockReservationResponse.Status.NOT_FOUND)
+                    .map(line -> line.getStatus() == StockReservationResponse.Status.NOT_FOUND
+                            ? "product " + line.getProductId() + " not found"
+                            : "product " + line.getProductId() + " (available " + line.getAvailableStock()
+                                    + ", requested " + line.getQuantity() + ")")
+                    .collect(Collectors.joining(", "));
+            log.warn("Stock reservation rejected for order {}: {}", saved.getId(), failed);
+            throw new RuntimeException("Insufficient stock: " + failed);
+        }
+        log.info("Held stock for {} products of order {}", reservation.getLines().size(), saved.getId());
 
         // Publish OrderCreatedEvent to RabbitMQ for async payment processing
         try {
@@ -209,19 +228,25 @@ public class OrderServiceImpl implements OrderService {
             throw new RuntimeException("Cannot cancel order in status: " + order.getStatus());
         }
         
+        OrderStatus previousStatus = order.getStatus();
         order.setStatus(OrderStatus.CANCELLED);
         Order updated = orderRepository.save(order);
         
-        // Restore stock for all items
-        for (OrderItem item : order.getOrderItems()) {
-            try {
-                productClient.restoreStock(item.getProductId(), item.getQuantity());
-                log.info("Restored stock for product {} by {}", item.getProductId(), item.getQuantity());
-            } catch (Exception e) {
-                log.error("Failed to restore stock for product {}", item.getProductId(), e);
-            }
-        }
+        // Give the order's stock back (release holds, or restore items for paid and pre-hold orders)
+        orderStockService.release(order);
         
+        // Báo delivery-service giải phóng drone đã bay trước tới nhà hàng (nếu có)
+        try {
+            orderEventPublisher.publishOrderCancelledEvent(OrderCancelledEvent.builder()
+                    .orderId(order.getId())
+                    .restaurantId(order.getRestaurantId())
+                    .previousStatus(previousStatus.name())
+                    .build());
+        } catch (Exception e) {
+            log.error("Failed to publish OrderCancelledEvent for order {}", orderId, e);
+            // Không throw exception để không ảnh hưởng đến việc hủy đơn
+        }
+
         log.info("Order {} cancelled", orderId);
         return mapToDto(updated);
     }
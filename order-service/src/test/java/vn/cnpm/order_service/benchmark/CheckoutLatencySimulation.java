@@ -0,0 +1,226 @@
+package vn.cnpm.order_service.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.springframework.http.ResponseEntity;
+import vn.cnpm.order_service.DTO.ProductDTO;
+import vn.cnpm.order_service.DTO.RestaurantDTO;
+import vn.cnpm.order_service.DTO.StockReservationItem;
+import vn.cnpm.order_service.DTO.StockReservationResponse;
+import vn.cnpm.order_service.client.ProductClient;
+import vn.cnpm.order_service.service.ProductLookupService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Simulation thời gian lấy thông tin sản phẩm khi checkout, theo số món trong giỏ:
+ * - serial: GET /api/products/{id} lần lượt từng món (createOrder ban đầu)
+ * - parallel: ProductLookupService với batch-size=1 (mỗi món một request, gọi song song)
+ * - batch: ProductLookupService mặc định (một request POST /api/products/batch cho cả giỏ)
+ * Product-service giả là HTTP server cục bộ, mỗi request trễ 15 ms + jitter mũ trung bình 5 ms, 2% request trễ thêm 100 ms
+ *
+ * Chạy: mvn -Pbenchmark test-compile exec:exec -Dbenchmark.main=vn.cnpm.order_service.benchmark.CheckoutLatencySimulation
+ */
+public class CheckoutLatencySimulation {
+
+    private static final int[] CART_SIZES = {1, 2, 4, 6, 10};
+    private static final int CHECKOUTS = 200;
+    private static final int WARMUP = 20;
+    private static final int PRODUCTS = 500;
+
+    public static void main(String[] args) throws IOException {
+        // Tắt Nagle ở stub, nếu không mỗi response bị trễ thêm ~40 ms do delayed ACK
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        ExecutorService serverThreads = Executors.newCachedThreadPool();
+        ObjectMapper mapper = new ObjectMapper();
+        AtomicLong requests = new AtomicLong();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 256);
+        server.createContext("/api/products/", exchange -> {
+            requests.incrementAndGet();
+            String path = exchange.getRequestURI().getPath();
+            byte[] body;
+            if (path.endsWith("/batch")) {
+                Long[] ids = mapper.readValue(exchange.getRequestBody(), Long[].class);
+                StringBuilder json = new StringBuilder("{");
+                for (Long id : ids) {
+                    json.append(json.length() > 1 ? "," : "").append('"').append(id).append("\":").append(productJson(id));
+                }
+                body = json.append('}').toString().getBytes(StandardCharsets.UTF_8);
+            } else {
+                body = productJson(Long.parseLong(path.substring(path.lastIndexOf('/') + 1)))
+                        .getBytes(StandardCharsets.UTF_8);
+            }
+            simulateLatency();
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.setExecutor(serverThreads);
+        server.start();
+
+        StubProductClient client = new StubProductClient("http://127.0.0.1:" + server.getAddress().getPort());
+        ProductLookupService perItem = new ProductLookupService(client, 1, 32, 256, 8, 3000);
+        ProductLookupService batched = new ProductLookupService(client, 100, 32, 256, 8, 3000);
+        try {
+            System.out.printf("%-6s %-10s %9s %9s %14s%n", "items", "mode", "p50 ms", "p99 ms", "requests/order");
+            for (int size : CART_SIZES) {
+                report(size, "serial", requests, ids -> {
+                    List<ProductDTO> products = new ArrayList<>(ids.size());
+                    for (Long id : ids) {
+                        products.add(client.getProductById(id));
+                    }
+                    return products;
+                });
+                report(size, "parallel", requests, perItem::getProducts);
+                report(size, "batch", requests, batched::getProducts);
+            }
+        } finally {
+            perItem.shutdown();
+            batched.shutdown();
+            server.stop(0);
+            serverThreads.shutdownNow();
+        }
+    }
+
+    private static void report(int cartSize, String mode, AtomicLong requests, Function<List<Long>, ?> lookup) {
+        long before = requests.get();
+        double[] millis = measure(cartSize, lookup);
+        System.out.printf("%-6d %-10s %9.1f %9.1f %14.1f%n", cartSize, mode, percentile(millis, 0.50),
+                percentile(millis, 0.99), (requests.get() - before) / (double) (CHECKOUTS + WARMUP));
+    }
+
+    private static String productJson(long id) {
+        return "{\"id\":" + id + ",\"name\":\"Product " + id + "\",\"price\":" + (20_000 + id * 100)
+                + ",\"stock\":100}";
+    }
+
+    /**
+     * Thời gian (ms) của từng lần checkout, các giỏ hàng ngẫu nhiên không trùng món
+     */
+    private static double[] measure(int cartSize, Function<List<Long>, ?> lookup) {
+        double[] millis = new double[CHECKOUTS];
+        for (int i = -WARMUP; i < CHECKOUTS; i++) {
+            List<Long> cart = ThreadLocalRandom.current().longs(1, PRODUCTS + 1).distinct().limit(cartSize)
+                    .boxed().toList();
+            long start = System.nanoTime();
+            lookup.apply(cart);
+            if (i >= 0) {
+                millis[i] = (System.nanoTime() - start) / 1e6;
+            }
+        }
+        Arrays.sort(millis);
+        return millis;
+    }
+
+    private static double percentile(double[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    private static void simulateLatency() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long millis = 15 + (long) (-5 * Math.log(1 - random.nextDouble()));
+        if (random.nextDouble() < 0.02) {
+            millis += 100;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * ProductClient gọi stub qua HTTP thật (thay cho Feign trong simulation)
+     */
+    private static final class StubProductClient implements ProductClient {
+        private final HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        private final ObjectMapper mapper = new ObjectMapper();
+        private final String baseUrl;
+
+        StubProductClient(String baseUrl) {
+            this.baseUrl = baseUrl;
+        }
+
+        @Override
+        public ProductDTO getProductById(Long id) {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/products/" + id)).GET().build();
+            try {
+                HttpResponse<byte[]> response = http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                return mapper.readValue(response.body(), ProductDTO.class);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public Map<Long, ProductDTO> getProductsByIds(List<Long> ids) {
+            try {
+                HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/products/batch"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(mapper.writeValueAsBytes(ids)))
+                        .build();
+                HttpResponse<byte[]> response = http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                return mapper.readValue(response.body(), new TypeReference<Map<Long, ProductDTO>>() {
+                });
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public ResponseEntity<Void> reduceStock(Long id, int quantity) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public StockReservationResponse holdStock(Long orderId, List<StockReservationItem> items) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public StockReservationResponse confirmHolds(Long orderId, List<StockReservationItem> items) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ResponseEntity<Integer> releaseHolds(Long orderId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ResponseEntity<Void> restoreStock(Long id, int quantity) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public RestaurantDTO getRestaurantById(Long id) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
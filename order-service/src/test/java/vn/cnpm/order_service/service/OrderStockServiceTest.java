@@ -0,0 +1,112 @@
+package vn.cnpm.order_service.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import vn.cnpm.order_service.DTO.StockReservationItem;
+import vn.cnpm.order_service.DTO.StockReservationResponse;
+import vn.cnpm.order_service.client.ProductClient;
+import vn.cnpm.order_service.model.Order;
+import vn.cnpm.order_service.model.OrderItem;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class OrderStockServiceTest {
+
+    private ProductClient productClient;
+    private OrderStockService service;
+
+    @BeforeEach
+    void setUp() {
+        productClient = mock(ProductClient.class);
+        service = new OrderStockService(productClient);
+    }
+
+    private static Order order(Boolean stockHeld, String paymentStatus) {
+        Order order = Order.builder().id(7L).stockHeld(stockHeld).paymentStatus(paymentStatus).build();
+        order.setOrderItems(List.of(
+                OrderItem.builder().productId(1L).quantity(2).order(order).build(),
+                OrderItem.builder().productId(2L).quantity(1).order(order).build()));
+        return order;
+    }
+
+    @Test
+    void releaseUnpaidHeldOrderOnlyReleasesHolds() {
+        when(productClient.releaseHolds(7L)).thenReturn(ResponseEntity.ok(2));
+
+        service.release(order(true, "PENDING"));
+
+        verify(productClient, never()).restoreStock(anyLong(), anyInt());
+    }
+
+    @Test
+    void releaseHeldOrderWithExpiredHoldsDoesNotRestoreStock() {
+        // Hold đã hết hạn: sweeper đã trả stock, cộng lại lần nữa sẽ thừa hàng
+        when(productClient.releaseHolds(7L)).thenReturn(ResponseEntity.ok(0));
+
+        service.release(order(true, "PENDING"));
+
+        verify(productClient, never()).restoreStock(anyLong(), anyInt());
+    }
+
+    @Test
+    void releaseOrderCreatedBeforeHoldsRestoresItems() {
+        when(productClient.releaseHolds(7L)).thenReturn(ResponseEntity.ok(0));
+
+        service.release(order(null, "PENDING"));
+
+        verify(productClient).restoreStock(1L, 2);
+        verify(productClient).restoreStock(2L, 1);
+    }
+
+    @Test
+    void releaseOrderCreatedBeforeHoldsRestoresItemsWhenReleaseFails() {
+        when(productClient.releaseHolds(7L)).thenThrow(new RuntimeException("unavailable"));
+
+        service.release(order(null, "FAILED"));
+
+        verify(productClient).restoreStock(1L, 2);
+        verify(productClient).restoreStock(2L, 1);
+    }
+
+    @Test
+    void releasePaidOrderRestoresItems() {
+        service.release(order(true, "SUCCESS"));
+
+        verify(productClient, never()).releaseHolds(anyLong());
+        verify(productClient).restoreStock(1L, 2);
+        verify(productClient).restoreStock(2L, 1);
+    }
+
+    @Test
+    void confirmSendsOrderItems() {
+        when(productClient.confirmHolds(7L, List.of(new StockReservationItem(1L, 2), new StockReservationItem(2L, 1))))
+                .thenReturn(StockReservationResponse.builder().reserved(true).lines(List.of()).build());
+
+        assertThat(service.confirm(order(true, "SUCCESS"))).isTrue();
+    }
+
+    @Test
+    void confirmReportsOutOfStock() {
+        when(productClient.confirmHolds(7L, List.of(new StockReservationItem(1L, 2), new StockReservationItem(2L, 1))))
+                .thenReturn(StockReservationResponse.builder().reserved(false).lines(List.of()).build());
+
+        assertThat(service.confirm(order(true, "SUCCESS"))).isFalse();
+    }
+
+    @Test
+    void confirmOrderCreatedBeforeHoldsSkipsProductService() {
+        // Stock đã trừ lúc checkout
+        assertThat(service.confirm(order(null, "SUCCESS"))).isTrue();
+        verifyNoInteractions(productClient);
+    }
+}
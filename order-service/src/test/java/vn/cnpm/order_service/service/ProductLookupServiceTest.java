@@ -0,0 +1,102 @@
+package vn.cnpm.order_service.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import vn.cnpm.order_service.DTO.ProductDTO;
+import vn.cnpm.order_service.client.ProductClient;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ProductLookupServiceTest {
+
+    private final CountDownLatch unblock = new CountDownLatch(1);
+    private ProductClient productClient;
+    private ProductLookupService service;
+
+    @BeforeEach
+    void setUp() {
+        productClient = mock(ProductClient.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        unblock.countDown();
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    private static ProductDTO product(long id) {
+        ProductDTO product = new ProductDTO();
+        product.setId(id);
+        product.setName("Product " + id);
+        product.setStock(10);
+        return product;
+    }
+
+    private void respondWithAllProducts() {
+        when(productClient.getProductsByIds(anyList())).thenAnswer(invocation -> {
+            List<Long> ids = invocation.getArgument(0);
+            return ids.stream().collect(Collectors.toMap(id -> id, ProductLookupServiceTest::product));
+        });
+    }
+
+    private void blockProductService() {
+        when(productClient.getProductsByIds(anyList())).thenAnswer(invocation -> {
+            unblock.await();
+            return Map.of();
+        });
+    }
+
+    @Test
+    void looksUpProductsInBatches() {
+        respondWithAllProducts();
+        service = new ProductLookupService(productClient, 2, 4, 16, 2, 3000);
+
+        Map<Long, ProductDTO> products = service.getProducts(List.of(1L, 2L, 3L, 2L, 5L));
+
+        assertThat(products).containsOnlyKeys(1L, 2L, 3L, 5L);
+    }
+
+    @Test
+    void missingProductFailsTheLookup() {
+        when(productClient.getProductsByIds(anyList())).thenReturn(Map.of(1L, product(1L)));
+        service = new ProductLookupService(productClient, 100, 4, 16, 2, 3000);
+
+        assertThatThrownBy(() -> service.getProducts(List.of(1L, 2L)))
+                .hasMessage("Product not found: 2");
+    }
+
+    @Test
+    void singleBatchCartIsBoundedByDeadline() {
+        blockProductService();
+        service = new ProductLookupService(productClient, 100, 4, 16, 2, 100);
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> service.getProducts(List.of(1L, 2L, 3L)))
+                .hasMessageContaining("did not respond in time");
+        assertThat((System.nanoTime() - start) / 1_000_000).isLessThan(2_000);
+    }
+
+    @Test
+    void saturatedPoolFailsFastWithTimeoutError() {
+        blockProductService();
+        // Một thread, hàng đợi một chỗ: worker 1 chạy, worker 2 chờ, worker 3 bị từ chối
+        service = new ProductLookupService(productClient, 1, 1, 1, 3, 10_000);
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> service.getProducts(List.of(1L, 2L, 3L)))
+                .hasMessageContaining("did not respond in time");
+        assertThat((System.nanoTime() - start) / 1_000_000).isLessThan(2_000);
+    }
+}
@@ -4,6 +4,8 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import vn.cnpm.paymentservice.event.PaymentProcessedEvent;
+import vn.cnpm.paymentservice.messaging.PaymentEventPublisher;
 import vn.cnpm.paymentservice.model.Payment;
 import vn.cnpm.paymentservice.model.PaymentStatus;
 import vn.cnpm.paymentservice.repository.PaymentRepository;
@@ -17,6 +19,7 @@ import java.util.Map;
 public class MoMoCallbackController {
 
     private final PaymentRepository paymentRepository;
+    private final PaymentEventPublisher paymentEventPublisher;
 
     /**
      * Nhận callback từ MoMo sau khi người dùng thanh toán
@@ -81,7 +84,19 @@ public class MoMoCallbackController {
             payment.setMomoResultCode(resultCode);
             payment.setMomoMessage(message);
 
-            paymentRepository.save(payment);
+            Payment savedPayment = paymentRepository.save(payment);
+
+            // Báo kết quả cho order-service (xác nhận đơn và chốt stock đang giữ, hoặc huỷ đơn và trả stock)
+            try {
+                paymentEventPublisher.publishPaymentProcessedEvent(PaymentProcessedEvent.builder()
+                        .orderId(savedPayment.getOrderId())
+                        .paymentId(savedPayment.getId())
+                        .status(savedPayment.getStatus().name())
+                        .message(resultCode == 0 ? "Payment successful" : "Payment failed: " + message)
+                        .build());
+            } catch (Exception e) {
+                log.error("Failed to publish payment result for order: {}", orderId, e);
+            }
 
             // Trả về response cho MoMo
             return ResponseEntity.ok(Map.of(
@@ -6,8 +6,12 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import vn.cnpm.product_service.dto.ProductRequest;
 import vn.cnpm.product_service.dto.ProductResponse;
+import vn.cnpm.product_service.dto.StockReservationItem;
+import vn.cnpm.product_service.dto.StockReservationResponse;
+import vn.cnpm.product_service.service.HotStockService;
 import vn.cnpm.product_service.service.ProductService;
 import java.util.List;
+import java.util.Map;
 
 
 @RestController
@@ -16,6 +20,7 @@ import java.util.List;
 public class ProductController {
     @Autowired
     private final ProductService productService;
+    private final HotStockService hotStockService;
     @PostMapping
     public ProductResponse createProduct(@RequestBody ProductRequest request) {
         return productService.createProduct(request);
@@ -24,6 +29,10 @@ public class ProductController {
     public ProductResponse getProductById(@PathVariable("id") Long id) {
         return productService.getProductById(id);
     }
+    @PostMapping("/batch")
+    public Map<Long, ProductResponse> getProductsByIds(@RequestBody List<Long> ids) {
+        return productService.getProductsByIds(ids);
+    }
     @GetMapping("/search")
     public List<ProductResponse> getProductsByNameContaining(@RequestParam("name") String name) {
         return productService.getProductsByNameContaining(name);
@@ -63,6 +72,47 @@ public class ProductController {
         }
     }
 
+    // Trừ stock cho cả đơn (all-or-nothing), luôn trả 200 kèm kết quả từng dòng
+    @PostMapping("/reserve-stock")
+    public StockReservationResponse reserveStock(@RequestBody List<StockReservationItem> items) {
+        return productService.reserveStock(items);
+    }
+
+    // Giữ tạm stock cho đơn chưa thanh toán (hết hạn nếu không confirm), gọi lại cùng orderId trả về hold cũ
+    @PostMapping("/holds/{orderId}")
+    public StockReservationResponse holdStock(@PathVariable("orderId") Long orderId,
+                                              @RequestBody List<StockReservationItem> items) {
+        return productService.holdStock(orderId, items);
+    }
+
+    // Đơn đã thanh toán: trừ hẳn stock đang giữ (hold đã hết hạn thì trừ trực tiếp các dòng gửi kèm)
+    // reserved=false: không đủ hàng để giao, đơn cần hoàn tiền
+    @PostMapping("/holds/{orderId}/confirm")
+    public StockReservationResponse confirmHolds(@PathVariable("orderId") Long orderId,
+                                                 @RequestBody List<StockReservationItem> items) {
+        return productService.confirmHolds(orderId, items);
+    }
+
+    // Đơn bị huỷ: trả lại stock đang giữ, trả về số hold đã trả lại
+    @DeleteMapping("/holds/{orderId}")
+    public ResponseEntity<Integer> releaseHolds(@PathVariable("orderId") Long orderId) {
+        return ResponseEntity.ok(productService.releaseHolds(orderId));
+    }
+
+    // Bật/tắt giữ stock trong bộ nhớ cho sản phẩm bán chạy (flash sale)
+    @PutMapping("/{id}/hot-stock")
+    public ResponseEntity<Void> enableHotStock(@PathVariable("id") Long id) {
+        productService.getProductById(id);
+        hotStockService.enable(id);
+        return ResponseEntity.ok().build();
+    }
+
+    @DeleteMapping("/{id}/hot-stock")
+    public ResponseEntity<Void> disableHotStock(@PathVariable("id") Long id) {
+        hotStockService.disable(id);
+        return ResponseEntity.ok().build();
+    }
+
     @PutMapping("/{id}/restore-stock/{quantity}")
     public ResponseEntity<Void> restoreStock(@PathVariable("id") Long id, @PathVariable("quantity") int quantity) {
         try {
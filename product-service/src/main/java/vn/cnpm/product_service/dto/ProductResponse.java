@@ -15,6 +15,7 @@ public class ProductResponse {
     private String description;
     private Double price;
     private int stock;
+    private int availableStock; // stock trừ phần đang giữ tạm cho đơn chưa thanh toán
     private Boolean isActive;
     private Long categoryId;
     private Long restaurantId;  // Thêm restaurantId
@@ -27,6 +27,10 @@ public class Product {
     private String description;
     private Double price;
     private int stock;
+    // Tổng stock đang bị giữ tạm (stock_holds), có thể bán = stock - reservedStock
+    @Column(name = "reserved_stock", nullable = false, columnDefinition = "INT DEFAULT 0")
+    @Builder.Default
+    private int reservedStock = 0;
     @Builder.Default
     private Boolean isActive = true;
     @ManyToOne(fetch=FetchType.LAZY)
@@ -0,0 +1,51 @@
+package vn.cnpm.product_service.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Stock giữ tạm cho một đơn chưa thanh toán, hết hạn thì StockHoldService trả lại
+ * Sau khi confirm, dòng được giữ lại (confirmed) làm dấu đơn đã trừ stock, sweeper xoá khi hết hạn lưu
+ * Đọc/ghi bằng JDBC trong StockHoldService, entity dùng để tạo bảng và index
+ */
+@Entity
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "stock_holds",
+       uniqueConstraints = @UniqueConstraint(name = "uk_stock_holds_order_product", columnNames = {"order_id", "product_id"}),
+       indexes = @Index(name = "idx_stock_holds_expires_at", columnList = "expires_at"))
+public class StockHold {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "order_id", nullable = false)
+    private Long orderId;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    @Column(nullable = false)
+    private int quantity;
+
+    // true: giữ từ stock trong bộ nhớ của sản phẩm hot (HotStockService), không tính vào products.reserved_stock
+    @Column(nullable = false)
+    private boolean leased;
+
+    // true: đơn đã thanh toán, stock đã trừ hẳn - giữ lại tới expires_at để confirm gọi lại không trừ lần nữa
+    @Column(nullable = false, columnDefinition = "BOOLEAN DEFAULT FALSE")
+    private boolean confirmed;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+}
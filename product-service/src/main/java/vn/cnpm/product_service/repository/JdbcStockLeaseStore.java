@@ -0,0 +1,55 @@
+package vn.cnpm.product_service.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import vn.cnpm.product_service.exception.ProductNotFoundException;
+import vn.cnpm.product_service.service.StockLeaseStore;
+
+import java.util.List;
+
+/**
+ * Thuê/trả stock trực tiếp trên bảng products, mỗi thao tác một transaction riêng (REQUIRES_NEW):
+ * stock đã thuê vào bộ nhớ không được bị rollback theo transaction của request đang gọi
+ */
+@Repository
+public class JdbcStockLeaseStore implements StockLeaseStore {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public JdbcStockLeaseStore(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @Override
+    public int lease(Long productId, int max) {
+        Integer leased = transactionTemplate.execute(status -> {
+            List<Integer> stock = jdbcTemplate.queryForList(
+                    "SELECT stock - reserved_stock FROM products WHERE id = ? FOR UPDATE", Integer.class, productId);
+            if (stock.isEmpty()) {
+                throw new ProductNotFoundException("Product not found: " + productId);
+            }
+            int amount = Math.max(0, Math.min(max, stock.get(0)));
+            if (amount > 0) {
+                jdbcTemplate.update("UPDATE products SET stock = stock - ?, version = version + 1 WHERE id = ?",
+                        amount, productId);
+            }
+            return amount;
+        });
+        return leased != null ? leased : 0;
+    }
+
+    @Override
+    public void release(Long productId, int quantity) {
+        if (quantity <= 0) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update(
+                "UPDATE products SET stock = stock + ?, version = version + 1 WHERE id = ?", quantity, productId));
+    }
+}
@@ -1,7 +1,10 @@
 package vn.cnpm.product_service.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import vn.cnpm.product_service.models.Product;
+import java.util.Collection;
 import java.util.List;
 
 public interface ProductRepository extends JpaRepository<Product,Long> {
@@ -11,4 +14,8 @@ public interface ProductRepository extends JpaRepository<Product,Long> {
 
     // Tìm products theo restaurant_id
     List<Product> findByRestaurantId(Long restaurantId);
+
+    // Lấy nhiều products theo id kèm images và restaurant trong cùng một câu SQL (tránh N+1 khi map response)
+    @Query("SELECT DISTINCT p FROM Product p LEFT JOIN FETCH p.images LEFT JOIN FETCH p.restaurant WHERE p.id IN :ids")
+    List<Product> findAllWithDetailsByIdIn(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,257 @@
+package vn.cnpm.product_service.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Giữ stock của các sản phẩm "hot" (flash sale) trong bộ nhớ để đơn hàng không xếp hàng trên cùng một row products
+ * Mỗi sản phẩm hot thuê trước một chunk stock từ DB vào StripedStockCounter: phần lớn lượt trừ là CAS trong bộ nhớ,
+ * chỉ khi hết chunk mới vào khoá và thuê chunk tiếp
+ *
+ * Trong DB, stock của sản phẩm hot = stock chưa thuê; stock thật = DB + phần đang giữ trong bộ nhớ (held)
+ * Phần đang giữ được trả về DB khi sản phẩm rảnh quá idle-ms, khi tắt chế độ hot và khi tắt service
+ * Nếu service chết đột ngột, phần đang giữ bị mất khỏi DB (bán thiếu chứ không bán quá) - tối đa một chunk mỗi sản phẩm
+ */
+@Service
+@Slf4j
+public class HotStockService {
+
+    private static final long TOUCH_NANOS = 100_000_000L;
+
+    private final StockLeaseStore store;
+    private final int chunkSize;
+    private final int stripes;
+    private final long idleNanos;
+    private final long soldOutRecheckNanos;
+    private final String initialProductIds;
+    private final Map<Long, Reservoir> reservoirs = new ConcurrentHashMap<>();
+
+    private final Counter memoryReservations;
+    private final Counter leaseReservations;
+    private final Counter rejectedReservations;
+    private final Counter leases;
+
+    public HotStockService(StockLeaseStore store,
+                           MeterRegistry meterRegistry,
+                           @Value("${product.hot-stock.chunk-size:50}") int chunkSize,
+                           @Value("${product.hot-stock.stripes:0}") int stripes,
+                           @Value("${product.hot-stock.idle-ms:30000}") long idleMs,
+                           @Value("${product.hot-stock.sold-out-recheck-ms:500}") long soldOutRecheckMs,
+                           @Value("${product.hot-stock.product-ids:}") String productIds) {
+        this.store = store;
+        this.chunkSize = Math.max(1, chunkSize);
+        // 0: theo số CPU
+        this.stripes = stripes > 0 ? stripes : Runtime.getRuntime().availableProcessors() * 2;
+        this.idleNanos = idleMs * 1_000_000;
+        this.soldOutRecheckNanos = soldOutRecheckMs * 1_000_000;
+        this.initialProductIds = productIds;
+        this.memoryReservations = meterRegistry.counter("product.hotstock.reservations", "result", "memory");
+        this.leaseReservations = meterRegistry.counter("product.hotstock.reservations", "result", "lease");
+        this.rejectedReservations = meterRegistry.counter("product.hotstock.reservations", "result", "rejected");
+        this.leases = meterRegistry.counter("product.hotstock.leases");
+        meterRegistry.gauge("product.hotstock.products", reservoirs, Map::size);
+        meterRegistry.gauge("product.hotstock.held", this, HotStockService::totalHeld);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void enableConfigured() {
+        Arrays.stream(initialProductIds.split(","))
+                .map(String::trim)
+                .filter(id -> !id.isEmpty())
+                .map(Long::valueOf)
+                .forEach(this::enable);
+    }
+
+    public boolean isHot(Long productId) {
+        return productId != null && reservoirs.containsKey(productId);
+    }
+
+    public void enable(Long productId) {
+        if (reservoirs.putIfAbsent(productId, new Reservoir(new StripedStockCounter(stripes))) == null) {
+            log.info("Hot stock enabled for product {}", productId);
+        }
+    }
+
+    /**
+     * Tắt chế độ hot: trả toàn bộ stock đang giữ về DB, các lượt sau đi thẳng DB
+     */
+    public void disable(Long productId) {
+        Reservoir reservoir = reservoirs.remove(productId);
+        if (reservoir != null) {
+            synchronized (reservoir) {
+                reservoir.closed = true;
+                release(productId, reservoir);
+            }
+            log.info("Hot stock disabled for product {}", productId);
+        }
+    }
+
+    /**
+     * Trả stock đang giữ về DB nhưng vẫn giữ chế độ hot (trước khi ghi đè stock trong DB, vd admin cập nhật sản phẩm)
+     */
+    public void flush(Long productId) {
+        Reservoir reservoir = reservoirs.get(productId);
+        if (reservoir != null) {
+            synchronized (reservoir) {
+                release(productId, reservoir);
+            }
+        }
+    }
+
+    /**
+     * Stock đang giữ trong bộ nhớ (cộng với stock trong DB ra stock thật)
+     */
+    public long held(Long productId) {
+        Reservoir reservoir = productId != null ? reservoirs.get(productId) : null;
+        return reservoir != null ? reservoir.counter.sum() : 0;
+    }
+
+    /**
+     * Trừ quantity cho sản phẩm hot, false nếu không đủ stock
+     * Sản phẩm không (còn) ở chế độ hot thì trừ thẳng DB qua StockLeaseStore
+     */
+    public boolean tryReserve(Long productId, int quantity) {
+        Reservoir reservoir = reservoirs.get(productId);
+        if (reservoir != null) {
+            // Chỉ ghi lastUsed khi đã cũ: ghi mỗi lượt sẽ làm mọi thread tranh nhau cùng một cache line
+            long now = System.nanoTime();
+            if (now - reservoir.lastUsed > TOUCH_NANOS) {
+                reservoir.lastUsed = now;
+            }
+            if (reservoir.counter.tryTake(quantity)) {
+                memoryReservations.increment();
+                return true;
+            }
+        }
+        return reserveSlow(productId, reservoir, quantity);
+    }
+
+    /**
+     * Trả lại stock đã trừ bằng tryReserve (vd đơn nhiều món bị huỷ vì món khác hết hàng)
+     */
+    public void giveBack(Long productId, int quantity) {
+        Reservoir reservoir = reservoirs.get(productId);
+        if (reservoir != null) {
+            synchronized (reservoir) {
+                if (!reservoir.closed) {
+                    reservoir.counter.add(quantity);
+                    return;
+                }
+            }
+        }
+        store.release(productId, quantity);
+    }
+
+    /**
+     * Trả về DB stock của các sản phẩm hot đã rảnh quá idle-ms (hết đợt sale thì DB lại đúng như cũ)
+     */
+    @Scheduled(fixedDelayString = "${product.hot-stock.reconcile-ms:5000}")
+    public void reconcile() {
+        long now = System.nanoTime();
+        reservoirs.forEach((productId, reservoir) -> {
+            if (now - reservoir.lastUsed > idleNanos && reservoir.counter.sum() > 0) {
+                synchronized (reservoir) {
+                    release(productId, reservoir);
+                }
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reservoirs.forEach((productId, reservoir) -> {
+            synchronized (reservoir) {
+                reservoir.closed = true;
+                release(productId, reservoir);
+            }
+        });
+    }
+
+    private boolean reserveSlow(Long productId, Reservoir reservoir, int quantity) {
+        if (reservoir == null) {
+            return reserveDirect(productId, quantity);
+        }
+        synchronized (reservoir) {
+            if (reservoir.closed) {
+                return reserveDirect(productId, quantity);
+            }
+            // Thread khác có thể vừa thuê chunk mới trong lúc chờ khoá
+            if (reservoir.counter.tryTake(quantity)) {
+                memoryReservations.increment();
+                return true;
+            }
+            // Gom stock lẻ ở các stripe, thiếu thì thuê thêm (hết hàng thì chờ sold-out-recheck-ms mới hỏi lại DB)
+            long pooled = reservoir.counter.drain();
+            if (pooled < quantity && System.nanoTime() - reservoir.soldOutAt > soldOutRecheckNanos) {
+                try {
+                    int leased = store.lease(productId, (int) Math.max(chunkSize, quantity - pooled));
+                    leases.increment();
+                    if (leased == 0) {
+                        reservoir.soldOutAt = System.nanoTime();
+                    }
+                    pooled += leased;
+                } catch (RuntimeException e) {
+                    reservoir.counter.add(pooled);
+                    throw e;
+                }
+            }
+            if (pooled >= quantity) {
+                reservoir.counter.add(pooled - quantity);
+                leaseReservations.increment();
+                return true;
+            }
+            reservoir.counter.add(pooled);
+            rejectedReservations.increment();
+            return false;
+        }
+    }
+
+    private boolean reserveDirect(Long productId, int quantity) {
+        int leased = store.lease(productId, quantity);
+        if (leased == quantity) {
+            return true;
+        }
+        store.release(productId, leased);
+        return false;
+    }
+
+    private void release(Long productId, Reservoir reservoir) {
+        long amount = reservoir.counter.drain();
+        if (amount > 0) {
+            try {
+                store.release(productId, (int) amount);
+                log.info("Returned {} held units of product {} to DB", amount, productId);
+            } catch (RuntimeException e) {
+                // Giữ lại trong bộ nhớ, lần reconcile sau thử lại
+                reservoir.counter.add(amount);
+                log.error("Failed to return {} held units of product {} to DB: {}", amount, productId, e.getMessage());
+            }
+        }
+    }
+
+    private long totalHeld() {
+        return reservoirs.values().stream().mapToLong(r -> r.counter.sum()).sum();
+    }
+
+    private static final class Reservoir {
+        private final StripedStockCounter counter;
+        private volatile long lastUsed = System.nanoTime();
+        private long soldOutAt = System.nanoTime() - Long.MAX_VALUE / 2;
+        private boolean closed;
+
+        private Reservoir(StripedStockCounter counter) {
+            this.counter = counter;
+        }
+    }
+}
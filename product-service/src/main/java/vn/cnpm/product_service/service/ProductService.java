@@ -2,13 +2,18 @@ package vn.cnpm.product_service.service;
 
 import vn.cnpm.product_service.dto.ProductRequest;
 import vn.cnpm.product_service.dto.ProductResponse;
+import vn.cnpm.product_service.dto.StockReservationItem;
+import vn.cnpm.product_service.dto.StockReservationResponse;
 import vn.cnpm.product_service.repository.ProductRepository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface ProductService {
     ProductResponse createProduct(ProductRequest request);
     ProductResponse getProductById(Long id);
+    Map<Long, ProductResponse> getProductsByIds(Collection<Long> ids);
     List<ProductResponse> getProductsByCategoryId(Long id);
     List<ProductResponse> getProductsByRestaurantId(Long id);
     List<ProductResponse> getProductsByNameContaining(String name);
@@ -17,5 +22,9 @@ public interface ProductService {
     ProductResponse updateProduct(Long id, ProductRequest request);
     void deleteProduct(Long id);
     void reduceStock(Long productId, int quantity);
+    StockReservationResponse reserveStock(List<StockReservationItem> items);
+    StockReservationResponse holdStock(Long orderId, List<StockReservationItem> items);
+    StockReservationResponse confirmHolds(Long orderId, List<StockReservationItem> items);
+    int releaseHolds(Long orderId);
     void restoreStock(Long productId, int quantity);
 }
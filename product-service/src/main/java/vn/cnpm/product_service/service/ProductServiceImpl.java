@@ -2,10 +2,15 @@ package vn.cnpm.product_service.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import vn.cnpm.product_service.dto.ProductRequest;
 import vn.cnpm.product_service.dto.ProductResponse;
+import vn.cnpm.product_service.dto.StockReservationItem;
+import vn.cnpm.product_service.dto.StockReservationResponse;
+import vn.cnpm.product_service.exception.ProductNotFoundException;
 import vn.cnpm.product_service.models.Category;
 import vn.cnpm.product_service.models.Product;
 import vn.cnpm.product_service.models.Product_image;
@@ -14,16 +19,40 @@ import vn.cnpm.product_service.repository.CategoryRepository;
 import vn.cnpm.product_service.repository.ProductRepository;
 import vn.cnpm.product_service.repository.RestaurantRepository;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class ProductServiceImpl implements ProductService {
+    // Số id tối đa của một request batch (giới hạn kích thước mệnh đề IN)
+    private static final int MAX_BATCH_SIZE = 500;
+
+    // Trừ/giữ stock có điều kiện trên phần có thể bán (stock - reserved_stock):
+    // 0 dòng bị ảnh hưởng nghĩa là không đủ stock (hoặc không có sản phẩm)
+    // Tăng version để các cập nhật qua JPA (@Version) nhận ra row đã thay đổi
+    // Không bật rewriteBatchedStatements cho datasource: cần số dòng bị ảnh hưởng của từng câu trong batch
+    private static final String RESERVE_STOCK_SQL =
+            "UPDATE products SET stock = stock - ?, version = version + 1 WHERE id = ? AND stock - reserved_stock >= ?";
+    private static final String HOLD_STOCK_SQL =
+            "UPDATE products SET reserved_stock = reserved_stock + ?, version = version + 1 WHERE id = ? AND stock - reserved_stock >= ?";
+
     private final ProductRepository productRepository;
     private final CategoryRepository categoryRepository;
     private final RestaurantRepository restaurantRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final HotStockService hotStockService;
+    private final StockHoldService stockHoldService;
 
     @Override
     public ProductResponse createProduct(ProductRequest request) {
@@ -66,6 +95,23 @@ public class ProductServiceImpl implements ProductService {
                 .orElseThrow(() -> new RuntimeException("Product not found"));
         return mapToResponse(product);
     }
+
+    /**
+     * Lấy nhiều sản phẩm trong một câu SQL, trả về map id -> product (id không tồn tại thì không có trong map)
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Map<Long, ProductResponse> getProductsByIds(Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return Map.of();
+        }
+        if (ids.size() > MAX_BATCH_SIZE) {
+            throw new RuntimeException("Too many products in one batch: " + ids.size() + " (max " + MAX_BATCH_SIZE + ")");
+        }
+        return productRepository.findAllWithDetailsByIdIn(new LinkedHashSet<>(ids)).stream()
+                .collect(Collectors.toMap(Product::getId, this::mapToResponse));
+    }
+
     public List<ProductResponse> getAllProducts() {
         List<Product> products = productRepository.findAll();
         return products.stream().map(this::mapToResponse).collect(Collectors.toList());
@@ -88,6 +134,8 @@ public class ProductServiceImpl implements ProductService {
     }
 
     public ProductResponse updateProduct(Long id, ProductRequest request) {
+        // Sản phẩm hot: trả stock đang giữ về DB trước, stock trong request là stock thật mới
+        hotStockService.flush(id);
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Product not found"));
         Category category = categoryRepository.findById(request.getCategoryId())
@@ -134,26 +182,39 @@ public class ProductServiceImpl implements ProductService {
         return mapToResponse(product);
     }
     public void deleteProduct(Long id) {
+        hotStockService.disable(id);
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Product not found"));
         productRepository.delete(product);
     }
 
     @Override
-    @Transactional
     public void reduceStock(Long productId, int quantity) {
+        if (hotStockService.isHot(productId)) {
+            // Sản phẩm hot: trừ trong bộ nhớ, không khoá row products
+            if (!hotStockService.tryReserve(productId, quantity)) {
+                throw new RuntimeException("Insufficient stock for product: " + productId + ". Requested: " + quantity);
+            }
+            log.info("Reduced hot stock for product {} by {}", productId, quantity);
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> reduceStockInDb(productId, quantity));
+    }
+
+    private void reduceStockInDb(Long productId, int quantity) {
         log.info("Attempting to reduce stock for product {} by quantity {}", productId, quantity);
         
         Product product = productRepository.findById(productId)
                 .orElseThrow(() -> new RuntimeException("Product not found: " + productId));
         
-        log.info("Current stock for product {}: {}", productId, product.getStock());
+        int available = product.getStock() - product.getReservedStock();
+        log.info("Current stock for product {}: {} ({} available)", productId, product.getStock(), available);
         
-        if (product.getStock() < quantity) {
+        if (available < quantity) {
             log.error("Insufficient stock for product {}: Available {}, Requested {}", 
-                    productId, product.getStock(), quantity);
+                    productId, available, quantity);
             throw new RuntimeException("Insufficient stock for product: " + product.getName() + 
-                ". Available: " + product.getStock() + ", Requested: " + quantity);
+                ". Available: " + available + ", Requested: " + quantity);
         }
         
         product.setStock(product.getStock() - quantity);
@@ -162,6 +223,180 @@ public class ProductServiceImpl implements ProductService {
         log.info("Successfully reduced stock for product {} to {}", productId, product.getStock());
     }
 
+    /**
+     * Trừ hẳn stock cho cả đơn (all-or-nothing), trả về kết quả từng dòng (không ném lỗi khi thiếu hàng)
+     */
+    @Override
+    public StockReservationResponse reserveStock(List<StockReservationItem> items) {
+        return reserve(items, RESERVE_STOCK_SQL, null);
+    }
+
+    /**
+     * Giữ tạm stock cho đơn chưa thanh toán (hết hạn sau product.stock-hold.ttl-seconds nếu không được confirm)
+     * Gọi lại với cùng orderId (retry) trả về hold đã có, không giữ thêm lần nữa
+     */
+    @Override
+    public StockReservationResponse holdStock(Long orderId, List<StockReservationItem> items) {
+        Map<Long, Integer> existing = stockHoldService.activeHolds(orderId);
+        if (!existing.isEmpty()) {
+            log.info("Stock already held for order {}", orderId);
+            return reservedResponse(existing);
+        }
+        return reserve(items, HOLD_STOCK_SQL, (quantities, leased) -> stockHoldService.insert(orderId, quantities, leased));
+    }
+
+    /**
+     * Giữ/trừ stock cho cả đơn (all-or-nothing), trả về kết quả từng dòng (không ném lỗi khi thiếu hàng)
+     * - Sản phẩm thường: mỗi sản phẩm một UPDATE có điều kiện (sql), gửi chung một JDBC batch trong một transaction
+     * - Sản phẩm hot: trừ trong bộ nhớ qua HotStockService, ngoài transaction trên (thuê chunk dùng transaction riêng,
+     *   không giữ connection này trong lúc chờ connection khác)
+     * Tất cả các dòng đều được thì gọi onReserved (sản phẩm -> số lượng, các sản phẩm hot) trong cùng transaction,
+     * ngược lại rollback phần DB và trả lại phần đã trừ trong bộ nhớ
+     */
+    private StockReservationResponse reserve(List<StockReservationItem> items, String sql,
+                                             BiConsumer<Map<Long, Integer>, Set<Long>> onReserved) {
+        if (items == null || items.isEmpty()) {
+            throw new RuntimeException("No items to reserve");
+        }
+        if (items.size() > MAX_BATCH_SIZE) {
+            throw new RuntimeException("Too many items in one reservation: " + items.size() + " (max " + MAX_BATCH_SIZE + ")");
+        }
+        // Gộp các dòng cùng sản phẩm và sắp theo id: mọi transaction khoá row theo cùng thứ tự, tránh deadlock
+        Map<Long, Integer> quantities = new TreeMap<>();
+        for (StockReservationItem item : items) {
+            if (item.getProductId() == null || item.getQuantity() <= 0) {
+                throw new RuntimeException("Invalid reservation line: product " + item.getProductId()
+                        + ", quantity " + item.getQuantity());
+            }
+            quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+
+        // Kết quả từng sản phẩm: true = đã trừ, false = không đủ stock, null = không tồn tại
+        Map<Long, Boolean> taken = new HashMap<>();
+        Set<Long> hotIds = new HashSet<>();
+        List<Map.Entry<Long, Integer>> dbLines = new ArrayList<>();
+        for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+            if (!hotStockService.isHot(line.getKey())) {
+                dbLines.add(line);
+                continue;
+            }
+            hotIds.add(line.getKey());
+            try {
+                taken.put(line.getKey(), hotStockService.tryReserve(line.getKey(), line.getValue()));
+            } catch (ProductNotFoundException e) {
+                taken.put(line.getKey(), null);
+            }
+        }
+        boolean hotReserved = taken.values().stream().allMatch(Boolean.TRUE::equals);
+
+        try {
+            if (!dbLines.isEmpty() || (onReserved != null && hotReserved)) {
+                transactionTemplate.executeWithoutResult(status -> {
+                    boolean dbReserved = true;
+                    if (!dbLines.isEmpty()) {
+                        int[][] counts = jdbcTemplate.batchUpdate(sql, dbLines, dbLines.size(), (ps, line) -> {
+                            ps.setInt(1, line.getValue());
+                            ps.setLong(2, line.getKey());
+                            ps.setInt(3, line.getValue());
+                        });
+                        for (int i = 0; i < dbLines.size(); i++) {
+                            // 0 dòng: không đủ stock hoặc không tồn tại, phân biệt sau khi đọc lại stock
+                            taken.put(dbLines.get(i).getKey(), counts[0][i] == 1);
+                            dbReserved &= counts[0][i] == 1;
+                        }
+                    }
+                    if (!dbReserved || !hotReserved) {
+                        status.setRollbackOnly();
+                    } else if (onReserved != null) {
+                        onReserved.accept(quantities, hotIds);
+                    }
+                });
+            }
+        } catch (RuntimeException e) {
+            giveBackHot(quantities, taken);
+            throw e;
+        }
+
+        if (taken.values().stream().allMatch(Boolean.TRUE::equals)) {
+            log.info("Reserved stock for {} products", quantities.size());
+            return reservedResponse(quantities);
+        }
+
+        // Trả lại phần đã trừ trong bộ nhớ (phần DB đã rollback cùng transaction)
+        giveBackHot(quantities, taken);
+        // Đọc stock có thể bán hiện tại của các dòng thất bại để báo lại cho order-service
+        List<Long> failedIds = quantities.keySet().stream()
+                .filter(productId -> !Boolean.TRUE.equals(taken.get(productId)))
+                .toList();
+        Map<Long, Integer> stocks = productRepository.findAllById(failedIds).stream()
+                .collect(Collectors.toMap(Product::getId, this::availableStock));
+        List<StockReservationResponse.Line> results = new ArrayList<>(quantities.size());
+        for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+            if (Boolean.TRUE.equals(taken.get(line.getKey()))) {
+                results.add(line(line, StockReservationResponse.Status.ROLLED_BACK, null));
+            } else if (stocks.containsKey(line.getKey())) {
+                results.add(line(line, StockReservationResponse.Status.INSUFFICIENT_STOCK, stocks.get(line.getKey())));
+            } else {
+                results.add(line(line, StockReservationResponse.Status.NOT_FOUND, null));
+            }
+        }
+        log.warn("Stock reservation rejected for products {}", failedIds);
+        return StockReservationResponse.builder()
+                .reserved(false)
+                .lines(results)
+                .build();
+    }
+
+    private void giveBackHot(Map<Long, Integer> quantities, Map<Long, Boolean> taken) {
+        quantities.forEach((productId, quantity) -> {
+            if (hotStockService.isHot(productId) && Boolean.TRUE.equals(taken.get(productId))) {
+                hotStockService.giveBack(productId, quantity);
+            }
+        });
+    }
+
+    private StockReservationResponse reservedResponse(Map<Long, Integer> quantities) {
+        return StockReservationResponse.builder()
+                .reserved(true)
+                .lines(quantities.entrySet().stream()
+                        .map(line -> line(line, StockReservationResponse.Status.RESERVED, null))
+                        .toList())
+                .build();
+    }
+
+    /**
+     * Đơn đã thanh toán: trừ hẳn stock đang giữ. Gọi lại nhiều lần không trừ thêm
+     * Hold đã hết hạn (sweeper đã trả stock) thì trừ trực tiếp các dòng của đơn (có điều kiện, all-or-nothing);
+     * không đủ hàng thì trả reserved=false để order-service đánh dấu đơn cần hoàn tiền
+     */
+    @Override
+    public StockReservationResponse confirmHolds(Long orderId, List<StockReservationItem> items) {
+        if (stockHoldService.confirm(orderId) != StockHoldService.ConfirmResult.NO_HOLDS) {
+            return StockReservationResponse.builder()
+                    .reserved(true)
+                    .lines(List.of())
+                    .build();
+        }
+        log.warn("Stock holds of order {} are gone (expired or released), decrementing stock directly", orderId);
+        return reserve(items, RESERVE_STOCK_SQL,
+                (quantities, leased) -> stockHoldService.insertConfirmed(orderId, quantities, leased));
+    }
+
+    @Override
+    public int releaseHolds(Long orderId) {
+        return stockHoldService.release(orderId);
+    }
+
+    private StockReservationResponse.Line line(Map.Entry<Long, Integer> line, StockReservationResponse.Status status,
+                                               Integer availableStock) {
+        return StockReservationResponse.Line.builder()
+                .productId(line.getKey())
+                .quantity(line.getValue())
+                .status(status)
+                .availableStock(availableStock)
+                .build();
+    }
+
     @Override
     @Transactional
     public void restoreStock(Long productId, int quantity) {
@@ -176,13 +411,21 @@ public class ProductServiceImpl implements ProductService {
                 productId, quantity, product.getStock());
     }
 
+    /**
+     * Stock có thể bán: stock trong DB trừ phần giữ tạm, cộng phần sản phẩm hot đang giữ trong bộ nhớ - O(1), không quét hold
+     */
+    private int availableStock(Product product) {
+        return (int) (product.getStock() - product.getReservedStock() + hotStockService.held(product.getId()));
+    }
+
     public ProductResponse mapToResponse(Product product) {
         return ProductResponse.builder()
                 .id(product.getId())
                 .name(product.getName())
                 .description(product.getDescription())
                 .price(product.getPrice())
-                .stock(product.getStock())
+                .stock((int) (product.getStock() + hotStockService.held(product.getId())))
+                .availableStock(availableStock(product))
                 .isActive(product.getIsActive())
                 .categoryId(product.getCategory() != null ? product.getCategory().getId() : null)
                 .restaurantId(product.getRestaurant() != null ? product.getRestaurant().getId() : null)
@@ -0,0 +1,266 @@
+package vn.cnpm.product_service.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Vòng đời stock giữ tạm (bảng stock_holds) cho đơn chưa thanh toán:
+ * - tạo: ProductServiceImpl.holdStock tăng products.reserved_stock rồi gọi insert trong cùng transaction
+ * - thanh toán xong (order-service confirm): trừ hẳn stock, đánh dấu hold confirmed
+ * - huỷ đơn hoặc hết hạn: trả lại reserved_stock, xoá hold
+ *
+ * Hold confirmed được giữ thêm confirmed-retention-hours làm dấu đơn đã trừ stock (confirm gọi lại không trừ lần nữa),
+ * hết hạn thì sweeper xoá mà không đụng tới products
+ * Hold của sản phẩm hot lấy từ stock trong bộ nhớ (leased): confirm không cần cập nhật products
+ * (stock đã được thuê ra khỏi DB), huỷ/hết hạn thì trả lại HotStockService
+ * Sweeper lấy hold hết hạn theo index expires_at (FOR UPDATE SKIP LOCKED, nhiều instance không tranh nhau)
+ */
+@Service
+@Slf4j
+public class StockHoldService {
+
+    private static final String INSERT_HOLD_SQL =
+            "INSERT INTO stock_holds (order_id, product_id, quantity, leased, confirmed, expires_at, created_at) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String SELECT_ORDER_HOLDS_SQL =
+            "SELECT id, product_id, quantity, leased, confirmed FROM stock_holds WHERE order_id = ? ORDER BY product_id "
+                    + "FOR UPDATE";
+    private static final String SELECT_EXPIRED_HOLDS_SQL =
+            "SELECT id, product_id, quantity, leased, confirmed FROM stock_holds WHERE expires_at <= ? "
+                    + "ORDER BY expires_at LIMIT ? FOR UPDATE SKIP LOCKED";
+    private static final String CONFIRM_SQL =
+            "UPDATE products SET stock = stock - ?, reserved_stock = reserved_stock - ?, version = version + 1 WHERE id = ?";
+    private static final String RELEASE_SQL =
+            "UPDATE products SET reserved_stock = reserved_stock - ?, version = version + 1 WHERE id = ?";
+    private static final String MARK_CONFIRMED_SQL = "UPDATE stock_holds SET confirmed = TRUE, expires_at = ? WHERE id = ?";
+    private static final String DELETE_HOLD_SQL = "DELETE FROM stock_holds WHERE id = ?";
+
+    private static final RowMapper<Hold> HOLD_MAPPER = (rs, rowNum) -> new Hold(rs.getLong("id"),
+            rs.getLong("product_id"), rs.getInt("quantity"), rs.getBoolean("leased"), rs.getBoolean("confirmed"));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final HotStockService hotStockService;
+    private final Duration ttl;
+    private final Duration confirmedRetention;
+    private final int sweepBatch;
+
+    private final Counter created;
+    private final Counter confirmed;
+    private final Counter released;
+    private final Counter expired;
+
+    public StockHoldService(JdbcTemplate jdbcTemplate,
+                            TransactionTemplate transactionTemplate,
+                            HotStockService hotStockService,
+                            MeterRegistry meterRegistry,
+                            @Value("${product.stock-hold.ttl-seconds:1200}") long ttlSeconds,
+                            @Value("${product.stock-hold.confirmed-retention-hours:168}") long confirmedRetentionHours,
+                            @Value("${product.stock-hold.sweep-batch:500}") int sweepBatch) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.hotStockService = hotStockService;
+        this.ttl = Duration.ofSeconds(ttlSeconds);
+        this.confirmedRetention = Duration.ofHours(confirmedRetentionHours);
+        this.sweepBatch = Math.max(1, sweepBatch);
+        this.created = meterRegistry.counter("product.stockhold", "result", "created");
+        this.confirmed = meterRegistry.counter("product.stockhold", "result", "confirmed");
+        this.released = meterRegistry.counter("product.stockhold", "result", "released");
+        this.expired = meterRegistry.counter("product.stockhold", "result", "expired");
+    }
+
+    /**
+     * Kết quả confirm: HOLDS_CONFIRMED - đã trừ stock từ hold, ALREADY_CONFIRMED - đơn đã confirm trước đó,
+     * NO_HOLDS - không còn hold (hết hạn/đã huỷ), stock chưa được trừ
+     */
+    public enum ConfirmResult {
+        HOLDS_CONFIRMED, ALREADY_CONFIRMED, NO_HOLDS
+    }
+
+    /**
+     * Hold chưa confirm của đơn: product -> quantity (rỗng nếu chưa giữ, đã confirm, đã huỷ hoặc đã hết hạn)
+     */
+    public Map<Long, Integer> activeHolds(Long orderId) {
+        Map<Long, Integer> holds = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT product_id, quantity FROM stock_holds WHERE order_id = ? AND confirmed = FALSE "
+                        + "ORDER BY product_id",
+                rs -> {
+                    holds.put(rs.getLong("product_id"), rs.getInt("quantity"));
+                }, orderId);
+        return holds;
+    }
+
+    /**
+     * Ghi hold cho các dòng đã giữ được - phải gọi trong transaction đã tăng reserved_stock
+     * (trùng order_id + product_id vi phạm unique key, cả transaction rollback)
+     */
+    public void insert(Long orderId, Map<Long, Integer> quantities, Set<Long> leasedProductIds) {
+        insert(orderId, quantities, leasedProductIds, false, ttl);
+        created.increment(quantities.size());
+    }
+
+    /**
+     * Ghi dấu đã confirm cho đơn vừa trừ stock trực tiếp (không còn hold) - phải gọi trong transaction đã trừ stock
+     * (confirm gọi lại đồng thời vi phạm unique key, transaction sau rollback)
+     */
+    public void insertConfirmed(Long orderId, Map<Long, Integer> quantities, Set<Long> leasedProductIds) {
+        insert(orderId, quantities, leasedProductIds, true, confirmedRetention);
+        confirmed.increment(quantities.size());
+    }
+
+    /**
+     * Đơn đã thanh toán: chuyển hold thành trừ stock hẳn. Gọi lại nhiều lần không trừ thêm
+     * NO_HOLDS: người gọi phải tự trừ stock (ProductServiceImpl.confirmHolds), không được coi là thành công
+     */
+    public ConfirmResult confirm(Long orderId) {
+        Timestamp retainUntil = Timestamp.from(Instant.now().plus(confirmedRetention));
+        List<Hold> holds = transactionTemplate.execute(status -> {
+            List<Hold> orderHolds = jdbcTemplate.query(SELECT_ORDER_HOLDS_SQL, HOLD_MAPPER, orderId);
+            if (!orderHolds.isEmpty() && orderHolds.stream().noneMatch(Hold::confirmed)) {
+                applyToProducts(orderHolds, true);
+                jdbcTemplate.batchUpdate(MARK_CONFIRMED_SQL, orderHolds, orderHolds.size(), (ps, hold) -> {
+                    ps.setTimestamp(1, retainUntil);
+                    ps.setLong(2, hold.id());
+                });
+            }
+            return orderHolds;
+        });
+        if (holds.isEmpty()) {
+            log.warn("No stock holds to confirm for order {} (released or expired)", orderId);
+            return ConfirmResult.NO_HOLDS;
+        }
+        if (holds.stream().anyMatch(Hold::confirmed)) {
+            log.info("Stock holds of order {} already confirmed", orderId);
+            return ConfirmResult.ALREADY_CONFIRMED;
+        }
+        confirmed.increment(holds.size());
+        log.info("Confirmed {} stock holds for order {}", holds.size(), orderId);
+        return ConfirmResult.HOLDS_CONFIRMED;
+    }
+
+    /**
+     * Đơn bị huỷ: trả lại stock đang giữ (hold đã confirm không bị đụng tới). Gọi lại nhiều lần không sao
+     * Trả về số hold đã trả lại
+     */
+    public int release(Long orderId) {
+        List<Hold> holds = transactionTemplate.execute(status -> {
+            List<Hold> orderHolds = jdbcTemplate.query(SELECT_ORDER_HOLDS_SQL, HOLD_MAPPER, orderId).stream()
+                    .filter(hold -> !hold.confirmed())
+                    .toList();
+            applyToProducts(orderHolds, false);
+            delete(orderHolds);
+            return orderHolds;
+        });
+        giveBackLeased(holds);
+        released.increment(holds.size());
+        if (!holds.isEmpty()) {
+            log.info("Released {} stock holds for order {}", holds.size(), orderId);
+        }
+        return holds.size();
+    }
+
+    /**
+     * Trả lại các hold đã hết hạn (và xoá dấu confirmed đã hết hạn lưu) theo lô sweep-batch,
+     * quét theo thứ tự expires_at tới khi hết
+     */
+    @Scheduled(fixedDelayString = "${product.stock-hold.sweep-ms:10000}")
+    public void sweep() {
+        try {
+            int total = 0;
+            List<Hold> holds;
+            do {
+                holds = transactionTemplate.execute(status -> {
+                    List<Hold> expiredHolds = jdbcTemplate.query(SELECT_EXPIRED_HOLDS_SQL, HOLD_MAPPER,
+                            Timestamp.from(Instant.now()), sweepBatch);
+                    applyToProducts(expiredHolds.stream().filter(hold -> !hold.confirmed()).toList(), false);
+                    delete(expiredHolds);
+                    return expiredHolds;
+                });
+                List<Hold> unconfirmed = holds.stream().filter(hold -> !hold.confirmed()).toList();
+                giveBackLeased(unconfirmed);
+                total += unconfirmed.size();
+            } while (holds.size() == sweepBatch);
+            if (total > 0) {
+                expired.increment(total);
+                log.info("Released {} expired stock holds", total);
+            }
+        } catch (Exception e) {
+            log.error("Stock hold sweep failed: {}", e.getMessage());
+        }
+    }
+
+    private void insert(Long orderId, Map<Long, Integer> quantities, Set<Long> leasedProductIds,
+                        boolean confirmedHold, Duration lifetime) {
+        Instant now = Instant.now();
+        Timestamp createdAt = Timestamp.from(now);
+        Timestamp expiresAt = Timestamp.from(now.plus(lifetime));
+        List<Map.Entry<Long, Integer>> lines = new ArrayList<>(quantities.entrySet());
+        jdbcTemplate.batchUpdate(INSERT_HOLD_SQL, lines, lines.size(), (ps, line) -> {
+            ps.setLong(1, orderId);
+            ps.setLong(2, line.getKey());
+            ps.setInt(3, line.getValue());
+            ps.setBoolean(4, leasedProductIds.contains(line.getKey()));
+            ps.setBoolean(5, confirmedHold);
+            ps.setTimestamp(6, expiresAt);
+            ps.setTimestamp(7, createdAt);
+        });
+    }
+
+    /**
+     * Cập nhật products cho các hold không leased (gộp theo sản phẩm, theo thứ tự id)
+     * confirm = true: trừ hẳn stock, false: chỉ trả lại reserved_stock
+     */
+    private void applyToProducts(List<Hold> holds, boolean confirm) {
+        Map<Long, Integer> quantities = new TreeMap<>();
+        for (Hold hold : holds) {
+            if (!hold.leased()) {
+                quantities.merge(hold.productId(), hold.quantity(), Integer::sum);
+            }
+        }
+        List<Map.Entry<Long, Integer>> lines = new ArrayList<>(quantities.entrySet());
+        if (!lines.isEmpty()) {
+            jdbcTemplate.batchUpdate(confirm ? CONFIRM_SQL : RELEASE_SQL, lines, lines.size(), (ps, line) -> {
+                int i = 1;
+                ps.setInt(i++, line.getValue());
+                if (confirm) {
+                    ps.setInt(i++, line.getValue());
+                }
+                ps.setLong(i, line.getKey());
+            });
+        }
+    }
+
+    private void delete(List<Hold> holds) {
+        if (!holds.isEmpty()) {
+            jdbcTemplate.batchUpdate(DELETE_HOLD_SQL, holds, holds.size(), (ps, hold) -> ps.setLong(1, hold.id()));
+        }
+    }
+
+    private void giveBackLeased(List<Hold> holds) {
+        for (Hold hold : holds) {
+            if (hold.leased()) {
+                hotStockService.giveBack(hold.productId(), hold.quantity());
+            }
+        }
+    }
+
+    private record Hold(long id, long productId, int quantity, boolean leased, boolean confirmed) {
+    }
+}
@@ -0,0 +1,18 @@
+package vn.cnpm.product_service.service;
+
+/**
+ * Nơi HotStockService thuê/trả stock theo chunk (bản chính là bảng products - xem JdbcStockLeaseStore)
+ */
+public interface StockLeaseStore {
+
+    /**
+     * Trừ tối đa max đơn vị khỏi stock của sản phẩm và trả về số đơn vị thực sự thuê được (0 nếu đã hết)
+     * Ném ProductNotFoundException nếu sản phẩm không tồn tại
+     */
+    int lease(Long productId, int max);
+
+    /**
+     * Trả lại stock chưa bán
+     */
+    void release(Long productId, int quantity);
+}
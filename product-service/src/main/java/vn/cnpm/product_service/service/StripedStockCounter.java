@@ -0,0 +1,85 @@
+package vn.cnpm.product_service.service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bộ đếm stock chia stripe: mỗi thread trừ trên stripe "nhà" của mình bằng CAS, hết thì thử các stripe khác
+ * Không khoá, các stripe cách nhau 64 byte để tránh false sharing
+ */
+public class StripedStockCounter {
+
+    private static final int PAD = 8; // 8 long = 64 byte mỗi stripe
+
+    private final AtomicLongArray cells;
+    private final int stripes;
+    private final int mask;
+
+    public StripedStockCounter(int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.stripes = stripes <= 1 ? 1 : size;
+        this.mask = this.stripes - 1;
+        this.cells = new AtomicLongArray(this.stripes * PAD);
+    }
+
+    /**
+     * Trừ quantity trên một stripe còn đủ, false nếu không stripe nào đủ (có thể tổng vẫn đủ nhưng bị chia lẻ)
+     */
+    public boolean tryTake(int quantity) {
+        int home = home();
+        for (int i = 0; i < stripes; i++) {
+            int index = ((home + i) & mask) * PAD;
+            long value;
+            while ((value = cells.get(index)) >= quantity) {
+                if (cells.compareAndSet(index, value, value - quantity)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Cộng stock, chia đều cho các stripe để thread nào cũng có phần trên stripe của mình
+     */
+    public void add(long quantity) {
+        if (quantity <= 0) {
+            return;
+        }
+        long share = quantity / stripes;
+        long remainder = quantity % stripes;
+        int home = home();
+        for (int i = 0; i < stripes; i++) {
+            long amount = share + (i < remainder ? 1 : 0);
+            if (amount > 0) {
+                cells.addAndGet(((home + i) & mask) * PAD, amount);
+            }
+        }
+    }
+
+    /**
+     * Lấy hết stock đang có (về 0), dùng khi gom stripe lẻ hoặc trả về DB
+     */
+    public long drain() {
+        long total = 0;
+        for (int i = 0; i < stripes; i++) {
+            total += cells.getAndSet(i * PAD, 0);
+        }
+        return total;
+    }
+
+    /**
+     * Tổng stock hiện có (xấp xỉ khi đang có thread trừ đồng thời)
+     */
+    public long sum() {
+        long total = 0;
+        for (int i = 0; i < stripes; i++) {
+            total += cells.get(i * PAD);
+        }
+        return total;
+    }
+
+    private int home() {
+        long h = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & mask;
+    }
+}
@@ -0,0 +1,146 @@
+package vn.cnpm.product_service.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import vn.cnpm.product_service.service.HotStockService;
+import vn.cnpm.product_service.service.StockLeaseStore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Simulation 1.000 người mua đồng thời một SKU đang flash sale (mỗi người mua 1 đơn vị liên tục tới khi hết hàng):
+ * - row: mỗi lượt một UPDATE có điều kiện trên row products (như reserveStock), xếp hàng trên khoá row
+ * - hot stock: HotStockService trừ trong bộ nhớ, chỉ thuê chunk từ row khi hết
+ * Row products được giả lập bằng một khoá giữ ROW_LOCK_MICROS cho mỗi câu SQL (round trip + commit)
+ *
+ * Chạy: mvn -Pbenchmark test-compile exec:exec -Dbenchmark.main=vn.cnpm.product_service.benchmark.HotStockContentionSimulation
+ */
+public class HotStockContentionSimulation {
+
+    private static final int BUYERS = 1_000;
+    private static final int STOCK = 20_000;
+    private static final long ROW_LOCK_MICROS = 100;
+    private static final Long PRODUCT_ID = 1L;
+
+    public static void main(String[] args) throws InterruptedException {
+        System.out.printf("%,d buyers, %,d units, %d us per SQL statement under the row lock%n%n", BUYERS, STOCK,
+                ROW_LOCK_MICROS);
+        System.out.printf("%-18s %9s %12s %9s %9s %11s %8s %6s%n", "mode", "time ms", "buys/s", "p50 us", "p99 us",
+                "statements", "sold", "left");
+
+        EmulatedRow row = new EmulatedRow(STOCK);
+        run("row", row, () -> row.conditionalUpdate(1), () -> 0);
+
+        for (int chunk : new int[]{50, 200}) {
+            EmulatedRow leasedRow = new EmulatedRow(STOCK);
+            HotStockService hotStock = new HotStockService(leasedRow, new SimpleMeterRegistry(), chunk, 0, 30_000,
+                    500, "");
+            hotStock.enable(PRODUCT_ID);
+            run("hot stock chunk " + chunk, leasedRow, () -> hotStock.tryReserve(PRODUCT_ID, 1),
+                    () -> hotStock.held(PRODUCT_ID));
+        }
+    }
+
+    private static void run(String mode, EmulatedRow row, BooleanSupplier buy, LongSupplier held)
+            throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<long[]> latencies = new ArrayList<>(BUYERS);
+        List<Thread> threads = new ArrayList<>(BUYERS);
+        AtomicLong sold = new AtomicLong();
+        for (int i = 0; i < BUYERS; i++) {
+            long[] own = new long[STOCK + 1];
+            latencies.add(own);
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                int count = 0;
+                while (true) {
+                    long t0 = System.nanoTime();
+                    if (!buy.getAsBoolean()) {
+                        break;
+                    }
+                    own[++count] = System.nanoTime() - t0;
+                }
+                own[0] = count;
+                sold.addAndGet(count);
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        long t0 = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - t0;
+
+        long[] all = new long[(int) sold.get()];
+        int n = 0;
+        for (long[] own : latencies) {
+            System.arraycopy(own, 1, all, n, (int) own[0]);
+            n += (int) own[0];
+        }
+        Arrays.sort(all);
+        long left = row.stock + held.getAsLong();
+        System.out.printf("%-18s %9.0f %12.0f %9.1f %9.1f %11d %8d %6d%s%n", mode, elapsed / 1e6,
+                sold.get() / (elapsed / 1e9), all[all.length / 2] / 1e3, all[(int) (all.length * 0.99)] / 1e3,
+                row.statements, sold.get(), left, sold.get() + left == STOCK ? "" : "  MISMATCH");
+    }
+
+    /**
+     * Row products giả lập: mỗi câu SQL giữ khoá row ROW_LOCK_MICROS, các transaction khác xếp hàng chờ
+     */
+    private static final class EmulatedRow implements StockLeaseStore {
+        private long stock;
+        private long statements;
+
+        EmulatedRow(long stock) {
+            this.stock = stock;
+        }
+
+        // UPDATE products SET stock = stock - ? WHERE id = ? AND stock >= ?
+        synchronized boolean conditionalUpdate(int quantity) {
+            statement();
+            if (stock < quantity) {
+                return false;
+            }
+            stock -= quantity;
+            return true;
+        }
+
+        // SELECT ... FOR UPDATE + UPDATE trong một transaction
+        @Override
+        public synchronized int lease(Long productId, int max) {
+            statement();
+            int amount = (int) Math.min(max, stock);
+            if (amount > 0) {
+                statement();
+                stock -= amount;
+            }
+            return amount;
+        }
+
+        @Override
+        public synchronized void release(Long productId, int quantity) {
+            statement();
+            stock += quantity;
+        }
+
+        private void statement() {
+            statements++;
+            long until = System.nanoTime() + ROW_LOCK_MICROS * 1_000;
+            while (System.nanoTime() < until) {
+                LockSupport.parkNanos(until - System.nanoTime());
+            }
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package vn.cnpm.product_service.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import vn.cnpm.product_service.repository.JdbcStockLeaseStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HotStockServiceTest {
+
+    private static final Long PRODUCT_ID = 1L;
+    private static final int THREADS = 16;
+
+    private InMemoryProducts db;
+    private FlakyTransactionManager transactions;
+
+    @BeforeEach
+    void setUp() {
+        db = new InMemoryProducts();
+        transactions = new FlakyTransactionManager(db);
+    }
+
+    /**
+     * HotStockService trên JdbcStockLeaseStore thật, DB giả có transaction (commit lỗi thì không ghi gì)
+     */
+    private HotStockService newService(int stock, int chunkSize, long idleMs) {
+        db.stock = stock;
+        HotStockService service = new HotStockService(new JdbcStockLeaseStore(db, transactions),
+                new SimpleMeterRegistry(), chunkSize, 8, idleMs, 0, "");
+        service.enable(PRODUCT_ID);
+        return service;
+    }
+
+    @Test
+    void concurrentBuyersSellExactlyTheStock() throws InterruptedException {
+        HotStockService service = newService(5_000, 50, 30_000);
+        AtomicLong sold = new AtomicLong();
+
+        runConcurrently(() -> {
+            while (service.tryReserve(PRODUCT_ID, 1)) {
+                sold.incrementAndGet();
+            }
+        });
+
+        // Không bán quá và cũng không bỏ sót đơn vị lẻ nằm ở stripe khác
+        assertThat(sold.get()).isEqualTo(5_000);
+        assertThat(db.stock).isZero();
+        assertThat(service.held(PRODUCT_ID)).isZero();
+        assertThat(db.wentNegative).isFalse();
+    }
+
+    @Test
+    void failingLeaseTransactionsNeverCreateStock() throws InterruptedException {
+        int stock = 3_000;
+        HotStockService service = newService(stock, 20, 0);
+        transactions.failEvery(3);
+        AtomicLong sold = new AtomicLong();
+        AtomicInteger failures = new AtomicInteger();
+        AtomicBoolean running = new AtomicBoolean(true);
+
+        // Trả stock về DB liên tục trong lúc bán (idle-ms = 0), cũng đi qua các commit lỗi
+        Thread reconciler = new Thread(() -> {
+            while (running.get()) {
+                service.reconcile();
+                Thread.yield();
+            }
+        });
+        reconciler.start();
+        runConcurrently(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < 1_000; i++) {
+                int quantity = 1 + random.nextInt(3);
+                try {
+                    if (service.tryReserve(PRODUCT_ID, quantity)) {
+                        sold.addAndGet(quantity);
+                        if (random.nextInt(10) == 0) {
+                            service.giveBack(PRODUCT_ID, quantity);
+                            sold.addAndGet(-quantity);
+                        }
+                    }
+                } catch (TransactionSystemException e) {
+                    failures.incrementAndGet();
+                }
+            }
+        });
+        running.set(false);
+        reconciler.join();
+
+        assertThat(failures.get()).isPositive();
+        assertThat(db.wentNegative).isFalse();
+        assertThat(sold.get()).isLessThanOrEqualTo(stock);
+        // Chunk đang giữ + phần còn trong DB + đã bán đúng bằng stock ban đầu
+        assertThat(sold.get() + service.held(PRODUCT_ID) + db.stock).isEqualTo(stock);
+
+        transactions.failEvery(0);
+        service.shutdown();
+        assertThat(service.held(PRODUCT_ID)).isZero();
+        assertThat(sold.get() + db.stock).isEqualTo(stock);
+    }
+
+    @Test
+    void failedLeaseKeepsPooledStockAndLeavesDbUntouched() {
+        HotStockService service = newService(100, 10, 30_000);
+        assertThat(service.tryReserve(PRODUCT_ID, 4)).isTrue();
+        assertThat(db.stock).isEqualTo(90);
+        assertThat(service.held(PRODUCT_ID)).isEqualTo(6);
+
+        // Cần 8, chỉ còn 6 trong bộ nhớ: phải thuê chunk mới nhưng commit lỗi
+        transactions.failEvery(1);
+        assertThatThrownBy(() -> service.tryReserve(PRODUCT_ID, 8)).isInstanceOf(TransactionSystemException.class);
+
+        assertThat(db.stock).isEqualTo(90);
+        assertThat(service.held(PRODUCT_ID)).isEqualTo(6);
+
+        transactions.failEvery(0);
+        assertThat(service.tryReserve(PRODUCT_ID, 8)).isTrue();
+        assertThat(service.held(PRODUCT_ID) + db.stock).isEqualTo(100 - 4 - 8);
+    }
+
+    @Test
+    void failedReleaseKeepsStockInMemoryUntilNextReconcile() {
+        HotStockService service = newService(100, 10, 0);
+        assertThat(service.tryReserve(PRODUCT_ID, 1)).isTrue();
+
+        transactions.failEvery(1);
+        service.reconcile();
+        assertThat(db.stock).isEqualTo(90);
+        assertThat(service.held(PRODUCT_ID)).isEqualTo(9);
+
+        transactions.failEvery(0);
+        service.reconcile();
+        assertThat(db.stock).isEqualTo(99);
+        assertThat(service.held(PRODUCT_ID)).isZero();
+    }
+
+    private static void runConcurrently(Runnable task) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>(THREADS);
+        for (int i = 0; i < THREADS; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                task.run();
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    /**
+     * JdbcTemplate giả: một row products, hiểu các câu SQL của JdbcStockLeaseStore
+     * Câu SQL đầu tiên khoá row (như SELECT ... FOR UPDATE) tới khi transaction kết thúc;
+     * thay đổi chỉ được ghi khi commit
+     */
+    private static final class InMemoryProducts extends JdbcTemplate {
+        private final ReentrantLock rowLock = new ReentrantLock();
+        private final ThreadLocal<int[]> pending = ThreadLocal.withInitial(() -> new int[1]);
+        private volatile int stock;
+        private volatile boolean wentNegative;
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> List<T> queryForList(String sql, Class<T> elementType, Object... args) {
+            if (!sql.startsWith("SELECT stock - reserved_stock FROM products")) {
+                throw new UnsupportedOperationException(sql);
+            }
+            lockRow();
+            return List.of((T) Integer.valueOf(stock + pending.get()[0]));
+        }
+
+        @Override
+        public int update(String sql, Object... args) {
+            lockRow();
+            int quantity = (Integer) args[0];
+            if (sql.startsWith("UPDATE products SET stock = stock - ?")) {
+                pending.get()[0] -= quantity;
+            } else if (sql.startsWith("UPDATE products SET stock = stock + ?")) {
+                pending.get()[0] += quantity;
+            } else {
+                throw new UnsupportedOperationException(sql);
+            }
+            return 1;
+        }
+
+        private void lockRow() {
+            if (!rowLock.isHeldByCurrentThread()) {
+                rowLock.lock();
+            }
+        }
+
+        void end(boolean commit) {
+            try {
+                if (commit) {
+                    stock += pending.get()[0];
+                    if (stock < 0) {
+                        wentNegative = true;
+                    }
+                }
+                pending.get()[0] = 0;
+            } finally {
+                if (rowLock.isHeldByCurrentThread()) {
+                    rowLock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Transaction manager giả: cứ failEvery lần commit thì một lần lỗi (thay đổi bị bỏ, như rollback)
+     */
+    private static final class FlakyTransactionManager implements PlatformTransactionManager {
+        private final InMemoryProducts db;
+        private final AtomicInteger commits = new AtomicInteger();
+        private volatile int failEvery;
+
+        FlakyTransactionManager(InMemoryProducts db) {
+            this.db = db;
+        }
+
+        void failEvery(int every) {
+            this.failEvery = every;
+        }
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+            int every = failEvery;
+            if (every > 0 && commits.incrementAndGet() % every == 0) {
+                db.end(false);
+                throw new TransactionSystemException("Commit failed");
+            }
+            db.end(true);
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+            db.end(false);
+        }
+    }
+}
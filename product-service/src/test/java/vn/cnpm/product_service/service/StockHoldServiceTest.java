@@ -0,0 +1,365 @@
+package vn.cnpm.product_service.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+class StockHoldServiceTest {
+
+    private static final long TTL_SECONDS = 1200;
+
+    private InMemoryJdbc jdbc;
+    private HotStockService hotStockService;
+    private StockHoldService service;
+
+    @BeforeEach
+    void setUp() {
+        jdbc = new InMemoryJdbc();
+        hotStockService = mock(HotStockService.class);
+        service = newService(500);
+    }
+
+    private StockHoldService newService(int sweepBatch) {
+        return new StockHoldService(jdbc, new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                hotStockService, new SimpleMeterRegistry(), TTL_SECONDS, 168, sweepBatch);
+    }
+
+    /**
+     * Như ProductServiceImpl.holdStock: tăng reserved_stock (trừ sản phẩm hot) rồi ghi hold
+     */
+    private void hold(long orderId, Map<Long, Integer> quantities, Set<Long> leased) {
+        quantities.forEach((productId, quantity) -> {
+            if (!leased.contains(productId)) {
+                jdbc.product(productId).reserved += quantity;
+            }
+        });
+        service.insert(orderId, quantities, leased);
+    }
+
+    @Test
+    void insertSetsExpiryToTtlAfterCreation() {
+        jdbc.addProduct(1L, 10);
+        hold(100L, Map.of(1L, 3), Set.of());
+
+        InMemoryJdbc.HoldRow row = jdbc.holds.get(0);
+        assertThat(row.confirmed).isFalse();
+        assertThat(Duration.between(row.createdAt, row.expiresAt)).isEqualTo(Duration.ofSeconds(TTL_SECONDS));
+        assertThat(service.activeHolds(100L)).containsExactly(Map.entry(1L, 3));
+    }
+
+    @Test
+    void confirmTurnsHoldsIntoStockDecrementOnce() {
+        jdbc.addProduct(1L, 10);
+        jdbc.addProduct(2L, 5);
+        hold(100L, Map.of(1L, 3, 2L, 2), Set.of());
+
+        assertThat(service.confirm(100L)).isEqualTo(StockHoldService.ConfirmResult.HOLDS_CONFIRMED);
+        assertThat(jdbc.product(1L).stock).isEqualTo(7);
+        assertThat(jdbc.product(1L).reserved).isZero();
+        assertThat(jdbc.product(2L).stock).isEqualTo(3);
+        assertThat(jdbc.product(2L).reserved).isZero();
+        assertThat(service.activeHolds(100L)).isEmpty();
+
+        // Gọi lại (retry, event giao lại) không trừ thêm
+        assertThat(service.confirm(100L)).isEqualTo(StockHoldService.ConfirmResult.ALREADY_CONFIRMED);
+        assertThat(jdbc.product(1L).stock).isEqualTo(7);
+        assertThat(jdbc.product(2L).stock).isEqualTo(3);
+    }
+
+    @Test
+    void confirmLeasedHoldLeavesProductRowAlone() {
+        jdbc.addProduct(1L, 10);
+        hold(100L, Map.of(1L, 4), Set.of(1L));
+
+        assertThat(service.confirm(100L)).isEqualTo(StockHoldService.ConfirmResult.HOLDS_CONFIRMED);
+        assertThat(jdbc.product(1L).stock).isEqualTo(10);
+        verifyNoInteractions(hotStockService);
+    }
+
+    @Test
+    void confirmWithoutHoldsReportsNoHolds() {
+        jdbc.addProduct(1L, 10);
+
+        assertThat(service.confirm(100L)).isEqualTo(StockHoldService.ConfirmResult.NO_HOLDS);
+        assertThat(jdbc.product(1L).stock).isEqualTo(10);
+    }
+
+    @Test
+    void insertConfirmedMarksOrderAsConfirmed() {
+        jdbc.addProduct(1L, 10);
+        service.insertConfirmed(100L, Map.of(1L, 2), Set.of());
+
+        assertThat(service.activeHolds(100L)).isEmpty();
+        assertThat(service.confirm(100L)).isEqualTo(StockHoldService.ConfirmResult.ALREADY_CONFIRMED);
+        assertThat(service.release(100L)).isZero();
+        assertThat(jdbc.product(1L).stock).isEqualTo(10);
+    }
+
+    @Test
+    void releaseGivesBackReservedAndLeasedStock() {
+        jdbc.addProduct(1L, 10);
+        jdbc.addProduct(2L, 10);
+        hold(100L, Map.of(1L, 3, 2L, 4), Set.of(2L));
+
+        assertThat(service.release(100L)).isEqualTo(2);
+        assertThat(jdbc.product(1L).stock).isEqualTo(10);
+        assertThat(jdbc.product(1L).reserved).isZero();
+        verify(hotStockService).giveBack(2L, 4);
+        assertThat(jdbc.holds).isEmpty();
+
+        // Gọi lại không trả thêm
+        assertThat(service.release(100L)).isZero();
+        assertThat(jdbc.product(1L).reserved).isZero();
+    }
+
+    @Test
+    void releaseDoesNotUndoConfirmedHolds() {
+        jdbc.addProduct(1L, 10);
+        hold(100L, Map.of(1L, 3), Set.of());
+        service.confirm(100L);
+
+        assertThat(service.release(100L)).isZero();
+        assertThat(jdbc.product(1L).stock).isEqualTo(7);
+        assertThat(jdbc.product(1L).reserved).isZero();
+    }
+
+    @Test
+    void sweepReleasesOnlyExpiredHolds() {
+        jdbc.addProduct(1L, 10);
+        hold(100L, Map.of(1L, 3), Set.of());
+        hold(200L, Map.of(1L, 2), Set.of());
+        jdbc.expire(100L);
+
+        service.sweep();
+
+        assertThat(jdbc.product(1L).reserved).isEqualTo(2);
+        assertThat(service.activeHolds(100L)).isEmpty();
+        assertThat(service.activeHolds(200L)).containsExactly(Map.entry(1L, 2));
+        // Hold đã bị sweeper trả lại: confirm báo NO_HOLDS, không trừ stock
+        assertThat(service.confirm(100L)).isEqualTo(StockHoldService.ConfirmResult.NO_HOLDS);
+        assertThat(jdbc.product(1L).stock).isEqualTo(10);
+    }
+
+    @Test
+    void sweepDrainsBacklogInBatches() {
+        service = newService(2);
+        jdbc.addProduct(1L, 100);
+        jdbc.addProduct(2L, 100);
+        for (long orderId = 1; orderId <= 5; orderId++) {
+            hold(orderId, Map.of(1L, 1, 2L, 2), Set.of(2L));
+            jdbc.expire(orderId);
+        }
+
+        service.sweep();
+
+        assertThat(jdbc.holds).isEmpty();
+        assertThat(jdbc.product(1L).reserved).isZero();
+        verify(hotStockService, times(5)).giveBack(2L, 2);
+        assertThat(jdbc.expiredSelects).isGreaterThan(1);
+    }
+
+    @Test
+    void sweepDropsExpiredConfirmedMarkersWithoutTouchingStock() {
+        jdbc.addProduct(1L, 10);
+        hold(100L, Map.of(1L, 3), Set.of(1L));
+        service.confirm(100L);
+        jdbc.expire(100L);
+
+        service.sweep();
+
+        assertThat(jdbc.holds).isEmpty();
+        assertThat(jdbc.product(1L).stock).isEqualTo(10);
+        verify(hotStockService, never()).giveBack(1L, 3);
+    }
+
+    /**
+     * JdbcTemplate giả: bảng products và stock_holds trong bộ nhớ, hiểu đúng các câu SQL của StockHoldService
+     */
+    private static final class InMemoryJdbc extends JdbcTemplate {
+        private final Map<Long, ProductRow> products = new HashMap<>();
+        private final List<HoldRow> holds = new ArrayList<>();
+        private long nextId = 1;
+        private int expiredSelects;
+
+        void addProduct(long id, int stock) {
+            ProductRow row = new ProductRow();
+            row.stock = stock;
+            products.put(id, row);
+        }
+
+        ProductRow product(long id) {
+            return products.get(id);
+        }
+
+        void expire(long orderId) {
+            holds.stream()
+                    .filter(hold -> hold.orderId == orderId)
+                    .forEach(hold -> hold.expiresAt = Instant.now().minusSeconds(1));
+        }
+
+        @Override
+        public <T> List<T> query(String sql, RowMapper<T> rowMapper, Object... args) {
+            List<HoldRow> rows;
+            if (sql.contains("WHERE order_id = ?")) {
+                rows = holds.stream()
+                        .filter(hold -> hold.orderId == (Long) args[0])
+                        .sorted(Comparator.comparingLong(hold -> hold.productId))
+                        .toList();
+            } else if (sql.contains("WHERE expires_at <= ?")) {
+                expiredSelects++;
+                Instant now = ((Timestamp) args[0]).toInstant();
+                rows = holds.stream()
+                        .filter(hold -> !hold.expiresAt.isAfter(now))
+                        .sorted(Comparator.comparing(hold -> hold.expiresAt))
+                        .limit((Integer) args[1])
+                        .toList();
+            } else {
+                throw new UnsupportedOperationException(sql);
+            }
+            List<T> result = new ArrayList<>(rows.size());
+            for (HoldRow row : rows) {
+                try {
+                    result.add(rowMapper.mapRow(row.resultSet(), result.size()));
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public void query(String sql, RowCallbackHandler handler, Object... args) {
+            if (!sql.contains("confirmed = FALSE")) {
+                throw new UnsupportedOperationException(sql);
+            }
+            for (HoldRow hold : new ArrayList<>(holds)) {
+                if (hold.orderId == (Long) args[0] && !hold.confirmed) {
+                    try {
+                        handler.processRow(hold.resultSet());
+                    } catch (SQLException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public <T> int[][] batchUpdate(String sql, Collection<T> batchArgs, int batchSize,
+                                       ParameterizedPreparedStatementSetter<T> pss) {
+            int[] counts = new int[batchArgs.size()];
+            int i = 0;
+            for (T arg : batchArgs) {
+                Map<Integer, Object> params = new TreeMap<>();
+                try {
+                    pss.setValues(recorder(params), arg);
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+                counts[i++] = execute(sql, new ArrayList<>(params.values()));
+            }
+            return new int[][]{counts};
+        }
+
+        private int execute(String sql, List<Object> p) {
+            if (sql.startsWith("INSERT INTO stock_holds")) {
+                HoldRow row = new HoldRow();
+                row.id = nextId++;
+                row.orderId = (Long) p.get(0);
+                row.productId = (Long) p.get(1);
+                row.quantity = (Integer) p.get(2);
+                row.leased = (Boolean) p.get(3);
+                row.confirmed = (Boolean) p.get(4);
+                row.expiresAt = ((Timestamp) p.get(5)).toInstant();
+                row.createdAt = ((Timestamp) p.get(6)).toInstant();
+                holds.add(row);
+            } else if (sql.startsWith("UPDATE products SET stock = stock - ?, reserved_stock")) {
+                ProductRow row = products.get((Long) p.get(2));
+                row.stock -= (Integer) p.get(0);
+                row.reserved -= (Integer) p.get(1);
+            } else if (sql.startsWith("UPDATE products SET reserved_stock = reserved_stock - ?")) {
+                products.get((Long) p.get(1)).reserved -= (Integer) p.get(0);
+            } else if (sql.startsWith("UPDATE stock_holds SET confirmed = TRUE")) {
+                holds.stream().filter(hold -> hold.id == (Long) p.get(1)).forEach(hold -> {
+                    hold.confirmed = true;
+                    hold.expiresAt = ((Timestamp) p.get(0)).toInstant();
+                });
+            } else if (sql.startsWith("DELETE FROM stock_holds")) {
+                holds.removeIf(hold -> hold.id == (Long) p.get(0));
+            } else {
+                throw new UnsupportedOperationException(sql);
+            }
+            return 1;
+        }
+
+        private static PreparedStatement recorder(Map<Integer, Object> params) {
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+                        if (method.getName().startsWith("set") && args != null && args.length == 2) {
+                            params.put((Integer) args[0], args[1]);
+                            return null;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    });
+        }
+
+        private static final class ProductRow {
+            private int stock;
+            private int reserved;
+        }
+
+        private static final class HoldRow {
+            private long id;
+            private long orderId;
+            private long productId;
+            private int quantity;
+            private boolean leased;
+            private boolean confirmed;
+            private Instant expiresAt;
+            private Instant createdAt;
+
+            ResultSet resultSet() {
+                Map<String, Object> columns = Map.of("id", id, "product_id", productId, "quantity", quantity,
+                        "leased", leased, "confirmed", confirmed);
+                return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                        new Class<?>[]{ResultSet.class}, (proxy, method, args) -> {
+                            Object value = columns.get((String) args[0]);
+                            return switch (method.getName()) {
+                                case "getLong" -> ((Number) value).longValue();
+                                case "getInt" -> ((Number) value).intValue();
+                                case "getBoolean" -> (Boolean) value;
+                                default -> throw new UnsupportedOperationException(method.getName());
+                            };
+                        });
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package vn.cnpm.product_service.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StripedStockCounterTest {
+
+    private static final int THREADS = 16;
+
+    @Test
+    void addSpreadsStockOverStripes() {
+        StripedStockCounter counter = new StripedStockCounter(4);
+        counter.add(10);
+
+        assertThat(counter.sum()).isEqualTo(10);
+        // 10 chia cho 4 stripe: stripe lớn nhất có 3, không lấy được 4 một lần dù tổng đủ
+        assertThat(counter.tryTake(4)).isFalse();
+        assertThat(counter.tryTake(3)).isTrue();
+        assertThat(counter.drain()).isEqualTo(7);
+        assertThat(counter.sum()).isZero();
+    }
+
+    @Test
+    void concurrentTakesNeverExceedStock() throws InterruptedException {
+        StripedStockCounter counter = new StripedStockCounter(8);
+        counter.add(100_000);
+        AtomicLong taken = new AtomicLong();
+
+        runConcurrently(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int misses = 0;
+            // Dừng khi liên tục không lấy được (các stripe đã cạn hoặc còn lẻ)
+            while (misses < 100) {
+                int quantity = 1 + random.nextInt(3);
+                if (counter.tryTake(quantity)) {
+                    taken.addAndGet(quantity);
+                    misses = 0;
+                } else {
+                    misses++;
+                }
+            }
+        });
+
+        assertThat(taken.get()).isLessThanOrEqualTo(100_000);
+        assertThat(taken.get() + counter.sum()).isEqualTo(100_000);
+    }
+
+    @Test
+    void concurrentAddTakeAndDrainConserveStock() throws InterruptedException {
+        StripedStockCounter counter = new StripedStockCounter(8);
+        AtomicLong added = new AtomicLong();
+        AtomicLong removed = new AtomicLong();
+
+        runConcurrently(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < 20_000; i++) {
+                int op = random.nextInt(10);
+                if (op < 3) {
+                    int quantity = 1 + random.nextInt(20);
+                    counter.add(quantity);
+                    added.addAndGet(quantity);
+                } else if (op < 9) {
+                    if (counter.tryTake(1)) {
+                        removed.incrementAndGet();
+                    }
+                } else {
+                    // Như reserveSlow: gom hết rồi trả lại phần không dùng
+                    long pooled = counter.drain();
+                    long used = Math.min(pooled, 2);
+                    removed.addAndGet(used);
+                    counter.add(pooled - used);
+                }
+            }
+        });
+
+        assertThat(counter.sum()).isGreaterThanOrEqualTo(0);
+        assertThat(removed.get() + counter.sum()).isEqualTo(added.get());
+    }
+
+    private static void runConcurrently(Runnable task) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>(THREADS);
+        for (int i = 0; i < THREADS; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                task.run();
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+}